@@ -1,14 +1,19 @@
 package collision;
 
 import glMath.Mat4;
-import glMath.MatrixUtil;
 import glMath.Quaternion;
 import glMath.Vec3;
+import glMath.Vec4;
 
 public class AABB implements CollisionMesh{
 	
 	private Mat4 modelMat;
-	private Vec3 halfDimensions;
+	private Vec3 halfDimensions, origHalfDimensions;
+	//world space bounds of the box kept in step with the model matrix, overlap tests and queries read these
+	//directly instead of transforming the box
+	private float minX, minY, minZ, maxX, maxY, maxZ;
+	//scratch vectors for refitting the box to a collision mesh, created on the first refit
+	private Vec3 refitDir, refitPoint;
 	
 	public AABB(){
 		this(1,1,1);
@@ -16,7 +21,9 @@ public class AABB implements CollisionMesh{
 	
 	public AABB(float width, float height, float length){
 		halfDimensions = new Vec3(width/2.0f,height/2.0f,length/2.0f);
+		origHalfDimensions = new Vec3(halfDimensions);
 		modelMat = new Mat4(1);
+		updateBounds();
 	}
 	
 	public AABB(Vec3 dimensions){
@@ -30,48 +37,63 @@ public class AABB implements CollisionMesh{
 	public AABB(AABB copy) {
 		this.modelMat = new Mat4(copy.modelMat);
 		this.halfDimensions = new Vec3(copy.halfDimensions);
+		this.origHalfDimensions = new Vec3(copy.origHalfDimensions);
+		minX = copy.minX;
+		minY = copy.minY;
+		minZ = copy.minZ;
+		maxX = copy.maxX;
+		maxY = copy.maxY;
+		maxZ = copy.maxZ;
 	}
 	
 	public boolean colliding(AABB collider){
-		Vec3 thisCenter = (Vec3)modelMat.multVec(center).swizzle("xyz");
-		Vec3 colliderCenter = collider.getCenter();
-		//max x value of this < min x of collider or min x value of this < max x value of collider
-		boolean x = thisCenter.x+halfDimensions.x > colliderCenter.x-collider.halfDimensions.x //case where this is left of collider
-				&&
-				thisCenter.x-halfDimensions.x < colliderCenter.x+collider.halfDimensions.x;//case where this is right of collider
-				
-		//max y value of this < min y of collider or min y value of this < max y value of collider
-		boolean y = thisCenter.y+halfDimensions.y > colliderCenter.y-collider.halfDimensions.y //case where this is below of collider
-				&&
-				thisCenter.y-halfDimensions.y < colliderCenter.y+collider.halfDimensions.y;//case where this is above of collider
-				
-		//max z value of this < min z of collider or min z value of this < max z value of collider
-		boolean z = thisCenter.z+halfDimensions.z > colliderCenter.z-collider.halfDimensions.z //case where this is behind of collider
-				&&
-				thisCenter.z-halfDimensions.z < colliderCenter.z+collider.halfDimensions.z;//case where this is front of collider
-				
-		//all three must be true for the boxes to be colliding
-		return x && y && z;
+		//the boxes overlap when their intervals overlap on all three axes, a box touching the other only at its
+		//boundary is not colliding
+		return maxX > collider.minX && minX < collider.maxX &&
+				maxY > collider.minY && minY < collider.maxY &&
+				maxZ > collider.minZ && minZ < collider.maxZ;
 	}
 
 	public void translate(float x, float y, float z){
-		modelMat.leftMult(MatrixUtil.translate(x, y, z));
+		//left multiplying by a translation offsets each column by the translation scaled by the columns w, for the
+		//affine model matrix this only moves the last column
+		Vec4[] columns = modelMat.getMatrix();
+		for(int curCol = 0; curCol < 4; curCol++){
+			Vec4 column = columns[curCol];
+			column.x += x*column.w;
+			column.y += y*column.w;
+			column.z += z*column.w;
+		}
+		minX += x;
+		minY += y;
+		minZ += z;
+		maxX += x;
+		maxY += y;
+		maxZ += z;
 	}
 	
 	public void translate(Vec3 translation){
-		modelMat.leftMult(MatrixUtil.translate(translation));
+		translate(translation.x, translation.y, translation.z);
 	}
 	
 	public void scale(float factor){
-		modelMat.leftMult(MatrixUtil.scale(factor, factor, factor));
+		scale(factor, factor, factor);
 	}
 	
 	public void scale(float x, float y, float z){
-		modelMat.leftMult(MatrixUtil.scale(x, y, z));
+		//left multiplying by a scale matrix scales the rows of the model matrix
+		Vec4[] columns = modelMat.getMatrix();
+		for(int curCol = 0; curCol < 4; curCol++){
+			Vec4 column = columns[curCol];
+			column.x *= x;
+			column.y *= y;
+			column.z *= z;
+		}
+		updateBounds();
 	}
 	
 	public void scale(Vec3 scalars){
-		modelMat.leftMult(MatrixUtil.scale(scalars));
+		scale(scalars.x, scalars.y, scalars.z);
 	}
 	
 	public void rotate(float x, float y, float z, float theta){
@@ -107,29 +129,185 @@ public class AABB implements CollisionMesh{
 		return halfDimensions;
 	}
 	
+	public float getMinX(){
+		return minX;
+	}
+	
+	public float getMinY(){
+		return minY;
+	}
+	
+	public float getMinZ(){
+		return minZ;
+	}
+	
+	public float getMaxX(){
+		return maxX;
+	}
+	
+	public float getMaxY(){
+		return maxY;
+	}
+	
+	public float getMaxZ(){
+		return maxZ;
+	}
+	
+	/**
+	 * Copies the world space bounds of this box into the given array as minX, minY, minZ, maxX, maxY, maxZ
+	 * 
+	 * @param bounds Array to store the bounds in
+	 * @param offset Index of the array to store minX at
+	 * @return The bounds array post operation
+	 */
+	public float[] getBounds(float[] bounds, int offset){
+		bounds[offset] = minX;
+		bounds[offset+1] = minY;
+		bounds[offset+2] = minZ;
+		bounds[offset+3] = maxX;
+		bounds[offset+4] = maxY;
+		bounds[offset+5] = maxZ;
+		return bounds;
+	}
+	
 	@Override
 	public void setData(Mat4 modelMat, Quaternion orient){
 		this.modelMat.setMatrix(modelMat);
+		updateBounds();
 	}
 	
 	@Override
 	public void setData(Mat4 modelMat){
 		this.modelMat.setMatrix(modelMat);
+		updateBounds();
 	}
 	
 	@Override
 	public Vec3 getCenter(){
-		return (Vec3)modelMat.multVec(center).swizzle("xyz");
+		return getCenter(new Vec3());
+	}
+	
+	@Override
+	public Vec3 getCenter(Vec3 result){
+		result.x = (minX+maxX)*.5f;
+		result.y = (minY+maxY)*.5f;
+		result.z = (minZ+maxZ)*.5f;
+		return result;
+	}
+	
+	/**
+	 * Rebuilds this box so it tightly encloses the given collision mesh in its current world transform, this is how
+	 * the box follows a collider that rotates since the box itself can't. The model matrix becomes a translation to
+	 * the center of the box and the half dimensions become the half extents of the mesh, resetting the box restores
+	 * the dimensions it was created with.
+	 * 
+	 * @param mesh Collision mesh to enclose
+	 */
+	public void refit(CollisionMesh mesh){
+		if(refitDir == null){
+			refitDir = new Vec3();
+			refitPoint = new Vec3();
+		}
+		if(mesh instanceof AABB){
+			AABB box = (AABB)mesh;
+			setBounds(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+		}else if(mesh instanceof OBB){
+			//the extent of a box along a world axis is the sum of the extents of its half axes along it
+			OBB box = (OBB)mesh;
+			float extentX = 0, extentY = 0, extentZ = 0;
+			for(int curAxis = 0; curAxis < 3; curAxis++){
+				Vec3 axis = box.getAxis(curAxis, refitDir);
+				extentX += Math.abs(axis.x);
+				extentY += Math.abs(axis.y);
+				extentZ += Math.abs(axis.z);
+			}
+			Vec3 center = box.getCenter(refitPoint);
+			setBounds(center.x-extentX, center.y-extentY, center.z-extentZ, center.x+extentX, center.y+extentY, center.z+extentZ);
+		}else{
+			//the bounds of any convex mesh are its support points along the world axes
+			float lowX = mesh.support(refitDir.set(-1, 0, 0), refitPoint).x;
+			float lowY = mesh.support(refitDir.set(0, -1, 0), refitPoint).y;
+			float lowZ = mesh.support(refitDir.set(0, 0, -1), refitPoint).z;
+			float highX = mesh.support(refitDir.set(1, 0, 0), refitPoint).x;
+			float highY = mesh.support(refitDir.set(0, 1, 0), refitPoint).y;
+			float highZ = mesh.support(refitDir.set(0, 0, 1), refitPoint).z;
+			setBounds(lowX, lowY, lowZ, highX, highY, highZ);
+		}
+	}
+	
+	/**
+	 * Sets the world space bounds of this box, updating the model matrix and half dimensions to match. This lets a
+	 * box be reused for queries over bounds that change each time instead of creating a new box
+	 * 
+	 * @param minX Smallest x of the box
+	 * @param minY Smallest y of the box
+	 * @param minZ Smallest z of the box
+	 * @param maxX Largest x of the box
+	 * @param maxY Largest y of the box
+	 * @param maxZ Largest z of the box
+	 */
+	public void setBounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+		halfDimensions.x = (maxX-minX)*.5f;
+		halfDimensions.y = (maxY-minY)*.5f;
+		halfDimensions.z = (maxZ-minZ)*.5f;
+		modelMat.loadIdentity();
+		Vec4 translation = modelMat.getMatrix()[3];
+		translation.x = (minX+maxX)*.5f;
+		translation.y = (minY+maxY)*.5f;
+		translation.z = (minZ+maxZ)*.5f;
+	}
+	
+	/**
+	 * Recomputes the world space bounds from the model matrix and half dimensions, a model matrix that isn't
+	 * axis aligned gives the bounds of the transformed box
+	 */
+	private void updateBounds(){
+		Vec4[] columns = modelMat.getMatrix();
+		float halfX = halfDimensions.x, halfY = halfDimensions.y, halfZ = halfDimensions.z;
+		float extentX = Math.abs(columns[0].x)*halfX+Math.abs(columns[1].x)*halfY+Math.abs(columns[2].x)*halfZ;
+		float extentY = Math.abs(columns[0].y)*halfX+Math.abs(columns[1].y)*halfY+Math.abs(columns[2].y)*halfZ;
+		float extentZ = Math.abs(columns[0].z)*halfX+Math.abs(columns[1].z)*halfY+Math.abs(columns[2].z)*halfZ;
+		Vec4 translation = columns[3];
+		minX = translation.x-extentX;
+		minY = translation.y-extentY;
+		minZ = translation.z-extentZ;
+		maxX = translation.x+extentX;
+		maxY = translation.y+extentY;
+		maxZ = translation.z+extentZ;
+	}
+	
+	/**
+	 * Gets the world space half axis of this box along the given local axis, this is the vector from the center
+	 * of the box to the center of the face on the positive side of that axis
+	 * 
+	 * @param index Index of the local axis, 0 for x, 1 for y and 2 for z
+	 * @param result Vector to store the half axis in
+	 * @return The result vector post operation
+	 */
+	public Vec3 getAxis(int index, Vec3 result){
+		result.x = index == 0 ? (maxX-minX)*.5f : 0;
+		result.y = index == 1 ? (maxY-minY)*.5f : 0;
+		result.z = index == 2 ? (maxZ-minZ)*.5f : 0;
+		return result;
 	}
 	
 	@Override
 	public Vec3 support(Vec3 direction){
-		
-		return (Vec3)modelMat.multVec(new Vec3(
-				Math.copySign(halfDimensions.x, direction.x),
-				Math.copySign(halfDimensions.y, direction.y),
-				Math.copySign(halfDimensions.z, direction.z)
-				)).swizzle("xyz");
+		return support(direction, new Vec3());
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result){
+		result.x = direction.x < 0 ? minX : maxX;
+		result.y = direction.y < 0 ? minY : maxY;
+		result.z = direction.z < 0 ? minZ : maxZ;
+		return result;
 	}
 
 	@Override
@@ -140,6 +318,8 @@ public class AABB implements CollisionMesh{
 	@Override
 	public void resetModel() {
 		this.modelMat.loadIdentity();
+		halfDimensions.set(origHalfDimensions);
+		updateBounds();
 	}
 
 	@Override
@@ -150,5 +330,7 @@ public class AABB implements CollisionMesh{
 	@Override
 	public void reset() {
 		this.modelMat.loadIdentity();
+		halfDimensions.set(origHalfDimensions);
+		updateBounds();
 	}
 }
@@ -0,0 +1,225 @@
+package collision;
+
+import glMath.Vec4;
+
+/**
+ * Set of axis aligned boxes stored as separate arrays of each bound, for testing one box or a frustum against
+ * many boxes at once. Keeping each bound in its own array lets the tests run over contiguous memory instead of
+ * following a reference to each box, and lets the frustum test pick the corner to test once per plane.
+ * 
+ * The tests write the indices of the boxes that pass into a caller supplied array, the array needs to be able to
+ * hold at least as many indices as there are boxes in the batch.
+ * 
+ * @author Kevin
+ *
+ */
+public class AABBBatch {
+	
+	//below this many boxes the frustum test is run one box at a time, culling a plane at a time only pays off
+	//once the passes over the boxes are long enough to hide their setup
+	private static final int PLANE_MAJOR_SIZE = 32;
+	
+	public float[] minX, minY, minZ, maxX, maxY, maxZ;
+	private int size;
+	
+	public AABBBatch(){
+		this(16);
+	}
+	
+	/**
+	 * Constructs an empty batch
+	 * 
+	 * @param initialCapacity Number of boxes to allocate space for, the batch grows as needed
+	 */
+	public AABBBatch(int initialCapacity){
+		int capacity = Math.max(initialCapacity, 1);
+		minX = new float[capacity];
+		minY = new float[capacity];
+		minZ = new float[capacity];
+		maxX = new float[capacity];
+		maxY = new float[capacity];
+		maxZ = new float[capacity];
+		size = 0;
+	}
+	
+	/**
+	 * Adds a box to the end of the batch
+	 * 
+	 * @return Index of the box in the batch
+	 */
+	public int add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		if(size == this.minX.length){
+			grow(size*2);
+		}
+		set(size, minX, minY, minZ, maxX, maxY, maxZ);
+		return size++;
+	}
+	
+	/**
+	 * Adds the current world bounds of the given volume to the end of the batch
+	 * 
+	 * @param volume Volume to add
+	 * @return Index of the box in the batch
+	 */
+	public int add(AABB volume){
+		return add(volume.getMinX(), volume.getMinY(), volume.getMinZ(), volume.getMaxX(), volume.getMaxY(), volume.getMaxZ());
+	}
+	
+	/**
+	 * Replaces the bounds of the box at the given index
+	 * 
+	 * @param index Index of the box to replace
+	 */
+	public void set(int index, float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		this.minX[index] = minX;
+		this.minY[index] = minY;
+		this.minZ[index] = minZ;
+		this.maxX[index] = maxX;
+		this.maxY[index] = maxY;
+		this.maxZ[index] = maxZ;
+	}
+	
+	/**
+	 * Removes the box at the given index by moving the last box of the batch into its place
+	 * 
+	 * @param index Index of the box to remove
+	 * @return Previous index of the box that was moved into the removed slot, or -1 if the last box was removed
+	 */
+	public int remove(int index){
+		int last = --size;
+		if(index == last){
+			return -1;
+		}
+		set(index, minX[last], minY[last], minZ[last], maxX[last], maxY[last], maxZ[last]);
+		return last;
+	}
+	
+	public void clear(){
+		size = 0;
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Ensures the batch can hold the given number of boxes without growing
+	 * 
+	 * @param capacity Number of boxes the batch needs to hold
+	 */
+	public void ensureCapacity(int capacity){
+		if(capacity > minX.length){
+			grow(Math.max(capacity, minX.length*2));
+		}
+	}
+	
+	/**
+	 * Finds the boxes in the batch that overlap the given box, boxes that only touch the given box count as
+	 * overlapping
+	 * 
+	 * @param hits Array to store the indices of the overlapping boxes in, in increasing order
+	 * @return Number of indices that were stored in hits
+	 */
+	public int overlapping(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int[] hits){
+		float[] batchMinX = this.minX, batchMinY = this.minY, batchMinZ = this.minZ;
+		float[] batchMaxX = this.maxX, batchMaxY = this.maxY, batchMaxZ = this.maxZ;
+		int found = 0;
+		//most boxes are rejected by the first pair of compares so short circuiting beats evaluating all six
+		for(int curBox = 0; curBox < size; curBox++){
+			if(batchMinX[curBox] <= maxX && batchMaxX[curBox] >= minX &&
+					batchMinY[curBox] <= maxY && batchMaxY[curBox] >= minY &&
+					batchMinZ[curBox] <= maxZ && batchMaxZ[curBox] >= minZ){
+				hits[found++] = curBox;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Finds the boxes in the batch that overlap the given volume
+	 * 
+	 * @param volume Volume to test against
+	 * @param hits Array to store the indices of the overlapping boxes in, in increasing order
+	 * @return Number of indices that were stored in hits
+	 */
+	public int overlapping(AABB volume, int[] hits){
+		return overlapping(volume.getMinX(), volume.getMinY(), volume.getMinZ(),
+				volume.getMaxX(), volume.getMaxY(), volume.getMaxZ(), hits);
+	}
+	
+	/**
+	 * Finds the boxes in the batch that are inside or intersect the frustum formed by the given planes
+	 * 
+	 * @param planes Planes of the frustum with their normals facing the inside of the frustum
+	 * @param hits Array to store the indices of the visible boxes in, in increasing order
+	 * @return Number of indices that were stored in hits
+	 */
+	public int visible(Vec4[] planes, int[] hits){
+		if(size < PLANE_MAJOR_SIZE){
+			int found = 0;
+			for(int curBox = 0; curBox < size; curBox++){
+				if(inside(planes, curBox)){
+					hits[found++] = curBox;
+				}
+			}
+			return found;
+		}
+		for(int curBox = 0; curBox < size; curBox++){
+			hits[curBox] = curBox;
+		}
+		int found = size;
+		//the boxes are culled one plane at a time so the corner picked for each plane is the same for every box,
+		//each pass compacts the boxes that are still visible to the front of hits
+		for(int curPlane = 0; curPlane < planes.length && found > 0; curPlane++){
+			Vec4 plane = planes[curPlane];
+			//the corner of each box farthest along the normal of the plane
+			float[] farX = plane.x >= 0 ? maxX : minX;
+			float[] farY = plane.y >= 0 ? maxY : minY;
+			float[] farZ = plane.z >= 0 ? maxZ : minZ;
+			float planeX = plane.x, planeY = plane.y, planeZ = plane.z, planeW = plane.w;
+			int kept = 0;
+			for(int curHit = 0; curHit < found; curHit++){
+				int box = hits[curHit];
+				hits[kept] = box;
+				kept += planeX*farX[box]+planeY*farY[box]+planeZ*farZ[box]+planeW >= 0 ? 1 : 0;
+			}
+			found = kept;
+		}
+		return found;
+	}
+	
+	/**
+	 * Determines whether the box at the given index is inside or intersects the frustum formed by the given planes
+	 * 
+	 * @param planes Planes of the frustum with their normals facing the inside of the frustum
+	 * @param index Index of the box to test
+	 * @return True if the box isn't completely behind any of the planes
+	 */
+	private boolean inside(Vec4[] planes, int index){
+		for(int curPlane = 0; curPlane < planes.length; curPlane++){
+			Vec4 plane = planes[curPlane];
+			float farX = plane.x >= 0 ? maxX[index] : minX[index];
+			float farY = plane.y >= 0 ? maxY[index] : minY[index];
+			float farZ = plane.z >= 0 ? maxZ[index] : minZ[index];
+			if(plane.x*farX+plane.y*farY+plane.z*farZ+plane.w < 0){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void grow(int capacity){
+		minX = copyOf(minX, capacity);
+		minY = copyOf(minY, capacity);
+		minZ = copyOf(minZ, capacity);
+		maxX = copyOf(maxX, capacity);
+		maxY = copyOf(maxY, capacity);
+		maxZ = copyOf(maxZ, capacity);
+	}
+	
+	private static float[] copyOf(float[] array, int length){
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+}
@@ -1,35 +1,524 @@
 package collision;
 import java.util.ArrayList;
+import java.util.List;
 
+import glMath.Mat4;
 import glMath.Vec3;
+import primitives.Triangle;
+import primitives.Vertex;
+import renderers.Renderable;
 import core.GameObject;
 
+/**
+ * Solid leaf binary space partitioning tree of static level triangles, built once from the geometry and then only
+ * queried. Every node splits space by the plane of one of its triangles, the front of each plane being the side the
+ * triangle faces. Space behind the last plane crossed is solid and space in front of it is empty, so the geometry is
+ * expected to be closed with its triangles wound counter clockwise when seen from outside, as with level brushes or
+ * loaded models.
+ * 
+ * The splitting plane of each node is picked from a sample of the triangles left in it, weighing the number of
+ * triangles it would split against how evenly it divides the rest. The nodes are stored in flat arrays of planes and
+ * child indices, with negative child indices for the solid and empty leaves. Queries walk these arrays directly
+ * instead of running GJK against the triangles, and since they don't change the tree they can run on several threads
+ * at once.
+ * 
+ * @author Kevin
+ *
+ */
 public class BSPTree {
 	
-	private BSPNode root;
+	//child indices of the leaves, node children at or above 0 are the indices of other nodes
+	public static final int LEAF_EMPTY = -1, LEAF_SOLID = -2;
+	
+	//number of triangles tried as the splitting plane of each node
+	private static final int MAX_CANDIDATES = 16;
+	//how much avoiding splits matters over balancing the two sides when picking a splitting plane
+	private static final float SPLIT_WEIGHT = 0.8f;
+	private static final int PLANE_STRIDE = 4;
+	
+	//triangles added since the tree was created as 9 floats each, kept so the tree can be compiled again
+	private float[] triangles;
+	private int numTriangles;
+	
+	//plane of each node as its normal and distance from the origin, and the front and back child of each node
+	private float[] planes;
+	private int[] children;
+	private int numNodes, root, depth;
+	//distance from a plane within which points count as on it
+	private float thickness;
 	
 	public BSPTree(){
-		
+		triangles = new float[9*64];
+		numTriangles = 0;
+		planes = new float[PLANE_STRIDE*16];
+		children = new int[2*16];
+		numNodes = 0;
+		root = LEAF_EMPTY;
+		depth = 0;
+	}
+	
+	/**
+	 * Constructs a tree of the triangles of the given mesh in its current world transform
+	 * 
+	 * @param mesh Mesh to build the tree from
+	 */
+	public BSPTree(Renderable mesh){
+		this();
+		add(mesh);
+		compile();
+	}
+	
+	/**
+	 * Constructs a tree of the triangles of the meshes of the given game objects in their current world transforms
+	 * 
+	 * @param levelObjects Static game objects to build the tree from
+	 */
+	public BSPTree(List<GameObject> levelObjects){
+		this();
+		for(GameObject object : levelObjects){
+			add(object);
+		}
+		compile();
+	}
+	
+	/**
+	 * Adds the triangles of the mesh of the given game object in its current world transform, the triangles are only
+	 * part of the tree once it is compiled
+	 * 
+	 * @param object Game object to add
+	 */
+	public void add(GameObject object){
+		add(object.mesh);
+	}
+	
+	/**
+	 * Adds the triangles of the given mesh in its current world transform, the triangles are only part of the tree
+	 * once it is compiled
+	 * 
+	 * @param mesh Mesh to add
+	 */
+	public void add(Renderable mesh){
+		add(mesh.getVertices(), mesh.getFaces(), mesh.getModelMatrix());
+	}
+	
+	/**
+	 * Adds the given triangles transformed by the given matrix, the triangles are only part of the tree once it is
+	 * compiled
+	 * 
+	 * @param vertices Vertices the triangles index into
+	 * @param faces Triangles to add, wound counter clockwise when seen from outside the solid
+	 * @param transform Transform from the space of the vertices to world space, null if they are already in world space
+	 */
+	public void add(List<Vertex> vertices, List<Triangle> faces, Mat4 transform){
+		Vec3 a = new Vec3(), b = new Vec3(), c = new Vec3();
+		for(Triangle face : faces){
+			a.set(vertices.get(face.primitive[0]).getPos());
+			b.set(vertices.get(face.primitive[1]).getPos());
+			c.set(vertices.get(face.primitive[2]).getPos());
+			if(transform != null){
+				transform.multVec(a, a);
+				transform.multVec(b, b);
+				transform.multVec(c, c);
+			}
+			add(a, b, c);
+		}
+	}
+	
+	/**
+	 * Adds a single triangle, the triangle is only part of the tree once it is compiled
+	 * 
+	 * @param a First vertex of the triangle
+	 * @param b Second vertex of the triangle
+	 * @param c Third vertex of the triangle, the vertices are wound counter clockwise when seen from outside the solid
+	 */
+	public void add(Vec3 a, Vec3 b, Vec3 c){
+		if(9*(numTriangles+1) > triangles.length){
+			triangles = copyOf(triangles, triangles.length*2);
+		}
+		int offset = 9*numTriangles++;
+		triangles[offset] = a.x;
+		triangles[offset+1] = a.y;
+		triangles[offset+2] = a.z;
+		triangles[offset+3] = b.x;
+		triangles[offset+4] = b.y;
+		triangles[offset+5] = b.z;
+		triangles[offset+6] = c.x;
+		triangles[offset+7] = c.y;
+		triangles[offset+8] = c.z;
 	}
 	
-	public BSPTree(Vec3 center, Vec3 planeNormal){
+	/**
+	 * Builds the tree from all the triangles added so far, replacing the previous tree
+	 */
+	public void compile(){
+		numNodes = 0;
+		depth = 0;
+		float maxCoord = 0;
+		for(int curCoord = 0; curCoord < 9*numTriangles; curCoord++){
+			maxCoord = Math.max(maxCoord, Math.abs(triangles[curCoord]));
+		}
+		thickness = Math.max(1e-5f*maxCoord, 1e-6f);
 		
+		ArrayList<Polygon> polygons = new ArrayList<Polygon>(numTriangles);
+		for(int curTriangle = 0; curTriangle < numTriangles; curTriangle++){
+			Polygon polygon = new Polygon(triangles, 9*curTriangle);
+			//degenerate triangles have no plane to split by
+			if(polygon.computePlane()){
+				polygons.add(polygon);
+			}
+		}
+		root = build(polygons, false, 1);
+	}
+	
+	/**
+	 * Determines whether the given point is inside the solid
+	 * 
+	 * @param point Point to test
+	 * @return True if the point is behind the geometry, points on the surface count as outside
+	 */
+	public boolean isSolid(Vec3 point){
+		return isSolid(point.x, point.y, point.z);
+	}
+	
+	/**
+	 * Determines whether the given point is inside the solid
+	 * 
+	 * @return True if the point is behind the geometry, points on the surface count as outside
+	 */
+	public boolean isSolid(float x, float y, float z){
+		int node = root;
+		while(node >= 0){
+			int plane = node*PLANE_STRIDE;
+			float dist = planes[plane]*x+planes[plane+1]*y+planes[plane+2]*z-planes[plane+3];
+			node = children[2*node+(dist >= 0 ? 0 : 1)];
+		}
+		return node == LEAF_SOLID;
 	}
 	
-	public BSPTree(Vec3 center, Vec3 planeNormal, ArrayList<GameObject> starterObjects){
+	/**
+	 * Casts a ray against the solid, finding the first point where it enters the solid
+	 * 
+	 * @param origin Start of the ray
+	 * @param ray Direction of the ray, its length is the furthest the ray is cast
+	 * @param result Cast result to store the hit in, a ray that starts inside the solid hits at its start with no normal
+	 * @return True if the ray entered the solid
+	 */
+	public boolean raycast(Vec3 origin, Vec3 ray, CastResult result){
+		result.reset();
+		if(!cast(root, origin.x, origin.y, origin.z, ray.x, ray.y, ray.z, 0, 1, -1, 1, result)){
+			return false;
+		}
+		result.point.set(origin.x+ray.x*result.fraction, origin.y+ray.y*result.fraction, origin.z+ray.z*result.fraction);
+		return true;
+	}
+	
+	/**
+	 * Clips the segment between the given points against the solid, the part of the segment before the fraction of the
+	 * result is outside the solid. A segment that doesn't enter the solid is left whole, which makes this a line of
+	 * sight test between the points
+	 * 
+	 * @param start Start of the segment
+	 * @param end End of the segment
+	 * @param result Cast result to store the point where the segment enters the solid in
+	 * @return True if the segment was clipped
+	 */
+	public boolean clipSegment(Vec3 start, Vec3 end, CastResult result){
+		return raycast(start, new Vec3(end.x-start.x, end.y-start.y, end.z-start.z), result);
+	}
+	
+	/**
+	 * Casts the part of the ray between the given fractions through the given node, visiting the side of each plane
+	 * the ray starts on before the side it ends on so the first solid leaf reached is the closest hit
+	 * 
+	 * @param lastNode Node whose plane the ray crossed to reach this node, -1 if none has been crossed yet
+	 * @param lastSide 1 if that plane was crossed from its front, -1 if from its back
+	 */
+	private boolean cast(int node, float originX, float originY, float originZ, float rayX, float rayY, float rayZ,
+			float start, float end, int lastNode, float lastSide, CastResult result){
+		while(node >= 0){
+			int plane = node*PLANE_STRIDE;
+			float dist = planes[plane]*originX+planes[plane+1]*originY+planes[plane+2]*originZ-planes[plane+3];
+			float rate = planes[plane]*rayX+planes[plane+1]*rayY+planes[plane+2]*rayZ;
+			float startDist = dist+rate*start, endDist = dist+rate*end;
+			if(startDist >= 0 && endDist >= 0){
+				node = children[2*node];
+			}else if(startDist < 0 && endDist < 0){
+				node = children[2*node+1];
+			}else{
+				//the ray crosses the plane, the sides differ so the rate can't be 0
+				float split = -dist/rate;
+				int near = startDist >= 0 ? 0 : 1;
+				if(cast(children[2*node+near], originX, originY, originZ, rayX, rayY, rayZ, start, split, lastNode, lastSide, result)){
+					return true;
+				}
+				//the far side is only reached by crossing this plane, so it is the surface of any solid found there
+				lastNode = node;
+				lastSide = near == 0 ? 1 : -1;
+				node = children[2*node+1-near];
+				start = split;
+			}
+		}
+		if(node == LEAF_EMPTY){
+			return false;
+		}
+		result.hit = true;
+		result.fraction = start;
+		if(lastNode >= 0){
+			int plane = lastNode*PLANE_STRIDE;
+			result.normal.set(planes[plane]*lastSide, planes[plane+1]*lastSide, planes[plane+2]*lastSide);
+		}
+		return true;
+	}
+	
+	/**
+	 * Builds the subtree of the given polygons
+	 * 
+	 * @param backSide Whether the polygons are behind the plane of the parent node, a subtree with no polygons left is
+	 * solid behind the plane of its parent and empty in front of it
+	 * @param level Depth of the subtree in the tree
+	 * @return Index of the node of the subtree or the leaf it is
+	 */
+	private int build(ArrayList<Polygon> polygons, boolean backSide, int level){
+		if(polygons.isEmpty()){
+			return backSide ? LEAF_SOLID : LEAF_EMPTY;
+		}
+		depth = Math.max(depth, level);
+		Polygon splitter = pickSplitter(polygons);
+		int node = allocateNode();
+		int plane = node*PLANE_STRIDE;
+		planes[plane] = splitter.normalX;
+		planes[plane+1] = splitter.normalY;
+		planes[plane+2] = splitter.normalZ;
+		planes[plane+3] = splitter.dist;
 		
+		ArrayList<Polygon> front = new ArrayList<Polygon>(), back = new ArrayList<Polygon>();
+		for(Polygon polygon : polygons){
+			switch(polygon.classify(splitter, thickness)){
+				case Polygon.COPLANAR:
+					//polygons facing the same way are represented by this node, the others are only on the back side of
+					//a thin wall and are kept to divide the solid behind this plane
+					if(polygon.normalX*splitter.normalX+polygon.normalY*splitter.normalY+polygon.normalZ*splitter.normalZ < 0){
+						back.add(polygon);
+					}
+					break;
+				case Polygon.FRONT:
+					front.add(polygon);
+					break;
+				case Polygon.BACK:
+					back.add(polygon);
+					break;
+				default:
+					polygon.split(splitter, thickness, front, back);
+					break;
+			}
+		}
+		//the front subtree is built before the back one is allocated, the node index stays valid as the arrays grow
+		int frontChild = build(front, false, level+1);
+		int backChild = build(back, true, level+1);
+		children[2*node] = frontChild;
+		children[2*node+1] = backChild;
+		return node;
 	}
 	
-	protected class BSPNode{
-		protected BSPNode left, right;
+	/**
+	 * Picks the polygon whose plane best divides the given polygons, trying an even sample of the polygons when there
+	 * are more of them than the number of candidates
+	 */
+	private Polygon pickSplitter(ArrayList<Polygon> polygons){
+		int numPolygons = polygons.size();
+		int step = Math.max(1, numPolygons/MAX_CANDIDATES);
+		Polygon best = null;
+		float bestCost = Float.MAX_VALUE;
+		for(int curCandidate = 0; curCandidate < numPolygons; curCandidate += step){
+			Polygon candidate = polygons.get(curCandidate);
+			int numFront = 0, numBack = 0, numSplit = 0;
+			for(int curPolygon = 0; curPolygon < numPolygons; curPolygon++){
+				switch(polygons.get(curPolygon).classify(candidate, thickness)){
+					case Polygon.FRONT:
+						numFront++;
+						break;
+					case Polygon.BACK:
+						numBack++;
+						break;
+					case Polygon.STRADDLING:
+						numSplit++;
+						break;
+				}
+			}
+			float cost = SPLIT_WEIGHT*numSplit+(1-SPLIT_WEIGHT)*Math.abs(numFront-numBack);
+			if(cost < bestCost){
+				bestCost = cost;
+				best = candidate;
+			}
+		}
+		return best;
+	}
+	
+	private int allocateNode(){
+		if(numNodes == children.length/2){
+			planes = copyOf(planes, planes.length*2);
+			int[] grown = new int[children.length*2];
+			System.arraycopy(children, 0, grown, 0, children.length);
+			children = grown;
+		}
+		return numNodes++;
+	}
+	
+	public int getNodeCount(){
+		return numNodes;
+	}
+	
+	public int getDepth(){
+		return depth;
+	}
+	
+	public int getTriangleCount(){
+		return numTriangles;
+	}
+	
+	private static float[] copyOf(float[] array, int length){
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+	
+	/**
+	 * Convex polygon used while building the tree, starting as one of the triangles and cut into smaller polygons by
+	 * the planes it straddles
+	 */
+	private static class Polygon{
+		private static final int COPLANAR = 0, FRONT = 1, BACK = 2, STRADDLING = 3;
+		
+		//positions of the corners as x, y, z
+		private float[] points;
+		private int numPoints;
+		private float normalX, normalY, normalZ, dist;
+		
+		public Polygon(float[] source, int offset){
+			points = new float[9];
+			System.arraycopy(source, offset, points, 0, 9);
+			numPoints = 3;
+		}
+		
+		public Polygon(int capacity, Polygon parent){
+			points = new float[3*capacity];
+			numPoints = 0;
+			normalX = parent.normalX;
+			normalY = parent.normalY;
+			normalZ = parent.normalZ;
+			dist = parent.dist;
+		}
+		
+		/**
+		 * Computes the plane of this polygon from its first three points
+		 * 
+		 * @return False if the points don't form a plane
+		 */
+		public boolean computePlane(){
+			float abX = points[3]-points[0], abY = points[4]-points[1], abZ = points[5]-points[2];
+			float acX = points[6]-points[0], acY = points[7]-points[1], acZ = points[8]-points[2];
+			normalX = abY*acZ-abZ*acY;
+			normalY = abZ*acX-abX*acZ;
+			normalZ = abX*acY-abY*acX;
+			float length = (float)Math.sqrt(normalX*normalX+normalY*normalY+normalZ*normalZ);
+			if(!(length > 0)){
+				return false;
+			}
+			normalX /= length;
+			normalY /= length;
+			normalZ /= length;
+			dist = normalX*points[0]+normalY*points[1]+normalZ*points[2];
+			return true;
+		}
+		
+		/**
+		 * Determines which side of the plane of the given polygon this polygon is on
+		 */
+		public int classify(Polygon plane, float thickness){
+			boolean inFront = false, behind = false;
+			for(int curPoint = 0; curPoint < 3*numPoints; curPoint += 3){
+				float pointDist = plane.distance(points, curPoint);
+				if(pointDist > thickness){
+					inFront = true;
+				}else if(pointDist < -thickness){
+					behind = true;
+				}
+			}
+			if(inFront && behind){
+				return STRADDLING;
+			}else if(inFront){
+				return FRONT;
+			}else if(behind){
+				return BACK;
+			}else{
+				return COPLANAR;
+			}
+		}
+		
+		/**
+		 * Cuts this polygon by the plane of the given polygon, adding the parts in front of and behind the plane to
+		 * the given lists. Points on the plane are kept in both parts
+		 */
+		public void split(Polygon plane, float thickness, ArrayList<Polygon> front, ArrayList<Polygon> back){
+			Polygon frontPart = new Polygon(numPoints+2, this), backPart = new Polygon(numPoints+2, this);
+			int prev = 3*(numPoints-1);
+			float prevDist = plane.distance(points, prev);
+			for(int curPoint = 0; curPoint < 3*numPoints; curPoint += 3){
+				float curDist = plane.distance(points, curPoint);
+				if(curDist > thickness){
+					if(prevDist < -thickness){
+						addIntersection(prev, curPoint, prevDist, curDist, frontPart, backPart);
+					}
+					frontPart.addPoint(points, curPoint);
+				}else if(curDist < -thickness){
+					if(prevDist > thickness){
+						addIntersection(prev, curPoint, prevDist, curDist, frontPart, backPart);
+					}else if(prevDist <= thickness && prevDist >= -thickness){
+						backPart.addPoint(points, prev);
+					}
+					backPart.addPoint(points, curPoint);
+				}else{
+					frontPart.addPoint(points, curPoint);
+					if(prevDist < -thickness){
+						backPart.addPoint(points, curPoint);
+					}
+				}
+				prev = curPoint;
+				prevDist = curDist;
+			}
+			if(frontPart.numPoints >= 3){
+				front.add(frontPart);
+			}
+			if(backPart.numPoints >= 3){
+				back.add(backPart);
+			}
+		}
+		
+		private void addIntersection(int from, int to, float fromDist, float toDist, Polygon frontPart, Polygon backPart){
+			float t = fromDist/(fromDist-toDist);
+			float x = points[from]+(points[to]-points[from])*t;
+			float y = points[from+1]+(points[to+1]-points[from+1])*t;
+			float z = points[from+2]+(points[to+2]-points[from+2])*t;
+			frontPart.addPoint(x, y, z);
+			backPart.addPoint(x, y, z);
+		}
+		
+		private float distance(float[] source, int offset){
+			return normalX*source[offset]+normalY*source[offset+1]+normalZ*source[offset+2]-dist;
+		}
 		
-		public BSPNode(){
-			left = null;
-			right = null;
+		private void addPoint(float[] source, int offset){
+			addPoint(source[offset], source[offset+1], source[offset+2]);
 		}
 		
-		public boolean isLeaf(){
-			return left == null && right == null;
+		private void addPoint(float x, float y, float z){
+			if(3*numPoints == points.length){
+				points = copyOf(points, points.length*2);
+			}
+			points[3*numPoints] = x;
+			points[3*numPoints+1] = y;
+			points[3*numPoints+2] = z;
+			numPoints++;
 		}
 	}
 }
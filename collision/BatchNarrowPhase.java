@@ -0,0 +1,206 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import glMath.Vec3;
+
+/**
+ * Runs the intersection tests of a batch of candidate pairs across the threads of a fork join pool. Each test only
+ * reads the transforms of the two collision meshes and writes its own collision data, so the pairs are split into
+ * ranges that the workers test independently, each worker using the GJK workspace of its own thread. The tests are
+ * routed through a collision dispatcher so pairs with a closed form test skip GJK and EPA.
+ * 
+ * The results are stored by index so the collision data of a pair is always at the same index as the pair in the
+ * given list, the order and the values of the results are the same regardless of the number of threads or how the
+ * ranges were scheduled. The meshes must not be moved while a batch is running.
+ * 
+ * Pairs where neither object is active can't have changed since they were last tested so they aren't tested again,
+ * their collision data is reset and marked as skipped instead.
+ * 
+ * @author Kevin
+ *
+ */
+public class BatchNarrowPhase {
+	
+	//number of pairs below which a range is tested on the current thread instead of being split
+	private static final int DEFAULT_GRAIN_SIZE = 64;
+	
+	private ForkJoinPool pool;
+	private int grainSize;
+	private CollisionDispatcher dispatcher;
+	private GJKPairCache pairCache;
+	//seed direction of each pair in the current batch, null for pairs that aren't tested with gjk
+	private ArrayList<Vec3> seeds;
+	
+	public BatchNarrowPhase(){
+		this(new ForkJoinPool(), DEFAULT_GRAIN_SIZE);
+	}
+	
+	public BatchNarrowPhase(ForkJoinPool pool){
+		this(pool, DEFAULT_GRAIN_SIZE);
+	}
+	
+	/**
+	 * Constructs a batch narrowphase that runs its tests on the given pool
+	 * 
+	 * @param pool Pool to run the tests on
+	 * @param grainSize Number of pairs below which a range is no longer split into smaller tasks
+	 */
+	public BatchNarrowPhase(ForkJoinPool pool, int grainSize){
+		this(pool, grainSize, new CollisionDispatcher());
+	}
+	
+	/**
+	 * Constructs a batch narrowphase that runs its tests on the given pool with the tests of the given dispatcher
+	 * 
+	 * @param pool Pool to run the tests on
+	 * @param grainSize Number of pairs below which a range is no longer split into smaller tasks
+	 * @param dispatcher Dispatcher choosing the test to run for each pair
+	 */
+	public BatchNarrowPhase(ForkJoinPool pool, int grainSize, CollisionDispatcher dispatcher){
+		this.pool = pool;
+		this.grainSize = Math.max(grainSize, 1);
+		this.dispatcher = dispatcher;
+		seeds = new ArrayList<Vec3>();
+	}
+	
+	/**
+	 * Tests each of the given pairs for intersection, the collision data of the pair at each index of the given
+	 * list is stored at the same index of the results list. Collision data already in the results list is reused
+	 * and new collision data is only created when the list is shorter than the pairs list. Pairs where neither
+	 * object is active are skipped, their collision data is reset with its skipped flag set.
+	 * 
+	 * @param pairs Candidate pairs to test
+	 * @param results List to store the collision data of each pair in
+	 * @return Number of pairs that are colliding
+	 */
+	public int intersect(List<CandidatePair> pairs, ArrayList<CollisionData> results){
+		int numPairs = pairs.size();
+		results.ensureCapacity(numPairs);
+		while(results.size() < numPairs){
+			results.add(new CollisionData());
+		}
+		if(pairCache != null){
+			findSeeds(pairs);
+		}
+		//small batches aren't worth handing off to the pool
+		if(numPairs <= grainSize){
+			test(pairs, results, 0, numPairs, CollisionDetector.getWorkspace());
+		}else{
+			pool.invoke(new PairTask(pairs, results, 0, numPairs));
+		}
+		
+		int colliding = 0;
+		for(int curPair = 0; curPair < numPairs; curPair++){
+			if(results.get(curPair).areColliding){
+				colliding++;
+			}
+		}
+		return colliding;
+	}
+	
+	/**
+	 * Looks up the cached seed direction of every pair that falls back to gjk, the cache isn't thread safe so this
+	 * is done on the calling thread before the batch is split while the tests only write to the directions
+	 */
+	private void findSeeds(List<CandidatePair> pairs){
+		pairCache.nextFrame();
+		seeds.clear();
+		for(int curPair = 0; curPair < pairs.size(); curPair++){
+			CandidatePair pair = pairs.get(curPair);
+			CollisionMesh meshA = pair.objA.mesh.getCollisionMesh();
+			CollisionMesh meshB = pair.objB.mesh.getCollisionMesh();
+			if((pair.objA.isActive() || pair.objB.isActive()) && dispatcher.getTest(meshA, meshB) == CollisionDispatcher.GJK){
+				seeds.add(pairCache.getDirection(meshA, meshB));
+			}else{
+				seeds.add(null);
+			}
+		}
+	}
+	
+	/**
+	 * Tests the pairs in the given range storing the results at the same indices
+	 */
+	private void test(List<CandidatePair> pairs, ArrayList<CollisionData> results, int start, int end, GJKWorkspace workspace){
+		for(int curPair = start; curPair < end; curPair++){
+			CandidatePair pair = pairs.get(curPair);
+			CollisionData result = results.get(curPair);
+			//pairs of sleeping or fixed objects can't have changed since they were last tested, the data at this
+			//index may have been another pair's so none of it is kept
+			if(!pair.objA.isActive() && !pair.objB.isActive()){
+				result.reset();
+				result.skipped = true;
+				continue;
+			}
+			result.skipped = false;
+			Vec3 seed = pairCache == null ? null : seeds.get(curPair);
+			if(seed != null){
+				//a zero direction means the pair is new so it is tested cold
+				CollisionDetector.gjkIntersect(pair.objA.mesh.getCollisionMesh(), pair.objB.mesh.getCollisionMesh(),
+						seed.isZero() ? null : seed, result, workspace);
+				seed.set(workspace.getTerminalDirection());
+			}else{
+				dispatcher.intersect(pair.objA.mesh.getCollisionMesh(), pair.objB.mesh.getCollisionMesh(),
+						result, workspace);
+			}
+		}
+	}
+	
+	public ForkJoinPool getPool(){
+		return pool;
+	}
+	
+	public int getGrainSize(){
+		return grainSize;
+	}
+	
+	public CollisionDispatcher getDispatcher(){
+		return dispatcher;
+	}
+	
+	/**
+	 * Sets the cache used to seed the gjk tests of pairs that don't have a specialized test with the direction
+	 * their last test ended in
+	 * 
+	 * @param pairCache Cache to seed the tests from, or null to always test cold
+	 */
+	public void setPairCache(GJKPairCache pairCache){
+		this.pairCache = pairCache;
+	}
+	
+	public GJKPairCache getPairCache(){
+		return pairCache;
+	}
+	
+	/**
+	 * Task testing a range of pairs, ranges larger than the grain size are split in half
+	 */
+	private class PairTask extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		
+		private List<CandidatePair> pairs;
+		private ArrayList<CollisionData> results;
+		private int start, end;
+		
+		public PairTask(List<CandidatePair> pairs, ArrayList<CollisionData> results, int start, int end){
+			this.pairs = pairs;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute(){
+			if(end-start <= grainSize){
+				//each worker thread has its own workspace so the tests don't share any scratch state
+				test(pairs, results, start, end, CollisionDetector.getWorkspace());
+			}else{
+				int middle = (start+end) >>> 1;
+				invokeAll(new PairTask(pairs, results, start, middle), new PairTask(pairs, results, middle, end));
+			}
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import core.GameObject;
+import glMath.Vec3;
+
+/**
+ * Casts batches of rays against a set of game objects across the threads of a fork join pool, for queries like line
+ * of sight checks that cast many rays each frame. The world bounds of the objects are gathered into flat arrays once
+ * per batch so that each ray only runs the GJK ray cast against the objects whose bounds its segment passes through,
+ * heightfields are cast against by walking their cells instead.
+ * 
+ * The result of the ray at each index is stored at the same index of the results list, so the results are the same
+ * regardless of the number of threads. The objects must not be moved while a batch is running.
+ * 
+ * @author Kevin
+ *
+ */
+public class BatchRaycast {
+	
+	//number of rays below which a range is cast on the current thread instead of being split
+	private static final int DEFAULT_GRAIN_SIZE = 32;
+	//ray casts need their own simplex state so each thread keeps its own query
+	private static final ThreadLocal<GJKDistance> queries = new ThreadLocal<GJKDistance>(){
+		@Override
+		protected GJKDistance initialValue(){
+			return new GJKDistance();
+		}
+	};
+	
+	private ForkJoinPool pool;
+	private int grainSize;
+	//world bounds of the objects of the current batch
+	private float[] minX, minY, minZ, maxX, maxY, maxZ;
+	private GameObject[] objects;
+	private int numObjects;
+	
+	public BatchRaycast(){
+		this(new ForkJoinPool(), DEFAULT_GRAIN_SIZE);
+	}
+	
+	public BatchRaycast(ForkJoinPool pool){
+		this(pool, DEFAULT_GRAIN_SIZE);
+	}
+	
+	/**
+	 * Constructs a batch ray cast that runs its casts on the given pool
+	 * 
+	 * @param pool Pool to run the casts on
+	 * @param grainSize Number of rays below which a range is no longer split into smaller tasks
+	 */
+	public BatchRaycast(ForkJoinPool pool, int grainSize){
+		this.pool = pool;
+		this.grainSize = Math.max(grainSize, 1);
+		allocate(64);
+	}
+	
+	/**
+	 * Casts a ray against the collision mesh of a single game object
+	 * 
+	 * @param origin Start of the ray
+	 * @param ray Direction of the ray, its length is the furthest the ray is cast
+	 * @param target Collision mesh to cast against
+	 * @param result Cast result to store the hit in
+	 * @return True if the ray hit the mesh
+	 */
+	public static boolean raycast(Vec3 origin, Vec3 ray, CollisionMesh target, CastResult result){
+		return raycast(queries.get(), origin, ray, target, result);
+	}
+	
+	/**
+	 * Casts a ray against a collision mesh with the given query, heightfields are walked cell by cell instead
+	 */
+	private static boolean raycast(GJKDistance query, Vec3 origin, Vec3 ray, CollisionMesh target, CastResult result){
+		if(target instanceof HeightfieldCollider){
+			return ((HeightfieldCollider)target).raycast(origin, ray, result);
+		}
+		return query.raycast(origin, ray, target, result);
+	}
+	
+	/**
+	 * Sweeps a collision mesh along the given motion against another collision mesh
+	 * 
+	 * @param shape Collision mesh to sweep, such as a sphere, AABB or OBB
+	 * @param motion Translation of the swept mesh
+	 * @param target Collision mesh to cast against
+	 * @param result Cast result to store the hit in
+	 * @return True if the swept mesh hit the target
+	 */
+	public static boolean shapeCast(CollisionMesh shape, Vec3 motion, CollisionMesh target, CastResult result){
+		return queries.get().shapeCast(shape, motion, target, result);
+	}
+	
+	/**
+	 * Casts each of the given rays against the given objects, storing the hit of each ray at the same index of the 
+	 * results list. Cast results already in the list are reused and new ones are only created when the list is 
+	 * shorter than the rays list.
+	 * 
+	 * @param targets Objects to cast the rays against
+	 * @param origins Start of each ray
+	 * @param rays Direction of each ray, its length is the furthest the ray is cast
+	 * @param results List to store the result of each ray in
+	 * @param closest Whether each ray should find its closest hit, otherwise a ray stops at the first hit it finds
+	 * which is enough for line of sight checks
+	 * @return Number of rays that hit an object
+	 */
+	public int raycast(List<GameObject> targets, List<Vec3> origins, List<Vec3> rays, ArrayList<CastResult> results, boolean closest){
+		int numRays = Math.min(origins.size(), rays.size());
+		results.ensureCapacity(numRays);
+		while(results.size() < numRays){
+			results.add(new CastResult());
+		}
+		gatherBounds(targets);
+		if(numRays <= grainSize){
+			cast(origins, rays, results, 0, numRays, closest);
+		}else{
+			pool.invoke(new RayTask(origins, rays, results, 0, numRays, closest));
+		}
+		//drop the references so the objects of the batch aren't kept alive
+		for(int curObject = 0; curObject < numObjects; curObject++){
+			objects[curObject] = null;
+		}
+		
+		int hits = 0;
+		for(int curRay = 0; curRay < numRays; curRay++){
+			if(results.get(curRay).hit){
+				hits++;
+			}
+		}
+		return hits;
+	}
+	
+	private void gatherBounds(List<GameObject> targets){
+		numObjects = targets.size();
+		if(numObjects > objects.length){
+			allocate(Integer.highestOneBit(numObjects)*2);
+		}
+		for(int curObject = 0; curObject < numObjects; curObject++){
+			GameObject object = targets.get(curObject);
+			AABB bounds = object.getBoundingVolume();
+			objects[curObject] = object;
+			minX[curObject] = bounds.getMinX();
+			minY[curObject] = bounds.getMinY();
+			minZ[curObject] = bounds.getMinZ();
+			maxX[curObject] = bounds.getMaxX();
+			maxY[curObject] = bounds.getMaxY();
+			maxZ[curObject] = bounds.getMaxZ();
+		}
+	}
+	
+	/**
+	 * Casts the rays in the given range storing the results at the same indices
+	 */
+	private void cast(List<Vec3> origins, List<Vec3> rays, ArrayList<CastResult> results, int start, int end, boolean closest){
+		GJKDistance query = queries.get();
+		CastResult hit = new CastResult();
+		for(int curRay = start; curRay < end; curRay++){
+			Vec3 origin = origins.get(curRay);
+			Vec3 ray = rays.get(curRay);
+			CastResult result = results.get(curRay);
+			result.reset();
+			float invX = 1/ray.x, invY = 1/ray.y, invZ = 1/ray.z;
+			for(int curObject = 0; curObject < numObjects; curObject++){
+				//slab test of the segment up to the closest hit so far against the bounds of the object, leaving as soon
+				//as one axis separates them. Comparisons with NaN fail so rays parallel to a slab they start on aren't culled
+				float near = 0, far = result.fraction;
+				float t0 = (minX[curObject]-origin.x)*invX, t1 = (maxX[curObject]-origin.x)*invX;
+				near = Math.max(near, Math.min(t0, t1));
+				far = Math.min(far, Math.max(t0, t1));
+				if(near > far){
+					continue;
+				}
+				t0 = (minY[curObject]-origin.y)*invY;
+				t1 = (maxY[curObject]-origin.y)*invY;
+				near = Math.max(near, Math.min(t0, t1));
+				far = Math.min(far, Math.max(t0, t1));
+				if(near > far){
+					continue;
+				}
+				t0 = (minZ[curObject]-origin.z)*invZ;
+				t1 = (maxZ[curObject]-origin.z)*invZ;
+				near = Math.max(near, Math.min(t0, t1));
+				far = Math.min(far, Math.max(t0, t1));
+				if(near > far){
+					continue;
+				}
+				GameObject object = objects[curObject];
+				if(raycast(query, origin, ray, object.mesh.getCollisionMesh(), hit) && (!result.hit || hit.fraction < result.fraction)){
+					result.set(hit.fraction, hit.point, hit.normal);
+					result.iterations = hit.iterations;
+					result.object = object;
+					if(!closest){
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	private void allocate(int capacity){
+		objects = new GameObject[capacity];
+		minX = new float[capacity];
+		minY = new float[capacity];
+		minZ = new float[capacity];
+		maxX = new float[capacity];
+		maxY = new float[capacity];
+		maxZ = new float[capacity];
+	}
+	
+	public ForkJoinPool getPool(){
+		return pool;
+	}
+	
+	public int getGrainSize(){
+		return grainSize;
+	}
+	
+	/**
+	 * Task casting a range of rays, ranges larger than the grain size are split in half
+	 */
+	private class RayTask extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		
+		private List<Vec3> origins, rays;
+		private ArrayList<CastResult> results;
+		private int start, end;
+		private boolean closest;
+		
+		public RayTask(List<Vec3> origins, List<Vec3> rays, ArrayList<CastResult> results, int start, int end, boolean closest){
+			this.origins = origins;
+			this.rays = rays;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+			this.closest = closest;
+		}
+		
+		@Override
+		protected void compute(){
+			if(end-start <= grainSize){
+				cast(origins, rays, results, start, end, closest);
+			}else{
+				int middle = (start+end) >>> 1;
+				invokeAll(new RayTask(origins, rays, results, start, middle, closest), 
+						new RayTask(origins, rays, results, middle, end, closest));
+			}
+		}
+	}
+}
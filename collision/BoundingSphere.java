@@ -37,6 +37,11 @@ public class BoundingSphere implements CollisionMesh{
 	public Vec3 getCenter() {
 		return center;
 	}
+	
+	@Override
+	public Vec3 getCenter(Vec3 result) {
+		return result.set(center);
+	}
 
 	public void translate(Vec3 translation){
 		center.add(translation);
@@ -58,10 +63,15 @@ public class BoundingSphere implements CollisionMesh{
 
 	@Override
 	public Vec3 support(Vec3 direction) {
-		Vec3 dirScaled = new Vec3(direction);
-		dirScaled.normalize();
-		dirScaled.scale(radius);
-		return (Vec3)VecUtil.add(center, dirScaled);
+		return support(direction, new Vec3());
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result) {
+		result.set(direction);
+		result.normalize();
+		result.scale(radius);
+		return result.add(center);
 	}
 
 	@Override
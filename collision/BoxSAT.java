@@ -0,0 +1,529 @@
+package collision;
+
+import glMath.Vec3;
+
+/**
+ * Separating axis test between two boxes, either of which can be an OBB or an AABB. The 15 candidate axes are the
+ * 3 face normals of each box and the 9 cross products of their edges, the test stops at the first axis that
+ * separates the boxes. When no axis separates them the axis of least penetration gives the normal, face axes are
+ * preferred over edge axes and the faces of the first box over those of the second unless the other axis is
+ * clearly shallower so that the normal doesn't flip between nearly equal axes from frame to frame.
+ * 
+ * For a face axis the face of the other box most opposed to the reference face is clipped against the sides of
+ * the reference face, giving a manifold of up to 4 points that is stored in the points of the collision data.
+ * For an edge axis the closest points of the two edges give a single contact.
+ * 
+ * The axis each pair ended on is kept in a direct mapped cache keyed on the identity of the two meshes and is
+ * tested first the next time the pair is tested, separated pairs that haven't moved much then only need a single
+ * axis. Entries are immutable and replaced whole so the cache can be shared by tests running on several threads,
+ * pairs whose keys map to the same slot simply replace each others entries.
+ * 
+ * @author Kevin
+ *
+ */
+public class BoxSAT implements CollisionDispatcher.PairTest {
+	
+	//number of slots in the separating axis cache when none is given
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+	//edges closer than this to parallel have no reliable cross product, the face axes already cover them
+	private static final float PARALLEL_EPSILON = 1e-4f;
+	//an axis only replaces the preferred axis when its separation is larger than the relative tolerance times the
+	//preferred separation plus the absolute tolerance, separations are negative when the boxes overlap
+	private static final float RELATIVE_TOLERANCE = .95f, ABSOLUTE_TOLERANCE = .001f;
+	
+	private final AxisEntry[] cache;
+	private final int cacheMask;
+	
+	public BoxSAT(){
+		this(DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * Constructs a box separating axis test with a cache of at least the given number of slots
+	 * 
+	 * @param cacheSize Number of slots in the separating axis cache, rounded up to a power of two
+	 */
+	public BoxSAT(int cacheSize){
+		int size = Integer.highestOneBit(Math.max(cacheSize, 1)-1) << 1;
+		cache = new AxisEntry[Math.max(size, 1)];
+		cacheMask = cache.length-1;
+	}
+	
+	@Override
+	public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+		Vec3[] axesA = workspace.boxAxes, axesB = workspace.boxAxesB;
+		float[] extentsA = workspace.boxExtents, extentsB = workspace.boxExtentsB;
+		Vec3 centerA = workspace.supportA, centerB = workspace.supportB;
+		if(!getBox(objA, axesA, extentsA, centerA) || !getBox(objB, axesB, extentsB, centerB)){
+			return CollisionDetector.gjkIntersect(objA, objB, result, workspace);
+		}
+		
+		//rotation of B in the frame of A and the offset between the centers in the frame of A
+		float[] rotation = workspace.rotation, absRotation = workspace.absRotation;
+		for(int curA = 0; curA < 3; curA++){
+			for(int curB = 0; curB < 3; curB++){
+				float dot = axesA[curA].dot(axesB[curB]);
+				rotation[curA*3+curB] = dot;
+				absRotation[curA*3+curB] = Math.abs(dot)+PARALLEL_EPSILON;
+			}
+		}
+		Vec3 offset = workspace.temp.set(centerB).subtract(centerA);
+		float[] localOffset = workspace.boxOffset;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			localOffset[curAxis] = offset.dot(axesA[curAxis]);
+		}
+		
+		int slot = (31*System.identityHashCode(objA)+System.identityHashCode(objB)) & cacheMask;
+		AxisEntry cached = cache[slot];
+		if(cached != null && cached.objA == objA && cached.objB == objB){
+			float separation = separation(cached.axis, localOffset, extentsA, extentsB, rotation, absRotation);
+			if(separation > 0){
+				return separated(cached.axis, separation, result, workspace);
+			}
+		}
+		
+		//deepest separation of each kind of axis, all of them are negative or the test ends early
+		int faceA = 0, faceB = 3, edge = -1;
+		float separationA = -Float.MAX_VALUE, separationB = -Float.MAX_VALUE, separationEdge = -Float.MAX_VALUE;
+		for(int curAxis = 0; curAxis < 15; curAxis++){
+			float separation = separation(curAxis, localOffset, extentsA, extentsB, rotation, absRotation);
+			if(separation > 0){
+				store(slot, objA, objB, curAxis);
+				return separated(curAxis, separation, result, workspace);
+			}
+			if(curAxis < 3){
+				if(separation > separationA){
+					separationA = separation;
+					faceA = curAxis;
+				}
+			}else if(curAxis < 6){
+				if(separation > separationB){
+					separationB = separation;
+					faceB = curAxis;
+				}
+			}else if(separation > separationEdge){
+				separationEdge = separation;
+				edge = curAxis;
+			}
+		}
+		
+		int axis = faceA;
+		float best = separationA;
+		if(separationB > RELATIVE_TOLERANCE*best+ABSOLUTE_TOLERANCE){
+			axis = faceB;
+			best = separationB;
+		}
+		if(edge != -1 && separationEdge > RELATIVE_TOLERANCE*best+ABSOLUTE_TOLERANCE){
+			axis = edge;
+		}
+		store(slot, objA, objB, axis);
+		
+		if(axis < 3){
+			faceContacts(axesA, extentsA, centerA, axis, axesB, extentsB, centerB, true, result, workspace);
+		}else if(axis < 6){
+			faceContacts(axesB, extentsB, centerB, axis-3, axesA, extentsA, centerA, false, result, workspace);
+		}else{
+			edgeContact(axis, -separationEdge, result, workspace);
+		}
+		//clipping can lose every point when the boxes barely touch on a face, GJK still gives a single contact
+		if(!result.areColliding){
+			CollisionDetector.gjkIntersect(objA, objB, result, workspace);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the separation of the boxes along one of the 15 axes in the frame of A, the separation is positive
+	 * when the projections of the boxes onto the axis don't overlap and negative by the amount they overlap otherwise.
+	 * The separation along an edge axis is scaled to the length of the axis, edges that are nearly parallel give
+	 * the largest negative float so they are never chosen.
+	 */
+	private static float separation(int axis, float[] offset, float[] extentsA, float[] extentsB, float[] rotation, float[] absRotation){
+		if(axis < 3){
+			float radiusB = extentsB[0]*absRotation[axis*3]+extentsB[1]*absRotation[axis*3+1]+extentsB[2]*absRotation[axis*3+2];
+			return Math.abs(offset[axis])-extentsA[axis]-radiusB;
+		}else if(axis < 6){
+			int b = axis-3;
+			float radiusA = extentsA[0]*absRotation[b]+extentsA[1]*absRotation[3+b]+extentsA[2]*absRotation[6+b];
+			float distance = offset[0]*rotation[b]+offset[1]*rotation[3+b]+offset[2]*rotation[6+b];
+			return Math.abs(distance)-radiusA-extentsB[b];
+		}else{
+			int a = (axis-6)/3, b = (axis-6)%3;
+			int a1 = (a+1)%3, a2 = (a+2)%3, b1 = (b+1)%3, b2 = (b+2)%3;
+			float cosine = rotation[a*3+b];
+			float length = (float)Math.sqrt(Math.max(1-cosine*cosine, 0));
+			if(length < PARALLEL_EPSILON){
+				return -Float.MAX_VALUE;
+			}
+			float radiusA = extentsA[a1]*absRotation[a2*3+b]+extentsA[a2]*absRotation[a1*3+b];
+			float radiusB = extentsB[b1]*absRotation[a*3+b2]+extentsB[b2]*absRotation[a*3+b1];
+			float distance = offset[a2]*rotation[a1*3+b]-offset[a1]*rotation[a2*3+b];
+			return (Math.abs(distance)-radiusA-radiusB)/length;
+		}
+	}
+	
+	/**
+	 * Computes the world space direction of the given axis pointing from A towards B
+	 */
+	private static Vec3 getAxis(int axis, Vec3 result, GJKWorkspace workspace){
+		if(axis < 3){
+			result.set(workspace.boxAxes[axis]);
+		}else if(axis < 6){
+			result.set(workspace.boxAxesB[axis-3]);
+		}else{
+			workspace.boxAxes[(axis-6)/3].cross(workspace.boxAxesB[(axis-6)%3], result);
+			result.normalize();
+		}
+		if(result.dot(workspace.temp) < 0){
+			result.scale(-1);
+		}
+		return result;
+	}
+	
+	/**
+	 * Fills the result for boxes separated along the given axis, the depth is the separation along the axis which
+	 * is a lower bound on the distance between the boxes
+	 */
+	private static CollisionData separated(int axis, float separation, CollisionData result, GJKWorkspace workspace){
+		Vec3 normal = getAxis(axis, workspace.normal, workspace).scale(-1);
+		boxSupport(workspace.boxAxes, workspace.boxExtents, workspace.supportA, -1, normal, workspace.aPoint);
+		boxSupport(workspace.boxAxesB, workspace.boxExtentsB, workspace.supportB, 1, normal, workspace.bPoint);
+		result.set(normal, workspace.aPoint, workspace.bPoint, separation, false);
+		return result;
+	}
+	
+	/**
+	 * Finds the corner of a box farthest along the given direction times the given sign from the axes of the box
+	 * the test already has, this is the same point the support function of the box would give
+	 */
+	private static Vec3 boxSupport(Vec3[] axes, float[] extents, Vec3 center, float sign, Vec3 direction, Vec3 result){
+		result.set(center);
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			Vec3 axis = axes[curAxis];
+			float extent = Math.copySign(extents[curAxis], sign*axis.dot(direction));
+			result.x += axis.x*extent;
+			result.y += axis.y*extent;
+			result.z += axis.z*extent;
+		}
+		return result;
+	}
+	
+	/**
+	 * Generates the contacts of a face axis by clipping the incident face of one box against the sides of the
+	 * reference face of the other
+	 * 
+	 * @param axesRef Axes of the box owning the reference face
+	 * @param extentsRef Half extents of the box owning the reference face
+	 * @param centerRef Center of the box owning the reference face
+	 * @param face Axis of the reference face
+	 * @param axesInc Axes of the box owning the incident face
+	 * @param extentsInc Half extents of the box owning the incident face
+	 * @param centerInc Center of the box owning the incident face
+	 * @param refIsA Whether the reference face is a face of A
+	 * @param result Collision data to store the contacts in
+	 * @param workspace Workspace providing the scratch space
+	 */
+	private static void faceContacts(Vec3[] axesRef, float[] extentsRef, Vec3 centerRef, int face,
+			Vec3[] axesInc, float[] extentsInc, Vec3 centerInc, boolean refIsA, CollisionData result, GJKWorkspace workspace){
+		//normal of the reference face pointing towards the incident box
+		Vec3 refNormal = workspace.direction.set(axesRef[face]);
+		float towardsB = refNormal.dot(workspace.temp);
+		if(refIsA ? towardsB < 0 : towardsB > 0){
+			refNormal.scale(-1);
+		}
+		
+		//the incident face is the face of the other box whose normal is most opposed to the reference normal
+		int incFace = 0;
+		float maxDot = -1;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			float dot = Math.abs(refNormal.dot(axesInc[curAxis]));
+			if(dot > maxDot){
+				maxDot = dot;
+				incFace = curAxis;
+			}
+		}
+		float incSign = refNormal.dot(axesInc[incFace]) > 0 ? -1 : 1;
+		Vec3 incCenter = workspace.ab.set(axesInc[incFace]).scale(incSign*extentsInc[incFace]).add(centerInc);
+		Vec3 incU = workspace.ac.set(axesInc[(incFace+1)%3]).scale(extentsInc[(incFace+1)%3]);
+		Vec3 incV = workspace.ad.set(axesInc[(incFace+2)%3]).scale(extentsInc[(incFace+2)%3]);
+		
+		//corners of the incident face in winding order
+		float[] polygon = workspace.clipPolygon, clipped = workspace.clipResult;
+		setPoint(polygon, 0, incCenter.x+incU.x+incV.x, incCenter.y+incU.y+incV.y, incCenter.z+incU.z+incV.z);
+		setPoint(polygon, 1, incCenter.x-incU.x+incV.x, incCenter.y-incU.y+incV.y, incCenter.z-incU.z+incV.z);
+		setPoint(polygon, 2, incCenter.x-incU.x-incV.x, incCenter.y-incU.y-incV.y, incCenter.z-incU.z-incV.z);
+		setPoint(polygon, 3, incCenter.x+incU.x-incV.x, incCenter.y+incU.y-incV.y, incCenter.z+incU.z-incV.z);
+		int numPoints = 4;
+		
+		//clip against the 4 side planes of the reference face, swapping the buffers after each plane
+		for(int curSide = 1; curSide < 3 && numPoints > 0; curSide++){
+			Vec3 side = axesRef[(face+curSide)%3];
+			float center = side.dot(centerRef), extent = extentsRef[(face+curSide)%3];
+			numPoints = clip(polygon, numPoints, side, 1, center+extent, clipped);
+			numPoints = clip(clipped, numPoints, side, -1, -center+extent, polygon);
+		}
+		
+		//keep the points below the reference face, their depth is how far below it they are
+		float faceOffset = refNormal.dot(centerRef)+extentsRef[face];
+		float[] depths = workspace.clipDepths;
+		int numContacts = 0;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			int index = curPoint*3;
+			float depth = faceOffset-(polygon[index]*refNormal.x+polygon[index+1]*refNormal.y+polygon[index+2]*refNormal.z);
+			if(depth >= 0){
+				setPoint(clipped, numContacts, polygon[index], polygon[index+1], polygon[index+2]);
+				depths[numContacts++] = depth;
+			}
+		}
+		if(numContacts == 0){
+			result.reset();
+			return;
+		}
+		
+		//the normal of the collision points from B to A
+		Vec3 normal = workspace.normal.set(refNormal);
+		if(refIsA){
+			normal.scale(-1);
+		}
+		result.set(normal, normal, normal, 0, true);
+		int deepest = reduce(clipped, depths, numContacts, refNormal, workspace);
+		int kept = Math.min(numContacts, CollisionData.MAX_POINTS);
+		Vec3 incPoint = workspace.ao, refPoint = workspace.abc;
+		for(int curContact = 0; curContact < kept; curContact++){
+			int index = curContact*3;
+			float depth = depths[curContact];
+			incPoint.set(clipped[index], clipped[index+1], clipped[index+2]);
+			//the matching point on the reference box is the incident point projected onto the reference face
+			refPoint.set(refNormal).scale(depth).add(incPoint);
+			if(refIsA){
+				result.addPoint(refPoint, incPoint, depth);
+			}else{
+				result.addPoint(incPoint, refPoint, depth);
+			}
+		}
+		result.contactA.set(result.pointsA[deepest]);
+		result.contactB.set(result.pointsB[deepest]);
+		result.depth = result.depths[deepest];
+	}
+	
+	/**
+	 * Clips the given polygon against a plane keeping the part where the dot product of a point with the plane
+	 * normal times the given sign is at most the given offset
+	 * 
+	 * @return Number of points in the clipped polygon
+	 */
+	private static int clip(float[] polygon, int numPoints, Vec3 normal, float sign, float offset, float[] result){
+		int numResult = 0;
+		float nX = normal.x*sign, nY = normal.y*sign, nZ = normal.z*sign;
+		int prev = (numPoints-1)*3;
+		float prevDist = polygon[prev]*nX+polygon[prev+1]*nY+polygon[prev+2]*nZ-offset;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			int index = curPoint*3;
+			float dist = polygon[index]*nX+polygon[index+1]*nY+polygon[index+2]*nZ-offset;
+			//add the crossing point whenever the edge from the previous point crosses the plane
+			if((prevDist <= 0) != (dist <= 0)){
+				float t = prevDist/(prevDist-dist);
+				setPoint(result, numResult++,
+					polygon[prev]+(polygon[index]-polygon[prev])*t,
+					polygon[prev+1]+(polygon[index+1]-polygon[prev+1])*t,
+					polygon[prev+2]+(polygon[index+2]-polygon[prev+2])*t
+				);
+			}
+			if(dist <= 0){
+				setPoint(result, numResult++, polygon[index], polygon[index+1], polygon[index+2]);
+			}
+			prev = index;
+			prevDist = dist;
+		}
+		return numResult;
+	}
+	
+	/**
+	 * Reduces the given contacts to at most the number of points a collision data can hold, moving the kept points
+	 * to the front of the arrays. The deepest point is kept, then the point farthest from it, then the point making
+	 * the largest triangle with those two and finally the point making the largest triangle on the other side of
+	 * the first two so that the kept points cover as much of the contact area as possible.
+	 * 
+	 * @return Index of the deepest of the kept points
+	 */
+	private static int reduce(float[] points, float[] depths, int numPoints, Vec3 normal, GJKWorkspace workspace){
+		int deepest = 0;
+		for(int curPoint = 1; curPoint < numPoints; curPoint++){
+			if(depths[curPoint] > depths[deepest]){
+				deepest = curPoint;
+			}
+		}
+		if(numPoints <= CollisionData.MAX_POINTS){
+			return deepest;
+		}
+		swap(points, depths, 0, deepest);
+		
+		int farthest = 1;
+		float maxDist = -1;
+		for(int curPoint = 1; curPoint < numPoints; curPoint++){
+			float dX = points[curPoint*3]-points[0], dY = points[curPoint*3+1]-points[1], dZ = points[curPoint*3+2]-points[2];
+			float dist = dX*dX+dY*dY+dZ*dZ;
+			if(dist > maxDist){
+				maxDist = dist;
+				farthest = curPoint;
+			}
+		}
+		swap(points, depths, 1, farthest);
+		
+		//signed areas of the triangles the remaining points make with the first two, measured along the normal
+		Vec3 edge = workspace.acd.set(points[3]-points[0], points[4]-points[1], points[5]-points[2]);
+		Vec3 toPoint = workspace.adb, cross = workspace.inverseDir;
+		int largest = 2;
+		float maxArea = 0;
+		for(int curPoint = 2; curPoint < numPoints; curPoint++){
+			toPoint.set(points[curPoint*3]-points[0], points[curPoint*3+1]-points[1], points[curPoint*3+2]-points[2]);
+			float area = Math.abs(edge.cross(toPoint, cross).dot(normal));
+			if(area > maxArea){
+				maxArea = area;
+				largest = curPoint;
+			}
+		}
+		swap(points, depths, 2, largest);
+		
+		toPoint.set(points[6]-points[0], points[7]-points[1], points[8]-points[2]);
+		float side = edge.cross(toPoint, cross).dot(normal) < 0 ? 1 : -1;
+		int opposite = 3;
+		maxArea = -Float.MAX_VALUE;
+		for(int curPoint = 3; curPoint < numPoints; curPoint++){
+			toPoint.set(points[curPoint*3]-points[0], points[curPoint*3+1]-points[1], points[curPoint*3+2]-points[2]);
+			float area = side*edge.cross(toPoint, cross).dot(normal);
+			if(area > maxArea){
+				maxArea = area;
+				opposite = curPoint;
+			}
+		}
+		swap(points, depths, 3, opposite);
+		return 0;
+	}
+	
+	/**
+	 * Generates the contact of an edge axis from the closest points of the two edges that are farthest along it
+	 */
+	private static void edgeContact(int axis, float depth, CollisionData result, GJKWorkspace workspace){
+		int edgeA = (axis-6)/3, edgeB = (axis-6)%3;
+		Vec3[] axesA = workspace.boxAxes, axesB = workspace.boxAxesB;
+		float[] extentsA = workspace.boxExtents, extentsB = workspace.boxExtentsB;
+		Vec3 direction = getAxis(axis, workspace.direction, workspace);
+		
+		//center of the edge of A farthest along the axis and of the edge of B farthest against it
+		Vec3 pointA = workspace.aPoint.set(workspace.supportA);
+		Vec3 pointB = workspace.bPoint.set(workspace.supportB);
+		Vec3 scaled = workspace.ab;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			if(curAxis != edgeA){
+				pointA.add(scaled.set(axesA[curAxis]).scale(Math.copySign(extentsA[curAxis], direction.dot(axesA[curAxis]))));
+			}
+			if(curAxis != edgeB){
+				pointB.add(scaled.set(axesB[curAxis]).scale(-Math.copySign(extentsB[curAxis], direction.dot(axesB[curAxis]))));
+			}
+		}
+		
+		//closest points of the two edges, parameterized from their centers
+		Vec3 dirA = axesA[edgeA], dirB = axesB[edgeB];
+		Vec3 between = workspace.ac.set(pointA).subtract(pointB);
+		float cosine = dirA.dot(dirB);
+		float c = dirA.dot(between), f = dirB.dot(between);
+		float denom = 1-cosine*cosine;
+		float s = denom > PARALLEL_EPSILON ? clamp((cosine*f-c)/denom, extentsA[edgeA]) : 0;
+		float t = cosine*s+f;
+		if(t < -extentsB[edgeB] || t > extentsB[edgeB]){
+			t = clamp(t, extentsB[edgeB]);
+			s = clamp(t*cosine-c, extentsA[edgeA]);
+		}
+		pointA.add(scaled.set(dirA).scale(s));
+		pointB.add(scaled.set(dirB).scale(t));
+		
+		Vec3 normal = workspace.normal.set(direction).scale(-1);
+		result.set(normal, pointA, pointB, depth, true);
+	}
+	
+	/**
+	 * Gets the unit axes, half extents and center of the given mesh if it is a box
+	 * 
+	 * @return True if the mesh is a box, false otherwise
+	 */
+	static boolean getBox(CollisionMesh mesh, Vec3[] axes, float[] extents, Vec3 center){
+		if(mesh instanceof OBB){
+			OBB box = (OBB)mesh;
+			for(int curAxis = 0; curAxis < 3; curAxis++){
+				box.getAxis(curAxis, axes[curAxis]);
+			}
+			box.getCenter(center);
+		}else if(mesh instanceof AABB){
+			AABB box = (AABB)mesh;
+			for(int curAxis = 0; curAxis < 3; curAxis++){
+				box.getAxis(curAxis, axes[curAxis]);
+			}
+			box.getCenter(center);
+		}else{
+			return false;
+		}
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			extents[curAxis] = axes[curAxis].length();
+			if(extents[curAxis] == 0){
+				return false;
+			}
+			axes[curAxis].scale(1/extents[curAxis]);
+		}
+		return true;
+	}
+	
+	/**
+	 * Stores the axis a pair ended on in the cache, a new entry is only made when the axis changed
+	 */
+	private void store(int slot, CollisionMesh objA, CollisionMesh objB, int axis){
+		AxisEntry entry = cache[slot];
+		if(entry == null || entry.objA != objA || entry.objB != objB || entry.axis != axis){
+			cache[slot] = new AxisEntry(objA, objB, axis);
+		}
+	}
+	
+	/**
+	 * Removes all the entries from the separating axis cache
+	 */
+	public void clearCache(){
+		for(int curSlot = 0; curSlot < cache.length; curSlot++){
+			cache[curSlot] = null;
+		}
+	}
+	
+	private static void setPoint(float[] points, int index, float x, float y, float z){
+		points[index*3] = x;
+		points[index*3+1] = y;
+		points[index*3+2] = z;
+	}
+	
+	private static void swap(float[] points, float[] depths, int first, int second){
+		for(int curComp = 0; curComp < 3; curComp++){
+			float temp = points[first*3+curComp];
+			points[first*3+curComp] = points[second*3+curComp];
+			points[second*3+curComp] = temp;
+		}
+		float temp = depths[first];
+		depths[first] = depths[second];
+		depths[second] = temp;
+	}
+	
+	private static float clamp(float value, float extent){
+		return value < -extent ? -extent : (value > extent ? extent : value);
+	}
+	
+	/**
+	 * Axis the last test of a pair ended on, entries are never modified so they can be read without locking
+	 */
+	private static final class AxisEntry{
+		private final CollisionMesh objA, objB;
+		private final int axis;
+		
+		public AxisEntry(CollisionMesh objA, CollisionMesh objB, int axis){
+			this.objA = objA;
+			this.objB = objB;
+			this.axis = axis;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import core.GameObject;
+
+/**
+ * Interface shared by the broadphase structures, a broadphase tracks the bounding volumes of game objects
+ * and reports the pairs of objects whose volumes overlap as candidates for the narrowphase
+ * 
+ * @author Kevin
+ *
+ */
+public interface BroadPhase {
+	
+	/**
+	 * Adds a game object to this broadphase
+	 * 
+	 * @param object Game object to add
+	 * @return True if the object was added, false otherwise
+	 */
+	public boolean add(GameObject object);
+	
+	/**
+	 * Removes a game object from this broadphase
+	 * 
+	 * @param object Game object to remove
+	 * @return True if the object was removed, false if it wasn't in this broadphase
+	 */
+	public boolean remove(GameObject object);
+	
+	/**
+	 * Updates the broadphase after the bounding volume of the given game object has changed
+	 * 
+	 * @param object Game object that moved
+	 */
+	public void update(GameObject object);
+	
+	/**
+	 * Updates the broadphase for all the game objects it contains
+	 */
+	public void update();
+	
+	/**
+	 * Finds the pairs of game objects whose bounding volumes overlap, the pairs are appended to the given list
+	 * in an order that only depends on the sequence of operations performed on this broadphase
+	 * 
+	 * @param pairs List to add the candidate pairs to
+	 * @return Number of pairs that were added
+	 */
+	public int findPairs(ArrayList<CandidatePair> pairs);
+	
+	/**
+	 * Finds the game objects whose bounding volumes overlap the given volume
+	 * 
+	 * @param volume Volume to test against
+	 * @param results Collection to add the overlapping game objects to
+	 * @return Number of game objects that were added
+	 */
+	public int query(AABB volume, Collection<GameObject> results);
+	
+	/**
+	 * Gets the number of game objects in this broadphase
+	 * 
+	 * @return Number of game objects in this broadphase
+	 */
+	public int size();
+}
@@ -0,0 +1,35 @@
+package collision;
+
+import core.GameObject;
+
+/**
+ * Pair of game objects whose bounding volumes overlap as reported by a broadphase, these pairs are the
+ * candidates that need to be tested by the narrowphase
+ * 
+ * @author Kevin
+ *
+ */
+public class CandidatePair {
+	public GameObject objA, objB;
+	
+	public CandidatePair(GameObject a, GameObject b){
+		objA = a;
+		objB = b;
+	}
+	
+	@Override
+	public boolean equals(Object o){
+		if(o instanceof CandidatePair){
+			CandidatePair cast = (CandidatePair)o;
+			return (cast.objA == objA && cast.objB == objB) || (cast.objA == objB && cast.objB == objA);
+		}else{
+			return false;
+		}
+	}
+	
+	@Override
+	public int hashCode(){
+		//order independent so that the same pair reported in either order hashes the same
+		return System.identityHashCode(objA)^System.identityHashCode(objB);
+	}
+}
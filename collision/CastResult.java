@@ -0,0 +1,54 @@
+package collision;
+
+import core.GameObject;
+import glMath.Vec3;
+
+/**
+ * Result of sweeping a shape or ray along a motion against a collision mesh
+ * 
+ * @author Kevin
+ *
+ */
+public class CastResult {
+	//whether the cast hit before the end of its motion
+	public boolean hit;
+	//fraction of the motion travelled before the hit, between 0 and 1
+	public float fraction;
+	//point of the hit and the surface normal of the object that was hit, pointing back towards the cast
+	public Vec3 point, normal;
+	public int iterations;
+	//game object that was hit, only set by casts against game objects
+	public GameObject object;
+	
+	public CastResult(){
+		point = new Vec3();
+		normal = new Vec3();
+		reset();
+	}
+	
+	/**
+	 * Clears this result to a miss over the whole motion so it can be reused for another cast
+	 */
+	public void reset(){
+		hit = false;
+		fraction = 1;
+		point.set(0, 0, 0);
+		normal.set(0, 0, 0);
+		iterations = 0;
+		object = null;
+	}
+	
+	/**
+	 * Sets this result to a hit
+	 * 
+	 * @param fraction Fraction of the motion travelled before the hit
+	 * @param point Point of the hit
+	 * @param normal Surface normal at the hit
+	 */
+	public void set(float fraction, Vec3 point, Vec3 normal){
+		hit = true;
+		this.fraction = fraction;
+		this.point.set(point);
+		this.normal.set(normal);
+	}
+}
@@ -3,10 +3,20 @@ package collision;
 import glMath.Vec3;
 
 public class CollisionData {
+	public static final int MAX_POINTS = 4;
+	
 	public Vec3 normal, contactA, contactB;
 	public float depth;
 	public boolean areColliding;
 	public int timeStamp;
+	//contacts of a multi point manifold sharing the normal, only the first numPoints are valid. Tests that only find
+	//a single contact leave numPoints at 0, the arrays are created the first time a point is added
+	public Vec3[] pointsA, pointsB;
+	public float[] depths;
+	public int numPoints;
+	//set by the batch narrowphase on pairs it didn't test because neither object is active, the rest of the data is
+	//then reset rather than the result of a test
+	public boolean skipped;
 	private final float DISTANCE_THRESHOLD = .1f;
 	
 	public CollisionData(Vec3 normal, Vec3 pA, Vec3 pB, float depth, boolean isColliding){
@@ -25,6 +35,66 @@ public class CollisionData {
 		areColliding = false;
 	}
 	
+	/**
+	 * Sets the values of this collision data, copying the given vectors into the vectors already owned by 
+	 * this object so that collision data can be reused between queries
+	 * 
+	 * @param normal Normal of the collision
+	 * @param pA Contact point on the first object
+	 * @param pB Contact point on the second object
+	 * @param depth Penetration depth of the collision, or the distance between the objects if they are not colliding
+	 * @param isColliding Whether the objects are colliding
+	 */
+	public void set(Vec3 normal, Vec3 pA, Vec3 pB, float depth, boolean isColliding){
+		this.normal.set(normal);
+		contactA.set(pA);
+		contactB.set(pB);
+		this.depth = depth;
+		areColliding = isColliding;
+		numPoints = 0;
+	}
+	
+	/**
+	 * Adds a point to the manifold of this collision data, the point shares the normal of the collision data
+	 * 
+	 * @param pA Contact point on the first object
+	 * @param pB Contact point on the second object
+	 * @param depth Penetration depth of the point along the normal
+	 * @return True if the point was added, false if the manifold is already full
+	 */
+	public boolean addPoint(Vec3 pA, Vec3 pB, float depth){
+		if(pointsA == null){
+			pointsA = new Vec3[MAX_POINTS];
+			pointsB = new Vec3[MAX_POINTS];
+			for(int curPoint = 0; curPoint < MAX_POINTS; curPoint++){
+				pointsA[curPoint] = new Vec3();
+				pointsB[curPoint] = new Vec3();
+			}
+			depths = new float[MAX_POINTS];
+		}
+		if(numPoints == MAX_POINTS){
+			return false;
+		}
+		pointsA[numPoints].set(pA);
+		pointsB[numPoints].set(pB);
+		depths[numPoints] = depth;
+		numPoints++;
+		return true;
+	}
+	
+	/**
+	 * Resets this collision data to the same state as the default constructor
+	 */
+	public void reset(){
+		normal.x = normal.y = normal.z = 0;
+		contactA.x = contactA.y = contactA.z = 0;
+		contactB.x = contactB.y = contactB.z = 0;
+		depth = 0;
+		areColliding = false;
+		numPoints = 0;
+		skipped = false;
+	}
+	
 	@Override
 	public boolean equals(Object o){
 		if(o instanceof CollisionData){
@@ -1,108 +1,199 @@
 package collision;
 
-import java.util.ArrayList;
-
 import glMath.Vec3;
-import glMath.VecUtil;
 
 public abstract class CollisionDetector {
-	
+
 	protected static final float MAX_THRESHOLD = .001f;
-	
+	//scratch space for queries that don't supply their own workspace, one per thread since the
+	//workspace holds the state of the query in progress
+	private static final ThreadLocal<GJKWorkspace> workspaces = new ThreadLocal<GJKWorkspace>(){
+		@Override
+		protected GJKWorkspace initialValue(){
+			return new GJKWorkspace();
+		}
+	};
+
+	/**
+	 * Gets the workspace of the calling thread
+	 *
+	 * @return The workspace used by queries on the calling thread that aren't given one
+	 */
+	public static GJKWorkspace getWorkspace(){
+		return workspaces.get();
+	}
+
 	public static CollisionData gjkIntersect(CollisionMesh objA, CollisionMesh objB){
-		Polytope.PolytopePoint start = new Polytope.PolytopePoint(objA.support(objA.getCenter()), objB.support(objA.getCenter().inverse()));
-		ArrayList<Polytope.PolytopePoint> simplex = new ArrayList<Polytope.PolytopePoint>();
-		simplex.add(start);
-		Vec3 direction = start.supportFinal.inverse();
-		while(!computeSimplex(simplex, direction)){
-			Polytope.PolytopePoint newPoint = new Polytope.PolytopePoint(objA.support(direction), objB.support(direction.inverse()));
+		return gjkIntersect(objA, objB, new CollisionData(), workspaces.get());
+	}
+
+	/**
+	 * Tests the given collision meshes for intersection storing the results in the given collision data,
+	 * this runs on the calling threads workspace and does not allocate once the workspace exists
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param result Collision data to store the results of the test in
+	 * @return The result collision data post operation
+	 */
+	public static CollisionData gjkIntersect(CollisionMesh objA, CollisionMesh objB, CollisionData result){
+		return gjkIntersect(objA, objB, result, workspaces.get());
+	}
+
+	/**
+	 * Tests the given collision meshes for intersection using the given workspace for all the intermediate
+	 * values of the test, storing the results in the given collision data
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace used for the test, this must not be in use by any other thread
+	 * @return The result collision data post operation
+	 */
+	public static CollisionData gjkIntersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+		return gjkIntersect(objA, objB, null, result, workspace);
+	}
+
+	/**
+	 * Tests the given collision meshes for intersection starting the search from the given direction, when
+	 * the direction is one that separated the meshes in a previous test the query can finish after a single
+	 * support point. After the test the workspace holds the terminal search direction and the number of
+	 * iterations that were needed, which can be used to seed the next test of the same pair.
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param seed Direction to start the search in, or null to start from the center of objA
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace used for the test, this must not be in use by any other thread
+	 * @return The result collision data post operation
+	 */
+	public static CollisionData gjkIntersect(CollisionMesh objA, CollisionMesh objB, Vec3 seed,
+			CollisionData result, GJKWorkspace workspace){
+		Vec3 direction = workspace.direction;
+		workspace.simplexSize = 0;
+		workspace.iterations = 1;
+
+		if(seed == null){
+			objA.getCenter(direction);
+		}else{
+			direction.set(seed);
+		}
+		Polytope.PolytopePoint start = workspace.nextPoint();
+		computeSupport(objA, objB, direction, start, workspace);
+		workspace.simplex[workspace.simplexSize++] = start;
+		//if the seed direction still separates the objects there is no need to build a simplex
+		if(seed != null && start.supportFinal.dot(direction) < 0){
+			return computeDistance(workspace, result);
+		}
+		direction.set(start.supportFinal).scale(-1);
+		while(!computeSimplex(workspace, direction)){
+			Polytope.PolytopePoint newPoint = workspace.nextPoint();
+			computeSupport(objA, objB, direction, newPoint, workspace);
+			workspace.iterations++;
 			//this early out is what is making it impossible to get accurate collision results
 			if(newPoint.supportFinal.dot(direction) < 0){
-				return computeDistance(simplex);
+				return computeDistance(workspace, result);
 			}
-			simplex.add(newPoint);
+			workspace.simplex[workspace.simplexSize++] = newPoint;
 		}
-		return expandingPolytope(new Polytope(simplex.get(3), simplex.get(2), simplex.get(1), simplex.get(0)), objA, objB);
+		Polytope.PolytopePoint[] simplex = workspace.simplex;
+		workspace.polytope.reset(simplex[3], simplex[2], simplex[1], simplex[0]);
+		return expandingPolytope(workspace.polytope, objA, objB, result, workspace);
 	}
-	
-	private static boolean computeSimplex(ArrayList<Polytope.PolytopePoint> simplex, Vec3 direction){
-		switch(simplex.size()){
+
+	/**
+	 * Computes the support point on the Minkowski difference of the given meshes in the given direction
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param direction Direction to find the support point in
+	 * @param result Point to store the support points in
+	 * @param workspace Workspace providing the scratch vectors
+	 */
+	private static void computeSupport(CollisionMesh objA, CollisionMesh objB, Vec3 direction,
+			Polytope.PolytopePoint result, GJKWorkspace workspace){
+		objA.support(direction, workspace.supportA);
+		objB.support(workspace.inverseDir.set(direction).scale(-1), workspace.supportB);
+		result.set(workspace.supportA, workspace.supportB);
+	}
+
+	private static boolean computeSimplex(GJKWorkspace workspace, Vec3 direction){
+		Polytope.PolytopePoint[] simplex = workspace.simplex;
+		Vec3 ab = workspace.ab, ac = workspace.ac, ad = workspace.ad, ao = workspace.ao;
+		Vec3 abc = workspace.abc, acd = workspace.acd, adb = workspace.adb, temp = workspace.temp;
+		switch(workspace.simplexSize){
 			case 1:
 				return false;
 			case 2:
 				//vectors from the recently added point to the simplex to the origin
-				Vec3 ao = simplex.get(1).supportFinal.inverse();
+				ao.set(simplex[1].supportFinal).scale(-1);
 				//vector from the recently added point in the simplex to the previous point
-				Vec3 ab = (Vec3)VecUtil.subtract(simplex.get(0).supportFinal, simplex.get(1).supportFinal);
+				ab.set(simplex[0].supportFinal).subtract(simplex[1].supportFinal);
 				/*since we know that the origin can't be behind B, since we just came from that
-				direction, and we know it can't be in front of A, since A is that farthest point 
+				direction, and we know it can't be in front of A, since A is that farthest point
 				on the sum and it would have failed the early exit test, we know then that the
 				origin is only in the direction perpendicular to the edge AB
-				*/				
-				direction.set(VecUtil.cross(ab,ao,ab));
+				*/
+				ab.cross(ao, direction);
 				return false;
 			case 3:
-				ab = (Vec3)VecUtil.subtract( simplex.get(1).supportFinal, simplex.get(2).supportFinal );
-				Vec3 ac = (Vec3)VecUtil.subtract( simplex.get(0).supportFinal, simplex.get(2).supportFinal );
-				ao = simplex.get(2).supportFinal.inverse();
-				Vec3 abc = ab.cross(ac);
+				ab.set(simplex[1].supportFinal).subtract(simplex[2].supportFinal);
+				ac.set(simplex[0].supportFinal).subtract(simplex[2].supportFinal);
+				ao.set(simplex[2].supportFinal).scale(-1);
+				ab.cross(ac, abc);
 				/*
 				 * check if the edge AC is closest to the origin*/
-				if(abc.cross(ac).dot(ao) > 0){
-					simplex.remove(1);
-					direction.set(VecUtil.cross(ac,ao,ac));
-				}else if(ab.cross(abc).dot(ao) > 0){
-					simplex.remove(0);
-					direction.set(VecUtil.cross(ab,ao,ab));
+				if(abc.cross(ac, temp).dot(ao) > 0){
+					workspace.remove(1);
+					ac.cross(ao, direction);
+				}else if(ab.cross(abc, temp).dot(ao) > 0){
+					workspace.remove(0);
+					ab.cross(ao, direction);
 				}else{
 					if(abc.dot(ao) > 0){
 						direction.set(abc);
 					}else{
-						direction.set(abc.inverse());
-						Polytope.PolytopePoint b = simplex.get(0);
-						simplex.set(0, simplex.get(1));
-						simplex.set(1, b);
+						direction.set(abc).scale(-1);
+						workspace.swap(0, 1);
 					}
 				}
 				return false;
 			case 4:
-				ab = (Vec3)VecUtil.subtract( simplex.get(2).supportFinal, simplex.get(3).supportFinal );
-				ac = (Vec3)VecUtil.subtract( simplex.get(1).supportFinal, simplex.get(3).supportFinal );
-				Vec3 ad = (Vec3)VecUtil.subtract( simplex.get(0).supportFinal, simplex.get(3).supportFinal );
-				abc = ab.cross(ac);
-				Vec3 acd = ac.cross(ad);
-				Vec3 adb = ad.cross(ab);
-				ao = simplex.get(3).supportFinal.inverse();
+				ab.set(simplex[2].supportFinal).subtract(simplex[3].supportFinal);
+				ac.set(simplex[1].supportFinal).subtract(simplex[3].supportFinal);
+				ad.set(simplex[0].supportFinal).subtract(simplex[3].supportFinal);
+				ab.cross(ac, abc);
+				ac.cross(ad, acd);
+				ad.cross(ab, adb);
+				ao.set(simplex[3].supportFinal).scale(-1);
 				float abcDOTao = abc.dot(ao);
 				float acdDOTao = acd.dot(ao);
 				float adbDOTao = adb.dot(ao);
-				
+
 				//test what face the origin might be located
 				if(abcDOTao > 0){
-					simplex.remove(0);
+					workspace.remove(0);
 				}else if(acdDOTao > 0){
-					simplex.remove(2);
+					workspace.remove(2);
 				}else if(adbDOTao > 0){
-					simplex.remove(1);//remove C
-					Polytope.PolytopePoint b = simplex.get(1);
+					workspace.remove(1);//remove C
 					//swap B and D to maintain winding order
-					simplex.set(1, simplex.get(0));
-					simplex.set(0, b);
+					workspace.swap(0, 1);
 				}else{
 					return true;
 				}
 				//check the new triangle for edge cases, only updating the direction vector
 				//after, this was where I was messing up last time, passing a new direction
 				//and letting the loop run again
-				ab = (Vec3)VecUtil.subtract( simplex.get(1).supportFinal, simplex.get(2).supportFinal );
-				ac = (Vec3)VecUtil.subtract( simplex.get(0).supportFinal, simplex.get(2).supportFinal );
-				abc = ab.cross(ac);
-				if(abc.cross(ac).dot(ao) > 0){
-					simplex.remove(1);
-					direction.set(VecUtil.cross(ac,ao,ac));
-				}else if(ab.cross(abc).dot(ao) > 0){
-					simplex.remove(0);
-					direction.set(VecUtil.cross(ab,ao,ab));
+				ab.set(simplex[1].supportFinal).subtract(simplex[2].supportFinal);
+				ac.set(simplex[0].supportFinal).subtract(simplex[2].supportFinal);
+				ab.cross(ac, abc);
+				if(abc.cross(ac, temp).dot(ao) > 0){
+					workspace.remove(1);
+					ac.cross(ao, direction);
+				}else if(ab.cross(abc, temp).dot(ao) > 0){
+					workspace.remove(0);
+					ab.cross(ao, direction);
 				}else{
 					direction.set(abc);
 				}
@@ -111,168 +202,139 @@ public abstract class CollisionDetector {
 				return false;
 		}
 	}
-	
+
 	//this seems to be producing the wrong results FIX IT
-	private static CollisionData computeDistance(ArrayList<Polytope.PolytopePoint> points){
-//		System.out.println(points.size());
-		switch(points.size()){
+	private static CollisionData computeDistance(GJKWorkspace workspace, CollisionData result){
+		Polytope.PolytopePoint[] points = workspace.simplex;
+		Vec3 normal = workspace.normal;
+		switch(workspace.simplexSize){
 			case 1:
-				Polytope.PolytopePoint point = points.get(0);
-				Vec3 normal = new Vec3(point.supportA);
+				Polytope.PolytopePoint point = points[0];
+				normal.set(point.supportA);
 				float distance = normal.normalize();
-				return new CollisionData(normal, point.supportA, point.supportA, distance, false);
+				result.set(normal, point.supportA, point.supportA, distance, false);
+				return result;
 			case 2:
-				Polytope.PolytopePoint start = points.get(1);
-				Polytope.PolytopePoint end = points.get(0);
-				Vec3 edge = (Vec3)VecUtil.subtract(start.supportFinal, end.supportFinal );
-				Vec3 pointA = null, pointB = null;
+				Polytope.PolytopePoint start = points[1];
+				Polytope.PolytopePoint end = points[0];
+				Vec3 edge = workspace.temp.set(start.supportFinal).subtract(end.supportFinal);
+				Vec3 pointA = workspace.aPoint, pointB = workspace.bPoint;
 				edge.trunc();
-			if(!edge.isZero()){;
-				float lambda1 = edge.dot(start.supportFinal)/edge.dot(edge);
-				float lambda2 = 1 - lambda1;
-				
-				if(lambda1 < 0){
-					pointA = end.supportA;
-					pointB = end.supportB;
-				}else if(lambda2 < 0){
-					pointA = start.supportA;
-					pointB = start.supportB;
+				if(!edge.isZero()){
+					float lambda1 = edge.dot(start.supportFinal)/edge.dot(edge);
+					float lambda2 = 1 - lambda1;
+
+					if(lambda1 < 0){
+						pointA.set(end.supportA);
+						pointB.set(end.supportB);
+					}else if(lambda2 < 0){
+						pointA.set(start.supportA);
+						pointB.set(start.supportB);
+					}else{
+						pointA.set(start.supportA).scale(lambda1).add(workspace.supportA.set(start.supportB).scale(lambda2));
+						pointB.set(end.supportA).scale(lambda1).add(workspace.supportB.set(end.supportB).scale(lambda2));
+					}
 				}else{
-					pointA = start.supportA.scale(lambda1).add(start.supportB.scale(lambda2));
-					pointB = end.supportA.scale(lambda1).add(end.supportB.scale(lambda2));
+					pointA.set(start.supportA);
+					pointB.set(start.supportB);
 				}
-			}else{
-				pointA = start.supportA;
-				pointB = start.supportB;
-			}
-			normal = (Vec3)VecUtil.subtract(pointB, pointA);
-			distance = normal.length();
-			normal.normalize();
-			return new CollisionData(normal, pointA, pointB, distance, false);
-		case 3:
-			Polytope.PolytopeTriangle polytopeFace = new Polytope.PolytopeTriangle(points.get(2), points.get(1), points.get(0));
-			 Vec3 coords = computeBarycentric(
-						polytopeFace.s1.start.supportFinal,
-						polytopeFace.s2.start.supportFinal,
-						polytopeFace.s3.start.supportFinal,
-						new Vec3(polytopeFace.normal).scale(polytopeFace.getDistance()));
-			    
-			    //compute the point on A using the barycentric coordinates
-			    Vec3 aPoint = (Vec3)VecUtil.add(
-			    		polytopeFace.s1.start.supportA.scale(coords.x),
-			    		polytopeFace.s2.start.supportA.scale(coords.y),
-			    		polytopeFace.s3.start.supportA.scale(coords.z));
-			    
-			    //compute the point on B using the barycentric coordinates
-			    Vec3 bPoint = (Vec3)VecUtil.add(
-			    		polytopeFace.s1.start.supportB.scale(coords.x),
-			    		polytopeFace.s2.start.supportB.scale(coords.y),
-			    		polytopeFace.s3.start.supportB.scale(coords.z));
-			    
-	    		//construct the collision data object 
-			    return new CollisionData(
-			    			polytopeFace.normal.inverse(), aPoint, bPoint, polytopeFace.getDistance(), false
-			    		);
+				normal.set(pointB).subtract(pointA);
+				distance = normal.length();
+				normal.normalize();
+				result.set(normal, pointA, pointB, distance, false);
+				return result;
+			case 3:
+				Polytope.PolytopeTriangle polytopeFace = workspace.face;
+				polytopeFace.set(points[2], points[1], points[0]);
+				return computeContact(polytopeFace, polytopeFace.getDistance(), false, result, workspace);
 			default:
-				return new CollisionData();
+				result.reset();
+				return result;
 		}
 	}
-	
-	private static CollisionData expandingPolytope(Polytope simplex, CollisionMesh objA, CollisionMesh objB){
+
+	private static CollisionData expandingPolytope(Polytope simplex, CollisionMesh objA, CollisionMesh objB,
+			CollisionData result, GJKWorkspace workspace){
 		//get the closest face on the polytope which is the face on the GJK termination simplex
 		Polytope.PolytopeTriangle polytopeFace = simplex.findClosest();
 		//get the distance this face is from the origin
 		float prevDist = polytopeFace.getDistance();
 		//get a new support point to add to the polytope in the direction of the closest face normal
-		Polytope.PolytopePoint newSupport = new Polytope.PolytopePoint(
-				objA.support(polytopeFace.normal),
-				objB.support(polytopeFace.normal.inverse())
-				);
+		Polytope.PolytopePoint newSupport = workspace.newSupport;
+		computeSupport(objA, objB, polytopeFace.normal, newSupport, workspace);
 		for(int curIter = 0; curIter < 50; curIter++){
 			if(polytopeFace.normal.dot(newSupport.supportFinal)-prevDist < MAX_THRESHOLD){
-				//compute the barycentric coordinates of the collision
-			    
-			    Vec3 coords = computeBarycentric(
-						polytopeFace.s1.start.supportFinal,
-						polytopeFace.s2.start.supportFinal,
-						polytopeFace.s3.start.supportFinal,
-						new Vec3(polytopeFace.normal).scale(prevDist));
-			    
-			    //compute the point on A using the barycentric coordinates
-			    Vec3 aPoint = (Vec3)VecUtil.add(
-			    		polytopeFace.s1.start.supportA.scale(coords.x),
-			    		polytopeFace.s2.start.supportA.scale(coords.y),
-			    		polytopeFace.s3.start.supportA.scale(coords.z));
-			    
-			    //compute the point on B using the barycentric coordinates
-			    Vec3 bPoint = (Vec3)VecUtil.add(
-			    		polytopeFace.s1.start.supportB.scale(coords.x),
-			    		polytopeFace.s2.start.supportB.scale(coords.y),
-			    		polytopeFace.s3.start.supportB.scale(coords.z));
-			    
-	    		//construct the collision data object 
-			    return new CollisionData(
-			    			polytopeFace.normal.inverse(), aPoint, bPoint, prevDist, true
-			    		);
+				return computeContact(polytopeFace, prevDist, true, result, workspace);
 			}else{
 				prevDist = polytopeFace.getDistance();
 				//add the new Support point to the simplex and have it recompute the triangles
 				//for the polytope
 				simplex.add(newSupport);
-				//get the new closest triangle on the new simplex 
+				//get the new closest triangle on the new simplex
 				polytopeFace = simplex.findClosest();
 				//compute a new support point in the direction of the new polytopeFace normal
-				newSupport = new Polytope.PolytopePoint(
-						objA.support(polytopeFace.normal),
-						objB.support(polytopeFace.normal.inverse())
-						);
+				computeSupport(objA, objB, polytopeFace.normal, newSupport, workspace);
 			}
 		}
+		return computeContact(polytopeFace, prevDist, true, result, workspace);
+	}
+
+	/**
+	 * Computes the contact points on the two objects from the closest point on the given face of the polytope
+	 *
+	 * @param polytopeFace Face of the polytope closest to the origin
+	 * @param distance Distance of the face from the origin
+	 * @param isColliding Whether the objects are colliding
+	 * @param result Collision data to store the contact in
+	 * @param workspace Workspace providing the scratch vectors
+	 * @return The result collision data post operation
+	 */
+	private static CollisionData computeContact(Polytope.PolytopeTriangle polytopeFace, float distance, boolean isColliding,
+			CollisionData result, GJKWorkspace workspace){
+		Polytope.PolytopePoint s1 = polytopeFace.s1.start, s2 = polytopeFace.s2.start, s3 = polytopeFace.s3.start;
 		//compute the barycentric coordinates of the collision
-	    
-	    Vec3 coords = computeBarycentric(
-				polytopeFace.s1.start.supportFinal,
-				polytopeFace.s2.start.supportFinal,
-				polytopeFace.s3.start.supportFinal,
-				new Vec3(polytopeFace.normal).scale(prevDist));
-	    
-	    //compute the point on A using the barycentric coordinates
-	    Vec3 aPoint = (Vec3)VecUtil.add(
-	    		polytopeFace.s1.start.supportA.scale(coords.x),
-	    		polytopeFace.s2.start.supportA.scale(coords.y),
-	    		polytopeFace.s3.start.supportA.scale(coords.z));
-	    
-	    //compute the point on B using the barycentric coordinates
-	    Vec3 bPoint = (Vec3)VecUtil.add(
-	    		polytopeFace.s1.start.supportB.scale(coords.x),
-	    		polytopeFace.s2.start.supportB.scale(coords.y),
-	    		polytopeFace.s3.start.supportB.scale(coords.z));
-	    
-		//construct the collision data object 
-	    return new CollisionData(
-	    			polytopeFace.normal.inverse(), aPoint, bPoint, prevDist, true
-	    		);
+		Vec3 coords = computeBarycentric(
+				s1.supportFinal,
+				s2.supportFinal,
+				s3.supportFinal,
+				workspace.temp.set(polytopeFace.normal).scale(distance),
+				workspace.coords);
+
+		//compute the point on A using the barycentric coordinates
+		Vec3 aPoint = workspace.aPoint;
+		aPoint.x = s1.supportA.x*coords.x + s2.supportA.x*coords.y + s3.supportA.x*coords.z;
+		aPoint.y = s1.supportA.y*coords.x + s2.supportA.y*coords.y + s3.supportA.y*coords.z;
+		aPoint.z = s1.supportA.z*coords.x + s2.supportA.z*coords.y + s3.supportA.z*coords.z;
+
+		//compute the point on B using the barycentric coordinates
+		Vec3 bPoint = workspace.bPoint;
+		bPoint.x = s1.supportB.x*coords.x + s2.supportB.x*coords.y + s3.supportB.x*coords.z;
+		bPoint.y = s1.supportB.y*coords.x + s2.supportB.y*coords.y + s3.supportB.y*coords.z;
+		bPoint.z = s1.supportB.z*coords.x + s2.supportB.z*coords.y + s3.supportB.z*coords.z;
+
+		//construct the collision data object
+		result.set(workspace.normal.set(polytopeFace.normal).scale(-1), aPoint, bPoint, distance, isColliding);
+		return result;
 	}
-	
-	private static Vec3 computeBarycentric(Vec3 a, Vec3 b, Vec3 c, Vec3 p){
+
+	private static Vec3 computeBarycentric(Vec3 a, Vec3 b, Vec3 c, Vec3 p, Vec3 coords){
 		// code from Christer Erickson's Real-Time Collision Detection
-		
-		Vec3 v0 = (Vec3)VecUtil.subtract(b,a);//b - a;
-		Vec3 v1 = (Vec3)VecUtil.subtract(c,a);//c - a; 
-		Vec3 v2 = (Vec3)VecUtil.subtract(p,a);//p - a;
-		
-	    float d00 = v0.dot(v0);
-	    float d01 = v0.dot(v1);
-	    float d11 = v1.dot(v1);
-	    float d20 = v2.dot(v0);
-	    float d21 = v2.dot(v1);
+
+		float v0X = b.x-a.x, v0Y = b.y-a.y, v0Z = b.z-a.z;//b - a;
+		float v1X = c.x-a.x, v1Y = c.y-a.y, v1Z = c.z-a.z;//c - a;
+		float v2X = p.x-a.x, v2Y = p.y-a.y, v2Z = p.z-a.z;//p - a;
+
+	    float d00 = v0X*v0X + v0Y*v0Y + v0Z*v0Z;
+	    float d01 = v0X*v1X + v0Y*v1Y + v0Z*v1Z;
+	    float d11 = v1X*v1X + v1Y*v1Y + v1Z*v1Z;
+	    float d20 = v2X*v0X + v2Y*v0Y + v2Z*v0Z;
+	    float d21 = v2X*v1X + v2Y*v1Y + v2Z*v1Z;
 	    float denom = d00 * d11 - d01 * d01;
-	     
-	    Vec3 coords = new Vec3();
+
 	    coords.y = (d11 * d20 - d01 * d21) / denom;
 	    coords.z = (d00 * d21 - d01 * d20) / denom;
 	    coords.x = 1.0f - coords.y - coords.z;
-	    
+
 	    return coords;
 	}
 }
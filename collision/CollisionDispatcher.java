@@ -0,0 +1,448 @@
+package collision;
+
+import java.util.HashMap;
+
+import glMath.Vec3;
+
+/**
+ * Routes the intersection test of a pair of collision meshes to a test specialized for the concrete types of the
+ * meshes. Pairs with a cheap analytic answer, such as spheres against spheres, planes or boxes and axis aligned
+ * boxes against each other, are tested in closed form and oriented boxes are tested with a separating axis test
+ * that finds a manifold of several points, every other pair falls back to GJK and EPA.
+ * 
+ * All tests fill the collision data with the same contract as the CollisionDetector, the normal points from the
+ * second mesh towards the first, contactA is the deepest point of the first mesh, contactB the deepest point of
+ * the second and the depth is the penetration along the normal. When the meshes aren't colliding the depth is
+ * the distance between them, or a lower bound of it for boxes and for meshes of triangles far from the other mesh.
+ * 
+ * Tests are registered for an ordered pair of types and the reverse order is registered along with it, so a
+ * test only needs to be written for one order. The table must not be changed while it is being used by other
+ * threads, the tests themselves only use the given workspace for scratch space.
+ * 
+ * @author Kevin
+ *
+ */
+public class CollisionDispatcher {
+	
+	/**
+	 * Intersection test of a pair of collision meshes
+	 */
+	public interface PairTest{
+		/**
+		 * Tests the given collision meshes for intersection storing the results in the given collision data
+		 * 
+		 * @param objA First collision mesh
+		 * @param objB Second collision mesh
+		 * @param result Collision data to store the results of the test in
+		 * @param workspace Workspace providing scratch space for the test
+		 * @return The result collision data post operation
+		 */
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace);
+	}
+	
+	//test used for all pairs that don't have a specialized test
+	public static final PairTest GJK = new PairTest(){
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			return CollisionDetector.gjkIntersect(objA, objB, result, workspace);
+		}
+	};
+	
+	public static final PairTest SPHERE_SPHERE = new PairTest(){
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			return sphereSphere((BoundingSphere)objA, (BoundingSphere)objB, result, workspace);
+		}
+	};
+	
+	public static final PairTest SPHERE_AABB = new PairTest(){
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			AABB box = (AABB)objB;
+			Vec3[] axes = workspace.boxAxes;
+			box.getAxis(0, axes[0]);
+			box.getAxis(1, axes[1]);
+			box.getAxis(2, axes[2]);
+			return sphereBox((BoundingSphere)objA, box.getCenter(workspace.ao), result, workspace);
+		}
+	};
+	
+	public static final PairTest SPHERE_OBB = new PairTest(){
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			OBB box = (OBB)objB;
+			Vec3[] axes = workspace.boxAxes;
+			box.getAxis(0, axes[0]);
+			box.getAxis(1, axes[1]);
+			box.getAxis(2, axes[2]);
+			return sphereBox((BoundingSphere)objA, box.getCenter(workspace.ao), result, workspace);
+		}
+	};
+	
+	public static final PairTest SPHERE_PLANE = new PairTest(){
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			CollisionPlane plane = (CollisionPlane)objB;
+			Vec3[] axes = workspace.boxAxes;
+			plane.getAxis(0, axes[0]);
+			plane.getAxis(1, axes[1]);
+			plane.getAxis(2, axes[2]);
+			return sphereBox((BoundingSphere)objA, plane.getCenter(workspace.ao), result, workspace);
+		}
+	};
+	
+	public static final PairTest AABB_AABB = new PairTest(){
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			return boxBox((AABB)objA, (AABB)objB, result, workspace);
+		}
+	};
+	
+	//smallest squared length a vector can have and still be normalized reliably
+	private static final float EPSILON = 1e-12f;
+	
+	private HashMap<Class<? extends CollisionMesh>, Integer> typeIds;
+	//tests indexed by the type ids of the first and second mesh, null entries use the GJK test
+	private PairTest[][] table;
+	
+	/**
+	 * Constructs a dispatcher with the closed form tests of the built in collision mesh types registered
+	 */
+	public CollisionDispatcher(){
+		typeIds = new HashMap<Class<? extends CollisionMesh>, Integer>();
+		table = new PairTest[0][0];
+		
+		register(BoundingSphere.class, BoundingSphere.class, SPHERE_SPHERE);
+		register(BoundingSphere.class, AABB.class, SPHERE_AABB);
+		register(BoundingSphere.class, OBB.class, SPHERE_OBB);
+		register(BoundingSphere.class, CollisionPlane.class, SPHERE_PLANE);
+		register(AABB.class, AABB.class, AABB_AABB);
+		PairTest boxTest = new BoxSAT();
+		register(OBB.class, OBB.class, boxTest);
+		register(AABB.class, OBB.class, boxTest);
+		//hulls have no closed form test but are given an id so their pairs are looked up like any other
+		register(ConvexHull.class, ConvexHull.class, GJK);
+		//convex meshes are tested against the triangles of a mesh near them, pairs of meshes use GJK on their hulls
+		PairTest meshTest = new TriangleMeshTest();
+		register(BoundingSphere.class, TriangleMeshCollider.class, meshTest);
+		register(AABB.class, TriangleMeshCollider.class, meshTest);
+		register(OBB.class, TriangleMeshCollider.class, meshTest);
+		register(ConvexHull.class, TriangleMeshCollider.class, meshTest);
+		register(BoundingSphere.class, HeightfieldCollider.class, meshTest);
+		register(AABB.class, HeightfieldCollider.class, meshTest);
+		register(OBB.class, HeightfieldCollider.class, meshTest);
+		register(ConvexHull.class, HeightfieldCollider.class, meshTest);
+	}
+	
+	/**
+	 * Registers the given test for pairs of the given types, the test is also registered for the reverse order
+	 * of the types with the results flipped so that they still follow the contract of the collision data
+	 * 
+	 * @param typeA Type of the first collision mesh the test takes
+	 * @param typeB Type of the second collision mesh the test takes
+	 * @param test Test to run for the pair of types
+	 */
+	public void register(Class<? extends CollisionMesh> typeA, Class<? extends CollisionMesh> typeB, PairTest test){
+		int idA = getTypeId(typeA);
+		int idB = getTypeId(typeB);
+		table[idA][idB] = test;
+		if(idA != idB){
+			table[idB][idA] = test == GJK ? GJK : new FlippedTest(test);
+		}
+	}
+	
+	/**
+	 * Gets the test that is run for the given pair of collision meshes
+	 * 
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @return Test registered for the types of the meshes, or the GJK test if there isn't one
+	 */
+	public PairTest getTest(CollisionMesh objA, CollisionMesh objB){
+		Integer idA = typeIds.get(objA.getClass());
+		if(idA == null){
+			return GJK;
+		}
+		Integer idB = typeIds.get(objB.getClass());
+		if(idB == null){
+			return GJK;
+		}
+		PairTest test = table[idA][idB];
+		return test == null ? GJK : test;
+	}
+	
+	/**
+	 * Tests the given collision meshes for intersection using the calling threads workspace
+	 * 
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param result Collision data to store the results of the test in
+	 * @return The result collision data post operation
+	 */
+	public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result){
+		return intersect(objA, objB, result, CollisionDetector.getWorkspace());
+	}
+	
+	/**
+	 * Tests the given collision meshes for intersection with the test registered for their types
+	 * 
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace used for the test, this must not be in use by any other thread
+	 * @return The result collision data post operation
+	 */
+	public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+		return getTest(objA, objB).intersect(objA, objB, result, workspace);
+	}
+	
+	/**
+	 * Gets the id of the given type, giving it the next id and growing the table if it doesn't have one
+	 */
+	private int getTypeId(Class<? extends CollisionMesh> type){
+		Integer id = typeIds.get(type);
+		if(id != null){
+			return id;
+		}
+		int newId = typeIds.size();
+		typeIds.put(type, newId);
+		PairTest[][] grown = new PairTest[newId+1][newId+1];
+		for(int row = 0; row < newId; row++){
+			System.arraycopy(table[row], 0, grown[row], 0, newId);
+		}
+		table = grown;
+		return newId;
+	}
+	
+	/**
+	 * Tests two spheres, the normal is along the line between their centers
+	 * 
+	 * @param sphereA First sphere
+	 * @param sphereB Second sphere
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace providing the scratch vectors
+	 * @return The result collision data post operation
+	 */
+	public static CollisionData sphereSphere(BoundingSphere sphereA, BoundingSphere sphereB, CollisionData result, GJKWorkspace workspace){
+		Vec3 centerA = sphereA.getCenter(workspace.aPoint);
+		Vec3 centerB = sphereB.getCenter(workspace.bPoint);
+		float radiusA = sphereA.getRadius(), radiusB = sphereB.getRadius();
+		
+		Vec3 normal = workspace.normal.set(centerA).subtract(centerB);
+		float distSq = normal.dot(normal);
+		float distance = (float)Math.sqrt(distSq);
+		if(distSq > EPSILON){
+			normal.scale(1/distance);
+		}else{
+			//concentric spheres have no preferred direction so any unit vector will do
+			normal.set(0, 1, 0);
+		}
+		
+		//the centers are moved to the deepest points in place, set clears any manifold left by an earlier test
+		centerA.x -= normal.x*radiusA;
+		centerA.y -= normal.y*radiusA;
+		centerA.z -= normal.z*radiusA;
+		centerB.x += normal.x*radiusB;
+		centerB.y += normal.y*radiusB;
+		centerB.z += normal.z*radiusB;
+		float depth = radiusA+radiusB-distance;
+		result.set(normal, centerA, centerB, Math.abs(depth), depth > 0);
+		return result;
+	}
+	
+	/**
+	 * Tests a sphere against a box given by its center and the world space half axes stored in the box axes of
+	 * the workspace. The half axes don't need to be orthogonal to the center but must be orthogonal to
+	 * each other, at most one of them may be zero in which case the box is a flat rectangle. The closest point on
+	 * the box is found by clamping the center of the sphere to the box in the boxes own axes, when the center is
+	 * inside the box the normal is the normal of the face the center is closest to.
+	 * 
+	 * @param sphere Sphere being tested, this is the first mesh of the pair
+	 * @param boxCenter Center of the box
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace holding the half axes of the box
+	 * @return The result collision data post operation
+	 */
+	public static CollisionData sphereBox(BoundingSphere sphere, Vec3 boxCenter, CollisionData result, GJKWorkspace workspace){
+		Vec3 center = sphere.getCenter(workspace.aPoint);
+		float radius = sphere.getRadius();
+		Vec3[] axes = workspace.boxAxes;
+		//normalize the axes keeping their lengths as the half extents of the box along them
+		float[] extents = workspace.boxExtents;
+		int flatAxis = -1;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			Vec3 axis = axes[curAxis];
+			float lengthSq = axis.dot(axis);
+			if(lengthSq > EPSILON){
+				extents[curAxis] = (float)Math.sqrt(lengthSq);
+				axis.scale(1/extents[curAxis]);
+			}else{
+				extents[curAxis] = 0;
+				flatAxis = curAxis;
+			}
+		}
+		//a flat box is still clamped along its normal so that the sphere is pushed out of either side of it
+		if(flatAxis != -1){
+			axes[(flatAxis+1)%3].cross(axes[(flatAxis+2)%3], axes[flatAxis]);
+			axes[flatAxis].normalize();
+		}
+		
+		Vec3 offset = workspace.temp.set(center).subtract(boxCenter);
+		Vec3 closest = workspace.bPoint.set(boxCenter);
+		boolean inside = true;
+		//axis of the face the center is closest to and how far it is from it when the center is inside
+		int faceAxis = 0;
+		float faceDistance = Float.MAX_VALUE, faceSign = 1;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			Vec3 axis = axes[curAxis];
+			float extent = extents[curAxis];
+			float coord = offset.dot(axis);
+			if(coord > extent){
+				coord = extent;
+				inside = false;
+			}else if(coord < -extent){
+				coord = -extent;
+				inside = false;
+			}else if(extent-Math.abs(coord) < faceDistance){
+				faceAxis = curAxis;
+				faceDistance = extent-Math.abs(coord);
+				faceSign = coord < 0 ? -1 : 1;
+			}
+			closest.x += axis.x*coord;
+			closest.y += axis.y*coord;
+			closest.z += axis.z*coord;
+		}
+		
+		Vec3 normal = workspace.normal.set(center).subtract(closest);
+		float distSq = normal.dot(normal);
+		float depth;
+		if(!inside && distSq > EPSILON){
+			float distance = (float)Math.sqrt(distSq);
+			normal.scale(1/distance);
+			depth = radius-distance;
+		}else{
+			//the center is inside the box so it is pushed out through the closest face, the deepest point of
+			//the box is where the center projects onto that face
+			normal.set(axes[faceAxis]).scale(faceSign);
+			closest.set(normal).scale(faceDistance).add(center);
+			depth = radius+faceDistance;
+		}
+		
+		center.x -= normal.x*radius;
+		center.y -= normal.y*radius;
+		center.z -= normal.z*radius;
+		result.set(normal, center, closest, Math.abs(depth), depth > 0);
+		return result;
+	}
+	
+	/**
+	 * Tests two axis aligned boxes, the normal is along the axis that A needs to be pushed along the least to
+	 * separate the boxes and the contacts lie on the faces of the boxes at the center of the region they overlap in
+	 * 
+	 * @param boxA First box
+	 * @param boxB Second box
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace providing the scratch vectors
+	 * @return The result collision data post operation
+	 */
+	public static CollisionData boxBox(AABB boxA, AABB boxB, CollisionData result, GJKWorkspace workspace){
+		float[] boundsA = getBounds(boxA, workspace.boundsA, workspace);
+		float[] boundsB = getBounds(boxB, workspace.boundsB, workspace);
+		Vec3 pointA = workspace.aPoint, pointB = workspace.bPoint;
+		
+		//axis A has to be pushed out along the least and how far it has to be pushed
+		int minAxis = -1;
+		float minDepth = Float.MAX_VALUE;
+		boolean minAbove = true;
+		float gapSq = 0;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			float lowA = boundsA[curAxis], highA = boundsA[curAxis+3];
+			float lowB = boundsB[curAxis], highB = boundsB[curAxis+3];
+			if(highB < lowA){
+				//B is entirely below A on this axis so the closest points are on the facing sides
+				pointA.set(curAxis, lowA);
+				pointB.set(curAxis, highB);
+				gapSq += (lowA-highB)*(lowA-highB);
+			}else if(highA < lowB){
+				pointA.set(curAxis, highA);
+				pointB.set(curAxis, lowB);
+				gapSq += (lowB-highA)*(lowB-highA);
+			}else{
+				float middle = (Math.max(lowA, lowB)+Math.min(highA, highB))*.5f;
+				pointA.set(curAxis, middle);
+				pointB.set(curAxis, middle);
+				//A can leave B through either side, pushing it above B takes highB-lowA and below takes highA-lowB
+				float above = highB-lowA, below = highA-lowB;
+				if(Math.min(above, below) < minDepth){
+					minAxis = curAxis;
+					minAbove = above <= below;
+					minDepth = minAbove ? above : below;
+				}
+			}
+		}
+
+		Vec3 normal = workspace.normal;
+		if(gapSq > 0){
+			float distance = (float)Math.sqrt(gapSq);
+			normal.set(pointA).subtract(pointB).scale(1/distance);
+			result.set(normal, pointA, pointB, distance, false);
+			return result;
+		}
+
+		//the deepest points are the faces A and B are pushed apart through
+		normal.x = normal.y = normal.z = 0;
+		if(minAbove){
+			normal.set(minAxis, 1);
+			pointA.set(minAxis, boundsA[minAxis]);
+			pointB.set(minAxis, boundsB[minAxis+3]);
+		}else{
+			normal.set(minAxis, -1);
+			pointA.set(minAxis, boundsA[minAxis+3]);
+			pointB.set(minAxis, boundsB[minAxis]);
+		}
+		result.set(normal, pointA, pointB, minDepth, true);
+		return result;
+	}
+
+	/**
+	 * Stores the world space bounds of the given box in the given array as the minimum x, y, z followed by the
+	 * maximum x, y, z
+	 */
+	private static float[] getBounds(AABB box, float[] bounds, GJKWorkspace workspace){
+		Vec3 corner = box.support(workspace.direction.set(-1, -1, -1), workspace.temp);
+		bounds[0] = corner.x;
+		bounds[1] = corner.y;
+		bounds[2] = corner.z;
+		box.support(workspace.direction.set(1, 1, 1), corner);
+		bounds[3] = corner.x;
+		bounds[4] = corner.y;
+		bounds[5] = corner.z;
+		return bounds;
+	}
+	
+	/**
+	 * Runs a test with the meshes in the opposite order, flipping the results back into the order they were given
+	 */
+	private static class FlippedTest implements PairTest{
+		private PairTest test;
+		
+		public FlippedTest(PairTest test){
+			this.test = test;
+		}
+		
+		@Override
+		public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+			test.intersect(objB, objA, result, workspace);
+			result.normal.scale(-1);
+			Vec3 swap = workspace.temp.set(result.contactA);
+			result.contactA.set(result.contactB);
+			result.contactB.set(swap);
+			for(int curPoint = 0; curPoint < result.numPoints; curPoint++){
+				swap.set(result.pointsA[curPoint]);
+				result.pointsA[curPoint].set(result.pointsB[curPoint]);
+				result.pointsB[curPoint].set(swap);
+			}
+			return result;
+		}
+	}
+}
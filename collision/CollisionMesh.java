@@ -10,6 +10,14 @@ public interface CollisionMesh {
 	
 	public Vec3 getCenter();
 	
+	/**
+	 * Gets the center of this collision mesh storing it in the given vector instead of allocating a new one
+	 * 
+	 * @param result Vector to store the center in
+	 * @return The result vector post operation
+	 */
+	public Vec3 getCenter(Vec3 result);
+	
 	public void setData(Mat4 modelMat, Quaternion orient);
 	
 	public void setData(Mat4 modelMat);
@@ -22,6 +30,16 @@ public interface CollisionMesh {
 	
 	public Vec3 support(Vec3 direction);
 	
+	/**
+	 * Finds the farthest point on this collision mesh in the given direction storing it in the given vector,
+	 * implementations must not allocate so that the narrowphase can run without producing garbage
+	 * 
+	 * @param direction Direction to find the support point in
+	 * @param result Vector to store the support point in, this can be the same vector as direction
+	 * @return The result vector post operation
+	 */
+	public Vec3 support(Vec3 direction, Vec3 result);
+	
 	public void translate(float x, float y, float z);
 	 
 	public void translate(Vec3 translation);
@@ -4,6 +4,7 @@ import glMath.Mat3;
 import glMath.Mat4;
 import glMath.MatrixUtil;
 import glMath.Vec3;
+import glMath.Vec4;
 import glMath.Quaternion;
 
 public class CollisionPlane implements CollisionMesh{
@@ -103,7 +104,12 @@ public class CollisionPlane implements CollisionMesh{
 	}
 	
 	public Vec3 getCenter(){
-		return (Vec3)getModelMatrix().multVec(center).swizzle("xyz");
+		return getCenter(new Vec3());
+	}
+	
+	@Override
+	public Vec3 getCenter(Vec3 result){
+		return modelMat.multVec(center, result);
 	}
 	
 	@Override
@@ -118,33 +124,63 @@ public class CollisionPlane implements CollisionMesh{
 		orientation.set(0,0,0);
 	}
 
+	/**
+	 * Gets the world space half axis of this plane along the given local axis, this is the vector from the center
+	 * of the plane to the center of its edge on the positive side of that axis, the half axis along y is always zero
+	 * 
+	 * @param index Index of the local axis, 0 for x, 1 for y and 2 for z
+	 * @param result Vector to store the half axis in
+	 * @return The result vector post operation
+	 */
+	public Vec3 getAxis(int index, Vec3 result){
+		//the plane lies in its local xz plane so it has no extent along its y axis
+		result.x = index == 0 ? side1 : 0;
+		result.y = 0;
+		result.z = index == 2 ? side2 : 0;
+		orientation.rotateInverse(result, result);
+		//only the linear part of the model matrix applies to a direction
+		Vec4[] columns = modelMat.getMatrix();
+		float x = result.x, y = result.y, z = result.z;
+		result.x = columns[0].x*x+columns[1].x*y+columns[2].x*z;
+		result.y = columns[0].y*x+columns[1].y*y+columns[2].y*z;
+		result.z = columns[0].z*x+columns[1].z*y+columns[2].z*z;
+		return result;
+	}
+	
 	@Override
 	public Vec3 support(Vec3 direction){
-		Mat4 transformMat = (Mat4)MatrixUtil.multiply(modelMat, orientation.asMatrix());
-		
-		Vec3 vert1 = (Vec3)transformMat.multVec(verts[0]).swizzle("xyz");
-		float maxDot = vert1.dot(direction);
-		Vec3 finalVert = new Vec3(vert1);
-		
-		Vec3 vert2 = (Vec3)transformMat.multVec(verts[1]).swizzle("xyz");
-		if(vert2.dot(direction) > maxDot){
-			finalVert.set(vert2);
-			maxDot = vert2.dot(direction);
-		}
-		
-		Vec3 vert3 = (Vec3)transformMat.multVec(verts[2]).swizzle("xyz");
-		if(vert3.dot(direction) > maxDot){
-			finalVert.set(vert3);
-			maxDot = vert3.dot(direction);
-		}
+		return support(direction, new Vec3());
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result){
+		//find the index of the farthest vertex first so that the result vector can be used for the 
+		//transformed vertices without needing any temporary vectors
+		int farthest = 0;
+		float maxDot = transformVert(0, result).dot(direction);
 		
-		Vec3 vert4 = (Vec3)transformMat.multVec(verts[3]).swizzle("xyz");
-		if(vert4.dot(direction) > maxDot){
-			finalVert.set(vert4);
-			maxDot = vert4.dot(direction);
+		for(int curVert = 1; curVert < verts.length; curVert++){
+			float dotDir = transformVert(curVert, result).dot(direction);
+			if(dotDir > maxDot){
+				farthest = curVert;
+				maxDot = dotDir;
+			}
 		}
 		
-		return finalVert;
+		return transformVert(farthest, result);
+	}
+	
+	/**
+	 * Transforms the vertex at the given index by this planes orientation and model matrix, equivalent
+	 * to multiplying the vertex by modelMat*orientation.asMatrix()
+	 * 
+	 * @param index Index of the vertex to transform
+	 * @param result Vector to store the transformed vertex in
+	 * @return The result vector post operation
+	 */
+	private Vec3 transformVert(int index, Vec3 result){
+		orientation.rotateInverse(verts[index], result);
+		return modelMat.multVec(result, result);
 	}
 
 	@Override
@@ -1,230 +1,475 @@
 package collision;
 
-import glMath.Mat3;
-import glMath.MatrixUtil;
 import glMath.Quaternion;
 import glMath.Vec3;
-import glMath.VecUtil;
 import core.GameObject;
 
-import java.util.ArrayList;
-
+/**
+ * Persistent contact manifold between two game objects. A manifold holds up to four contact points, new contacts
+ * that are close to an existing point replace it and keep the impulses the solver accumulated for it, and points
+ * that separate or drift apart as the objects move are removed when the manifold is refreshed. The accumulated
+ * impulses are applied at the start of each solve so resting contacts start from the solution of the last frame.
+ * 
+ * The normal of every point points from object B towards object A.
+ * 
+ * @author Kevin
+ *
+ */
 public class ContactPair {
-	private ArrayList<CollisionData> contactData;
+	public static final int MAX_POINTS = 4;
+	//distance a point can separate or drift along the contact plane before it is removed, new contacts
+	//within this distance of an existing point replace it
+	public static final float BREAKING_THRESHOLD = .02f;
+	//penetration that is left uncorrected so resting contacts stay in contact between frames
+	private static final float SLOP = .005f;
+	private static final float CORRECTION_PERCENT = .8f;
+	//approach speed below which contacts are treated as resting instead of bouncing
+	static final float RESTITUTION_THRESHOLD = .01f;
+
+	private ContactPoint[] points;
+	private int numPoints;
 	private GameObject contactA, contactB;
+	private float friction, restitution;
+	//scratch vectors used when adding points and solving
+	private Vec3 localA, localB, flipNormal, relVel, impulse, temp, tempB;
 	
 	public ContactPair(GameObject a, GameObject b){
-		contactData = new ArrayList<CollisionData>();
+		points = new ContactPoint[MAX_POINTS];
+		for(int curPoint = 0; curPoint < MAX_POINTS; curPoint++){
+			points[curPoint] = new ContactPoint();
+		}
+		numPoints = 0;
 		contactA = a;
 		contactB = b;
+		localA = new Vec3();
+		localB = new Vec3();
+		flipNormal = new Vec3();
+		relVel = new Vec3();
+		impulse = new Vec3();
+		temp = new Vec3();
+		tempB = new Vec3();
 	}
 	
 	public void addContact(CollisionData newContact){
-		contactData.add(newContact);
+		addContact(newContact, false);
+	}
+	
+	/**
+	 * Adds the contacts of the given collision data to this manifold, every point of its manifold is added when it
+	 * has one and only its single contact otherwise
+	 * 
+	 * @param newContact Collision data to add the contacts of
+	 * @param flip Whether the collision data was found with the objects in the opposite order
+	 */
+	public void addContact(CollisionData newContact, boolean flip){
+		if(newContact.numPoints == 0){
+			addContact(newContact.contactA, newContact.contactB, newContact.normal, newContact.depth, flip);
+			return;
+		}
+		for(int curPoint = 0; curPoint < newContact.numPoints; curPoint++){
+			addContact(newContact.pointsA[curPoint], newContact.pointsB[curPoint], newContact.normal,
+					newContact.depths[curPoint], flip);
+		}
+	}
+	
+	/**
+	 * Adds the points of the given manifold to this manifold, flipping them if the objects of the given manifold
+	 * are in the opposite order
+	 * 
+	 * @param pair Manifold to add the points of
+	 */
+	public void addContacts(ContactPair pair){
+		boolean flip = pair.contactA != contactA;
+		for(int curPoint = 0; curPoint < pair.numPoints; curPoint++){
+			ContactPoint point = pair.points[curPoint];
+			addContact(point.pointA, point.pointB, point.normal, point.depth, flip);
+		}
+	}
+	
+	/**
+	 * Adds a contact to this manifold, if the contact is within the breaking threshold of an existing point it replaces
+	 * that point keeping its accumulated impulses. When the manifold is full the deepest point is kept along with
+	 * the points that cover the largest area.
+	 * 
+	 * @param pointA Contact point on object A in world space
+	 * @param pointB Contact point on object B in world space
+	 * @param normal Normal of the contact pointing from object B towards object A
+	 * @param depth Penetration depth of the contact
+	 * @param flip Whether the contact was found with the objects in the opposite order, in which case the points
+	 * are swapped and the normal is reversed
+	 */
+	public void addContact(Vec3 pointA, Vec3 pointB, Vec3 normal, float depth, boolean flip){
+		flipNormal.set(normal);
+		if(flip){
+			Vec3 swap = pointA;
+			pointA = pointB;
+			pointB = swap;
+			flipNormal.scale(-1);
+		}
+		toLocal(contactA, pointA, localA);
+		toLocal(contactB, pointB, localB);
+		
+		//match the contact against the existing points so the accumulated impulses carry over
+		int index = -1;
+		float closest = BREAKING_THRESHOLD*BREAKING_THRESHOLD;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			float distance = distanceSq(localA, points[curPoint].localA);
+			if(distance < closest){
+				closest = distance;
+				index = curPoint;
+			}
+		}
+		ContactPoint point;
+		if(index != -1){
+			point = points[index];
+		}else{
+			index = numPoints < MAX_POINTS ? numPoints++ : replaceIndex(localA, depth);
+			if(index == -1){
+				//the new contact lies inside the area already covered by the manifold
+				return;
+			}
+			point = points[index];
+			point.clearImpulses();
+			point.lifetime = 0;
+		}
+		point.localA.set(localA);
+		point.localB.set(localB);
+		point.pointA.set(pointA);
+		point.pointB.set(pointB);
+		point.normal.set(flipNormal);
+		point.depth = depth;
+	}
+	
+	/**
+	 * Updates the world positions of the points from the current transforms of the objects, removing the points
+	 * that have separated or drifted apart along the contact plane by more than the breaking threshold
+	 */
+	public void refresh(){
+		int curPoint = 0;
+		while(curPoint < numPoints){
+			ContactPoint point = points[curPoint];
+			toWorld(contactA, point.localA, point.pointA);
+			toWorld(contactB, point.localB, point.pointB);
+			//the point on A lies behind the point on B along the normal while the objects penetrate
+			temp.set(point.pointB).subtract(point.pointA);
+			point.depth = temp.dot(point.normal);
+			temp.x -= point.normal.x*point.depth;
+			temp.y -= point.normal.y*point.depth;
+			temp.z -= point.normal.z*point.depth;
+			if(point.depth < -BREAKING_THRESHOLD || temp.dot(temp) > BREAKING_THRESHOLD*BREAKING_THRESHOLD){
+				remove(curPoint);
+			}else{
+				point.lifetime++;
+				curPoint++;
+			}
+		}
 	}
 	
-	public ArrayList<CollisionData> getContacts(){
-		return contactData;
+	/**
+	 * Prepares the points for solving, computing the effective masses and restitution targets of each point and
+	 * applying the impulses accumulated in the last frame
+	 */
+	public void preSolve(){
+		float massInvSum = inverseMass(contactA)+inverseMass(contactB);
+		friction = (contactA.sFriction+contactB.sFriction)/2.0f;
+		restitution = (contactA.restitution > contactB.restitution ? contactB.restitution : contactA.restitution);
+		
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			ContactPoint point = points[curPoint];
+			point.offsetA.set(point.pointA).subtract(contactA.position);
+			point.offsetB.set(point.pointB).subtract(contactB.position);
+			computeBasis(point.normal, point.tangent1, point.tangent2);
+			
+			point.normalMass = effectiveMass(massInvSum, point, point.normal);
+			point.tangentMass1 = effectiveMass(massInvSum, point, point.tangent1);
+			point.tangentMass2 = effectiveMass(massInvSum, point, point.tangent2);
+			
+			//only contacts approaching faster than the threshold bounce
+			relativeVelocity(point);
+			float normalVel = relVel.dot(point.normal);
+			point.velocityBias = normalVel < -RESTITUTION_THRESHOLD ? -restitution*normalVel : 0;
+			
+			//warm start with the impulses of the last frame
+			impulse.set(point.normal).scale(point.normalImpulse);
+			impulse.x += point.tangent1.x*point.tangentImpulse1+point.tangent2.x*point.tangentImpulse2;
+			impulse.y += point.tangent1.y*point.tangentImpulse1+point.tangent2.y*point.tangentImpulse2;
+			impulse.z += point.tangent1.z*point.tangentImpulse1+point.tangent2.z*point.tangentImpulse2;
+			applyImpulse(point, impulse);
+		}
+	}
+	
+	/**
+	 * Runs a single iteration of the sequential impulse solver over the points of this manifold, the impulses are
+	 * clamped on their accumulated totals so an iteration can take back impulse applied by an earlier one
+	 */
+	public void solve(){
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			ContactPoint point = points[curPoint];
+			//friction is solved first so the normal impulse has the last say on penetration
+			float maxFriction = friction*point.normalImpulse;
+			
+			relativeVelocity(point);
+			float lambda = -relVel.dot(point.tangent1)*point.tangentMass1;
+			float newImpulse = Math.max(-maxFriction, Math.min(point.tangentImpulse1+lambda, maxFriction));
+			lambda = newImpulse-point.tangentImpulse1;
+			point.tangentImpulse1 = newImpulse;
+			applyImpulse(point, impulse.set(point.tangent1).scale(lambda));
+			
+			relativeVelocity(point);
+			lambda = -relVel.dot(point.tangent2)*point.tangentMass2;
+			newImpulse = Math.max(-maxFriction, Math.min(point.tangentImpulse2+lambda, maxFriction));
+			lambda = newImpulse-point.tangentImpulse2;
+			point.tangentImpulse2 = newImpulse;
+			applyImpulse(point, impulse.set(point.tangent2).scale(lambda));
+			
+			relativeVelocity(point);
+			lambda = (point.velocityBias-relVel.dot(point.normal))*point.normalMass;
+			newImpulse = Math.max(point.normalImpulse+lambda, 0);
+			lambda = newImpulse-point.normalImpulse;
+			point.normalImpulse = newImpulse;
+			applyImpulse(point, impulse.set(point.normal).scale(lambda));
+		}
 	}
 	
+	/**
+	 * Pushes the objects apart along the normal of the deepest point by a fraction of its penetration
+	 */
+	public void correctPositions(){
+		float massInvA = inverseMass(contactA);
+		float massInvB = inverseMass(contactB);
+		float massInvSum = massInvA+massInvB;
+		if(numPoints == 0 || massInvSum == 0){
+			return;
+		}
+		ContactPoint deepest = points[0];
+		for(int curPoint = 1; curPoint < numPoints; curPoint++){
+			if(points[curPoint].depth > deepest.depth){
+				deepest = points[curPoint];
+			}
+		}
+		float correction = Math.max(deepest.depth-SLOP, 0)*CORRECTION_PERCENT/massInvSum;
+		if(correction > 0){
+			temp.set(deepest.normal).scale(massInvA*correction);
+			contactA.mesh.translate(temp);
+			contactA.position.add(temp);
+			temp.set(deepest.normal).scale(-massInvB*correction);
+			contactB.mesh.translate(temp);
+			contactB.position.add(temp);
+		}
+	}
+	
+	/**
+	 * Resolves the contacts of this manifold on its own
+	 * 
+	 * @param iterations Number of solver iterations to run
+	 */
 	public void resolve(int iterations){
+		preSolve();
 		for(int curIter = 0; curIter < iterations; curIter++){
-			for(CollisionData curContact : contactData){
-				//velocity relative to object A (this)
-				Vec3 aRelB = VecUtil.subtract(contactB.velocity, contactA.velocity);
-				//the magnitude of the end velocity
-				float velAlongNormal = aRelB.dot(curContact.normal);
-//				curContact.normal.print();
-				if (velAlongNormal > 0) {
-					float sumInv = contactA.massInv+contactB.massInv;
-					//calculation of impulses of a collision
-					float elasticCoeff = (contactA.restitution > contactB.restitution ? contactB.restitution : contactA.restitution);
-					
-					Vec3 pointA = (Vec3)VecUtil.subtract(curContact.contactA, contactA.position);
-					Vec3 pointB = (Vec3)VecUtil.subtract(curContact.contactB, contactB.position);
-					
-					Vec3 raCrossN = pointA.cross(curContact.normal);
-					Vec3 rbCrossN = pointB.cross(curContact.normal);
-					
-					//map the inertia tensor to be oriented to the objects current orientation, since it was computed when the object was at rest
-					Mat3 aFinalInertia = (Mat3)MatrixUtil.multiply(contactA.mesh.getOrientation().asRotMatrix(), contactA.invInertiaTensor);
-					Mat3 bFinalInertia = (Mat3)MatrixUtil.multiply(contactB.mesh.getOrientation().asRotMatrix(), contactB.invInertiaTensor);
-					
-					
-					/* raCrossN = torque(force being applied to the angular component of the object)
-					 * aFinalInertia.multVec(raCrossN) = rotation (amount of movement per unit of torque)
-					 */
-					//the angular resistance to change
-					float angularInertiaA = raCrossN.dot(aFinalInertia.multVec(raCrossN));
-					float angularInertiaB = rbCrossN.dot(bFinalInertia.multVec(rbCrossN));
-					
-					//the total resistance of the collision to change
-					float totalInertia = sumInv + angularInertiaA + angularInertiaB;
-					
-					//the total change in the velocity of the collision in this instant
-					float impulse = (1+elasticCoeff)*(velAlongNormal+raCrossN.dot(contactA.angVel)+rbCrossN.dot(contactB.angVel))
-							/totalInertia;
-					
-					//the vector representing the impulse applied in the direction of the contact normal
-					Vec3 impulseVec = new Vec3(curContact.normal).scale(impulse);
-					
-					contactA.velocity.add(new Vec3(curContact.normal).scale(contactA.massInv * impulse));
-					contactB.velocity.add(new Vec3(curContact.normal).scale(contactB.massInv * -impulse));
-					
-					//the torque being applied to the bodies by the impulse
-					Vec3 angularImpulseA = contactA.invInertiaTensor.multVec(impulseVec.cross(pointA));
-					Vec3 angularImpulseB = contactB.invInertiaTensor.multVec(impulseVec.scale(-1).cross(pointB));
-					
-					contactA.angVel.add(angularImpulseA);
-					contactB.angVel.add(angularImpulseB);
-					
-					//frictional tangent vector 
-					Vec3 frictionVec = VecUtil.subtract(aRelB, new Vec3(curContact.normal).scale(velAlongNormal));
-					frictionVec.trunc();
-					
-					if(!frictionVec.isZero()){
-						frictionVec.normalize();
-						float fImpulse = aRelB.dot(frictionVec)/sumInv;
-//						float fImpulse = aRelB.dot(frictionVec)/totalInertia;
-						float coeffFric = (contactA.sFriction+contactB.sFriction)/2.0f;
-						
-						if(fImpulse < impulse*coeffFric){
-							contactA.velocity.add(new Vec3(frictionVec).scale(contactA.massInv*fImpulse));
-							contactB.velocity.add(new Vec3(frictionVec).scale(contactB.massInv*-fImpulse));
-							
-//							contactA.angVel.add(contactA.inertiaTensor.multVec(new Vec3(frictionVec).scale(fImpulse)));
-//							contactB.angVel.add(contactB.inertiaTensor.multVec(new Vec3(frictionVec).scale(-fImpulse)));
-						}else{
-							coeffFric = (contactA.dFriction+contactB.dFriction)/2.0f;
-							contactA.velocity.add(new Vec3(frictionVec).scale(contactA.massInv*impulse*coeffFric));
-							contactB.velocity.add(new Vec3(frictionVec).scale(contactB.massInv*-impulse*coeffFric));
-							
-//							contactA.angVel.add(contactA.inertiaTensor.multVec(new Vec3(frictionVec).scale(impulse*coeffFric)));
-//							contactB.angVel.add(contactB.inertiaTensor.multVec(new Vec3(frictionVec).scale(-impulse*coeffFric)));
-						}
-					}
-					
-					float correction = (curContact.depth > 0 ? curContact.depth : 0)/sumInv;
-//					float correction = (curContact.depth > 0 ? curContact.depth : 0)/totalInertia;
-					Vec3 restCorrection = new Vec3(curContact.normal).scale(contactA.massInv*correction);
-					contactA.mesh.translate(restCorrection);
-//					contactA.collider.translate(restCorrection);
-					contactA.position.add(restCorrection);
-					//rotational correction
-//					contactA.mesh.setOrientation(contactA.mesh.getOrientation().addVector(
-//							contactA.invInertiaTensor.multVec(new Vec3(curContact.normal).scale(correction))));
-					
-					//resolve for object B
-					Vec3 bRestCorr = new Vec3(curContact.normal).scale(contactB.massInv*-correction);
-					contactB.mesh.translate(bRestCorr);
-//					contactB.collider.translate(bRestCorr);
-					contactB.position.add(bRestCorr);
-					//adding a negative component currently causes infinite looping somewhere
-//					contactB.mesh.setOrientation(contactB.mesh.getOrientation().addVector(
-//							contactB.invInertiaTensor.multVec(new Vec3(curContact.normal).scale(-correction))));
-				}
+			solve();
+		}
+		correctPositions();
+	}
+	
+	/**
+	 * Computes the velocity of the point on A relative to the point on B storing it in relVel
+	 */
+	private void relativeVelocity(ContactPoint point){
+		//the meshes are rotated by the inverse of the angular velocity so the velocity of a point
+		//from the rotation is the offset crossed with the angular velocity
+		point.offsetA.cross(contactA.angVel, relVel).add(contactA.velocity);
+		point.offsetB.cross(contactB.angVel, temp).add(contactB.velocity);
+		relVel.subtract(temp);
+	}
+	
+	/**
+	 * Applies the given impulse to object A at its contact point and the opposite impulse to object B
+	 */
+	private void applyImpulse(ContactPoint point, Vec3 impulse){
+		float massInvA = inverseMass(contactA);
+		float massInvB = inverseMass(contactB);
+		contactA.velocity.add(impulse.x*massInvA, impulse.y*massInvA, impulse.z*massInvA);
+		contactB.velocity.subtract(impulse.x*massInvB, impulse.y*massInvB, impulse.z*massInvB);
+		
+		//the angular impulse is reversed for the same reason as the point velocities
+		if(massInvA != 0){
+			impulse.cross(point.offsetA, tempB);
+			contactA.angVel.add(applyInvInertia(contactA, tempB, tempB));
+		}
+		if(massInvB != 0){
+			point.offsetB.cross(impulse, tempB);
+			contactB.angVel.add(applyInvInertia(contactB, tempB, tempB));
+		}
+	}
+	
+	/**
+	 * Computes the effective mass of the contact point along the given direction, this is the inverse of the change
+	 * in relative velocity along the direction caused by a unit impulse along it
+	 */
+	private float effectiveMass(float massInvSum, ContactPoint point, Vec3 direction){
+		float inverse = massInvSum;
+		if(inverseMass(contactA) != 0){
+			point.offsetA.cross(direction, tempB);
+			applyInvInertia(contactA, tempB, tempB).cross(point.offsetA, tempB);
+			inverse += tempB.dot(direction);
+		}
+		if(inverseMass(contactB) != 0){
+			point.offsetB.cross(direction, tempB);
+			applyInvInertia(contactB, tempB, tempB).cross(point.offsetB, tempB);
+			inverse += tempB.dot(direction);
+		}
+		return inverse > 0 ? 1/inverse : 0;
+	}
+	
+	/**
+	 * Multiplies the given vector by the inverse inertia tensor of the given object rotated into world space
+	 */
+	private static Vec3 applyInvInertia(GameObject object, Vec3 vector, Vec3 result){
+		Quaternion orientation = object.mesh.getOrientation();
+		orientation.rotate(vector, result);
+		Vec3[] inertia = object.invInertiaTensor.getMatrix();
+		float x = inertia[0].x*result.x+inertia[1].x*result.y+inertia[2].x*result.z;
+		float y = inertia[0].y*result.x+inertia[1].y*result.y+inertia[2].y*result.z;
+		float z = inertia[0].z*result.x+inertia[1].z*result.y+inertia[2].z*result.z;
+		result.x = x;
+		result.y = y;
+		result.z = z;
+		return orientation.rotateInverse(result, result);
+	}
+	
+	static float inverseMass(GameObject object){
+		return object.isFixed() ? 0 : object.massInv;
+	}
+	
+	/**
+	 * Converts the given world point into the local space of the given object, the meshes are rotated by the
+	 * inverse of their orientation
+	 */
+	private static void toLocal(GameObject object, Vec3 point, Vec3 result){
+		result.set(point).subtract(object.position);
+		object.mesh.getOrientation().rotate(result, result);
+	}
+	
+	private static void toWorld(GameObject object, Vec3 point, Vec3 result){
+		object.mesh.getOrientation().rotateInverse(point, result);
+		result.add(object.position);
+	}
+	
+	/**
+	 * Computes two friction directions orthogonal to the given normal, the directions only depend on the normal
+	 * so the accumulated friction impulses stay valid between frames
+	 */
+	static void computeBasis(Vec3 normal, Vec3 tangent1, Vec3 tangent2){
+		if(Math.abs(normal.x) >= .57735f){
+			tangent1.x = normal.y;
+			tangent1.y = -normal.x;
+			tangent1.z = 0;
+		}else{
+			tangent1.x = 0;
+			tangent1.y = normal.z;
+			tangent1.z = -normal.y;
+		}
+		tangent1.normalize();
+		normal.cross(tangent1, tangent2);
+	}
+	
+	/**
+	 * Finds the point to replace with a new point when the manifold is full, the deepest point is always kept and of
+	 * the others the one whose replacement leaves the manifold covering the largest area is replaced. When the new
+	 * point is deeper than all of the others it is always kept, replacing the point that leaves the largest area
+	 * 
+	 * @return Index of the point to replace or -1 if the new point isn't the deepest and wouldn't increase the area of
+	 * the manifold
+	 */
+	private int replaceIndex(Vec3 newPoint, float newDepth){
+		int deepest = -1;
+		float maxDepth = newDepth;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			if(points[curPoint].depth > maxDepth){
+				maxDepth = points[curPoint].depth;
+				deepest = curPoint;
 			}
 		}
-//		CollisionData curContact = contactData.get(0);
-//		//velocity relative to object A (this)
-//		Vec3 aRelB = VecUtil.subtract(contactB.velocity, contactA.velocity);
-//		//the magnitude of the end velocity
-//		float velAlongNormal = aRelB.dot(curContact.normal);
-////		curContact.normal.print();
-//		if (velAlongNormal > 0) {
-//			float sumInv = contactA.massInv+contactB.massInv;
-//			//calculation of impulses of a collision
-//			float elasticCoeff = (contactA.restitution > contactB.restitution ? contactB.restitution : contactA.restitution);
-//			
-//			Vec3 pointA = (Vec3)VecUtil.subtract(curContact.contactA, contactA.position);
-//			Vec3 pointB = (Vec3)VecUtil.subtract(curContact.contactB, contactB.position);
-//			
-//			Vec3 raCrossN = pointA.cross(curContact.normal);
-//			Vec3 rbCrossN = pointB.cross(curContact.normal);
-//			
-//			//map the inertia tensor to be oriented to the objects current orientation, since it was computed when the object was at rest
-//			Mat3 aFinalInertia = (Mat3)MatrixUtil.multiply(contactA.mesh.getOrientation().asRotMatrix(), contactA.invInertiaTensor);
-//			Mat3 bFinalInertia = (Mat3)MatrixUtil.multiply(contactB.mesh.getOrientation().asRotMatrix(), contactB.invInertiaTensor);
-//			
-//			
-//			/* raCrossN = torque(force being applied to the angular component of the object)
-//			 * aFinalInertia.multVec(raCrossN) = rotation (amount of movement per unit of torque)
-//			 */
-//			//the angular resistance to change
-//			float angularInertiaA = raCrossN.dot(aFinalInertia.multVec(raCrossN));
-//			float angularInertiaB = rbCrossN.dot(bFinalInertia.multVec(rbCrossN));
-//			
-//			//the total resistance of the collision to change
-//			float totalInertia = sumInv + angularInertiaA + angularInertiaB;
-//			
-//			//the total change in the velocity of the collision in this instant
-//			float impulse = (1+elasticCoeff)*(velAlongNormal+raCrossN.dot(contactA.angVel)+rbCrossN.dot(contactB.angVel))
-//					/totalInertia;
-//			
-////			System.out.println(velAlongNormal);
-////			System.out.println(raCrossN.dot(contactA.angVel));
-////			System.out.println(rbCrossN.dot(contactB.angVel));
-////			System.out.println(totalInertia);
-////			System.out.println(impulse);
-////			System.out.println();
-//			
-//			//the vector representing the impulse applied in the direction of the contact normal
-//			Vec3 impulseVec = new Vec3(curContact.normal).scale(impulse);
-//			
-//			contactA.velocity.add(new Vec3(curContact.normal).scale(contactA.massInv * impulse));
-//			contactB.velocity.add(new Vec3(curContact.normal).scale(contactB.massInv * -impulse));
-//			
-//			//the torque being applied to the bodies by the impulse
-//			Vec3 angularImpulseA = contactA.invInertiaTensor.multVec(impulseVec.cross(pointA));
-//			Vec3 angularImpulseB = contactB.invInertiaTensor.multVec(impulseVec.scale(-1).cross(pointB));
-//			
-//			contactA.angVel.add(angularImpulseA);
-//			contactB.angVel.add(angularImpulseB);
-//			
-//			//frictional tangent vector 
-//			Vec3 frictionVec = VecUtil.subtract(aRelB, new Vec3(curContact.normal).scale(velAlongNormal));
-//			frictionVec.trunc();
-//			
-//			if(!frictionVec.isZero()){
-//				frictionVec.normalize();
-//				float fImpulse = aRelB.dot(frictionVec)/sumInv;
-////				float fImpulse = aRelB.dot(frictionVec)/totalInertia;
-//				float coeffFric = (contactA.sFriction+contactB.sFriction)/2.0f;
-//				
-//				if(fImpulse < impulse*coeffFric){
-//					contactA.velocity.add(new Vec3(frictionVec).scale(contactA.massInv*fImpulse));
-//					contactB.velocity.add(new Vec3(frictionVec).scale(contactB.massInv*-fImpulse));
-//					
-////					contactA.angVel.add(contactA.inertiaTensor.multVec(new Vec3(frictionVec).scale(fImpulse)));
-////					contactB.angVel.add(contactB.inertiaTensor.multVec(new Vec3(frictionVec).scale(-fImpulse)));
-//				}else{
-//					coeffFric = (contactA.dFriction+contactB.dFriction)/2.0f;
-//					contactA.velocity.add(new Vec3(frictionVec).scale(contactA.massInv*impulse*coeffFric));
-//					contactB.velocity.add(new Vec3(frictionVec).scale(contactB.massInv*-impulse*coeffFric));
-//					
-////					contactA.angVel.add(contactA.inertiaTensor.multVec(new Vec3(frictionVec).scale(impulse*coeffFric)));
-////					contactB.angVel.add(contactB.inertiaTensor.multVec(new Vec3(frictionVec).scale(-impulse*coeffFric)));
-//				}
-//			}
-//			
-//			float correction = (curContact.depth > 0 ? curContact.depth : 0)/(totalInertia);
-//			Vec3 restCorrection = new Vec3(curContact.normal).scale(contactA.massInv*correction);
-//			contactA.mesh.translate(restCorrection);
-//	//		contactA.collider.translate(restCorrection);
-//			contactA.position.add(restCorrection);
-//			//rotational correction
-//			contactA.mesh.setOrientation(contactA.mesh.getOrientation().addVector(
-//					contactA.invInertiaTensor.multVec(new Vec3(curContact.normal).scale(correction))));
-//			
-//			//resolve for object B
-//			Vec3 bRestCorr = new Vec3(curContact.normal).scale(contactB.massInv*-correction);
-//			contactB.mesh.translate(bRestCorr);
-//	//		contactB.collider.translate(bRestCorr);
-//			contactB.position.add(bRestCorr);
-//			//adding a negative component currently causes infinite looping somewhere
-//			contactB.mesh.setOrientation(contactB.mesh.getOrientation().addVector(
-//					contactB.invInertiaTensor.multVec(new Vec3(curContact.normal).scale(-correction))));//			contactB.mesh.setOrientation(contactB.mesh.getOrientation().addVector(contactB.invInertiaTensor.multVec(new Vec3(curContact.normal).scale(-correction))));
-//		}
+		int replace = -1;
+		float maxArea = -1;
+		//a point that isn't the deepest is only kept if it grows the area of the current manifold
+		if(deepest != -1){
+			maxArea = crossLengthSq(points[0].localA, points[1].localA, points[2].localA, points[3].localA);
+			maxArea = Math.max(maxArea, Math.max(crossLengthSq(points[0].localA, points[2].localA, points[1].localA, points[3].localA),
+					crossLengthSq(points[0].localA, points[3].localA, points[1].localA, points[2].localA)));
+		}
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			if(curPoint == deepest){
+				continue;
+			}
+			//the area is estimated from the largest cross product of the diagonals of the remaining points
+			Vec3 p0 = points[(curPoint+1)%MAX_POINTS].localA;
+			Vec3 p1 = points[(curPoint+2)%MAX_POINTS].localA;
+			Vec3 p2 = points[(curPoint+3)%MAX_POINTS].localA;
+			float area = Math.max(crossLengthSq(newPoint, p0, p1, p2),
+					Math.max(crossLengthSq(newPoint, p1, p0, p2), crossLengthSq(newPoint, p2, p0, p1)));
+			if(area > maxArea){
+				maxArea = area;
+				replace = curPoint;
+			}
+		}
+		return replace;
+	}
+	
+	/**
+	 * Computes the squared length of the cross product of a-b and c-d
+	 */
+	private static float crossLengthSq(Vec3 a, Vec3 b, Vec3 c, Vec3 d){
+		float abX = a.x-b.x, abY = a.y-b.y, abZ = a.z-b.z;
+		float cdX = c.x-d.x, cdY = c.y-d.y, cdZ = c.z-d.z;
+		float x = abY*cdZ-abZ*cdY;
+		float y = abZ*cdX-abX*cdZ;
+		float z = abX*cdY-abY*cdX;
+		return x*x+y*y+z*z;
+	}
+	
+	private static float distanceSq(Vec3 a, Vec3 b){
+		float x = a.x-b.x, y = a.y-b.y, z = a.z-b.z;
+		return x*x+y*y+z*z;
+	}
+	
+	private void remove(int index){
+		ContactPoint removed = points[index];
+		points[index] = points[numPoints-1];
+		points[numPoints-1] = removed;
+		numPoints--;
+	}
+	
+	public int getNumPoints(){
+		return numPoints;
+	}
+	
+	public ContactPoint getPoint(int index){
+		return points[index];
+	}
+	
+	public GameObject getObjectA(){
+		return contactA;
+	}
+	
+	public GameObject getObjectB(){
+		return contactB;
+	}
+	
+	@Override
+	public boolean equals(Object o){
+		if(o instanceof ContactPair){
+			ContactPair cast = (ContactPair)o;
+			return (cast.contactA == contactA && cast.contactB == contactB) || (cast.contactA == contactB && cast.contactB == contactA);
+		}else{
+			return false;
+		}
+	}
+	
+	@Override
+	public int hashCode(){
+		//order independent so that the same pair of objects in either order hashes the same
+		return System.identityHashCode(contactA)^System.identityHashCode(contactB);
 	}
 	
 	/*public void resolve(){
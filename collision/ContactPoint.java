@@ -0,0 +1,50 @@
+package collision;
+
+import glMath.Vec3;
+
+/**
+ * Single point of a persistent contact manifold. The point is stored in the local space of both objects so that it
+ * can be matched against new contacts and checked for drift as the objects move, along with the impulses the solver
+ * accumulated for it which are used to warm start the solve of the next frame.
+ * 
+ * @author Kevin
+ *
+ */
+public class ContactPoint {
+	//contact points in the local space of each object
+	public Vec3 localA, localB;
+	//contact points in world space and the normal of the contact pointing from object B towards object A
+	public Vec3 pointA, pointB, normal;
+	//friction directions orthogonal to the normal
+	public Vec3 tangent1, tangent2;
+	//offsets of the world contact points from the positions of the objects
+	public Vec3 offsetA, offsetB;
+	public float depth;
+	//impulses accumulated by the solver along the normal and the two friction directions
+	public float normalImpulse, tangentImpulse1, tangentImpulse2;
+	//effective masses along the normal and friction directions and the target normal velocity of the solver
+	public float normalMass, tangentMass1, tangentMass2, velocityBias;
+	//number of frames this point has persisted for
+	public int lifetime;
+	
+	public ContactPoint(){
+		localA = new Vec3();
+		localB = new Vec3();
+		pointA = new Vec3();
+		pointB = new Vec3();
+		normal = new Vec3();
+		tangent1 = new Vec3();
+		tangent2 = new Vec3();
+		offsetA = new Vec3();
+		offsetB = new Vec3();
+	}
+	
+	/**
+	 * Clears the accumulated impulses of this point
+	 */
+	public void clearImpulses(){
+		normalImpulse = 0;
+		tangentImpulse1 = 0;
+		tangentImpulse2 = 0;
+	}
+}
@@ -1,30 +1,222 @@
 package collision;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 
+import core.GameObject;
+
+/**
+ * Register of the persistent contact manifolds between game objects. Contacts found by the narrowphase are merged
+ * into the manifold of their pair so the impulses accumulated by the solver carry over from frame to frame, and
+ * the manifolds are kept in the order their pairs first came into contact so they are solved in the same order
+ * every run.
+ * 
+ * @author Kevin
+ *
+ */
 public class ContactRegister {
-	private HashMap<ContactPair, ContactPair> contacts;
+	private LinkedHashMap<CandidatePair, ContactPair> contacts;
 	private ArrayList<ContactPair> toResolve;
+	//broadphase pairs in the order they started overlapping
+	private LinkedHashSet<CandidatePair> candidates;
+	//reusable key for looking up the manifold of a pair without allocating
+	private CandidatePair probe;
+	private ContactSolver solver;
+	//gjk cache of the narrowphase, its pairs are dropped along with the candidates
+	private GJKPairCache pairCache;
 	
 	public ContactRegister(){
-		contacts = new HashMap<ContactPair, ContactPair>();
+		contacts = new LinkedHashMap<CandidatePair, ContactPair>();
 		toResolve = new ArrayList<ContactPair>();
+		candidates = new LinkedHashSet<CandidatePair>();
+		probe = new CandidatePair(null, null);
+		solver = new ContactSolver();
 	}
 	
+	/**
+	 * Adds the points of the given contact pair to the manifold of its objects, the pair becomes the manifold of
+	 * its objects if they don't already have one
+	 * 
+	 * @param newContact Contact pair to add
+	 */
 	public void add(ContactPair newContact){
-		if(contacts.containsKey(newContact)){
-			contacts.get(newContact).addContact(newContact.getContacts().get(0));
-			toResolve.add(contacts.get(newContact));
-		}else{
-			contacts.put(newContact, newContact);
-			toResolve.add(newContact);
+		ContactPair pair = getPair(newContact.getObjectA(), newContact.getObjectB());
+		if(pair == null){
+			contacts.put(new CandidatePair(newContact.getObjectA(), newContact.getObjectB()), newContact);
+		}else if(pair != newContact){
+			pair.addContacts(newContact);
 		}
 	}
 	
-	public void resolve(int iterations){
-		for(ContactPair pair : toResolve){
-			pair.resolve(iterations);
+	/**
+	 * Adds the contacts found between the given objects to their manifold, creating the manifold if they don't have one
+	 * 
+	 * @param objA First object the contact was found for
+	 * @param objB Second object the contact was found for
+	 * @param data Collision data of the contact with the normal pointing from objB towards objA
+	 * @return Manifold of the two objects
+	 */
+	public ContactPair add(GameObject objA, GameObject objB, CollisionData data){
+		ContactPair pair = getPair(objA, objB);
+		if(pair == null){
+			pair = new ContactPair(objA, objB);
+			contacts.put(new CandidatePair(objA, objB), pair);
+		}
+		pair.addContact(data, pair.getObjectA() != objA);
+		return pair;
+	}
+	
+	/**
+	 * Gets the manifold of the given objects
+	 * 
+	 * @param objA First object of the pair
+	 * @param objB Second object of the pair
+	 * @return Manifold of the objects or null if they aren't in contact
+	 */
+	public ContactPair getPair(GameObject objA, GameObject objB){
+		probe.objA = objA;
+		probe.objB = objB;
+		ContactPair pair = contacts.get(probe);
+		probe.objA = null;
+		probe.objB = null;
+		return pair;
+	}
+	
+	/**
+	 * Applies the changes in overlapping pairs reported by a broadphase to the candidates of this register, the
+	 * manifolds of pairs that stopped overlapping are dropped so only the changed pairs are processed
+	 * 
+	 * @param added Pairs that started overlapping
+	 * @param removed Pairs that stopped overlapping
+	 */
+	public void updateCandidates(ArrayList<CandidatePair> added, ArrayList<CandidatePair> removed){
+		for(int curPair = 0; curPair < removed.size(); curPair++){
+			CandidatePair pair = removed.get(curPair);
+			candidates.remove(pair);
+			contacts.remove(pair);
+			if(pairCache != null){
+				//candidates match in either order but the cache is keyed on the order the pair was tested in
+				CollisionMesh meshA = pair.objA.mesh.getCollisionMesh();
+				CollisionMesh meshB = pair.objB.mesh.getCollisionMesh();
+				pairCache.remove(meshA, meshB);
+				pairCache.remove(meshB, meshA);
+			}
 		}
+		candidates.addAll(added);
+	}
+	
+	/**
+	 * Drops the manifolds and candidate pairs of an object that is being removed from the simulation, the objects it
+	 * was in contact with are woken since the contacts that held them up are gone
+	 * 
+	 * @param object Object to remove
+	 * @return Number of manifolds that were dropped
+	 */
+	public int remove(GameObject object){
+		int removed = 0;
+		Iterator<ContactPair> pairs = contacts.values().iterator();
+		while(pairs.hasNext()){
+			ContactPair pair = pairs.next();
+			GameObject other = null;
+			if(pair.getObjectA() == object){
+				other = pair.getObjectB();
+			}else if(pair.getObjectB() == object){
+				other = pair.getObjectA();
+			}
+			if(other != null){
+				pairs.remove();
+				other.wake();
+				removed++;
+			}
+		}
+		Iterator<CandidatePair> candidatePairs = candidates.iterator();
+		while(candidatePairs.hasNext()){
+			CandidatePair pair = candidatePairs.next();
+			if(pair.objA == object || pair.objB == object){
+				candidatePairs.remove();
+			}
+		}
+		if(pairCache != null){
+			pairCache.remove(object.mesh.getCollisionMesh());
+		}
+		return removed;
+	}
+	
+	/**
+	 * Gets the broadphase pairs that are currently overlapping, these are the pairs that need to go through the narrowphase
+	 * 
+	 * @return Collection of the candidate pairs
+	 */
+	public Collection<CandidatePair> getCandidates(){
+		return candidates;
+	}
+	
+	/**
+	 * Resolves the contacts of all manifolds. The manifolds are refreshed against the current transforms of their
+	 * objects first and manifolds left without points are dropped, then the contacts of all manifolds are solved
+	 * together by the contact solver so that contacts sharing an object converge together. Manifolds without an
+	 * active object are skipped.
+	 * 
+	 * @param iterations Number of solver iterations to run
+	 */
+	public void resolve(int iterations){
 		toResolve.clear();
+		Iterator<ContactPair> pairs = contacts.values().iterator();
+		while(pairs.hasNext()){
+			ContactPair pair = pairs.next();
+			//manifolds between sleeping or fixed objects are kept as they are until one of the objects wakes
+			if(!pair.getObjectA().isActive() && !pair.getObjectB().isActive()){
+				continue;
+			}
+			pair.refresh();
+			if(pair.getNumPoints() == 0){
+				pairs.remove();
+			}else{
+				toResolve.add(pair);
+			}
+		}
+		solver.solve(toResolve, iterations);
+		for(int curPair = 0; curPair < toResolve.size(); curPair++){
+			toResolve.get(curPair).correctPositions();
+		}
+	}
+	
+	/**
+	 * Gets the manifolds in this register in the order their pairs came into contact
+	 * 
+	 * @return Collection of the manifolds
+	 */
+	public Collection<ContactPair> getPairs(){
+		return contacts.values();
+	}
+	
+	/**
+	 * Gets the solver used to resolve the manifolds, this can be given a pool to solve the manifolds in parallel
+	 * 
+	 * @return Contact solver of this register
+	 */
+	public ContactSolver getSolver(){
+		return solver;
+	}
+	
+	/**
+	 * Gets the number of manifolds in this register
+	 * 
+	 * @return Number of manifolds
+	 */
+	public int size(){
+		return contacts.size();
+	}
+	
+	/**
+	 * Sets the gjk cache whose pairs are removed when their candidate pairs stop overlapping or their objects are
+	 * removed
+	 * 
+	 * @param pairCache Cache of the narrowphase, or null if it doesn't use one
+	 */
+	public void setPairCache(GJKPairCache pairCache){
+		this.pairCache = pairCache;
 	}
 }
@@ -0,0 +1,592 @@
+package collision;
+
+import glMath.Quaternion;
+import glMath.Vec3;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import core.GameObject;
+
+/**
+ * Sequential impulse solver that works on flat arrays instead of the game objects. At the start of a solve the
+ * velocities, inverse masses and world space inverse inertia tensors of the bodies in the given manifolds are
+ * copied into arrays once, every contact point is turned into three constraint rows along the normal and the two
+ * friction directions, and the iterations then only read and write those arrays. The velocities and the
+ * accumulated impulses are written back to the objects and contact points once at the end so the next step can
+ * warm start from them.
+ * 
+ * Rows are stored in groups of three per point, the normal row followed by the two friction rows.
+ * 
+ * When the solver is given a fork join pool the manifolds are coloured so that no two manifolds of the same colour
+ * share an object with finite mass, and each iteration solves the colours one after another with the manifolds of
+ * a colour split across the workers. Manifolds of the same colour never write to the same object so the workers
+ * don't need any locks, and since the order the manifolds of a colour are solved in doesn't change the result, the
+ * results are the same for any number of threads. Objects with infinite mass are never written to so they don't
+ * count towards the colouring.
+ * 
+ * @author Kevin
+ *
+ */
+public class ContactSolver {
+	
+	private static final int ROWS_PER_POINT = 3;
+	//number of colours tracked per object, manifolds that can't be given one of these are solved on their own at the end
+	private static final int MAX_COLOURS = 64;
+	private static final int DEFAULT_GRAIN_SIZE = 32;
+	
+	//per body state, vectors are stored as consecutive x, y, z and inertia tensors as 9 floats in row major order
+	private GameObject[] bodies;
+	private float[] velocity, angVelocity, invMass, invInertia;
+	private int numBodies;
+	private IdentityHashMap<GameObject, Integer> bodyIndices;
+	
+	//per point state
+	private ContactPoint[] points;
+	private int[] bodyA, bodyB;
+	private float[] friction;
+	private int numPoints;
+	
+	//per manifold state, the points of each manifold are stored in a range starting at its start
+	private int[] manifoldStart;
+	private int numManifolds;
+	
+	//manifolds ordered by colour, the manifolds of each colour start at the start of the colour
+	private long[] bodyColours;
+	private int[] colouredManifolds, colourStart;
+	//scratch arrays used while sorting the manifolds by colour
+	private int[] manifoldColours, colourOffsets;
+	private int numColours;
+	private ForkJoinPool pool;
+	private int grainSize;
+	
+	//per row state
+	private float[] direction, angularA, angularB, invAngularA, invAngularB;
+	private float[] effectiveMass, bias, impulse;
+	
+	private Vec3 column, temp;
+	
+	public ContactSolver(){
+		this(64, 256);
+	}
+	
+	/**
+	 * Constructs a contact solver with room for the given number of bodies and points, the arrays grow as needed
+	 * 
+	 * @param bodyCapacity Number of bodies to allocate room for
+	 * @param pointCapacity Number of contact points to allocate room for
+	 */
+	public ContactSolver(int bodyCapacity, int pointCapacity){
+		this(bodyCapacity, pointCapacity, null, DEFAULT_GRAIN_SIZE);
+	}
+	
+	/**
+	 * Constructs a contact solver that solves colours of manifolds across the workers of the given pool
+	 * 
+	 * @param bodyCapacity Number of bodies to allocate room for
+	 * @param pointCapacity Number of contact points to allocate room for
+	 * @param pool Pool to solve the manifolds on, or null to solve them on the calling thread
+	 * @param grainSize Number of manifolds below which a range of a colour is no longer split into smaller tasks
+	 */
+	public ContactSolver(int bodyCapacity, int pointCapacity, ForkJoinPool pool, int grainSize){
+		this.pool = pool;
+		this.grainSize = Math.max(grainSize, 1);
+		colourStart = new int[MAX_COLOURS+2];
+		colourOffsets = new int[MAX_COLOURS+2];
+		manifoldStart = new int[64];
+		colouredManifolds = new int[64];
+		manifoldColours = new int[64];
+		bodyIndices = new IdentityHashMap<GameObject, Integer>();
+		column = new Vec3();
+		temp = new Vec3();
+		allocateBodies(Math.max(bodyCapacity, 1));
+		allocatePoints(Math.max(pointCapacity, 1));
+	}
+	
+	/**
+	 * Solves the contacts of the given manifolds, the manifolds should be refreshed beforehand. Position
+	 * correction is left to the manifolds.
+	 * 
+	 * @param manifolds Manifolds to solve
+	 * @param iterations Number of solver iterations to run
+	 */
+	public void solve(List<ContactPair> manifolds, int iterations){
+		gatherBodies(manifolds);
+		gatherPoints(manifolds);
+		warmStart();
+		if(pool == null || numManifolds <= grainSize){
+			for(int curIter = 0; curIter < iterations; curIter++){
+				iterate();
+			}
+		}else{
+			colour();
+			for(int curIter = 0; curIter < iterations; curIter++){
+				iterateColours();
+			}
+		}
+		scatter();
+	}
+	
+	/**
+	 * Copies the state of every body in the given manifolds into the body arrays, computing the world space inverse
+	 * inertia of each body once
+	 */
+	private void gatherBodies(List<ContactPair> manifolds){
+		bodyIndices.clear();
+		numBodies = 0;
+		for(int curPair = 0; curPair < manifolds.size(); curPair++){
+			ContactPair pair = manifolds.get(curPair);
+			addBody(pair.getObjectA());
+			addBody(pair.getObjectB());
+		}
+	}
+	
+	private void addBody(GameObject object){
+		if(bodyIndices.containsKey(object)){
+			return;
+		}
+		if(numBodies == bodies.length){
+			growBodies();
+		}
+		int index = numBodies++;
+		bodyIndices.put(object, index);
+		bodies[index] = object;
+		int vec = index*3;
+		velocity[vec] = object.velocity.x;
+		velocity[vec+1] = object.velocity.y;
+		velocity[vec+2] = object.velocity.z;
+		angVelocity[vec] = object.angVel.x;
+		angVelocity[vec+1] = object.angVel.y;
+		angVelocity[vec+2] = object.angVel.z;
+		invMass[index] = ContactPair.inverseMass(object);
+		
+		int mat = index*9;
+		if(invMass[index] == 0){
+			for(int curElem = 0; curElem < 9; curElem++){
+				invInertia[mat+curElem] = 0;
+			}
+			return;
+		}
+		//the meshes are rotated by the inverse of their orientation so the world inverse inertia of a vector is
+		//the local inverse inertia of the vector rotated into local space, rotated back out to world space
+		Quaternion orientation = object.mesh.getOrientation();
+		Vec3[] local = object.invInertiaTensor.getMatrix();
+		for(int curCol = 0; curCol < 3; curCol++){
+			column.x = curCol == 0 ? 1 : 0;
+			column.y = curCol == 1 ? 1 : 0;
+			column.z = curCol == 2 ? 1 : 0;
+			orientation.rotate(column, temp);
+			column.x = local[0].x*temp.x+local[1].x*temp.y+local[2].x*temp.z;
+			column.y = local[0].y*temp.x+local[1].y*temp.y+local[2].y*temp.z;
+			column.z = local[0].z*temp.x+local[1].z*temp.y+local[2].z*temp.z;
+			orientation.rotateInverse(column, temp);
+			invInertia[mat+curCol] = temp.x;
+			invInertia[mat+3+curCol] = temp.y;
+			invInertia[mat+6+curCol] = temp.z;
+		}
+	}
+	
+	/**
+	 * Builds the constraint rows of every point in the given manifolds, computing the restitution targets from the
+	 * velocities before the warm start is applied
+	 */
+	private void gatherPoints(List<ContactPair> manifolds){
+		numPoints = 0;
+		numManifolds = manifolds.size();
+		if(manifoldStart.length <= numManifolds){
+			manifoldStart = new int[Integer.highestOneBit(numManifolds)*2];
+			colouredManifolds = new int[manifoldStart.length];
+			manifoldColours = new int[manifoldStart.length];
+		}
+		for(int curPair = 0; curPair < manifolds.size(); curPair++){
+			manifoldStart[curPair] = numPoints;
+			ContactPair pair = manifolds.get(curPair);
+			GameObject objA = pair.getObjectA();
+			GameObject objB = pair.getObjectB();
+			int indexA = bodyIndices.get(objA);
+			int indexB = bodyIndices.get(objB);
+			float pairFriction = (objA.sFriction+objB.sFriction)/2.0f;
+			float restitution = (objA.restitution > objB.restitution ? objB.restitution : objA.restitution);
+			
+			for(int curPoint = 0; curPoint < pair.getNumPoints(); curPoint++){
+				if(numPoints == points.length){
+					growPoints();
+				}
+				ContactPoint point = pair.getPoint(curPoint);
+				int index = numPoints++;
+				points[index] = point;
+				bodyA[index] = indexA;
+				bodyB[index] = indexB;
+				friction[index] = pairFriction;
+				
+				point.offsetA.set(point.pointA).subtract(objA.position);
+				point.offsetB.set(point.pointB).subtract(objB.position);
+				ContactPair.computeBasis(point.normal, point.tangent1, point.tangent2);
+				
+				int row = index*ROWS_PER_POINT;
+				setRow(row, point, point.normal, indexA, indexB);
+				setRow(row+1, point, point.tangent1, indexA, indexB);
+				setRow(row+2, point, point.tangent2, indexA, indexB);
+				impulse[row] = point.normalImpulse;
+				impulse[row+1] = point.tangentImpulse1;
+				impulse[row+2] = point.tangentImpulse2;
+				
+				//only contacts approaching faster than the threshold bounce
+				float normalVel = relativeVelocity(row, indexA, indexB);
+				bias[row] = normalVel < -ContactPair.RESTITUTION_THRESHOLD ? -restitution*normalVel : 0;
+				bias[row+1] = 0;
+				bias[row+2] = 0;
+			}
+		}
+		manifoldStart[numManifolds] = numPoints;
+	}
+	
+	/**
+	 * Fills in the jacobian of the given row, with the relative velocity of the points being the velocity of the
+	 * point on A minus the velocity of the point on B the angular parts are the direction crossed with the offset
+	 * of A and the offset of B crossed with the direction
+	 */
+	private void setRow(int row, ContactPoint point, Vec3 dir, int indexA, int indexB){
+		int vec = row*3;
+		direction[vec] = dir.x;
+		direction[vec+1] = dir.y;
+		direction[vec+2] = dir.z;
+		
+		Vec3 offsetA = point.offsetA;
+		angularA[vec] = dir.y*offsetA.z-dir.z*offsetA.y;
+		angularA[vec+1] = dir.z*offsetA.x-dir.x*offsetA.z;
+		angularA[vec+2] = dir.x*offsetA.y-dir.y*offsetA.x;
+		Vec3 offsetB = point.offsetB;
+		angularB[vec] = offsetB.y*dir.z-offsetB.z*dir.y;
+		angularB[vec+1] = offsetB.z*dir.x-offsetB.x*dir.z;
+		angularB[vec+2] = offsetB.x*dir.y-offsetB.y*dir.x;
+		
+		multiply(indexA, angularA, invAngularA, vec);
+		multiply(indexB, angularB, invAngularB, vec);
+		
+		float inverse = invMass[indexA]+invMass[indexB]
+				+angularA[vec]*invAngularA[vec]+angularA[vec+1]*invAngularA[vec+1]+angularA[vec+2]*invAngularA[vec+2]
+				+angularB[vec]*invAngularB[vec]+angularB[vec+1]*invAngularB[vec+1]+angularB[vec+2]*invAngularB[vec+2];
+		effectiveMass[row] = inverse > 0 ? 1/inverse : 0;
+	}
+	
+	/**
+	 * Multiplies the vector at the given offset by the world inverse inertia of the given body
+	 */
+	private void multiply(int body, float[] vector, float[] result, int vec){
+		int mat = body*9;
+		float x = vector[vec], y = vector[vec+1], z = vector[vec+2];
+		result[vec] = invInertia[mat]*x+invInertia[mat+1]*y+invInertia[mat+2]*z;
+		result[vec+1] = invInertia[mat+3]*x+invInertia[mat+4]*y+invInertia[mat+5]*z;
+		result[vec+2] = invInertia[mat+6]*x+invInertia[mat+7]*y+invInertia[mat+8]*z;
+	}
+	
+	/**
+	 * Applies the impulses accumulated in the last step
+	 */
+	private void warmStart(){
+		int numRows = numPoints*ROWS_PER_POINT;
+		for(int curRow = 0; curRow < numRows; curRow++){
+			if(impulse[curRow] != 0){
+				int index = curRow/ROWS_PER_POINT;
+				applyImpulse(curRow, bodyA[index], bodyB[index], impulse[curRow]);
+			}
+		}
+	}
+	
+	/**
+	 * Runs a single iteration over all points in the order they were gathered
+	 */
+	private void iterate(){
+		solvePoints(0, numPoints);
+	}
+	
+	/**
+	 * Colours the manifolds greedily in the order they were given, each manifold gets the lowest colour not used
+	 * by another manifold of one of its objects with finite mass
+	 */
+	private void colour(){
+		if(bodyColours == null || bodyColours.length < numBodies){
+			bodyColours = new long[bodies.length];
+		}
+		for(int curBody = 0; curBody < numBodies; curBody++){
+			bodyColours[curBody] = 0;
+		}
+		for(int curColour = 0; curColour < colourStart.length; curColour++){
+			colourStart[curColour] = 0;
+		}
+		
+		numColours = 0;
+		for(int curManifold = 0; curManifold < numManifolds; curManifold++){
+			int start = manifoldStart[curManifold];
+			if(start == manifoldStart[curManifold+1]){
+				manifoldColours[curManifold] = MAX_COLOURS;
+				colourStart[MAX_COLOURS+1]++;
+				continue;
+			}
+			int indexA = bodyA[start];
+			int indexB = bodyB[start];
+			long used = (invMass[indexA] != 0 ? bodyColours[indexA] : 0)|(invMass[indexB] != 0 ? bodyColours[indexB] : 0);
+			int colour = Long.numberOfTrailingZeros(~used);
+			if(colour < MAX_COLOURS){
+				if(invMass[indexA] != 0){
+					bodyColours[indexA] |= 1L << colour;
+				}
+				if(invMass[indexB] != 0){
+					bodyColours[indexB] |= 1L << colour;
+				}
+				numColours = Math.max(numColours, colour+1);
+			}
+			manifoldColours[curManifold] = colour;
+			colourStart[colour+1]++;
+		}
+		
+		//counting sort of the manifolds by colour keeping them in order within each colour
+		for(int curColour = 0; curColour <= MAX_COLOURS; curColour++){
+			colourStart[curColour+1] += colourStart[curColour];
+		}
+		System.arraycopy(colourStart, 0, colourOffsets, 0, colourStart.length);
+		for(int curManifold = 0; curManifold < numManifolds; curManifold++){
+			colouredManifolds[colourOffsets[manifoldColours[curManifold]]++] = curManifold;
+		}
+	}
+	
+	/**
+	 * Runs a single iteration colour by colour, splitting the manifolds of each colour across the pool
+	 */
+	private void iterateColours(){
+		for(int curColour = 0; curColour < numColours; curColour++){
+			int start = colourStart[curColour];
+			int end = colourStart[curColour+1];
+			if(end-start <= grainSize){
+				solveManifolds(start, end);
+			}else{
+				pool.invoke(new ColourTask(start, end));
+			}
+		}
+		//manifolds that couldn't be coloured and empty manifolds are solved on this thread
+		solveManifolds(colourStart[MAX_COLOURS], colourStart[MAX_COLOURS+1]);
+	}
+	
+	/**
+	 * Solves the manifolds in the given range of the coloured manifolds
+	 */
+	private void solveManifolds(int start, int end){
+		for(int curManifold = start; curManifold < end; curManifold++){
+			int manifold = colouredManifolds[curManifold];
+			solvePoints(manifoldStart[manifold], manifoldStart[manifold+1]);
+		}
+	}
+	
+	/**
+	 * Solves the points in the given range, friction is solved first so the normal impulse has the last say on
+	 * penetration
+	 */
+	private void solvePoints(int start, int end){
+		for(int curPoint = start; curPoint < end; curPoint++){
+			int indexA = bodyA[curPoint];
+			int indexB = bodyB[curPoint];
+			int row = curPoint*ROWS_PER_POINT;
+			float maxFriction = friction[curPoint]*impulse[row];
+			
+			for(int curRow = row+1; curRow < row+ROWS_PER_POINT; curRow++){
+				float lambda = -relativeVelocity(curRow, indexA, indexB)*effectiveMass[curRow];
+				float newImpulse = Math.max(-maxFriction, Math.min(impulse[curRow]+lambda, maxFriction));
+				lambda = newImpulse-impulse[curRow];
+				impulse[curRow] = newImpulse;
+				applyImpulse(curRow, indexA, indexB, lambda);
+			}
+			
+			float lambda = (bias[row]-relativeVelocity(row, indexA, indexB))*effectiveMass[row];
+			float newImpulse = Math.max(impulse[row]+lambda, 0);
+			lambda = newImpulse-impulse[row];
+			impulse[row] = newImpulse;
+			applyImpulse(row, indexA, indexB, lambda);
+		}
+	}
+	
+	/**
+	 * Computes the relative velocity of the points of the given row along its direction
+	 */
+	private float relativeVelocity(int row, int indexA, int indexB){
+		int vec = row*3;
+		int a = indexA*3;
+		int b = indexB*3;
+		return direction[vec]*(velocity[a]-velocity[b])
+				+direction[vec+1]*(velocity[a+1]-velocity[b+1])
+				+direction[vec+2]*(velocity[a+2]-velocity[b+2])
+				+angularA[vec]*angVelocity[a]+angularA[vec+1]*angVelocity[a+1]+angularA[vec+2]*angVelocity[a+2]
+				+angularB[vec]*angVelocity[b]+angularB[vec+1]*angVelocity[b+1]+angularB[vec+2]*angVelocity[b+2];
+	}
+	
+	private void applyImpulse(int row, int indexA, int indexB, float lambda){
+		int vec = row*3;
+		int a = indexA*3;
+		int b = indexB*3;
+		//objects with infinite mass are shared between colours so they must never be written to
+		if(invMass[indexA] != 0){
+			float linearA = lambda*invMass[indexA];
+			velocity[a] += direction[vec]*linearA;
+			velocity[a+1] += direction[vec+1]*linearA;
+			velocity[a+2] += direction[vec+2]*linearA;
+			angVelocity[a] += invAngularA[vec]*lambda;
+			angVelocity[a+1] += invAngularA[vec+1]*lambda;
+			angVelocity[a+2] += invAngularA[vec+2]*lambda;
+		}
+		if(invMass[indexB] != 0){
+			float linearB = lambda*invMass[indexB];
+			velocity[b] -= direction[vec]*linearB;
+			velocity[b+1] -= direction[vec+1]*linearB;
+			velocity[b+2] -= direction[vec+2]*linearB;
+			angVelocity[b] += invAngularB[vec]*lambda;
+			angVelocity[b+1] += invAngularB[vec+1]*lambda;
+			angVelocity[b+2] += invAngularB[vec+2]*lambda;
+		}
+	}
+	
+	/**
+	 * Writes the velocities back to the objects and the accumulated impulses back to the contact points
+	 */
+	private void scatter(){
+		for(int curBody = 0; curBody < numBodies; curBody++){
+			//bodies with infinite mass are never changed by the solver
+			if(invMass[curBody] != 0){
+				int vec = curBody*3;
+				bodies[curBody].velocity.x = velocity[vec];
+				bodies[curBody].velocity.y = velocity[vec+1];
+				bodies[curBody].velocity.z = velocity[vec+2];
+				bodies[curBody].angVel.x = angVelocity[vec];
+				bodies[curBody].angVel.y = angVelocity[vec+1];
+				bodies[curBody].angVel.z = angVelocity[vec+2];
+			}
+			bodies[curBody] = null;
+		}
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			int row = curPoint*ROWS_PER_POINT;
+			points[curPoint].normalImpulse = impulse[row];
+			points[curPoint].tangentImpulse1 = impulse[row+1];
+			points[curPoint].tangentImpulse2 = impulse[row+2];
+			points[curPoint] = null;
+		}
+		bodyIndices.clear();
+	}
+	
+	private void allocateBodies(int capacity){
+		bodies = new GameObject[capacity];
+		velocity = new float[capacity*3];
+		angVelocity = new float[capacity*3];
+		invMass = new float[capacity];
+		invInertia = new float[capacity*9];
+	}
+	
+	private void allocatePoints(int capacity){
+		points = new ContactPoint[capacity];
+		bodyA = new int[capacity];
+		bodyB = new int[capacity];
+		friction = new float[capacity];
+		int rows = capacity*ROWS_PER_POINT;
+		direction = new float[rows*3];
+		angularA = new float[rows*3];
+		angularB = new float[rows*3];
+		invAngularA = new float[rows*3];
+		invAngularB = new float[rows*3];
+		effectiveMass = new float[rows];
+		bias = new float[rows];
+		impulse = new float[rows];
+	}
+	
+	/**
+	 * Doubles the body arrays keeping the bodies gathered so far
+	 */
+	private void growBodies(){
+		GameObject[] oldBodies = bodies;
+		float[] oldVelocity = velocity, oldAngVelocity = angVelocity, oldInvMass = invMass, oldInvInertia = invInertia;
+		allocateBodies(oldBodies.length*2);
+		System.arraycopy(oldBodies, 0, bodies, 0, numBodies);
+		System.arraycopy(oldVelocity, 0, velocity, 0, numBodies*3);
+		System.arraycopy(oldAngVelocity, 0, angVelocity, 0, numBodies*3);
+		System.arraycopy(oldInvMass, 0, invMass, 0, numBodies);
+		System.arraycopy(oldInvInertia, 0, invInertia, 0, numBodies*9);
+	}
+	
+	/**
+	 * Doubles the point arrays keeping the points gathered so far
+	 */
+	private void growPoints(){
+		ContactPoint[] oldPoints = points;
+		int[] oldBodyA = bodyA, oldBodyB = bodyB;
+		float[] oldFriction = friction, oldDirection = direction, oldAngularA = angularA, oldAngularB = angularB;
+		float[] oldInvAngularA = invAngularA, oldInvAngularB = invAngularB;
+		float[] oldEffectiveMass = effectiveMass, oldBias = bias, oldImpulse = impulse;
+		allocatePoints(oldPoints.length*2);
+		int rows = numPoints*ROWS_PER_POINT;
+		System.arraycopy(oldPoints, 0, points, 0, numPoints);
+		System.arraycopy(oldBodyA, 0, bodyA, 0, numPoints);
+		System.arraycopy(oldBodyB, 0, bodyB, 0, numPoints);
+		System.arraycopy(oldFriction, 0, friction, 0, numPoints);
+		System.arraycopy(oldDirection, 0, direction, 0, rows*3);
+		System.arraycopy(oldAngularA, 0, angularA, 0, rows*3);
+		System.arraycopy(oldAngularB, 0, angularB, 0, rows*3);
+		System.arraycopy(oldInvAngularA, 0, invAngularA, 0, rows*3);
+		System.arraycopy(oldInvAngularB, 0, invAngularB, 0, rows*3);
+		System.arraycopy(oldEffectiveMass, 0, effectiveMass, 0, rows);
+		System.arraycopy(oldBias, 0, bias, 0, rows);
+		System.arraycopy(oldImpulse, 0, impulse, 0, rows);
+	}
+	
+	/**
+	 * Sets the pool the manifolds are solved on
+	 * 
+	 * @param pool Pool to solve the manifolds on, or null to solve them on the calling thread
+	 */
+	public void setPool(ForkJoinPool pool){
+		this.pool = pool;
+	}
+	
+	public ForkJoinPool getPool(){
+		return pool;
+	}
+	
+	/**
+	 * Gets the number of colours used in the last parallel solve
+	 * 
+	 * @return Number of colours
+	 */
+	public int getColourCount(){
+		return numColours;
+	}
+	
+	public int getBodyCount(){
+		return numBodies;
+	}
+	
+	public int getPointCount(){
+		return numPoints;
+	}
+	
+	/**
+	 * Task solving a range of the manifolds of a single colour, ranges larger than the grain size are split in half
+	 */
+	private class ColourTask extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		
+		private int start, end;
+		
+		public ColourTask(int start, int end){
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute(){
+			if(end-start <= grainSize){
+				solveManifolds(start, end);
+			}else{
+				int middle = (start+end) >>> 1;
+				invokeAll(new ColourTask(start, middle), new ColourTask(middle, end));
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package collision;
+
+import core.GameObject;
+import glMath.Vec3;
+
+/**
+ * Finds the time of impact between moving convex collision meshes by conservative advancement. The meshes are moved
+ * along their motions by the distance between them divided by how fast that distance is closing, this can never
+ * move them past each other so thin objects like planes can't be tunnelled through no matter how fast the meshes
+ * move. The distances are found with GJK on the support functions of the meshes.
+ * 
+ * Only the translation of the meshes is swept, rotation over the motion is ignored.
+ * 
+ * @author Kevin
+ *
+ */
+public class ContinuousCollision {
+	
+	public static final float DEFAULT_TOLERANCE = .001f;
+	public static final int DEFAULT_MAX_ITERATIONS = 32;
+	//fraction of its bounding extent an object has to move in a step before it is swept
+	public static final float DEFAULT_MOTION_THRESHOLD = .5f;
+	
+	private GJKDistance gjk;
+	private float tolerance;
+	private int maxIterations;
+	private Vec3 offsetA, offsetB, relMotion, temp;
+	
+	public ContinuousCollision(){
+		this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+	}
+	
+	/**
+	 * Constructs a time of impact query with the given accuracy
+	 * 
+	 * @param tolerance Distance between the meshes at which they are considered to be in contact
+	 * @param maxIterations Maximum number of advancement steps taken for a single query
+	 */
+	public ContinuousCollision(float tolerance, int maxIterations){
+		this.tolerance = tolerance;
+		this.maxIterations = Math.max(maxIterations, 1);
+		gjk = new GJKDistance();
+		offsetA = new Vec3();
+		offsetB = new Vec3();
+		relMotion = new Vec3();
+		temp = new Vec3();
+	}
+	
+	/**
+	 * Finds the first time the meshes come into contact as they are moved from their current positions by the given
+	 * motions
+	 * 
+	 * @param objA First collision mesh
+	 * @param motionA Translation of the first mesh over the motion
+	 * @param objB Second collision mesh
+	 * @param motionB Translation of the second mesh over the motion
+	 * @param result Cast result to store the time of impact in, the normal points from objB towards objA
+	 * @return True if the meshes come into contact during the motion, false if they don't or the time of impact didn't
+	 * converge within the maximum number of iterations
+	 */
+	public boolean timeOfImpact(CollisionMesh objA, Vec3 motionA, CollisionMesh objB, Vec3 motionB, CastResult result){
+		temp.set(0, 0, 0);
+		return timeOfImpact(objA, temp, motionA, objB, temp, motionB, result);
+	}
+	
+	/**
+	 * Finds the first time the meshes come into contact as they are moved by the given motions, starting from their
+	 * current positions translated by the given start offsets
+	 * 
+	 * @param objA First collision mesh
+	 * @param startA Translation of the first mesh at the start of the motion
+	 * @param motionA Translation of the first mesh over the motion
+	 * @param objB Second collision mesh
+	 * @param startB Translation of the second mesh at the start of the motion
+	 * @param motionB Translation of the second mesh over the motion
+	 * @param result Cast result to store the time of impact in, the point is on objB at the time of impact and the 
+	 * normal points from objB towards objA
+	 * @return True if the meshes come into contact during the motion, false if they don't or the time of impact didn't
+	 * converge within the maximum number of iterations
+	 */
+	public boolean timeOfImpact(CollisionMesh objA, Vec3 startA, Vec3 motionA, 
+			CollisionMesh objB, Vec3 startB, Vec3 motionB, CastResult result){
+		result.reset();
+		relMotion.set(motionA).subtract(motionB);
+		float time = 0;
+		boolean converged = false;
+		for(int curIter = 0; curIter < maxIterations; curIter++){
+			result.iterations = curIter+1;
+			offsetA.set(motionA).scale(time).add(startA);
+			offsetB.set(motionB).scale(time).add(startB);
+			float dist = gjk.distance(objA, offsetA, objB, offsetB);
+			if(gjk.isIntersecting()){
+				//meshes that start out overlapping are left to the discrete collision detection
+				if(time == 0){
+					return false;
+				}
+				converged = true;
+				break;
+			}
+			//the gjk normal points from A to B so the distance closes at the relative motion along it
+			float closing = relMotion.dot(gjk.getNormal());
+			if(dist <= tolerance){
+				converged = true;
+				break;
+			}
+			if(closing <= 0){
+				return false;
+			}
+			//advance to just inside the tolerance so the meshes are left in contact without overlapping
+			time += (dist-tolerance*.5f)/closing;
+			if(time > 1){
+				return false;
+			}
+		}
+		//running out of iterations before the meshes close to within the tolerance isn't a hit
+		if(!converged){
+			return false;
+		}
+		result.set(time, gjk.getClosestB(), gjk.getNormal());
+		result.normal.scale(-1);
+		return true;
+	}
+	
+	/**
+	 * Checks whether the given object moves far enough over a step that it could pass through another object, an
+	 * object needs to be swept when its motion is more than the given fraction of the smallest extent of its 
+	 * bounding volume
+	 * 
+	 * @param object Object to check
+	 * @param motion Translation of the object over the step
+	 * @param threshold Fraction of the bounding extent the object can move before it needs to be swept
+	 * @return True if the object should use continuous collision detection
+	 */
+	public boolean needsContinuous(GameObject object, Vec3 motion, float threshold){
+		AABB bounds = object.getBoundingVolume();
+		float extent = Math.min(bounds.getMaxX()-bounds.getMinX(), Math.min(bounds.getMaxY()-bounds.getMinY(), bounds.getMaxZ()-bounds.getMinZ()));
+		float limit = threshold*extent;
+		return motion.dot(motion) > limit*limit;
+	}
+	
+	public GJKDistance getDistanceQuery(){
+		return gjk;
+	}
+	
+	public float getTolerance(){
+		return tolerance;
+	}
+	
+	public void setTolerance(float tolerance){
+		this.tolerance = tolerance;
+	}
+}
@@ -8,12 +8,17 @@ import glMath.Mat4;
 import glMath.MatrixUtil;
 import glMath.Quaternion;
 import glMath.Vec3;
+import glMath.Vec4;
 
 public class ConvexHull implements CollisionMesh {
 	private ArrayList<Vec3> verts;
 	private Triangle adjInfo;
 	private Mat4 modelMat, origModel;
 	private Quaternion orientation, origOrient;
+	//half edge leaving the vertex found by the last support query, walks start from it since consecutive queries
+	//tend to ask for nearby directions. Any half edge is a valid start so concurrent queries only race on where
+	//their walk starts
+	private Triangle.HalfEdge lastSupport;
 	
 	public ConvexHull(){
 		modelMat = new Mat4(1);
@@ -50,6 +55,7 @@ public class ConvexHull implements CollisionMesh {
 	public void setVerts(ArrayList<Vec3> newVerts, Triangle adjInfo){
 		this.verts = newVerts;
 		this.adjInfo = adjInfo;
+		lastSupport = null;
 	}
 	
 	public void translate(float x, float y, float z){
@@ -118,7 +124,12 @@ public class ConvexHull implements CollisionMesh {
 
 	@Override
 	public Vec3 getCenter() {
-		return (Vec3)this.getModelMatrix().multVec(center).swizzle("xyz");
+		return getCenter(new Vec3());
+	}
+	
+	@Override
+	public Vec3 getCenter(Vec3 result) {
+		return modelMat.multVec(center, result);
 	}
 
 	@Override
@@ -135,51 +146,81 @@ public class ConvexHull implements CollisionMesh {
 
 	@Override
 	public Vec3 support(Vec3 direction) {
-		//precompute the transformation matrix
-		Mat4 transformMat = (Mat4)MatrixUtil.multiply(modelMat, orientation.asMatrix());
-		
-		Triangle.HalfEdge original = new Triangle.HalfEdge(adjInfo.halfEdges.get(0));
+		return support(direction, new Vec3());
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result) {
+		//map the direction into the local space of the hull once so the vertices can be walked untransformed, the
+		//dot product of a transformed vertex with the direction equals the dot product of the vertex with the 
+		//direction transformed by the transpose of modelMat*orientation.asMatrix(), translation doesn't change 
+		//which vertex is farthest
+		Vec4[] columns = modelMat.getMatrix();
+		float dirX = direction.x, dirY = direction.y, dirZ = direction.z;
+		result.set(
+			columns[0].x*dirX+columns[0].y*dirY+columns[0].z*dirZ,
+			columns[1].x*dirX+columns[1].y*dirY+columns[1].z*dirZ,
+			columns[2].x*dirX+columns[2].y*dirY+columns[2].z*dirZ
+		);
+		orientation.rotate(result, result);
+		float localX = result.x, localY = result.y, localZ = result.z;
 		
-		//actual vertex being processed, post transformation
-		Vec3 curVert = (Vec3)transformMat.multVec(verts.get(original.sourceVert)).swizzle("xyz");
+		//the half edges are walked by reference rather than copied so that no garbage is produced
+		Triangle.HalfEdge original = lastSupport;
+		if(original == null){
+			original = adjInfo.halfEdges.get(0);
+		}
 		
 		//variable for storing the currently processed vertex dot product with the direction vector
-		float dotDir = curVert.dot(direction);
+		Vec3 vert = verts.get(original.sourceVert);
+		float dotDir = vert.x*localX+vert.y*localY+vert.z*localZ;
 		
 		//half edge pointing to the originating edge for the current iteration
 		//this value is used to end the iteration over a vertices neighbors
-		
-		Triangle.HalfEdge farthestEdge = new Triangle.HalfEdge(original);
+		Triangle.HalfEdge farthestEdge = original;
 		
 		while(true){
 			
-			Triangle.HalfEdge current = original.opposite.next;
-			Triangle.HalfEdge adjVertEdge = current.next;
+			Triangle.HalfEdge current = original;
 			//loop through the adjacent vertices checking whether they are closer in the
-			//given direction vector than the current vertex terminating if we reach the edge
-			//we started with
-			while(!current.equals(original)){
-				curVert.set( (Vec3)transformMat.multVec(verts.get(adjVertEdge.sourceVert)).swizzle("xyz") );
+			//given direction vector than the current vertex terminating once we get back to the edge
+			//we started with, the neighbor at the end of the starting edge is checked as well
+			do{
+				//the next edge in the face leaves the adjacent vertex
+				Triangle.HalfEdge adjVertEdge = current.next;
+				vert = verts.get(adjVertEdge.sourceVert);
+				float adjDot = vert.x*localX+vert.y*localY+vert.z*localZ;
 				
-				if(curVert.dot(direction) > dotDir){
-					dotDir = curVert.dot(direction);
-					farthestEdge.set(adjVertEdge);
+				if(adjDot > dotDir){
+					dotDir = adjDot;
+					farthestEdge = adjVertEdge;
 				}
-				//set the current edge to the next edge
+				//advance to the next edge leaving the vertex
 				current = current.opposite.next;
-				//advance to the next adjacent vertex
-				adjVertEdge = current.next;
-			}
-			//if the current index hasn't changed then we know that the original vertex was 
-			//the farthest in the given direction
-			if(farthestEdge.sourceVert.equals(original.sourceVert)){
-//				System.out.println(curIndex);
-				return (Vec3)transformMat.multVec(verts.get(original.sourceVert)).swizzle("xyz");
+			}while(current != original);
+			//if the farthest edge hasn't changed then we know that the original vertex was 
+			//the farthest in the given direction, only this vertex is transformed into world space
+			if(farthestEdge == original){
+				lastSupport = original;
+				return transformVert(original.sourceVert, result);
 			}
 
-			original.set(farthestEdge);
+			original = farthestEdge;
 		}
 	}
+	
+	/**
+	 * Transforms the vertex at the given index by this hulls orientation and model matrix, equivalent
+	 * to multiplying the vertex by modelMat*orientation.asMatrix()
+	 * 
+	 * @param index Index of the vertex to transform
+	 * @param result Vector to store the transformed vertex in
+	 * @return The result vector post operation
+	 */
+	private Vec3 transformVert(int index, Vec3 result){
+		orientation.rotateInverse(verts.get(index), result);
+		return modelMat.multVec(result, result);
+	}
 
 	@Override
 	public CollisionMesh copy() {
@@ -0,0 +1,626 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import core.GameObject;
+import glMath.Vec3;
+
+/**
+ * Broadphase built on a dynamic bounding volume hierarchy of axis aligned boxes. Each game object is stored in a
+ * leaf whose box is fattened by a margin and by the objects velocity, so objects that move a small amount don't
+ * need to be reinserted. Inserting picks the sibling with the lowest surface area cost and the tree is kept balanced
+ * with rotations as leaves are inserted and removed.
+ *
+ * The nodes are stored in flat arrays indexed by node id so that traversals don't chase object references.
+ *
+ * @author Kevin
+ *
+ */
+public class DynamicAABBTree implements BroadPhase {
+	
+	private static final int NULL_NODE = -1;
+	private static final int BOX_STRIDE = 6;
+	
+	//bounds of the nodes stored together as minX, minY, minZ, maxX, maxY, maxZ so that testing a node
+	//only touches one part of memory
+	private float[] boxes;
+	//parent also links the free nodes together when the node isn't in use
+	private int[] parent, child1, child2, height;
+	//game object stored in each leaf, null for internal nodes
+	private GameObject[] objects;
+	private int root, nodeCount, freeList;
+	//map from game objects to the id of their leaf
+	private HashMap<GameObject, Integer> leaves;
+	
+	//amount the leaf boxes are grown by, and the number of steps of velocity the boxes are extended by
+	private float margin, velocityScale;
+	
+	//scratch space for traversals and computing bounds
+	private int[] stack;
+	private float[] bounds;
+	
+	public DynamicAABBTree(){
+		this(.1f, 2, 16);
+	}
+	
+	/**
+	 * Constructs an empty tree
+	 *
+	 * @param margin Distance the leaf boxes are fattened by on all sides
+	 * @param velocityScale Number of steps of an objects velocity that its leaf box is extended by
+	 * @param initialCapacity Number of nodes to allocate space for, the tree grows as needed
+	 */
+	public DynamicAABBTree(float margin, float velocityScale, int initialCapacity){
+		this.margin = margin;
+		this.velocityScale = velocityScale;
+		root = NULL_NODE;
+		nodeCount = 0;
+		freeList = NULL_NODE;
+		
+		boxes = new float[0];
+		parent = new int[0];
+		child1 = new int[0];
+		child2 = new int[0];
+		height = new int[0];
+		objects = new GameObject[0];
+		grow(Math.max(initialCapacity, 1));
+		
+		leaves = new HashMap<GameObject, Integer>();
+		stack = new int[64];
+		bounds = new float[6];
+	}
+	
+	@Override
+	public boolean add(GameObject object){
+		if(leaves.containsKey(object)){
+			return false;
+		}
+		int leaf = allocateNode();
+		objects[leaf] = object;
+		height[leaf] = 0;
+		fatten(leaf, object);
+		insertLeaf(leaf);
+		leaves.put(object, leaf);
+		return true;
+	}
+	
+	@Override
+	public boolean remove(GameObject object){
+		Integer leaf = leaves.remove(object);
+		if(leaf == null){
+			return false;
+		}
+		removeLeaf(leaf);
+		freeNode(leaf);
+		return true;
+	}
+	
+	@Override
+	public void update(GameObject object){
+		Integer leaf = leaves.get(object);
+		if(leaf != null){
+			move(leaf);
+		}
+	}
+	
+	@Override
+	public void update(){
+		//sleeping objects don't move so their leaves are already in place
+		for(int curNode = 0; curNode < objects.length; curNode++){
+			if(objects[curNode] != null && objects[curNode].isAwake()){
+				move(curNode);
+			}
+		}
+	}
+	
+	@Override
+	public int findPairs(ArrayList<CandidatePair> pairs){
+		if(root == NULL_NODE){
+			return 0;
+		}
+		int found = 0;
+		/*descend the tree against itself, each entry on the stack is a pair of nodes whose subtrees
+		still need to be tested, a node paired with itself means the pairs within that subtree*/
+		int top = 0;
+		top = push(top, root);
+		top = push(top, root);
+		while(top > 0){
+			int nodeB = stack[--top];
+			int nodeA = stack[--top];
+			if(nodeA == nodeB){
+				if(!isLeaf(nodeA)){
+					int c1 = child1[nodeA];
+					int c2 = child2[nodeA];
+					top = push(top, c1);
+					top = push(top, c2);
+					top = push(top, c2);
+					top = push(top, c2);
+					top = push(top, c1);
+					top = push(top, c1);
+				}
+			}else if(overlaps(nodeA, nodeB)){
+				boolean leafA = isLeaf(nodeA);
+				boolean leafB = isLeaf(nodeB);
+				if(leafA && leafB){
+					//order the pair by leaf id so the same pair is always reported the same way
+					if(nodeA < nodeB){
+						pairs.add(new CandidatePair(objects[nodeA], objects[nodeB]));
+					}else{
+						pairs.add(new CandidatePair(objects[nodeB], objects[nodeA]));
+					}
+					found++;
+				}else if(leafA || (!leafB && area(nodeB) > area(nodeA))){
+					//descend into the larger of the two nodes
+					top = push(top, nodeA);
+					top = push(top, child2[nodeB]);
+					top = push(top, nodeA);
+					top = push(top, child1[nodeB]);
+				}else{
+					top = push(top, child2[nodeA]);
+					top = push(top, nodeB);
+					top = push(top, child1[nodeA]);
+					top = push(top, nodeB);
+				}
+			}
+		}
+		return found;
+	}
+	
+	@Override
+	public int query(AABB volume, Collection<GameObject> results){
+		computeBounds(volume);
+		return query(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5], results);
+	}
+	
+	/**
+	 * Finds the game objects whose leaf boxes overlap the given box
+	 *
+	 * @param minX Minimum x of the box
+	 * @param minY Minimum y of the box
+	 * @param minZ Minimum z of the box
+	 * @param maxX Maximum x of the box
+	 * @param maxY Maximum y of the box
+	 * @param maxZ Maximum z of the box
+	 * @param results Collection to add the overlapping game objects to
+	 * @return Number of game objects that were added
+	 */
+	public int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Collection<GameObject> results){
+		if(root == NULL_NODE){
+			return 0;
+		}
+		int found = 0;
+		int top = 0;
+		stack[top++] = root;
+		while(top > 0){
+			int node = stack[--top];
+			if(!overlaps(node, minX, minY, minZ, maxX, maxY, maxZ)){
+				continue;
+			}
+			if(isLeaf(node)){
+				results.add(objects[node]);
+				found++;
+			}else{
+				top = push(top, child1[node]);
+				top = push(top, child2[node]);
+			}
+		}
+		return found;
+	}
+	
+	@Override
+	public int size(){
+		return leaves.size();
+	}
+	
+	/**
+	 * Gets the height of the tree, a leaf has a height of 0
+	 *
+	 * @return Height of the tree, or -1 if the tree is empty
+	 */
+	public int getHeight(){
+		return root == NULL_NODE ? -1 : height[root];
+	}
+	
+	/**
+	 * Gets the number of nodes in use by the tree, including the internal nodes
+	 *
+	 * @return Number of nodes in use
+	 */
+	public int getNodeCount(){
+		return nodeCount;
+	}
+	
+	/**
+	 * Reinserts the given leaf if the bounding volume of its game object has left the leafs fattened box
+	 *
+	 * @param leaf Id of the leaf to check
+	 * @return True if the leaf was reinserted, false if its box still contains the game object
+	 */
+	private boolean move(int leaf){
+		computeBounds(objects[leaf].getBoundingVolume());
+		int box = leaf*BOX_STRIDE;
+		if(boxes[box] <= bounds[0] && boxes[box+1] <= bounds[1] && boxes[box+2] <= bounds[2] &&
+				boxes[box+3] >= bounds[3] && boxes[box+4] >= bounds[4] && boxes[box+5] >= bounds[5]){
+			return false;
+		}
+		removeLeaf(leaf);
+		fatten(leaf, objects[leaf]);
+		insertLeaf(leaf);
+		return true;
+	}
+	
+	/**
+	 * Sets the box of the given leaf to the bounding volume of the game object grown by the margin and extended in the
+	 * direction the object is moving
+	 *
+	 * @param leaf Id of the leaf to set the box of
+	 * @param object Game object stored in the leaf
+	 */
+	private void fatten(int leaf, GameObject object){
+		computeBounds(object.getBoundingVolume());
+		int box = leaf*BOX_STRIDE;
+		boxes[box] = bounds[0]-margin;
+		boxes[box+1] = bounds[1]-margin;
+		boxes[box+2] = bounds[2]-margin;
+		boxes[box+3] = bounds[3]+margin;
+		boxes[box+4] = bounds[4]+margin;
+		boxes[box+5] = bounds[5]+margin;
+		
+		//predict where the object will be so fast objects aren't reinserted every step
+		Vec3 velocity = object.velocity;
+		float dX = velocity.x*velocityScale, dY = velocity.y*velocityScale, dZ = velocity.z*velocityScale;
+		if(dX < 0){
+			boxes[box] += dX;
+		}else{
+			boxes[box+3] += dX;
+		}
+		
+		if(dY < 0){
+			boxes[box+1] += dY;
+		}else{
+			boxes[box+4] += dY;
+		}
+		
+		if(dZ < 0){
+			boxes[box+2] += dZ;
+		}else{
+			boxes[box+5] += dZ;
+		}
+	}
+	
+	/**
+	 * Computes the world space bounds of the given volume storing them in the bounds scratch array as
+	 * minX, minY, minZ, maxX, maxY, maxZ
+	 *
+	 * @param volume Volume to compute the bounds of
+	 */
+	private void computeBounds(AABB volume){
+		volume.getBounds(bounds, 0);
+	}
+	
+	private void insertLeaf(int leaf){
+		if(root == NULL_NODE){
+			root = leaf;
+			parent[root] = NULL_NODE;
+			return;
+		}
+		
+		//find the best sibling for the leaf by descending the tree following the lowest surface area cost
+		int index = root;
+		while(!isLeaf(index)){
+			int c1 = child1[index];
+			int c2 = child2[index];
+			
+			float area = area(index);
+			float combinedArea = unionArea(index, leaf);
+			
+			//cost of creating a new parent for this node and the new leaf
+			float cost = 2*combinedArea;
+			//minimum cost of pushing the leaf further down the tree
+			float inheritanceCost = 2*(combinedArea-area);
+			
+			float cost1 = unionArea(c1, leaf)+inheritanceCost;
+			if(!isLeaf(c1)){
+				cost1 -= area(c1);
+			}
+			
+			float cost2 = unionArea(c2, leaf)+inheritanceCost;
+			if(!isLeaf(c2)){
+				cost2 -= area(c2);
+			}
+			
+			if(cost < cost1 && cost < cost2){
+				break;
+			}
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		
+		int sibling = index;
+		int oldParent = parent[sibling];
+		int newParent = allocateNode();
+		parent[newParent] = oldParent;
+		objects[newParent] = null;
+		setUnion(newParent, sibling, leaf);
+		height[newParent] = height[sibling]+1;
+		
+		if(oldParent != NULL_NODE){
+			if(child1[oldParent] == sibling){
+				child1[oldParent] = newParent;
+			}else{
+				child2[oldParent] = newParent;
+			}
+		}else{
+			root = newParent;
+		}
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		
+		//walk back up the tree fixing the heights and boxes
+		refit(parent[leaf]);
+	}
+	
+	private void removeLeaf(int leaf){
+		if(leaf == root){
+			root = NULL_NODE;
+			return;
+		}
+		
+		int leafParent = parent[leaf];
+		int grandParent = parent[leafParent];
+		int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+		
+		if(grandParent != NULL_NODE){
+			//replace the parent with the sibling
+			if(child1[grandParent] == leafParent){
+				child1[grandParent] = sibling;
+			}else{
+				child2[grandParent] = sibling;
+			}
+			parent[sibling] = grandParent;
+			freeNode(leafParent);
+			refit(grandParent);
+		}else{
+			root = sibling;
+			parent[sibling] = NULL_NODE;
+			freeNode(leafParent);
+		}
+	}
+	
+	/**
+	 * Walks from the given node to the root balancing the tree and recomputing the heights and boxes of the nodes
+	 *
+	 * @param start Node to start from
+	 */
+	private void refit(int start){
+		int index = start;
+		while(index != NULL_NODE){
+			index = balance(index);
+			
+			int c1 = child1[index];
+			int c2 = child2[index];
+			height[index] = 1+Math.max(height[c1], height[c2]);
+			setUnion(index, c1, c2);
+			
+			index = parent[index];
+		}
+	}
+	
+	/**
+	 * Performs a left or right rotation if the given node is imbalanced
+	 *
+	 * @param iA Node to balance
+	 * @return The node that is now at the position of the given node
+	 */
+	private int balance(int iA){
+		if(isLeaf(iA) || height[iA] < 2){
+			return iA;
+		}
+		
+		int iB = child1[iA];
+		int iC = child2[iA];
+		int balance = height[iC]-height[iB];
+		
+		//rotate C up
+		if(balance > 1){
+			int iF = child1[iC];
+			int iG = child2[iC];
+			
+			//swap A and C
+			child1[iC] = iA;
+			parent[iC] = parent[iA];
+			parent[iA] = iC;
+			replaceChild(parent[iC], iA, iC);
+			
+			//rotate
+			if(height[iF] > height[iG]){
+				child2[iC] = iF;
+				child2[iA] = iG;
+				parent[iG] = iA;
+				setUnion(iA, iB, iG);
+				setUnion(iC, iA, iF);
+				height[iA] = 1+Math.max(height[iB], height[iG]);
+				height[iC] = 1+Math.max(height[iA], height[iF]);
+			}else{
+				child2[iC] = iG;
+				child2[iA] = iF;
+				parent[iF] = iA;
+				setUnion(iA, iB, iF);
+				setUnion(iC, iA, iG);
+				height[iA] = 1+Math.max(height[iB], height[iF]);
+				height[iC] = 1+Math.max(height[iA], height[iG]);
+			}
+			return iC;
+		}
+		
+		//rotate B up
+		if(balance < -1){
+			int iD = child1[iB];
+			int iE = child2[iB];
+			
+			//swap A and B
+			child1[iB] = iA;
+			parent[iB] = parent[iA];
+			parent[iA] = iB;
+			replaceChild(parent[iB], iA, iB);
+			
+			//rotate
+			if(height[iD] > height[iE]){
+				child2[iB] = iD;
+				child1[iA] = iE;
+				parent[iE] = iA;
+				setUnion(iA, iC, iE);
+				setUnion(iB, iA, iD);
+				height[iA] = 1+Math.max(height[iC], height[iE]);
+				height[iB] = 1+Math.max(height[iA], height[iD]);
+			}else{
+				child2[iB] = iE;
+				child1[iA] = iD;
+				parent[iD] = iA;
+				setUnion(iA, iC, iD);
+				setUnion(iB, iA, iE);
+				height[iA] = 1+Math.max(height[iC], height[iD]);
+				height[iB] = 1+Math.max(height[iA], height[iE]);
+			}
+			return iB;
+		}
+		return iA;
+	}
+	
+	/**
+	 * Replaces the child of the given node, if the node is null the new child becomes the root
+	 *
+	 * @param node Node to replace the child of
+	 * @param oldChild Child being replaced
+	 * @param newChild Child replacing the old child
+	 */
+	private void replaceChild(int node, int oldChild, int newChild){
+		if(node == NULL_NODE){
+			root = newChild;
+		}else if(child1[node] == oldChild){
+			child1[node] = newChild;
+		}else{
+			child2[node] = newChild;
+		}
+	}
+	
+	private int allocateNode(){
+		if(freeList == NULL_NODE){
+			grow(objects.length*2);
+		}
+		int node = freeList;
+		freeList = parent[node];
+		parent[node] = NULL_NODE;
+		child1[node] = NULL_NODE;
+		child2[node] = NULL_NODE;
+		height[node] = 0;
+		objects[node] = null;
+		nodeCount++;
+		return node;
+	}
+	
+	private void freeNode(int node){
+		parent[node] = freeList;
+		objects[node] = null;
+		height[node] = -1;
+		freeList = node;
+		nodeCount--;
+	}
+	
+	/**
+	 * Grows the node arrays to the given capacity adding the new nodes to the free list
+	 *
+	 * @param capacity New capacity of the node arrays
+	 */
+	private void grow(int capacity){
+		int oldCapacity = objects.length;
+		boxes = copyOf(boxes, capacity*BOX_STRIDE);
+		parent = copyOf(parent, capacity);
+		child1 = copyOf(child1, capacity);
+		child2 = copyOf(child2, capacity);
+		height = copyOf(height, capacity);
+		GameObject[] grownObjects = new GameObject[capacity];
+		System.arraycopy(objects, 0, grownObjects, 0, oldCapacity);
+		objects = grownObjects;
+		
+		//link the new nodes into the free list
+		for(int curNode = oldCapacity; curNode < capacity-1; curNode++){
+			parent[curNode] = curNode+1;
+			height[curNode] = -1;
+		}
+		parent[capacity-1] = freeList;
+		height[capacity-1] = -1;
+		freeList = oldCapacity;
+	}
+	
+	private int push(int top, int node){
+		if(top == stack.length){
+			int[] grown = new int[stack.length*2];
+			System.arraycopy(stack, 0, grown, 0, stack.length);
+			stack = grown;
+		}
+		stack[top] = node;
+		return top+1;
+	}
+	
+	private boolean isLeaf(int node){
+		return child1[node] == NULL_NODE;
+	}
+	
+	private boolean overlaps(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		int box = node*BOX_STRIDE;
+		return boxes[box] <= maxX && boxes[box+3] >= minX &&
+				boxes[box+1] <= maxY && boxes[box+4] >= minY &&
+				boxes[box+2] <= maxZ && boxes[box+5] >= minZ;
+	}
+	
+	private boolean overlaps(int nodeA, int nodeB){
+		int boxA = nodeA*BOX_STRIDE, boxB = nodeB*BOX_STRIDE;
+		return boxes[boxA] <= boxes[boxB+3] && boxes[boxA+3] >= boxes[boxB] &&
+				boxes[boxA+1] <= boxes[boxB+4] && boxes[boxA+4] >= boxes[boxB+1] &&
+				boxes[boxA+2] <= boxes[boxB+5] && boxes[boxA+5] >= boxes[boxB+2];
+	}
+	
+	private float area(int node){
+		int box = node*BOX_STRIDE;
+		return surfaceArea(boxes[box+3]-boxes[box], boxes[box+4]-boxes[box+1], boxes[box+5]-boxes[box+2]);
+	}
+	
+	private float unionArea(int nodeA, int nodeB){
+		int boxA = nodeA*BOX_STRIDE, boxB = nodeB*BOX_STRIDE;
+		return surfaceArea(
+				Math.max(boxes[boxA+3], boxes[boxB+3])-Math.min(boxes[boxA], boxes[boxB]),
+				Math.max(boxes[boxA+4], boxes[boxB+4])-Math.min(boxes[boxA+1], boxes[boxB+1]),
+				Math.max(boxes[boxA+5], boxes[boxB+5])-Math.min(boxes[boxA+2], boxes[boxB+2])
+				);
+	}
+	
+	private void setUnion(int node, int nodeA, int nodeB){
+		int box = node*BOX_STRIDE, boxA = nodeA*BOX_STRIDE, boxB = nodeB*BOX_STRIDE;
+		boxes[box] = Math.min(boxes[boxA], boxes[boxB]);
+		boxes[box+1] = Math.min(boxes[boxA+1], boxes[boxB+1]);
+		boxes[box+2] = Math.min(boxes[boxA+2], boxes[boxB+2]);
+		boxes[box+3] = Math.max(boxes[boxA+3], boxes[boxB+3]);
+		boxes[box+4] = Math.max(boxes[boxA+4], boxes[boxB+4]);
+		boxes[box+5] = Math.max(boxes[boxA+5], boxes[boxB+5]);
+	}
+	
+	private static float surfaceArea(float width, float height, float length){
+		return 2*(width*height+width*length+height*length);
+	}
+	
+	private static float[] copyOf(float[] array, int length){
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+	
+	private static int[] copyOf(int[] array, int length){
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+}
@@ -0,0 +1,642 @@
+package collision;
+
+import glMath.Vec3;
+
+/**
+ * Computes the distance and closest points between two convex collision meshes with the GJK algorithm. Unlike the
+ * intersection test in CollisionDetector this keeps the closest point of the simplex to the origin and reduces the
+ * simplex to the features that support it every iteration, so it converges on the true distance between separated
+ * meshes. Each mesh can be given an offset that is added to its support points, this lets the meshes be tested at
+ * positions along a motion without having to move them.
+ * 
+ * Rays and meshes can also be cast against a mesh with the GJK ray cast of Gino van den Bergen, which advances a point
+ * along the ray through the Minkowski difference of the meshes using the separating planes found by GJK.
+ * 
+ * A GJKDistance holds the state of the last query so an instance must only be used by one thread at a time.
+ * 
+ * @author Kevin
+ *
+ */
+public final class GJKDistance {
+	
+	private static final int MAX_ITERATIONS = 64;
+	//relative tolerance on the squared distance used to decide that the support points stopped making progress
+	private static final float RELATIVE_TOLERANCE = 1e-6f;
+	//squared distance below which the meshes are treated as touching
+	private static final float CONTACT_TOLERANCE = 1e-10f;
+	//distance from the surface of the target relative to the size of the simplex at which a cast has hit
+	private static final float CAST_TOLERANCE = 1e-4f;
+	//squared sine of the angle between a tetrahedron's fourth point and the plane of a face below which it's flat
+	private static final float FLAT_TOLERANCE = 1e-8f;
+	
+	//simplex of points on the Minkowski difference and the support points on each mesh that made them
+	private final float[] wX, wY, wZ, aX, aY, aZ, bX, bY, bZ, lambda;
+	private int size;
+	//scratch copies used while reducing the simplex and a copy of the tetrahedron while its faces are tested
+	private final float[] tempW, tempA, tempB, savedW, savedA, savedB;
+	//faces of the tetrahedron, each listed with the vertex opposite it
+	private static final int[][] FACES = {{0, 1, 2, 3}, {0, 3, 1, 2}, {0, 2, 3, 1}, {1, 3, 2, 0}};
+	//indices of the simplex points kept by the last reduction
+	private final int[] lastKept;
+	
+	private final Vec3 direction, support, closestA, closestB, normal;
+	private float distance;
+	private boolean intersecting;
+	private int iterations;
+	
+	public GJKDistance(){
+		wX = new float[4];
+		wY = new float[4];
+		wZ = new float[4];
+		aX = new float[4];
+		aY = new float[4];
+		aZ = new float[4];
+		bX = new float[4];
+		bY = new float[4];
+		bZ = new float[4];
+		lambda = new float[4];
+		tempW = new float[12];
+		tempA = new float[12];
+		tempB = new float[12];
+		savedW = new float[12];
+		savedA = new float[12];
+		savedB = new float[12];
+		lastKept = new int[3];
+		direction = new Vec3();
+		support = new Vec3();
+		closestA = new Vec3();
+		closestB = new Vec3();
+		normal = new Vec3();
+	}
+	
+	/**
+	 * Computes the distance between the given meshes at their current positions
+	 * 
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @return Distance between the meshes, 0 if they intersect
+	 */
+	public float distance(CollisionMesh objA, CollisionMesh objB){
+		return distance(objA, 0, 0, 0, objB, 0, 0, 0);
+	}
+	
+	/**
+	 * Computes the distance between the given meshes with each mesh translated by the given offset
+	 * 
+	 * @param objA First collision mesh
+	 * @param offsetA Translation added to the first mesh
+	 * @param objB Second collision mesh
+	 * @param offsetB Translation added to the second mesh
+	 * @return Distance between the meshes, 0 if they intersect
+	 */
+	public float distance(CollisionMesh objA, Vec3 offsetA, CollisionMesh objB, Vec3 offsetB){
+		return distance(objA, offsetA.x, offsetA.y, offsetA.z, objB, offsetB.x, offsetB.y, offsetB.z);
+	}
+	
+	private float distance(CollisionMesh objA, float offAX, float offAY, float offAZ,
+			CollisionMesh objB, float offBX, float offBY, float offBZ){
+		size = 0;
+		iterations = 0;
+		intersecting = false;
+		
+		//start from the direction between the centers
+		objA.getCenter(direction);
+		objB.getCenter(support);
+		float vX = direction.x+offAX-support.x-offBX;
+		float vY = direction.y+offAY-support.y-offBY;
+		float vZ = direction.z+offAZ-support.z-offBZ;
+		if(vX*vX+vY*vY+vZ*vZ < CONTACT_TOLERANCE){
+			vX = 1;
+			vY = 0;
+			vZ = 0;
+		}
+		addSupport(objA, offAX, offAY, offAZ, objB, offBX, offBY, offBZ, -vX, -vY, -vZ);
+		lambda[0] = 1;
+		vX = wX[0];
+		vY = wY[0];
+		vZ = wZ[0];
+		
+		while(iterations < MAX_ITERATIONS){
+			iterations++;
+			float vv = vX*vX+vY*vY+vZ*vZ;
+			if(vv < CONTACT_TOLERANCE){
+				intersecting = true;
+				break;
+			}
+			int index = size;
+			addSupport(objA, offAX, offAY, offAZ, objB, offBX, offBY, offBZ, -vX, -vY, -vZ);
+			float vw = vX*wX[index]+vY*wY[index]+vZ*wZ[index];
+			//the new support point doesn't get any closer to the origin than the current closest point
+			if(vv-vw <= RELATIVE_TOLERANCE*vv || isDuplicate(index)){
+				size--;
+				break;
+			}
+			if(!reduce()){
+				intersecting = true;
+				break;
+			}
+			vX = 0;
+			vY = 0;
+			vZ = 0;
+			for(int curPoint = 0; curPoint < size; curPoint++){
+				vX += wX[curPoint]*lambda[curPoint];
+				vY += wY[curPoint]*lambda[curPoint];
+				vZ += wZ[curPoint]*lambda[curPoint];
+			}
+			//rounding can make the simplex cycle between features once it is as close as it can get
+			if(vX*vX+vY*vY+vZ*vZ >= vv){
+				break;
+			}
+		}
+		
+		closestA.set(0, 0, 0);
+		closestB.set(0, 0, 0);
+		for(int curPoint = 0; curPoint < size; curPoint++){
+			closestA.x += aX[curPoint]*lambda[curPoint];
+			closestA.y += aY[curPoint]*lambda[curPoint];
+			closestA.z += aZ[curPoint]*lambda[curPoint];
+			closestB.x += bX[curPoint]*lambda[curPoint];
+			closestB.y += bY[curPoint]*lambda[curPoint];
+			closestB.z += bZ[curPoint]*lambda[curPoint];
+		}
+		if(intersecting){
+			distance = 0;
+			normal.set(0, 0, 0);
+		}else{
+			//the closest point of the difference is the point on A minus the point on B
+			distance = (float)Math.sqrt(vX*vX+vY*vY+vZ*vZ);
+			normal.set(-vX/distance, -vY/distance, -vZ/distance);
+		}
+		return distance;
+	}
+	
+	/**
+	 * Casts a ray against the given mesh
+	 * 
+	 * @param origin Start of the ray
+	 * @param ray Direction of the ray, its length is the furthest the ray is cast
+	 * @param target Collision mesh to cast against
+	 * @param result Cast result to store the hit in, the fraction is of the length of the ray
+	 * @return True if the ray hit the mesh, false if it missed or the cast didn't converge
+	 */
+	public boolean raycast(Vec3 origin, Vec3 ray, CollisionMesh target, CastResult result){
+		return cast(null, origin.x, origin.y, origin.z, ray, target, result);
+	}
+	
+	/**
+	 * Sweeps a mesh from its current position along the given motion against another mesh
+	 * 
+	 * @param shape Collision mesh to sweep
+	 * @param motion Translation of the swept mesh
+	 * @param target Collision mesh to cast against
+	 * @param result Cast result to store the hit in, the point of the hit is on the target mesh
+	 * @return True if the swept mesh hit the target, false if it missed or the cast didn't converge
+	 */
+	public boolean shapeCast(CollisionMesh shape, Vec3 motion, CollisionMesh target, CastResult result){
+		return cast(shape, 0, 0, 0, motion, target, result);
+	}
+	
+	/**
+	 * Casts along the ray through the Minkowski difference of the target and the cast shape, a null shape is a point
+	 * at the given origin
+	 */
+	private boolean cast(CollisionMesh shape, float originX, float originY, float originZ, Vec3 ray, 
+			CollisionMesh target, CastResult result){
+		result.reset();
+		size = 0;
+		iterations = 0;
+		intersecting = false;
+		float rayX = ray.x, rayY = ray.y, rayZ = ray.z;
+		//point on the ray, relative to the start of the cast
+		float fraction = 0;
+		float xX = 0, xY = 0, xZ = 0;
+		float nX = 0, nY = 0, nZ = 0;
+		
+		target.getCenter(support);
+		if(shape == null){
+			direction.set(originX, originY, originZ);
+		}else{
+			shape.getCenter(direction);
+		}
+		float vX = direction.x-support.x;
+		float vY = direction.y-support.y;
+		float vZ = direction.z-support.z;
+		if(vX*vX+vY*vY+vZ*vZ < CONTACT_TOLERANCE){
+			vX = -rayX;
+			vY = -rayY;
+			vZ = -rayZ;
+			if(vX*vX+vY*vY+vZ*vZ < CONTACT_TOLERANCE){
+				vX = 1;
+			}
+		}
+		float maxWW = 0;
+		boolean converged = false;
+		
+		while(iterations < MAX_ITERATIONS){
+			iterations++;
+			float vv = vX*vX+vY*vY+vZ*vZ;
+			if(vv <= CAST_TOLERANCE*CAST_TOLERANCE*maxWW || vv < CONTACT_TOLERANCE){
+				converged = true;
+				break;
+			}
+			int index = size;
+			addCastSupport(shape, originX, originY, originZ, target, vX, vY, vZ);
+			float vw = vX*(xX-bX[index]+aX[index])+vY*(xY-bY[index]+aY[index])+vZ*(xZ-bZ[index]+aZ[index]);
+			if(vw > 0){
+				//the support plane separates the point on the ray from the difference, move the point up to the plane
+				float vr = vX*rayX+vY*rayY+vZ*rayZ;
+				if(vr >= 0){
+					return false;
+				}
+				fraction -= vw/vr;
+				if(fraction > 1){
+					return false;
+				}
+				xX = rayX*fraction;
+				xY = rayY*fraction;
+				xZ = rayZ*fraction;
+				nX = vX;
+				nY = vY;
+				nZ = vZ;
+			}
+			if(isDuplicateSupport(index)){
+				size--;
+				if(vw <= 0){
+					converged = true;
+					break;
+				}
+			}
+			//the simplex points are relative to the point on the ray so they move with it
+			maxWW = 0;
+			for(int curPoint = 0; curPoint < size; curPoint++){
+				wX[curPoint] = xX-bX[curPoint]+aX[curPoint];
+				wY[curPoint] = xY-bY[curPoint]+aY[curPoint];
+				wZ[curPoint] = xZ-bZ[curPoint]+aZ[curPoint];
+				maxWW = Math.max(maxWW, wX[curPoint]*wX[curPoint]+wY[curPoint]*wY[curPoint]+wZ[curPoint]*wZ[curPoint]);
+			}
+			if(size == 1){
+				lambda[0] = 1;
+			}else if(!reduce()){
+				//the simplex is flat around the point on the ray, which is as close to the surface as it can get
+				converged = true;
+				break;
+			}
+			vX = 0;
+			vY = 0;
+			vZ = 0;
+			for(int curPoint = 0; curPoint < size; curPoint++){
+				vX += wX[curPoint]*lambda[curPoint];
+				vY += wY[curPoint]*lambda[curPoint];
+				vZ += wZ[curPoint]*lambda[curPoint];
+			}
+		}
+		//running out of iterations leaves the point on the ray short of the surface, where nothing was hit
+		if(!converged){
+			result.iterations = iterations;
+			return false;
+		}
+		
+		//the hit point is on the target, which doesn't move
+		closestB.set(0, 0, 0);
+		for(int curPoint = 0; curPoint < size; curPoint++){
+			closestB.x += bX[curPoint]*lambda[curPoint];
+			closestB.y += bY[curPoint]*lambda[curPoint];
+			closestB.z += bZ[curPoint]*lambda[curPoint];
+		}
+		//the last separating plane is the surface the cast hit, a cast that starts overlapping has no normal
+		normal.set(nX, nY, nZ);
+		if(fraction > 0){
+			normal.normalize();
+		}
+		result.set(fraction, closestB, normal);
+		result.iterations = iterations;
+		return true;
+	}
+	
+	/**
+	 * Adds the support points of the target in the given direction and of the cast shape in the opposite direction
+	 * to the end of the simplex, the simplex points themselves are filled in by the cast
+	 */
+	private void addCastSupport(CollisionMesh shape, float originX, float originY, float originZ, 
+			CollisionMesh target, float dirX, float dirY, float dirZ){
+		if(shape == null){
+			aX[size] = originX;
+			aY[size] = originY;
+			aZ[size] = originZ;
+		}else{
+			direction.set(-dirX, -dirY, -dirZ);
+			shape.support(direction, support);
+			aX[size] = support.x;
+			aY[size] = support.y;
+			aZ[size] = support.z;
+		}
+		direction.set(dirX, dirY, dirZ);
+		target.support(direction, support);
+		bX[size] = support.x;
+		bY[size] = support.y;
+		bZ[size] = support.z;
+		size++;
+	}
+	
+	private boolean isDuplicateSupport(int index){
+		for(int curPoint = 0; curPoint < index; curPoint++){
+			if(aX[curPoint] == aX[index] && aY[curPoint] == aY[index] && aZ[curPoint] == aZ[index]
+					&& bX[curPoint] == bX[index] && bY[curPoint] == bY[index] && bZ[curPoint] == bZ[index]){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds the support point of the Minkowski difference in the given direction to the end of the simplex
+	 */
+	private void addSupport(CollisionMesh objA, float offAX, float offAY, float offAZ,
+			CollisionMesh objB, float offBX, float offBY, float offBZ, float dirX, float dirY, float dirZ){
+		direction.set(dirX, dirY, dirZ);
+		objA.support(direction, support);
+		aX[size] = support.x+offAX;
+		aY[size] = support.y+offAY;
+		aZ[size] = support.z+offAZ;
+		direction.set(-dirX, -dirY, -dirZ);
+		objB.support(direction, support);
+		bX[size] = support.x+offBX;
+		bY[size] = support.y+offBY;
+		bZ[size] = support.z+offBZ;
+		wX[size] = aX[size]-bX[size];
+		wY[size] = aY[size]-bY[size];
+		wZ[size] = aZ[size]-bZ[size];
+		size++;
+	}
+	
+	private boolean isDuplicate(int index){
+		for(int curPoint = 0; curPoint < index; curPoint++){
+			if(wX[curPoint] == wX[index] && wY[curPoint] == wY[index] && wZ[curPoint] == wZ[index]){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Finds the closest point of the simplex to the origin, storing its barycentric coordinates in lambda and
+	 * removing the points that don't support it
+	 * 
+	 * @return False if the origin is inside the simplex, true otherwise
+	 */
+	private boolean reduce(){
+		switch(size){
+			case 2:
+				closestOnSegment(0, 1);
+				return true;
+			case 3:
+				closestOnTriangle(0, 1, 2);
+				return true;
+			case 4:
+				return closestOnTetrahedron();
+			default:
+				lambda[0] = 1;
+				return true;
+		}
+	}
+	
+	private void closestOnSegment(int a, int b){
+		float abX = wX[b]-wX[a], abY = wY[b]-wY[a], abZ = wZ[b]-wZ[a];
+		float denom = abX*abX+abY*abY+abZ*abZ;
+		float t = denom > 0 ? -(wX[a]*abX+wY[a]*abY+wZ[a]*abZ)/denom : 0;
+		if(t <= 0){
+			keep(a, -1, -1, 1, 0, 0);
+		}else if(t >= 1){
+			keep(b, -1, -1, 1, 0, 0);
+		}else{
+			keep(a, b, -1, 1-t, t, 0);
+		}
+	}
+	
+	/**
+	 * Closest point on a triangle to the origin by its Voronoi regions, from Christer Ericson's Real-Time Collision
+	 * Detection
+	 */
+	private void closestOnTriangle(int a, int b, int c){
+		float abX = wX[b]-wX[a], abY = wY[b]-wY[a], abZ = wZ[b]-wZ[a];
+		float acX = wX[c]-wX[a], acY = wY[c]-wY[a], acZ = wZ[c]-wZ[a];
+		//vector from a to the origin
+		float apX = -wX[a], apY = -wY[a], apZ = -wZ[a];
+		float d1 = abX*apX+abY*apY+abZ*apZ;
+		float d2 = acX*apX+acY*apY+acZ*apZ;
+		if(d1 <= 0 && d2 <= 0){
+			keep(a, -1, -1, 1, 0, 0);
+			return;
+		}
+		float bpX = -wX[b], bpY = -wY[b], bpZ = -wZ[b];
+		float d3 = abX*bpX+abY*bpY+abZ*bpZ;
+		float d4 = acX*bpX+acY*bpY+acZ*bpZ;
+		if(d3 >= 0 && d4 <= d3){
+			keep(b, -1, -1, 1, 0, 0);
+			return;
+		}
+		float vc = d1*d4-d3*d2;
+		if(vc <= 0 && d1 >= 0 && d3 <= 0){
+			float v = d1/(d1-d3);
+			keep(a, b, -1, 1-v, v, 0);
+			return;
+		}
+		float cpX = -wX[c], cpY = -wY[c], cpZ = -wZ[c];
+		float d5 = abX*cpX+abY*cpY+abZ*cpZ;
+		float d6 = acX*cpX+acY*cpY+acZ*cpZ;
+		if(d6 >= 0 && d5 <= d6){
+			keep(c, -1, -1, 1, 0, 0);
+			return;
+		}
+		float vb = d5*d2-d1*d6;
+		if(vb <= 0 && d2 >= 0 && d6 <= 0){
+			float w = d2/(d2-d6);
+			keep(a, c, -1, 1-w, w, 0);
+			return;
+		}
+		float va = d3*d6-d5*d4;
+		if(va <= 0 && (d4-d3) >= 0 && (d5-d6) >= 0){
+			float w = (d4-d3)/((d4-d3)+(d5-d6));
+			keep(b, c, -1, 1-w, w, 0);
+			return;
+		}
+		float denom = 1/(va+vb+vc);
+		float v = vb*denom;
+		float w = vc*denom;
+		keep(a, b, c, 1-v-w, v, w);
+	}
+	
+	/**
+	 * Closest point on the tetrahedron to the origin, only the faces the origin is in front of need to be checked
+	 * 
+	 * @return False if the origin is inside the tetrahedron
+	 */
+	private boolean closestOnTetrahedron(){
+		//copy the tetrahedron since testing a face overwrites the simplex
+		System.arraycopy(wX, 0, savedW, 0, 4);
+		System.arraycopy(wY, 0, savedW, 4, 4);
+		System.arraycopy(wZ, 0, savedW, 8, 4);
+		System.arraycopy(aX, 0, savedA, 0, 4);
+		System.arraycopy(aY, 0, savedA, 4, 4);
+		System.arraycopy(aZ, 0, savedA, 8, 4);
+		System.arraycopy(bX, 0, savedB, 0, 4);
+		System.arraycopy(bY, 0, savedB, 4, 4);
+		System.arraycopy(bZ, 0, savedB, 8, 4);
+		float bestDist = Float.MAX_VALUE;
+		int bestFace = -1;
+		float bestL0 = 0, bestL1 = 0, bestL2 = 0;
+		int best0 = 0, best1 = 0, best2 = 0;
+		int bestSize = 0;
+		//faces listed with the vertex opposite them
+		for(int curFace = 0; curFace < 4; curFace++){
+			int a = FACES[curFace][0], b = FACES[curFace][1], c = FACES[curFace][2], d = FACES[curFace][3];
+			if(!originOutside(a, b, c, d)){
+				continue;
+			}
+			restore();
+			closestOnTriangle(a, b, c);
+			float x = 0, y = 0, z = 0;
+			for(int curPoint = 0; curPoint < size; curPoint++){
+				x += wX[curPoint]*lambda[curPoint];
+				y += wY[curPoint]*lambda[curPoint];
+				z += wZ[curPoint]*lambda[curPoint];
+			}
+			float dist = x*x+y*y+z*z;
+			if(dist < bestDist){
+				bestDist = dist;
+				bestFace = curFace;
+				bestSize = size;
+				bestL0 = lambda[0];
+				bestL1 = lambda[1];
+				bestL2 = lambda[2];
+				best0 = lastKept[0];
+				best1 = lastKept[1];
+				best2 = lastKept[2];
+			}
+		}
+		restore();
+		if(bestFace == -1){
+			return false;
+		}
+		keep(best0, bestSize > 1 ? best1 : -1, bestSize > 2 ? best2 : -1, bestL0, bestL1, bestL2);
+		return true;
+	}
+	
+	/**
+	 * Checks whether the origin and the point d are on opposite sides of the plane through a, b and c
+	 */
+	private boolean originOutside(int a, int b, int c, int d){
+		float abX = wX[b]-wX[a], abY = wY[b]-wY[a], abZ = wZ[b]-wZ[a];
+		float acX = wX[c]-wX[a], acY = wY[c]-wY[a], acZ = wZ[c]-wZ[a];
+		float nX = abY*acZ-abZ*acY;
+		float nY = abZ*acX-abX*acZ;
+		float nZ = abX*acY-abY*acX;
+		float adX = wX[d]-wX[a], adY = wY[d]-wY[a], adZ = wZ[d]-wZ[a];
+		float signOrigin = -(wX[a]*nX+wY[a]*nY+wZ[a]*nZ);
+		float signD = adX*nX+adY*nY+adZ*nZ;
+		//a flat tetrahedron has no inside so all of its faces are tested, support points on curved meshes crowd
+		//together as they converge and leave the sign of a nearly flat one to rounding
+		return signOrigin*signD < 0
+				|| signD*signD <= FLAT_TOLERANCE*(nX*nX+nY*nY+nZ*nZ)*(adX*adX+adY*adY+adZ*adZ);
+	}
+	
+	/**
+	 * Reduces the simplex to the given points with the given barycentric coordinates, unused points are -1
+	 */
+	private void keep(int p0, int p1, int p2, float l0, float l1, float l2){
+		lastKept[0] = p0;
+		lastKept[1] = p1;
+		lastKept[2] = p2;
+		int newSize = 0;
+		save(p0, newSize++);
+		if(p1 != -1){
+			save(p1, newSize++);
+		}
+		if(p2 != -1){
+			save(p2, newSize++);
+		}
+		for(int curPoint = 0; curPoint < newSize; curPoint++){
+			load(curPoint, curPoint);
+		}
+		size = newSize;
+		lambda[0] = l0;
+		lambda[1] = l1;
+		lambda[2] = l2;
+	}
+	
+	private void save(int from, int to){
+		tempW[to*3] = wX[from];
+		tempW[to*3+1] = wY[from];
+		tempW[to*3+2] = wZ[from];
+		tempA[to*3] = aX[from];
+		tempA[to*3+1] = aY[from];
+		tempA[to*3+2] = aZ[from];
+		tempB[to*3] = bX[from];
+		tempB[to*3+1] = bY[from];
+		tempB[to*3+2] = bZ[from];
+	}
+	
+	private void load(int from, int to){
+		wX[to] = tempW[from*3];
+		wY[to] = tempW[from*3+1];
+		wZ[to] = tempW[from*3+2];
+		aX[to] = tempA[from*3];
+		aY[to] = tempA[from*3+1];
+		aZ[to] = tempA[from*3+2];
+		bX[to] = tempB[from*3];
+		bY[to] = tempB[from*3+1];
+		bZ[to] = tempB[from*3+2];
+	}
+	
+	private void restore(){
+		System.arraycopy(savedW, 0, wX, 0, 4);
+		System.arraycopy(savedW, 4, wY, 0, 4);
+		System.arraycopy(savedW, 8, wZ, 0, 4);
+		System.arraycopy(savedA, 0, aX, 0, 4);
+		System.arraycopy(savedA, 4, aY, 0, 4);
+		System.arraycopy(savedA, 8, aZ, 0, 4);
+		System.arraycopy(savedB, 0, bX, 0, 4);
+		System.arraycopy(savedB, 4, bY, 0, 4);
+		System.arraycopy(savedB, 8, bZ, 0, 4);
+		size = 4;
+	}
+	
+	/**
+	 * Gets the closest point on the first mesh found by the last query, including its offset
+	 * 
+	 * @return Closest point on the first mesh, this vector is reused by the next query
+	 */
+	public Vec3 getClosestA(){
+		return closestA;
+	}
+	
+	/**
+	 * Gets the closest point on the second mesh found by the last query, including its offset
+	 * 
+	 * @return Closest point on the second mesh, this vector is reused by the next query
+	 */
+	public Vec3 getClosestB(){
+		return closestB;
+	}
+	
+	/**
+	 * Gets the direction from the closest point on the first mesh to the closest point on the second mesh
+	 * 
+	 * @return Unit normal of the last query, zero if the meshes intersect
+	 */
+	public Vec3 getNormal(){
+		return normal;
+	}
+	
+	public float getDistance(){
+		return distance;
+	}
+	
+	public boolean isIntersecting(){
+		return intersecting;
+	}
+	
+	public int getIterations(){
+		return iterations;
+	}
+}
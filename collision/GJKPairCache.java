@@ -0,0 +1,271 @@
+package collision;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import glMath.Vec3;
+
+/**
+ * Cache of the terminal GJK search direction for pairs of collision meshes. Pairs that are tested in consecutive
+ * frames and have barely moved can start their search from the direction the previous test ended with, for
+ * separated pairs this is a separating axis which lets the test finish after a single support point.
+ *
+ * Pairs are keyed on the identity of the two meshes in the order they were given, each access stamps the pair
+ * with the current frame so pairs that are no longer broadphase candidates can be evicted once they have
+ * gone untested for a number of frames. The cache is not thread safe.
+ *
+ * @author Kevin
+ *
+ */
+public class GJKPairCache {
+
+	private HashMap<PairKey, CachedPair> pairs;
+	//reusable key used for lookups so that cache hits don't allocate
+	private PairKey probe;
+	private int frame;
+	private long hits, misses, iterationsSaved, evictions;
+
+	public GJKPairCache(){
+		pairs = new HashMap<PairKey, CachedPair>();
+		probe = new PairKey(null, null);
+		frame = 0;
+	}
+
+	/**
+	 * Tests the given collision meshes for intersection on the calling threads workspace, seeding the test
+	 * with the cached direction of the pair if there is one and caching the terminal direction of the test
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param result Collision data to store the results of the test in
+	 * @return The result collision data post operation
+	 */
+	public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result){
+		return intersect(objA, objB, result, null);
+	}
+
+	/**
+	 * Tests the given collision meshes for intersection on the given workspace, seeding the test with the
+	 * cached direction of the pair if there is one and caching the terminal direction of the test
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @param result Collision data to store the results of the test in
+	 * @param workspace Workspace used for the test, if null the calling threads workspace is used
+	 * @return The result collision data post operation
+	 */
+	public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+		if(workspace == null){
+			workspace = CollisionDetector.getWorkspace();
+		}
+		probe.set(objA, objB);
+		CachedPair cached = pairs.get(probe);
+
+		if(cached == null){
+			misses++;
+			CollisionDetector.gjkIntersect(objA, objB, null, result, workspace);
+			cached = new CachedPair(objA, objB);
+			//the iterations of the cold test are the baseline used to measure how much warm starting saves
+			cached.coldIterations = workspace.getIterations();
+			pairs.put(cached.key, cached);
+		}else{
+			hits++;
+			//a degenerate direction can't be used as a seed so fall back to a cold start
+			Vec3 seed = cached.direction.isZero() ? null : cached.direction;
+			CollisionDetector.gjkIntersect(objA, objB, seed, result, workspace);
+			int saved = cached.coldIterations-workspace.getIterations();
+			if(saved > 0){
+				iterationsSaved += saved;
+			}
+		}
+		cached.direction.set(workspace.getTerminalDirection());
+		cached.lastFrame = frame;
+		return result;
+	}
+
+	/**
+	 * Gets the direction the next test of the given pair should be seeded with, adding the pair to the cache if it
+	 * isn't in it yet. The direction belongs to the pair so the tests of different pairs can run on separate threads
+	 * and store their terminal direction in it, but the lookups themselves have to be made from a single thread
+	 *
+	 * @param objA First collision mesh
+	 * @param objB Second collision mesh
+	 * @return Direction of the pair, a zero direction means the pair has no seed and should be tested cold
+	 */
+	public Vec3 getDirection(CollisionMesh objA, CollisionMesh objB){
+		probe.set(objA, objB);
+		CachedPair cached = pairs.get(probe);
+		if(cached == null){
+			misses++;
+			cached = new CachedPair(objA, objB);
+			pairs.put(cached.key, cached);
+		}else{
+			hits++;
+		}
+		cached.lastFrame = frame;
+		return cached.direction;
+	}
+
+	/**
+	 * Advances the frame counter of this cache, pairs that are tested after this call are stamped with the new frame
+	 */
+	public void nextFrame(){
+		frame++;
+	}
+
+	/**
+	 * Removes all pairs that have not been tested within the given number of frames
+	 *
+	 * @param maxAge Number of frames a pair can go untested before it is evicted, 0 evicts all pairs not tested this frame
+	 * @return Number of pairs that were evicted
+	 */
+	public int evict(int maxAge){
+		int evicted = 0;
+		Iterator<CachedPair> pairIterator = pairs.values().iterator();
+		while(pairIterator.hasNext()){
+			if(frame-pairIterator.next().lastFrame > maxAge){
+				pairIterator.remove();
+				evicted++;
+			}
+		}
+		evictions += evicted;
+		return evicted;
+	}
+
+	/**
+	 * Removes the given pair from the cache, this should be called when the pair stops being a broadphase candidate
+	 *
+	 * @param objA First collision mesh of the pair
+	 * @param objB Second collision mesh of the pair
+	 * @return True if the pair was in the cache, false otherwise
+	 */
+	public boolean remove(CollisionMesh objA, CollisionMesh objB){
+		probe.set(objA, objB);
+		if(pairs.remove(probe) != null){
+			evictions++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes every pair the given collision mesh is part of, this should be called when the mesh is removed from the world
+	 *
+	 * @param mesh Collision mesh to remove the pairs of
+	 * @return Number of pairs that were removed
+	 */
+	public int remove(CollisionMesh mesh){
+		int removed = 0;
+		Iterator<PairKey> keyIterator = pairs.keySet().iterator();
+		while(keyIterator.hasNext()){
+			PairKey key = keyIterator.next();
+			if(key.objA == mesh || key.objB == mesh){
+				keyIterator.remove();
+				removed++;
+			}
+		}
+		evictions += removed;
+		return removed;
+	}
+
+	/**
+	 * Removes all the pairs from the cache
+	 */
+	public void clear(){
+		evictions += pairs.size();
+		pairs.clear();
+	}
+
+	public int size(){
+		return pairs.size();
+	}
+
+	public long getHits(){
+		return hits;
+	}
+
+	public long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * Gets the fraction of tests that were seeded from the cache
+	 *
+	 * @return Hit rate of the cache between 0 and 1
+	 */
+	public float getHitRate(){
+		long total = hits+misses;
+		return total == 0 ? 0 : hits/(float)total;
+	}
+
+	/**
+	 * Gets the total number of GJK iterations saved by warm starting, measured against the iterations each pair
+	 * needed when it was first tested without a seed
+	 *
+	 * @return Total number of iterations saved
+	 */
+	public long getIterationsSaved(){
+		return iterationsSaved;
+	}
+
+	public long getEvictions(){
+		return evictions;
+	}
+
+	/**
+	 * Resets the hit, miss, iterations saved and eviction counters
+	 */
+	public void resetStats(){
+		hits = 0;
+		misses = 0;
+		iterationsSaved = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * Key identifying an ordered pair of collision meshes by identity
+	 */
+	private static class PairKey{
+		private CollisionMesh objA, objB;
+		private int hashCode;
+
+		public PairKey(CollisionMesh objA, CollisionMesh objB){
+			set(objA, objB);
+		}
+
+		public void set(CollisionMesh objA, CollisionMesh objB){
+			this.objA = objA;
+			this.objB = objB;
+			hashCode = 31*System.identityHashCode(objA)+System.identityHashCode(objB);
+		}
+
+		@Override
+		public int hashCode(){
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(o instanceof PairKey){
+				PairKey cast = (PairKey)o;
+				return cast.objA == objA && cast.objB == objB;
+			}else{
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Cached state of a pair of collision meshes
+	 */
+	private static class CachedPair{
+		private PairKey key;
+		private Vec3 direction;
+		private int lastFrame, coldIterations;
+
+		public CachedPair(CollisionMesh objA, CollisionMesh objB){
+			key = new PairKey(objA, objB);
+			direction = new Vec3();
+		}
+	}
+}
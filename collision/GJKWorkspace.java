@@ -0,0 +1,189 @@
+package collision;
+
+import glMath.Vec3;
+
+/**
+ * Scratch storage used by the CollisionDetector when running the GJK and EPA algorithms. A workspace holds
+ * a fixed 4 slot simplex, a pooled polytope and all the temporary vectors the algorithms need so that once
+ * it has been constructed a query does not allocate anything on the heap.
+ *
+ * A workspace must only be used by one thread at a time, the CollisionDetector keeps one workspace per
+ * thread for the queries that aren't given one explicitly.
+ *
+ * @author Kevin
+ *
+ */
+public final class GJKWorkspace {
+
+	//simplex being built by GJK, only the first simplexSize entries are valid
+	final Polytope.PolytopePoint[] simplex;
+	int simplexSize;
+	//number of support points GJK computed for the last query
+	int iterations;
+	//points backing the simplex, one more than the simplex can hold so a new point can always be made
+	private final Polytope.PolytopePoint[] points;
+
+	//polytope reused by the EPA
+	final Polytope polytope;
+	//support point being tested for addition to the polytope
+	final Polytope.PolytopePoint newSupport;
+	//face used when computing the closest points of a triangle simplex
+	final Polytope.PolytopeTriangle face;
+
+	//scratch vectors for the simplex computations
+	final Vec3 direction, inverseDir, supportA, supportB, ab, ac, ad, ao, abc, acd, adb, temp;
+	//scratch vectors for the contact computations
+	final Vec3 normal, coords, aPoint, bPoint;
+	//scratch space for the closed form tests of the CollisionDispatcher, the unit axes and half extents of a box
+	//and the bounds of a pair of boxes stored as the minimum x, y, z followed by the maximum x, y, z
+	final Vec3[] boxAxes;
+	final float[] boxExtents, boundsA, boundsB;
+	//scratch space for the box separating axis test, the axes and extents of the second box, the rotation between
+	//the boxes and its absolute values, the offset between their centers in the frame of the first box, the
+	//polygons of the face clipping and the depths of the contacts left after clipping
+	final Vec3[] boxAxesB;
+	final float[] boxExtentsB, rotation, absRotation, boxOffset, clipPolygon, clipResult, clipDepths;
+	//scratch space for tests against triangle meshes, the traversal stack of the hierarchy, the triangles found by
+	//it, the vertices of the triangle being tested and the contacts found against all the triangles. These grow with
+	//the meshes they are used for
+	int[] meshStack, meshTriangles;
+	final Vec3[] triangle;
+	float[] meshContacts;
+	int numMeshContacts;
+	//the triangle being tested as a collision mesh and the distance query used to rule out convex meshes the
+	//separating axes of the triangle can't
+	final TriangleMeshTest.TriangleShape triangleShape;
+	final GJKDistance distanceQuery;
+
+	public GJKWorkspace(){
+		simplex = new Polytope.PolytopePoint[4];
+		points = new Polytope.PolytopePoint[5];
+		for(int curPoint = 0; curPoint < points.length; curPoint++){
+			points[curPoint] = new Polytope.PolytopePoint();
+		}
+		simplexSize = 0;
+
+		polytope = new Polytope(Polytope.DEFAULT_CAPACITY);
+		newSupport = new Polytope.PolytopePoint();
+		face = new Polytope.PolytopeTriangle();
+
+		direction = new Vec3();
+		inverseDir = new Vec3();
+		supportA = new Vec3();
+		supportB = new Vec3();
+		ab = new Vec3();
+		ac = new Vec3();
+		ad = new Vec3();
+		ao = new Vec3();
+		abc = new Vec3();
+		acd = new Vec3();
+		adb = new Vec3();
+		temp = new Vec3();
+
+		normal = new Vec3();
+		coords = new Vec3();
+		aPoint = new Vec3();
+		bPoint = new Vec3();
+
+		boxAxes = new Vec3[]{new Vec3(), new Vec3(), new Vec3()};
+		boxExtents = new float[3];
+		boundsA = new float[6];
+		boundsB = new float[6];
+		boxAxesB = new Vec3[]{new Vec3(), new Vec3(), new Vec3()};
+		boxExtentsB = new float[3];
+		rotation = new float[9];
+		absRotation = new float[9];
+		boxOffset = new float[3];
+		//clipping a quad against the 4 sides of a face leaves at most 8 points
+		clipPolygon = new float[24];
+		clipResult = new float[24];
+		clipDepths = new float[8];
+		meshStack = new int[32];
+		meshTriangles = new int[64];
+		triangle = new Vec3[]{new Vec3(), new Vec3(), new Vec3()};
+		meshContacts = new float[TriangleMeshTest.CONTACT_STRIDE*16];
+		numMeshContacts = 0;
+		triangleShape = new TriangleMeshTest.TriangleShape(triangle);
+		distanceQuery = new GJKDistance();
+	}
+
+	/**
+	 * Gets the search direction GJK terminated with on the last query run on this workspace
+	 *
+	 * @return The terminal search direction, this vector is reused by the next query
+	 */
+	public Vec3 getTerminalDirection(){
+		return direction;
+	}
+
+	/**
+	 * Gets the number of support points GJK needed for the last query run on this workspace
+	 *
+	 * @return Number of GJK iterations of the last query
+	 */
+	public int getIterations(){
+		return iterations;
+	}
+
+	/**
+	 * Grows the mesh stack and mesh triangles so they can hold at least the given number of entries, keeping the
+	 * triangles already found
+	 *
+	 * @param stackSize Number of nodes the traversal stack needs to hold
+	 * @param numTriangles Number of triangles the query can find
+	 */
+	void ensureMeshCapacity(int stackSize, int numTriangles){
+		if(meshStack.length < stackSize){
+			meshStack = new int[Math.max(stackSize, meshStack.length*2)];
+		}
+		if(meshTriangles.length < numTriangles){
+			int[] grown = new int[Math.max(numTriangles, meshTriangles.length*2)];
+			System.arraycopy(meshTriangles, 0, grown, 0, meshTriangles.length);
+			meshTriangles = grown;
+		}
+	}
+
+	/**
+	 * Gets a point that is not currently part of the simplex
+	 *
+	 * @return Point that can be overwritten with a new support point
+	 */
+	Polytope.PolytopePoint nextPoint(){
+		for(int curPoint = 0; curPoint < points.length; curPoint++){
+			Polytope.PolytopePoint point = points[curPoint];
+			boolean inUse = false;
+			for(int curSimplex = 0; curSimplex < simplexSize && !inUse; curSimplex++){
+				inUse = simplex[curSimplex] == point;
+			}
+			if(!inUse){
+				return point;
+			}
+		}
+		//the simplex can't hold more than 4 points so there is always at least one free point
+		return null;
+	}
+
+	/**
+	 * Removes the point at the given index of the simplex shifting the later points down
+	 *
+	 * @param index Index of the point to remove
+	 */
+	void remove(int index){
+		for(int curPoint = index; curPoint < simplexSize-1; curPoint++){
+			simplex[curPoint] = simplex[curPoint+1];
+		}
+		simplex[--simplexSize] = null;
+	}
+
+	/**
+	 * Swaps the points at the given indices of the simplex
+	 *
+	 * @param first Index of the first point
+	 * @param second Index of the second point
+	 */
+	void swap(int first, int second){
+		Polytope.PolytopePoint swap = simplex[first];
+		simplex[first] = simplex[second];
+		simplex[second] = swap;
+	}
+}
@@ -0,0 +1,578 @@
+package collision;
+
+import glMath.Mat4;
+import glMath.Quaternion;
+import glMath.Vec3;
+import glMath.Vec4;
+
+/**
+ * Collision mesh of terrain given as a grid of heights. The samples are a fixed distance apart on the local x and z
+ * axes and the grid is centered on the local origin, each cell between four samples is split into two triangles along
+ * the diagonal from its corner on the positive x side to its corner on the positive z side. The space below the
+ * surface is solid.
+ * 
+ * The heights are the only per sample data so a grid of 4097 by 4097 samples takes 64 MB. The range of heights under
+ * each block of 16 by 16 cells is kept as well so ray casts can walk the blocks and only walk the cells of the blocks
+ * whose range they pass through. Convex meshes are tested against the triangles of the cells under their bounds by
+ * the TriangleMeshTest.
+ * 
+ * Like the AABB the heightfield can be moved and scaled but not rotated, the orientation methods do nothing. Its
+ * support function is the support of its bounds.
+ * 
+ * @author Kevin
+ *
+ */
+public class HeightfieldCollider implements CollisionMesh, TriangleMeshTest.TriangleSource {
+	
+	//blocks are 2^BLOCK_SHIFT cells along each side
+	private static final int BLOCK_SHIFT = 4;
+	//slack on the coordinates of a hit within its cell so rays along the edges of the triangles don't slip between them
+	private static final float EDGE_TOLERANCE = 1e-5f;
+	
+	//heights of the samples row by row along z, each row holding the samples along x
+	private final float[] heights;
+	private final int width, length;
+	private final float cellSize;
+	//lowest and highest height under each block of cells and of the whole grid
+	private final float[] blockMin, blockMax;
+	private final int blocksX, blocksZ;
+	private float minHeight, maxHeight;
+	
+	private Mat4 modelMat;
+	//world position of the first sample at a height of 0 and the world offset between samples and per unit of height,
+	//a grid coordinate maps to the world as origin+coordinate*step on each axis
+	private float originX, originY, originZ, stepX, stepY, stepZ;
+	//whether the model matrix mirrors the grid, which flips the winding of its triangles
+	private boolean mirrored;
+	private float minX, minY, minZ, maxX, maxY, maxZ;
+	
+	/**
+	 * Constructs a heightfield of the given heights, the array is kept rather than copied
+	 * 
+	 * @param heights Heights of the samples row by row along z, each row holding the samples along x
+	 * @param width Number of samples along x
+	 * @param length Number of samples along z
+	 * @param cellSize Distance between neighboring samples
+	 */
+	public HeightfieldCollider(float[] heights, int width, int length, float cellSize){
+		if(width < 2 || length < 2 || heights.length < width*length){
+			System.err.println("Invalid heightfield of "+width+" by "+length+" samples with "+heights.length+" heights, "
+					+ "the heightfield will be empty");
+			width = length = 0;
+		}
+		this.heights = heights;
+		this.width = width;
+		this.length = length;
+		this.cellSize = cellSize;
+		blocksX = Math.max(0, width-1+(1 << BLOCK_SHIFT)-1) >> BLOCK_SHIFT;
+		blocksZ = Math.max(0, length-1+(1 << BLOCK_SHIFT)-1) >> BLOCK_SHIFT;
+		blockMin = new float[blocksX*blocksZ];
+		blockMax = new float[blocksX*blocksZ];
+		computeBlocks();
+		modelMat = new Mat4(1);
+		updateBounds();
+	}
+	
+	public HeightfieldCollider(HeightfieldCollider copy){
+		//the heights never change so they are shared
+		heights = copy.heights;
+		width = copy.width;
+		length = copy.length;
+		cellSize = copy.cellSize;
+		blockMin = copy.blockMin;
+		blockMax = copy.blockMax;
+		blocksX = copy.blocksX;
+		blocksZ = copy.blocksZ;
+		minHeight = copy.minHeight;
+		maxHeight = copy.maxHeight;
+		modelMat = new Mat4(copy.modelMat);
+		updateBounds();
+	}
+	
+	/**
+	 * Finds the triangles of the cells under the given box whose heights overlap it, the cells are searched block by
+	 * block and the blocks whose range of heights is above or below the box are skipped
+	 * 
+	 * @param bounds Box to test as the minimum x, y, z followed by the maximum x, y, z
+	 * @param workspace Workspace whose mesh triangles receive the indices of the overlapping triangles
+	 * @return Number of overlapping triangles
+	 */
+	@Override
+	public int overlapping(float[] bounds, GJKWorkspace workspace){
+		if(width == 0){
+			return 0;
+		}
+		//the box in grid coordinates, a negative step swaps its sides
+		float lowX = (bounds[0]-originX)/stepX, highX = (bounds[3]-originX)/stepX;
+		float lowY = (bounds[1]-originY)/stepY, highY = (bounds[4]-originY)/stepY;
+		float lowZ = (bounds[2]-originZ)/stepZ, highZ = (bounds[5]-originZ)/stepZ;
+		int startX = Math.max(0, (int)Math.floor(Math.min(lowX, highX)));
+		int endX = Math.min(width-2, (int)Math.floor(Math.max(lowX, highX)));
+		int startZ = Math.max(0, (int)Math.floor(Math.min(lowZ, highZ)));
+		int endZ = Math.min(length-2, (int)Math.floor(Math.max(lowZ, highZ)));
+		float bottom = Math.min(lowY, highY), top = Math.max(lowY, highY);
+		if(startX > endX || startZ > endZ || bottom > maxHeight || top < minHeight){
+			return 0;
+		}
+		
+		int[] hits = workspace.meshTriangles;
+		int found = 0;
+		for(int blockZ = startZ >> BLOCK_SHIFT; blockZ <= endZ >> BLOCK_SHIFT; blockZ++){
+			for(int blockX = startX >> BLOCK_SHIFT; blockX <= endX >> BLOCK_SHIFT; blockX++){
+				int block = blockZ*blocksX+blockX;
+				if(blockMin[block] > top || blockMax[block] < bottom){
+					continue;
+				}
+				int lastZ = Math.min(endZ, ((blockZ+1) << BLOCK_SHIFT)-1);
+				int lastX = Math.min(endX, ((blockX+1) << BLOCK_SHIFT)-1);
+				for(int cellZ = Math.max(startZ, blockZ << BLOCK_SHIFT); cellZ <= lastZ; cellZ++){
+					int row = cellZ*width;
+					for(int cellX = Math.max(startX, blockX << BLOCK_SHIFT); cellX <= lastX; cellX++){
+						if(found+2 > hits.length){
+							workspace.ensureMeshCapacity(0, found+2);
+							hits = workspace.meshTriangles;
+						}
+						//both triangles of the cell share the diagonal
+						float diagonal0 = heights[row+cellX+1], diagonal1 = heights[row+width+cellX];
+						float diagonalMin = Math.min(diagonal0, diagonal1), diagonalMax = Math.max(diagonal0, diagonal1);
+						float corner0 = heights[row+cellX], corner1 = heights[row+width+cellX+1];
+						int triangle = 2*(cellZ*(width-1)+cellX);
+						if(Math.min(diagonalMin, corner0) <= top && Math.max(diagonalMax, corner0) >= bottom){
+							hits[found++] = triangle;
+						}
+						if(Math.min(diagonalMin, corner1) <= top && Math.max(diagonalMax, corner1) >= bottom){
+							hits[found++] = triangle+1;
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Gets the world space vertices of the triangle at the given index, the triangles of each cell are next to each
+	 * other and the cells are ordered row by row along z
+	 * 
+	 * @param index Index of the triangle
+	 * @param a Vector to store the first vertex in
+	 * @param b Vector to store the second vertex in
+	 * @param c Vector to store the third vertex in
+	 */
+	@Override
+	public void getTriangle(int index, Vec3 a, Vec3 b, Vec3 c){
+		int cell = index >> 1;
+		int cellX = cell%(width-1), cellZ = cell/(width-1);
+		//the winding is kept counter clockwise from above when the grid is mirrored
+		Vec3 second = mirrored ? c : b, third = mirrored ? b : c;
+		if((index & 1) == 0){
+			setSample(cellX, cellZ, a);
+			setSample(cellX, cellZ+1, second);
+			setSample(cellX+1, cellZ, third);
+		}else{
+			setSample(cellX+1, cellZ, a);
+			setSample(cellX, cellZ+1, second);
+			setSample(cellX+1, cellZ+1, third);
+		}
+	}
+	
+	private void setSample(int x, int z, Vec3 result){
+		result.x = originX+x*stepX;
+		result.y = originY+heights[z*width+x]*stepY;
+		result.z = originZ+z*stepZ;
+	}
+	
+	/**
+	 * Gets whether the heightfield bounds a solid, the space below the surface is always solid
+	 */
+	@Override
+	public boolean isSolid(){
+		return true;
+	}
+	
+	/**
+	 * Gets the height of the surface at the given world position
+	 * 
+	 * @param x World x coordinate
+	 * @param z World z coordinate
+	 * @return World y coordinate of the surface, or NaN if the position isn't over the heightfield
+	 */
+	public float getHeight(float x, float z){
+		float gridX = (x-originX)/stepX, gridZ = (z-originZ)/stepZ;
+		if(!(gridX >= 0 && gridX <= width-1 && gridZ >= 0 && gridZ <= length-1)){
+			return Float.NaN;
+		}
+		return originY+gridHeight(gridX, gridZ)*stepY;
+	}
+	
+	/**
+	 * Gets the unscaled height of the surface at the given grid coordinates, which must be on the grid
+	 */
+	private float gridHeight(float gridX, float gridZ){
+		int cellX = Math.min((int)gridX, width-2), cellZ = Math.min((int)gridZ, length-2);
+		float u = gridX-cellX, v = gridZ-cellZ;
+		int sample = cellZ*width+cellX;
+		if(u+v <= 1){
+			float corner = heights[sample];
+			return corner+(heights[sample+1]-corner)*u+(heights[sample+width]-corner)*v;
+		}
+		float corner = heights[sample+width+1];
+		return corner+(corner-heights[sample+width])*(u-1)+(corner-heights[sample+1])*(v-1);
+	}
+	
+	/**
+	 * Casts a ray against the surface, the ray is walked across the blocks of the grid and then across the cells of
+	 * the blocks whose range of heights it passes through
+	 * 
+	 * @param origin Start of the ray
+	 * @param ray Direction of the ray, its length is the furthest the ray is cast
+	 * @param result Cast result to store the hit in, a ray that starts below the surface hits at its start with no
+	 * normal
+	 * @return True if the ray hit the surface
+	 */
+	public boolean raycast(Vec3 origin, Vec3 ray, CastResult result){
+		result.reset();
+		if(width == 0){
+			return false;
+		}
+		//the ray in grid coordinates, the fraction along the ray is the same in both spaces
+		float oX = (origin.x-originX)/stepX, oY = (origin.y-originY)/stepY, oZ = (origin.z-originZ)/stepZ;
+		float dX = ray.x/stepX, dY = ray.y/stepY, dZ = ray.z/stepZ;
+		if(oX >= 0 && oX <= width-1 && oZ >= 0 && oZ <= length-1 && oY < gridHeight(oX, oZ)){
+			result.hit = true;
+			result.fraction = 0;
+			result.point.set(origin);
+			return true;
+		}
+		
+		//clip the ray to the box of the grid
+		float start = 0, end = 1;
+		if(dX == 0){
+			if(oX < 0 || oX > width-1){
+				return false;
+			}
+		}else{
+			float t0 = -oX/dX, t1 = (width-1-oX)/dX;
+			start = Math.max(start, Math.min(t0, t1));
+			end = Math.min(end, Math.max(t0, t1));
+		}
+		if(dY == 0){
+			if(oY < minHeight || oY > maxHeight){
+				return false;
+			}
+		}else{
+			float t0 = (minHeight-oY)/dY, t1 = (maxHeight-oY)/dY;
+			start = Math.max(start, Math.min(t0, t1));
+			end = Math.min(end, Math.max(t0, t1));
+		}
+		if(dZ == 0){
+			if(oZ < 0 || oZ > length-1){
+				return false;
+			}
+		}else{
+			float t0 = -oZ/dZ, t1 = (length-1-oZ)/dZ;
+			start = Math.max(start, Math.min(t0, t1));
+			end = Math.min(end, Math.max(t0, t1));
+		}
+		if(start > end || !march(oX, oY, oZ, dX, dY, dZ, start, end, BLOCK_SHIFT, result)){
+			return false;
+		}
+		//the normal found in grid coordinates is turned into a world normal by the inverse transpose of the steps
+		Vec3 normal = result.normal;
+		normal.set(normal.x/stepX, normal.y/stepY, normal.z/stepZ);
+		normal.scale(1/normal.length());
+		if(normal.dot(ray) > 0){
+			normal.scale(-1);
+		}
+		result.point.set(origin.x+ray.x*result.fraction, origin.y+ray.y*result.fraction, origin.z+ray.z*result.fraction);
+		return true;
+	}
+	
+	/**
+	 * Walks the ray in grid coordinates across the squares of 2^shift cells it passes over between the given fractions.
+	 * The blocks whose range of heights the ray passes through have their cells walked in turn, the triangles of each
+	 * cell are tested and the first cell with a hit holds the closest one since its triangles are inside its square
+	 * 
+	 * @param shift BLOCK_SHIFT to walk the blocks or 0 to walk the cells
+	 * @param result Cast result to store the fraction of the hit and the normal of the triangle in grid coordinates in
+	 * @return True if the ray hit a triangle
+	 */
+	private boolean march(float oX, float oY, float oZ, float dX, float dY, float dZ, float start, float end, int shift,
+			CastResult result){
+		int size = 1 << shift;
+		int numX = shift == 0 ? width-1 : blocksX, numZ = shift == 0 ? length-1 : blocksZ;
+		int cellX = Math.max(0, Math.min(numX-1, (int)Math.floor((oX+dX*start)/size)));
+		int cellZ = Math.max(0, Math.min(numZ-1, (int)Math.floor((oZ+dZ*start)/size)));
+		int stepCellX = dX > 0 ? 1 : -1, stepCellZ = dZ > 0 ? 1 : -1;
+		//fractions of the ray between crossing the lines of the grid and of the next crossing on each axis
+		float deltaX = dX == 0 ? Float.MAX_VALUE : size/Math.abs(dX);
+		float deltaZ = dZ == 0 ? Float.MAX_VALUE : size/Math.abs(dZ);
+		float nextX = dX == 0 ? Float.MAX_VALUE : ((cellX+(dX > 0 ? 1 : 0))*size-oX)/dX;
+		float nextZ = dZ == 0 ? Float.MAX_VALUE : ((cellZ+(dZ > 0 ? 1 : 0))*size-oZ)/dZ;
+		float enter = start;
+		while(true){
+			float exit = Math.min(end, Math.min(nextX, nextZ));
+			if(shift == 0){
+				if(castCell(cellX, cellZ, oX, oY, oZ, dX, dY, dZ, result)){
+					return true;
+				}
+			}else{
+				float enterY = oY+dY*enter, exitY = oY+dY*exit;
+				int block = cellZ*blocksX+cellX;
+				if(Math.min(enterY, exitY) <= blockMax[block] && Math.max(enterY, exitY) >= blockMin[block] &&
+						march(oX, oY, oZ, dX, dY, dZ, enter, exit, 0, result)){
+					return true;
+				}
+			}
+			if(exit >= end){
+				return false;
+			}
+			if(nextX < nextZ){
+				cellX += stepCellX;
+				enter = nextX;
+				nextX += deltaX;
+			}else{
+				cellZ += stepCellZ;
+				enter = nextZ;
+				nextZ += deltaZ;
+			}
+			if(cellX < 0 || cellX >= numX || cellZ < 0 || cellZ >= numZ){
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Tests the ray in grid coordinates against the triangles of the given cell, each triangle is the part of a plane
+	 * over half of the cell so the ray is intersected with the plane and the hit is kept if it's over that half
+	 * 
+	 * @return True if the ray hit either triangle before the fraction already in the result
+	 */
+	private boolean castCell(int cellX, int cellZ, float oX, float oY, float oZ, float dX, float dY, float dZ,
+			CastResult result){
+		int sample = cellZ*width+cellX;
+		//the ray relative to the corner of the cell
+		float x = oX-cellX, z = oZ-cellZ;
+		boolean hit = false;
+		for(int half = 0; half < 2; half++){
+			//the plane of the triangle is height = corner+slopeX*(u-cornerUV)+slopeZ*(v-cornerUV) over the cell, with
+			//the corner at u = v = 0 for the first triangle and u = v = 1 for the second
+			float corner, slopeX, slopeZ, cornerUV;
+			if(half == 0){
+				corner = heights[sample];
+				slopeX = heights[sample+1]-corner;
+				slopeZ = heights[sample+width]-corner;
+				cornerUV = 0;
+			}else{
+				corner = heights[sample+width+1];
+				slopeX = corner-heights[sample+width];
+				slopeZ = corner-heights[sample+1];
+				cornerUV = 1;
+			}
+			float rate = dY-slopeX*dX-slopeZ*dZ;
+			if(rate == 0){
+				continue;
+			}
+			float fraction = (corner+slopeX*(x-cornerUV)+slopeZ*(z-cornerUV)-oY)/rate;
+			if(fraction < 0 || fraction > (hit ? result.fraction : 1)){
+				continue;
+			}
+			float u = x+dX*fraction, v = z+dZ*fraction;
+			if(u < -EDGE_TOLERANCE || u > 1+EDGE_TOLERANCE || v < -EDGE_TOLERANCE || v > 1+EDGE_TOLERANCE){
+				continue;
+			}
+			if(half == 0 ? u+v > 1+EDGE_TOLERANCE : u+v < 1-EDGE_TOLERANCE){
+				continue;
+			}
+			hit = true;
+			result.hit = true;
+			result.fraction = fraction;
+			result.normal.set(-slopeX, 1, -slopeZ);
+		}
+		return hit;
+	}
+	
+	/**
+	 * Computes the range of heights under each block from the samples of its cells, including the samples on its far
+	 * edges that it shares with the blocks after it
+	 */
+	private void computeBlocks(){
+		minHeight = Float.MAX_VALUE;
+		maxHeight = -Float.MAX_VALUE;
+		for(int blockZ = 0; blockZ < blocksZ; blockZ++){
+			int startZ = blockZ << BLOCK_SHIFT, endZ = Math.min(length-1, startZ+(1 << BLOCK_SHIFT));
+			for(int blockX = 0; blockX < blocksX; blockX++){
+				int startX = blockX << BLOCK_SHIFT, endX = Math.min(width-1, startX+(1 << BLOCK_SHIFT));
+				float low = Float.MAX_VALUE, high = -Float.MAX_VALUE;
+				for(int z = startZ; z <= endZ; z++){
+					for(int x = startX; x <= endX; x++){
+						float height = heights[z*width+x];
+						low = Math.min(low, height);
+						high = Math.max(high, height);
+					}
+				}
+				blockMin[blockZ*blocksX+blockX] = low;
+				blockMax[blockZ*blocksX+blockX] = high;
+				minHeight = Math.min(minHeight, low);
+				maxHeight = Math.max(maxHeight, high);
+			}
+		}
+		if(blocksX*blocksZ == 0){
+			minHeight = maxHeight = 0;
+		}
+	}
+	
+	/**
+	 * Recomputes the grid mapping and the world bounds from the model matrix, only its translation and the scale on
+	 * its diagonal are used
+	 */
+	private void updateBounds(){
+		Vec4[] columns = modelMat.getMatrix();
+		Vec4 translation = columns[3];
+		stepX = columns[0].x*cellSize;
+		stepY = columns[1].y;
+		stepZ = columns[2].z*cellSize;
+		originX = translation.x-stepX*Math.max(0, width-1)*.5f;
+		originY = translation.y;
+		originZ = translation.z-stepZ*Math.max(0, length-1)*.5f;
+		mirrored = stepX*stepY*stepZ < 0;
+		float farX = originX+stepX*Math.max(0, width-1), farZ = originZ+stepZ*Math.max(0, length-1);
+		float lowY = originY+minHeight*stepY, highY = originY+maxHeight*stepY;
+		minX = Math.min(originX, farX);
+		minY = Math.min(lowY, highY);
+		minZ = Math.min(originZ, farZ);
+		maxX = Math.max(originX, farX);
+		maxY = Math.max(lowY, highY);
+		maxZ = Math.max(originZ, farZ);
+	}
+	
+	public int getWidth(){
+		return width;
+	}
+	
+	public int getLength(){
+		return length;
+	}
+	
+	public float getCellSize(){
+		return cellSize;
+	}
+	
+	public void translate(float x, float y, float z){
+		Vec4[] columns = modelMat.getMatrix();
+		for(int curCol = 0; curCol < 4; curCol++){
+			Vec4 column = columns[curCol];
+			column.x += x*column.w;
+			column.y += y*column.w;
+			column.z += z*column.w;
+		}
+		updateBounds();
+	}
+	
+	public void translate(Vec3 translation){
+		translate(translation.x, translation.y, translation.z);
+	}
+	
+	public void scale(float factor){
+		scale(factor, factor, factor);
+	}
+	
+	public void scale(float x, float y, float z){
+		//left multiplying by a scale matrix scales the rows of the model matrix
+		Vec4[] columns = modelMat.getMatrix();
+		for(int curCol = 0; curCol < 4; curCol++){
+			Vec4 column = columns[curCol];
+			column.x *= x;
+			column.y *= y;
+			column.z *= z;
+		}
+		updateBounds();
+	}
+	
+	public void scale(Vec3 scalars){
+		scale(scalars.x, scalars.y, scalars.z);
+	}
+	
+	public void orient(float x, float y, float z, float theta){
+	}
+	
+	public void orient(Vec3 axis, float theta){
+	}
+	
+	public void orient(Vec3 angles){
+	}
+	
+	public void orient(float roll, float pitch, float yaw){
+	}
+	
+	public Quaternion getOrientation(){
+		return null;
+	}
+	
+	public void setOrientation(Quaternion orient){
+	}
+	
+	public Mat4 getModelMatrix(){
+		return modelMat;
+	}
+	
+	@Override
+	public void setData(Mat4 modelMat, Quaternion orient){
+		this.modelMat.setMatrix(modelMat);
+		updateBounds();
+	}
+	
+	@Override
+	public void setData(Mat4 modelMat){
+		this.modelMat.setMatrix(modelMat);
+		updateBounds();
+	}
+	
+	@Override
+	public Vec3 getCenter(){
+		return getCenter(new Vec3());
+	}
+	
+	@Override
+	public Vec3 getCenter(Vec3 result){
+		result.x = (minX+maxX)*.5f;
+		result.y = (minY+maxY)*.5f;
+		result.z = (minZ+maxZ)*.5f;
+		return result;
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction){
+		return support(direction, new Vec3());
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result){
+		result.x = direction.x < 0 ? minX : maxX;
+		result.y = direction.y < 0 ? minY : maxY;
+		result.z = direction.z < 0 ? minZ : maxZ;
+		return result;
+	}
+	
+	@Override
+	public CollisionMesh copy(){
+		return new HeightfieldCollider(this);
+	}
+	
+	@Override
+	public void resetModel(){
+		modelMat.loadIdentity();
+		updateBounds();
+	}
+	
+	@Override
+	public void resetOrientation(){
+		//there is no orientation to reset so do nothing
+	}
+	
+	@Override
+	public void reset(){
+		modelMat.loadIdentity();
+		updateBounds();
+	}
+}
@@ -0,0 +1,235 @@
+package collision;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import core.GameObject;
+
+/**
+ * Groups game objects into simulation islands and puts islands to sleep once every object in them has been at rest
+ * for long enough. Islands are found each step with a union find over the contact manifolds, objects with infinite
+ * mass don't join islands so that everything resting on the same ground isn't merged into one island.
+ * 
+ * An island goes to sleep as a whole once all its objects have moved slower than the thresholds for the given
+ * number of steps, and a sleeping island is woken as a whole when it gets into contact with an object that is still
+ * moving. Objects can also be woken directly by accelerating them or setting their velocity.
+ * 
+ * @author Kevin
+ *
+ */
+public class IslandManager {
+	
+	public static final float DEFAULT_LINEAR_THRESHOLD = .005f;
+	public static final float DEFAULT_ANGULAR_THRESHOLD = .005f;
+	public static final int DEFAULT_FRAMES_TO_SLEEP = 60;
+	
+	private float linearThresholdSq, angularThresholdSq;
+	private int framesToSleep;
+	
+	private IdentityHashMap<GameObject, Integer> indices;
+	private GameObject[] bodies;
+	private int[] parent, size;
+	//whether each island has an awake object and whether it has an object that isn't ready to sleep, by root
+	private boolean[] hasAwake, hasMoving;
+	private int numBodies, numIslands, numAwake, numSleeping;
+	
+	public IslandManager(){
+		this(DEFAULT_LINEAR_THRESHOLD, DEFAULT_ANGULAR_THRESHOLD, DEFAULT_FRAMES_TO_SLEEP);
+	}
+	
+	/**
+	 * Constructs an island manager with the given sleep thresholds
+	 * 
+	 * @param linearThreshold Speed below which an object is considered at rest
+	 * @param angularThreshold Angular speed below which an object is considered at rest
+	 * @param framesToSleep Number of steps every object of an island has to be at rest before the island sleeps
+	 */
+	public IslandManager(float linearThreshold, float angularThreshold, int framesToSleep){
+		linearThresholdSq = linearThreshold*linearThreshold;
+		angularThresholdSq = angularThreshold*angularThreshold;
+		this.framesToSleep = Math.max(framesToSleep, 1);
+		indices = new IdentityHashMap<GameObject, Integer>();
+		allocate(64);
+	}
+	
+	/**
+	 * Finds the islands of the given objects and updates their sleep state, this should be run after the contacts
+	 * have been solved so the velocities reflect the resting contacts
+	 * 
+	 * @param objects Objects to update
+	 * @param contacts Contact register holding the manifolds between the objects
+	 * @return Number of islands found
+	 */
+	public int update(Collection<GameObject> objects, ContactRegister contacts){
+		//drop the islands of the last update
+		for(int curBody = 0; curBody < numBodies; curBody++){
+			bodies[curBody] = null;
+		}
+		indices.clear();
+		numBodies = 0;
+		if(objects.size() > bodies.length){
+			allocate(Integer.highestOneBit(objects.size())*2);
+		}
+		for(GameObject object : objects){
+			//objects with infinite mass never sleep and don't link the objects touching them
+			if(object.isFixed() || object.massInv == 0){
+				continue;
+			}
+			int index = numBodies++;
+			indices.put(object, index);
+			bodies[index] = object;
+			parent[index] = index;
+			size[index] = 1;
+			hasAwake[index] = false;
+			hasMoving[index] = false;
+			
+			if(object.isAwake()){
+				if(object.velocity.dot(object.velocity) < linearThresholdSq && object.angVel.dot(object.angVel) < angularThresholdSq){
+					object.setRestFrames(object.getRestFrames()+1);
+				}else{
+					object.setRestFrames(0);
+				}
+			}
+		}
+		
+		Iterator<ContactPair> pairs = contacts.getPairs().iterator();
+		while(pairs.hasNext()){
+			ContactPair pair = pairs.next();
+			if(pair.getNumPoints() > 0){
+				Integer indexA = indices.get(pair.getObjectA());
+				Integer indexB = indices.get(pair.getObjectB());
+				if(indexA != null && indexB != null){
+					union(indexA, indexB);
+				}
+			}
+		}
+		
+		for(int curBody = 0; curBody < numBodies; curBody++){
+			int root = find(curBody);
+			GameObject body = bodies[curBody];
+			if(body.isAwake()){
+				hasAwake[root] = true;
+				if(body.getRestFrames() < framesToSleep){
+					hasMoving[root] = true;
+				}
+			}
+		}
+		
+		numIslands = 0;
+		numAwake = 0;
+		numSleeping = 0;
+		for(int curBody = 0; curBody < numBodies; curBody++){
+			int root = find(curBody);
+			GameObject body = bodies[curBody];
+			if(root == curBody){
+				numIslands++;
+			}
+			//islands without any awake objects are left asleep, they can only be woken by an awake island
+			if(hasAwake[root]){
+				if(hasMoving[root]){
+					if(!body.isAwake()){
+						body.wake();
+					}
+				}else if(body.isAwake()){
+					body.sleep();
+				}
+			}
+			if(body.isAwake()){
+				numAwake++;
+			}else{
+				numSleeping++;
+			}
+		}
+		//the islands are kept until the next update so removing an object can wake the island it was in
+		return numIslands;
+	}
+	
+	/**
+	 * Removes an object from the islands found by the last update, waking every other object of its island since the
+	 * objects resting on it may no longer be supported
+	 * 
+	 * @param object Object to remove
+	 * @return Number of objects that were woken
+	 */
+	public int remove(GameObject object){
+		Integer index = indices.remove(object);
+		if(index == null){
+			return 0;
+		}
+		int root = find(index);
+		int woken = 0;
+		for(int curBody = 0; curBody < numBodies; curBody++){
+			GameObject body = bodies[curBody];
+			if(curBody != index && body != null && find(curBody) == root && !body.isAwake()){
+				body.wake();
+				woken++;
+			}
+		}
+		bodies[index] = null;
+		return woken;
+	}
+	
+	private int find(int index){
+		while(parent[index] != index){
+			//path halving
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+	
+	private void union(int indexA, int indexB){
+		int rootA = find(indexA);
+		int rootB = find(indexB);
+		if(rootA == rootB){
+			return;
+		}
+		if(size[rootA] < size[rootB]){
+			int swap = rootA;
+			rootA = rootB;
+			rootB = swap;
+		}
+		parent[rootB] = rootA;
+		size[rootA] += size[rootB];
+	}
+	
+	private void allocate(int capacity){
+		bodies = new GameObject[capacity];
+		parent = new int[capacity];
+		size = new int[capacity];
+		hasAwake = new boolean[capacity];
+		hasMoving = new boolean[capacity];
+	}
+	
+	/**
+	 * Gets the number of islands found in the last update
+	 * 
+	 * @return Number of islands
+	 */
+	public int getIslandCount(){
+		return numIslands;
+	}
+	
+	/**
+	 * Gets the number of objects that were awake after the last update
+	 * 
+	 * @return Number of awake objects
+	 */
+	public int getAwakeCount(){
+		return numAwake;
+	}
+	
+	/**
+	 * Gets the number of objects that were asleep after the last update
+	 * 
+	 * @return Number of sleeping objects
+	 */
+	public int getSleepingCount(){
+		return numSleeping;
+	}
+	
+	public int getFramesToSleep(){
+		return framesToSleep;
+	}
+}
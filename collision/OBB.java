@@ -4,6 +4,7 @@ import glMath.Mat4;
 import glMath.MatrixUtil;
 import glMath.Quaternion;
 import glMath.Vec3;
+import glMath.Vec4;
 
 public class OBB implements CollisionMesh{
 
@@ -111,19 +112,53 @@ public class OBB implements CollisionMesh{
 	
 	@Override
 	public Vec3 getCenter(){
-		return (Vec3)modelMat.multVec(center).swizzle("xyz");
+		return getCenter(new Vec3());
+	}
+	
+	@Override
+	public Vec3 getCenter(Vec3 result){
+		return modelMat.multVec(center, result);
+	}
+	
+	/**
+	 * Gets the world space half axis of this box along the given local axis, this is the vector from the center
+	 * of the box to the center of the face on the positive side of that axis
+	 * 
+	 * @param index Index of the local axis, 0 for x, 1 for y and 2 for z
+	 * @param result Vector to store the half axis in
+	 * @return The result vector post operation
+	 */
+	public Vec3 getAxis(int index, Vec3 result){
+		result.x = index == 0 ? halfDimensions.x : 0;
+		result.y = index == 1 ? halfDimensions.y : 0;
+		result.z = index == 2 ? halfDimensions.z : 0;
+		orientation.rotateInverse(result, result);
+		//only the linear part of the model matrix applies to a direction
+		Vec4[] columns = modelMat.getMatrix();
+		float x = result.x, y = result.y, z = result.z;
+		result.x = columns[0].x*x+columns[1].x*y+columns[2].x*z;
+		result.y = columns[0].y*x+columns[1].y*y+columns[2].y*z;
+		result.z = columns[0].z*x+columns[1].z*y+columns[2].z*z;
+		return result;
 	}
 	
 	@Override
 	public Vec3 support(Vec3 direction){
-		Mat4 transformMat = (Mat4)MatrixUtil.multiply(modelMat, orientation.asMatrix());
-		Vec3 relativeDir = this.orientation.multVec(direction);
+		return support(direction, new Vec3());
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result){
+		//map the direction into the boxes local space
+		orientation.rotate(direction, result);
+		
+		result.x = Math.copySign(halfDimensions.x, result.x);
+		result.y = Math.copySign(halfDimensions.y, result.y);
+		result.z = Math.copySign(halfDimensions.z, result.z);
 		
-		return (Vec3)transformMat.multVec(new Vec3(
-				Math.copySign(halfDimensions.x, relativeDir.x),
-				Math.copySign(halfDimensions.y, relativeDir.y),
-				Math.copySign(halfDimensions.z, relativeDir.z)
-				)).swizzle("xyz");
+		//apply the same transform as modelMat*orientation.asMatrix() without building the matrix
+		orientation.rotateInverse(result, result);
+		return modelMat.multVec(result, result);
 	}
 
 	@Override
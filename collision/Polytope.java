@@ -1,8 +1,5 @@
 package collision;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
 import glMath.Vec3;
 import glMath.VecUtil;
 
@@ -17,106 +14,296 @@ import glMath.VecUtil;
  */
 public class Polytope {
 	
-	public ArrayList<PolytopeTriangle> faces;//stores all the current faces of the polytope
+	//enough room for the initial tetrahedron plus the 50 expansions allowed by the EPA
+	public static final int DEFAULT_CAPACITY = 64;
+	
+	//pools backing the polytope so that it can be reused between queries without allocating
+	private PolytopePoint[] points;
+	private PolytopeTriangle[] freeFaces;
+	private int numPoints, numFree;
+	//min heap of the faces ordered by their distance from the origin, faces removed from the polytope stay in the
+	//heap marked as obsolete and are only returned to the pool once they reach the top
+	private PolytopeTriangle[] heap;
+	private int heapSize;
+	//edges of the hole left by the faces removed by the last addition, stored as the kept face on the other side
+	//of the edge and the index of the edge in that face, in order around the hole
+	private PolytopeTriangle[] horizonFaces;
+	private int[] horizonEdges;
+	private int numHorizon;
 	
 	public Polytope(PolytopePoint a, PolytopePoint b, PolytopePoint c, PolytopePoint d){
-		faces = new ArrayList<PolytopeTriangle>();//construct array list to hold the faces of the polytope
+		this(DEFAULT_CAPACITY);
+		reset(a, b, c, d);
+	}
+	
+	/**
+	 * Constructs an empty polytope with pools sized to hold the given number of points, the polytope
+	 * needs to be reset with the simplex GJK terminated with before it can be used
+	 * 
+	 * @param capacity Number of points the polytope is expected to hold
+	 */
+	public Polytope(int capacity){
+		//a convex polytope with V points has at most 2V-4 faces, removed faces wait in the heap until they reach
+		//the top so room is left for twice that many
+		int faceCapacity = 4*capacity;
+		points = new PolytopePoint[capacity];
+		freeFaces = new PolytopeTriangle[faceCapacity];
+		heap = new PolytopeTriangle[faceCapacity];
+		//the horizon is a loop through the points of the polytope so it can't have more edges than there are points
+		horizonFaces = new PolytopeTriangle[capacity];
+		horizonEdges = new int[capacity];
+		
+		for(int curPoint = 0; curPoint < capacity; curPoint++){
+			points[curPoint] = new PolytopePoint();
+		}
+		
+		for(int curFace = 0; curFace < faceCapacity; curFace++){
+			freeFaces[curFace] = new PolytopeTriangle();
+		}
+		numFree = faceCapacity;
+	}
+	
+	/**
+	 * Clears this polytope and rebuilds it from the given vertices of the simplex that GJK terminated with, 
+	 * the given points are copied into the polytopes own storage
+	 * 
+	 * @param a First point of the simplex
+	 * @param b Second point of the simplex
+	 * @param c Third point of the simplex
+	 * @param d Fourth point of the simplex
+	 */
+	public void reset(PolytopePoint a, PolytopePoint b, PolytopePoint c, PolytopePoint d){
+		//return all the faces currently in use to the pool, every face that hasn't been freed is still in the heap
+		for(int curFace = 0; curFace < heapSize; curFace++){
+			freeFace(heap[curFace]);
+			heap[curFace] = null;
+		}
+		heapSize = 0;
+		numPoints = 0;
+		
+		PolytopePoint pA = addPoint(a);
+		PolytopePoint pB = addPoint(b);
+		PolytopePoint pC = addPoint(c);
+		PolytopePoint pD = addPoint(d);
+		
 		//construct the initial faces of the polytope using the given vertices that are from the simplex
 		//GJK terminated with
-		faces.add(new PolytopeTriangle(a,b,c));
-		faces.add(new PolytopeTriangle(a,c,d));
-		faces.add(new PolytopeTriangle(a,d,b));
-		faces.add(new PolytopeTriangle(b,d,c));
+		PolytopeTriangle abc = newFace(pA,pB,pC);
+		PolytopeTriangle acd = newFace(pA,pC,pD);
+		PolytopeTriangle adb = newFace(pA,pD,pB);
+		PolytopeTriangle bdc = newFace(pB,pD,pC);
+		
+		//link the faces across their shared edges, edge i of a face runs from its point i to point i+1
+		link(abc, 0, adb, 2);
+		link(abc, 1, bdc, 2);
+		link(abc, 2, acd, 0);
+		link(acd, 1, bdc, 1);
+		link(acd, 2, adb, 0);
+		link(adb, 1, bdc, 0);
+		
+		push(abc);
+		push(acd);
+		push(adb);
+		push(bdc);
 	}
 	
 	/**
 	 * Adds a new point to the polytope, when a new point is added the polytope will update
 	 * all the faces facing that new point. This means that all the faces that can "see" the
-	 * new vertex will be removed and the non adjacent edges of these triangles will be used
+	 * new vertex will be removed and the edges around the removed faces will be used
 	 * in generating new triangles for the simplex. Essentially a hole is formed, then using the
-	 * removed faces edges we construct new faces to fill the hole.
+	 * edges of the hole we construct new faces to fill it.
+	 * 
+	 * The visible faces are found by flood filling outwards from the closest face across the face adjacency, 
+	 * which also yields the edges of the hole in order around it.
 	 *	
-	 * @param addition PolytopePoint to be added to the polytope
+	 * @param point PolytopePoint to be added to the polytope, the point is copied into the polytope
 	 */
-	public void add(PolytopePoint addition){
-		//edges of the polytope hole
-		ArrayList<PolytopeEdge> edges = new ArrayList<PolytopeEdge>();
-		//iterator over the faces
-		Iterator<PolytopeTriangle> loopControl = faces.iterator();
-		
-		//loop through the faces removing any that "see" the new point, and store their edges
-		while(loopControl.hasNext()){
-			PolytopeTriangle face = loopControl.next();//current face being processed
-			//check if the face can see the new point
-			if(VecUtil.subtract(addition.supportFinal, face.s1.start.supportFinal).dot(face.normal) > 0){
-				
-				//used to mark which edges of this face should be added to the edge array that forms the edges
-				//of the hole that is being formed
-				boolean add1 = true, add2 = true, add3 = true;
-				
-				Iterator<PolytopeEdge> edgeIterator = edges.iterator();
-				//iterate over the edges currently stored
-				while(edgeIterator.hasNext()){
-					PolytopeEdge curEdge = edgeIterator.next();
-					//test the individual edges of this face if any of them are in this edge list
-					//remove them and flag that edge as do not add
-					if(curEdge.equals(face.s1)){
-						add1 = false;
-						edgeIterator.remove();
-					}else if(curEdge.equals(face.s2)){
-						add2 = false;
-						edgeIterator.remove();
-					}else if(curEdge.equals(face.s3)){
-						add3 = false;
-						edgeIterator.remove();
-					}
-				}
-				
-				//check which edges have been flagged as do not add and add the ones that we have
-				//determined to be valid
-				if (add1) {
-					edges.add(face.s1);
-				}
-				
-				if (add2) {
-					edges.add(face.s2);
-				}
-				
-				if (add3) {
-					edges.add(face.s3);
-				}
-				//remove the currently processed triangle face from the polytope
-				loopControl.remove();
+	public void add(PolytopePoint point){
+		PolytopeTriangle seed = findVisible(point.supportFinal);
+		if(seed == null){
+			//the point is inside of the polytope so it can't expand it
+			return;
+		}
+		PolytopePoint addition = addPoint(point);
+		
+		numHorizon = 0;
+		seed.obsolete = true;
+		for(int curEdge = 0; curEdge < 3; curEdge++){
+			findHorizon(seed.adjacent[curEdge], seed.adjacentEdge[curEdge], addition.supportFinal);
+		}
+		
+		//construct new faces with the new support point, each new face shares its first edge with the face
+		//left on the other side of the horizon and its other two edges with the new faces before and after it
+		PolytopeTriangle first = null, previous = null;
+		for(int curEdge = 0; curEdge < numHorizon; curEdge++){
+			PolytopeTriangle kept = horizonFaces[curEdge];
+			int keptEdge = horizonEdges[curEdge];
+			PolytopeTriangle face = newFace(kept.getPoint((keptEdge+1)%3), kept.getPoint(keptEdge), addition);
+			link(face, 0, kept, keptEdge);
+			if(previous == null){
+				first = face;
+			}else{
+				link(face, 2, previous, 1);
 			}
-//			System.out.println(faces.size());
-//			System.out.println(edges.size());
+			previous = face;
+			push(face);
 		}
-//		System.out.println("outside loop");
-		//construct new faces with the new support point
-		for(PolytopeEdge edge : edges){
-			faces.add(new PolytopeTriangle(edge.start, edge.end, addition));
+		if(first != null){
+			link(first, 2, previous, 1);
 		}
 	}
 	
 	/**
 	 * Finds the new search direction based on the face of the polytope closest to 
-	 * the origin
+	 * the origin, the face stays in the polytope until a point that can see it is added
 	 * 
 	 * @return Face on the polytope closest to the origin
 	 */
 	public PolytopeTriangle findClosest(){
-		//OPTIMIZATION MOVE THIS TO THE ADD FUNCTION AND HAVE IT BE THE RETURN VALUE
-		float maxDist = faces.get(0).getDistance();
-		int index = 0;
-		for(int curIndex = 1; curIndex < faces.size(); curIndex++){
-			float distance = faces.get(curIndex).getDistance();
-			if(distance < maxDist){
-				index = curIndex;
-				maxDist = distance;
+		//faces removed since the last call are skipped and returned to the pool
+		while(heapSize > 0 && heap[0].obsolete){
+			freeFace(pop());
+		}
+		return heapSize > 0 ? heap[0] : null;
+	}
+	
+	/**
+	 * Finds a face of the polytope that can see the given point, the closest face is checked first since the
+	 * point being added by the EPA is always found in the direction of its normal
+	 * 
+	 * @param point Point to find a visible face for
+	 * @return A face that can see the point, or null if the point is inside of the polytope
+	 */
+	private PolytopeTriangle findVisible(Vec3 point){
+		PolytopeTriangle closest = findClosest();
+		if(closest == null || closest.canSee(point)){
+			return closest;
+		}
+		for(int curFace = 0; curFace < heapSize; curFace++){
+			PolytopeTriangle face = heap[curFace];
+			if(!face.obsolete && face.canSee(point)){
+				return face;
 			}
 		}
-		
-		return faces.get(index);
+		return null;
+	}
+	
+	/**
+	 * Continues the flood fill of the faces visible from the given point across the given edge, faces that can 
+	 * see the point are removed and the fill continues across their other two edges, while the edges of faces
+	 * that can't see it are added to the horizon
+	 * 
+	 * @param face Face on the other side of the edge the fill crossed
+	 * @param edge Index of the crossed edge in face
+	 * @param point Point being added to the polytope
+	 */
+	private void findHorizon(PolytopeTriangle face, int edge, Vec3 point){
+		if(face.obsolete){
+			return;
+		}
+		if(!face.canSee(point)){
+			if(numHorizon == horizonFaces.length){
+				PolytopeTriangle[] grownFaces = new PolytopeTriangle[horizonFaces.length*2];
+				System.arraycopy(horizonFaces, 0, grownFaces, 0, horizonFaces.length);
+				horizonFaces = grownFaces;
+				int[] grownEdges = new int[horizonEdges.length*2];
+				System.arraycopy(horizonEdges, 0, grownEdges, 0, horizonEdges.length);
+				horizonEdges = grownEdges;
+			}
+			horizonFaces[numHorizon] = face;
+			horizonEdges[numHorizon++] = edge;
+			return;
+		}
+		face.obsolete = true;
+		//the edges are crossed in winding order starting after the one the fill came from, this walks the
+		//horizon in order around the hole
+		findHorizon(face.adjacent[(edge+1)%3], face.adjacentEdge[(edge+1)%3], point);
+		findHorizon(face.adjacent[(edge+2)%3], face.adjacentEdge[(edge+2)%3], point);
+	}
+	
+	private static void link(PolytopeTriangle faceA, int edgeA, PolytopeTriangle faceB, int edgeB){
+		faceA.adjacent[edgeA] = faceB;
+		faceA.adjacentEdge[edgeA] = edgeB;
+		faceB.adjacent[edgeB] = faceA;
+		faceB.adjacentEdge[edgeB] = edgeA;
+	}
+	
+	private void push(PolytopeTriangle face){
+		if(heapSize == heap.length){
+			PolytopeTriangle[] grown = new PolytopeTriangle[heap.length*2];
+			System.arraycopy(heap, 0, grown, 0, heap.length);
+			heap = grown;
+		}
+		//sift the face up from the bottom of the heap
+		int index = heapSize++;
+		float distance = face.distance;
+		while(index > 0){
+			int parent = (index-1) >> 1;
+			if(heap[parent].distance <= distance){
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = face;
+	}
+	
+	private PolytopeTriangle pop(){
+		PolytopeTriangle top = heap[0];
+		PolytopeTriangle last = heap[--heapSize];
+		heap[heapSize] = null;
+		if(heapSize > 0){
+			//sift the last face down from the top of the heap
+			int index = 0;
+			float distance = last.distance;
+			while(true){
+				int child = 2*index+1;
+				if(child >= heapSize){
+					break;
+				}
+				if(child+1 < heapSize && heap[child+1].distance < heap[child].distance){
+					child++;
+				}
+				if(heap[child].distance >= distance){
+					break;
+				}
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = last;
+		}
+		return top;
+	}
+	
+	private PolytopePoint addPoint(PolytopePoint copy){
+		//only grow the pool in the case that the polytope is used beyond the expected capacity
+		if(numPoints == points.length){
+			PolytopePoint[] grown = new PolytopePoint[points.length*2];
+			System.arraycopy(points, 0, grown, 0, points.length);
+			for(int curPoint = points.length; curPoint < grown.length; curPoint++){
+				grown[curPoint] = new PolytopePoint();
+			}
+			points = grown;
+		}
+		PolytopePoint point = points[numPoints++];
+		point.set(copy);
+		return point;
+	}
+	
+	private PolytopeTriangle newFace(PolytopePoint a, PolytopePoint b, PolytopePoint c){
+		PolytopeTriangle face = numFree > 0 ? freeFaces[--numFree] : new PolytopeTriangle();
+		face.set(a, b, c);
+		return face;
+	}
+	
+	private void freeFace(PolytopeTriangle face){
+		if(numFree == freeFaces.length){
+			PolytopeTriangle[] grown = new PolytopeTriangle[freeFaces.length*2];
+			System.arraycopy(freeFaces, 0, grown, 0, freeFaces.length);
+			freeFaces = grown;
+		}
+		freeFaces[numFree++] = face;
 	}
 	
 	/**
@@ -137,6 +324,35 @@ public class Polytope {
 			supportFinal = (Vec3)VecUtil.subtract(supportA, supportB);
 		}
 		
+		public PolytopePoint(){
+			supportA = new Vec3();
+			supportB = new Vec3();
+			supportFinal = new Vec3();
+		}
+		
+		/**
+		 * Sets the support points of this point, recomputing the support point on the Minkowski sum
+		 * 
+		 * @param sA Support point of the first object
+		 * @param sB Support point of the second object
+		 */
+		public void set(Vec3 sA, Vec3 sB){
+			supportA.set(sA);
+			supportB.set(sB);
+			supportFinal.set(sA).subtract(sB);
+		}
+		
+		/**
+		 * Copies the values of the given point into this point
+		 * 
+		 * @param copy Point to copy
+		 */
+		public void set(PolytopePoint copy){
+			supportA.set(copy.supportA);
+			supportB.set(copy.supportB);
+			supportFinal.set(copy.supportFinal);
+		}
+		
 		@Override 
 		public boolean equals(Object o){
 			if(o instanceof PolytopePoint){
@@ -199,26 +415,92 @@ public class Polytope {
 	public static class PolytopeTriangle{
 		public PolytopeEdge s1, s2, s3;
 		public Vec3 normal;
+		//faces sharing each edge of this face along with the index of the shared edge in the adjacent face
+		public PolytopeTriangle[] adjacent;
+		public int[] adjacentEdge;
+		//distance of the face from the origin and whether the face has been removed from the polytope
+		public float distance;
+		public boolean obsolete;
 		
 		public PolytopeTriangle(PolytopePoint a, PolytopePoint b, PolytopePoint c){
+			this();
+			set(a, b, c);
+		}
+		
+		public PolytopeTriangle(){
+			s1 = new PolytopeEdge(null, null);
+			s2 = new PolytopeEdge(null, null);
+			s3 = new PolytopeEdge(null, null);
+			normal = new Vec3();
+			adjacent = new PolytopeTriangle[3];
+			adjacentEdge = new int[3];
+		}
+		
+		/**
+		 * Sets the points of this triangle, recomputing its edges and normal in place
+		 * 
+		 * @param a First point of the triangle
+		 * @param b Second point of the triangle
+		 * @param c Third point of the triangle
+		 */
+		public void set(PolytopePoint a, PolytopePoint b, PolytopePoint c){
 			//create edges based on winding of the triangle
-			s1 = new PolytopeEdge(a,b);
-			s2 = new PolytopeEdge(b,c);
-			s3 = new PolytopeEdge(c,a);
+			s1.start = a;
+			s1.end = b;
+			s2.start = b;
+			s2.end = c;
+			s3.start = c;
+			s3.end = a;
 			//compute the normal of this triangle
-			Vec3 ab = (Vec3)VecUtil.subtract(b.supportFinal, a.supportFinal);
-			Vec3 ac = (Vec3)VecUtil.subtract(c.supportFinal, a.supportFinal);
-			normal = ab.cross(ac);
+			float abX = b.supportFinal.x-a.supportFinal.x;
+			float abY = b.supportFinal.y-a.supportFinal.y;
+			float abZ = b.supportFinal.z-a.supportFinal.z;
+			
+			float acX = c.supportFinal.x-a.supportFinal.x;
+			float acY = c.supportFinal.y-a.supportFinal.y;
+			float acZ = c.supportFinal.z-a.supportFinal.z;
+			
+			normal.x = abY*acZ - abZ*acY;
+			normal.y = abZ*acX - abX*acZ;
+			normal.z = abX*acY - abY*acX;
 			normal.normalize();
+			distance = a.supportFinal.dot(normal);
+			//a face whose points have collapsed onto a line has no normal, it is kept at the bottom of the heap so that 
+			//it is never chosen as the closest face
+			if(distance != distance){
+				distance = Float.MAX_VALUE;
+			}
+			obsolete = false;
+		}
+		
+		/**
+		 * Gets the point of this triangle the edge with the given index starts from
+		 * 
+		 * @param index Index of the point, 0 for the first point of the triangle up to 2 for the last
+		 * @return The point at the given index
+		 */
+		public PolytopePoint getPoint(int index){
+			return index == 0 ? s1.start : (index == 1 ? s2.start : s3.start);
+		}
+		
+		/**
+		 * Determines whether the given point is in front of this face
+		 * 
+		 * @param point Point to test
+		 * @return True if the point is in front of the plane of this face
+		 */
+		public boolean canSee(Vec3 point){
+			Vec3 start = s1.start.supportFinal;
+			return (point.x-start.x)*normal.x+(point.y-start.y)*normal.y+(point.z-start.z)*normal.z > 0;
 		}
 		
 		/**
-		 * Computes the distance of this face from the origin in the minkowski space
+		 * Gets the distance of this face from the origin in the minkowski space
 		 * 
 		 * @return Distance of this face from the origin
 		 */
 		public float getDistance(){
-			return s1.start.supportFinal.dot(normal);
+			return distance;
 		}
 	}
 }
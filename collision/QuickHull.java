@@ -0,0 +1,552 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import primitives.Triangle;
+import primitives.Vertex;
+
+/**
+ * Builds convex hulls from arbitrary vertices, such as the vertices of a loaded model, with the quickhull algorithm.
+ * The hull starts as a tetrahedron of extreme points and is grown by the point farthest outside any of its faces,
+ * the faces that point can see are removed and the hole is closed with a fan of faces from the point to the horizon
+ * around them. Every point outside a face is kept in that faces outside set so only those points are tested again
+ * when the face is removed.
+ * 
+ * A hull can be given a vertex budget, growth stops once the hull has that many vertices. Since the farthest point
+ * is always added first this keeps the points that contribute the most to the shape of the hull, giving a simplified
+ * hull of a detailed model that is slightly smaller than the exact hull.
+ * 
+ * @author Kevin
+ *
+ */
+public class QuickHull {
+	
+	public static final int NO_LIMIT = Integer.MAX_VALUE;
+	
+	private ArrayList<Vertex> source;
+	private float[] x, y, z;
+	private int numPoints;
+	//number of live faces using each point, a point is a vertex of the hull while this is above 0
+	private int[] faceCount;
+	private int numVertices;
+	private float epsilon;
+	//distance a point has to be in front of a face to see it, the planes are exact up to the rounding of doubles so
+	//this is far smaller than epsilon
+	private double planeTolerance;
+	
+	private ArrayList<HullFace> faces, visible, created;
+	//faces that were given outside points, faces are only removed from it once they are picked
+	private ArrayList<HullFace> pending;
+	//horizon around the visible faces as edges from horizonA to horizonB with the face across each edge
+	private int[] horizonA, horizonB;
+	private HullFace[] horizonFaces;
+	private int horizonSize;
+	
+	/**
+	 * Constructs a quickhull builder for the positions of the given vertices
+	 * 
+	 * @param vertices Vertices to build the hull of
+	 */
+	public QuickHull(ArrayList<Vertex> vertices){
+		source = vertices;
+		numPoints = vertices.size();
+		x = new float[numPoints];
+		y = new float[numPoints];
+		z = new float[numPoints];
+		faceCount = new int[numPoints];
+		float maxX = 0, maxY = 0, maxZ = 0;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			Vertex vert = vertices.get(curPoint);
+			x[curPoint] = vert.getPos().x;
+			y[curPoint] = vert.getPos().y;
+			z[curPoint] = vert.getPos().z;
+			maxX = Math.max(maxX, Math.abs(x[curPoint]));
+			maxY = Math.max(maxY, Math.abs(y[curPoint]));
+			maxZ = Math.max(maxZ, Math.abs(z[curPoint]));
+		}
+		//distance within which points are treated as on a plane, scaled to the size of the input
+		epsilon = 3*1.2e-7f*(maxX+maxY+maxZ);
+		planeTolerance = 1e-12*(maxX+maxY+maxZ);
+		faces = new ArrayList<HullFace>();
+		visible = new ArrayList<HullFace>();
+		created = new ArrayList<HullFace>();
+		pending = new ArrayList<HullFace>();
+		horizonA = new int[16];
+		horizonB = new int[16];
+		horizonFaces = new HullFace[16];
+	}
+	
+	/**
+	 * Builds the exact convex hull of the given vertices
+	 * 
+	 * @param vertices Vertices to build the hull of
+	 * @return Convex hull of the vertices or null if the vertices don't span a volume
+	 */
+	public static ConvexHull build(ArrayList<Vertex> vertices){
+		return build(vertices, NO_LIMIT);
+	}
+	
+	/**
+	 * Builds the convex hull of the given vertices with at most the given number of vertices
+	 * 
+	 * @param vertices Vertices to build the hull of
+	 * @param maxVertices Maximum number of vertices of the hull, at least 4
+	 * @return Convex hull of the vertices or null if the vertices don't span a volume
+	 */
+	public static ConvexHull build(ArrayList<Vertex> vertices, int maxVertices){
+		QuickHull builder = new QuickHull(vertices);
+		if(!builder.compute(maxVertices)){
+			return null;
+		}
+		return builder.createHull();
+	}
+	
+	/**
+	 * Computes the hull of the points of this builder
+	 * 
+	 * @param maxVertices Maximum number of vertices of the hull
+	 * @return False if the points don't span a volume and no hull could be built
+	 */
+	public boolean compute(int maxVertices){
+		faces.clear();
+		pending.clear();
+		numVertices = 0;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			faceCount[curPoint] = 0;
+		}
+		if(!createSimplex()){
+			System.err.println("Unable to build a convex hull, the "+numPoints+" points given don't span a volume");
+			return false;
+		}
+		maxVertices = Math.max(maxVertices, 4);
+		
+		while(numVertices < maxVertices){
+			HullFace eyeFace = null;
+			if(maxVertices == NO_LIMIT){
+				//every point outside the hull is added eventually so the order doesn't matter
+				while(eyeFace == null && !pending.isEmpty()){
+					HullFace face = pending.remove(pending.size()-1);
+					if(!face.removed){
+						eyeFace = face;
+					}
+				}
+			}else{
+				//grow the hull by the point farthest outside of it so the budget is spent on the points that matter most
+				int eyeIndex = -1;
+				for(int curFace = 0; curFace < pending.size(); curFace++){
+					HullFace face = pending.get(curFace);
+					if(!face.removed && (eyeIndex == -1 || face.farthestDist > pending.get(eyeIndex).farthestDist)){
+						eyeIndex = curFace;
+					}
+				}
+				if(eyeIndex != -1){
+					eyeFace = pending.get(eyeIndex);
+					pending.set(eyeIndex, pending.get(pending.size()-1));
+					pending.remove(pending.size()-1);
+				}
+			}
+			if(eyeFace == null){
+				break;
+			}
+			addPoint(eyeFace.farthest, eyeFace);
+		}
+		
+		//drop the faces that were removed while the hull grew
+		int live = 0;
+		for(int curFace = 0; curFace < faces.size(); curFace++){
+			HullFace face = faces.get(curFace);
+			if(!face.removed){
+				faces.set(live++, face);
+			}
+		}
+		while(faces.size() > live){
+			faces.remove(faces.size()-1);
+		}
+		pending.clear();
+		return true;
+	}
+	
+	/**
+	 * Finds four points that span a volume and builds the starting tetrahedron from them
+	 */
+	private boolean createSimplex(){
+		if(numPoints < 4){
+			return false;
+		}
+		//the pair of extreme points along an axis that are farthest apart
+		int[] minIndex = new int[3], maxIndex = new int[3];
+		float[][] coords = {x, y, z};
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			float[] axis = coords[curAxis];
+			for(int curPoint = 1; curPoint < numPoints; curPoint++){
+				if(axis[curPoint] < axis[minIndex[curAxis]]){
+					minIndex[curAxis] = curPoint;
+				}
+				if(axis[curPoint] > axis[maxIndex[curAxis]]){
+					maxIndex[curAxis] = curPoint;
+				}
+			}
+		}
+		int v0 = 0, v1 = 0;
+		float maxDist = -1;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			float dist = distanceSq(minIndex[curAxis], maxIndex[curAxis]);
+			if(dist > maxDist){
+				maxDist = dist;
+				v0 = minIndex[curAxis];
+				v1 = maxIndex[curAxis];
+			}
+		}
+		if(maxDist <= epsilon*epsilon){
+			return false;
+		}
+		
+		//point farthest from the line through the first two
+		float dirX = x[v1]-x[v0], dirY = y[v1]-y[v0], dirZ = z[v1]-z[v0];
+		int v2 = -1;
+		maxDist = 0;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			float toX = x[curPoint]-x[v0], toY = y[curPoint]-y[v0], toZ = z[curPoint]-z[v0];
+			float crossX = dirY*toZ-dirZ*toY, crossY = dirZ*toX-dirX*toZ, crossZ = dirX*toY-dirY*toX;
+			float dist = crossX*crossX+crossY*crossY+crossZ*crossZ;
+			if(dist > maxDist){
+				maxDist = dist;
+				v2 = curPoint;
+			}
+		}
+		if(v2 == -1 || Math.sqrt(maxDist/(dirX*dirX+dirY*dirY+dirZ*dirZ)) <= epsilon){
+			return false;
+		}
+		
+		//point farthest from the plane through the first three
+		HullFace base = new HullFace(v0, v1, v2);
+		computePlane(base);
+		int v3 = -1;
+		maxDist = 0;
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			float dist = (float)Math.abs(distance(base, curPoint));
+			if(dist > maxDist){
+				maxDist = dist;
+				v3 = curPoint;
+			}
+		}
+		if(v3 == -1 || maxDist <= epsilon){
+			return false;
+		}
+		
+		//wind the faces so their normals point away from the fourth point of the tetrahedron
+		if(distance(base, v3) > 0){
+			int swap = v1;
+			v1 = v2;
+			v2 = swap;
+		}
+		HullFace[] simplex = {
+			new HullFace(v0, v1, v2),
+			new HullFace(v0, v3, v1),
+			new HullFace(v1, v3, v2),
+			new HullFace(v2, v3, v0)
+		};
+		for(int curFace = 0; curFace < 4; curFace++){
+			computePlane(simplex[curFace]);
+			addFace(simplex[curFace]);
+		}
+		//link the faces across their shared edges
+		for(int curFace = 0; curFace < 4; curFace++){
+			for(int curEdge = 0; curEdge < 3; curEdge++){
+				int start = simplex[curFace].verts[curEdge], end = simplex[curFace].verts[(curEdge+1)%3];
+				for(int other = 0; other < 4; other++){
+					int index = simplex[other].edgeIndex(end, start);
+					if(other != curFace && index != -1){
+						simplex[curFace].neighbors[curEdge] = simplex[other];
+					}
+				}
+			}
+		}
+		
+		//give each remaining point to the first face it is outside of
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			if(curPoint != v0 && curPoint != v1 && curPoint != v2 && curPoint != v3){
+				assignPoint(curPoint, simplex, 4);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds the given point to the hull, replacing the faces it can see with faces from the point to their horizon
+	 */
+	private void addPoint(int eye, HullFace eyeFace){
+		visible.clear();
+		horizonSize = 0;
+		findHorizon(eye, eyeFace, 0);
+		
+		//close the hole with a fan of faces from the eye point to each horizon edge
+		created.clear();
+		for(int curEdge = 0; curEdge < horizonSize; curEdge++){
+			HullFace face = new HullFace(horizonA[curEdge], horizonB[curEdge], eye);
+			computePlane(face);
+			HullFace across = horizonFaces[curEdge];
+			face.neighbors[0] = across;
+			across.neighbors[across.edgeIndex(horizonB[curEdge], horizonA[curEdge])] = face;
+			created.add(face);
+			addFace(face);
+		}
+		//the horizon is a loop so each new face shares its edges to the eye with the faces before and after it
+		for(int curFace = 0; curFace < horizonSize; curFace++){
+			HullFace face = created.get(curFace);
+			face.neighbors[1] = created.get((curFace+1)%horizonSize);
+			face.neighbors[2] = created.get((curFace+horizonSize-1)%horizonSize);
+		}
+		
+		//points outside the removed faces are either outside a new face or inside the hull now
+		HullFace[] newFaces = created.toArray(new HullFace[horizonSize]);
+		for(int curFace = 0; curFace < visible.size(); curFace++){
+			HullFace face = visible.get(curFace);
+			for(int curPoint = 0; curPoint < face.numOutside; curPoint++){
+				int point = face.outside[curPoint];
+				if(point != eye){
+					assignPoint(point, newFaces, horizonSize);
+				}
+			}
+			removeFace(face);
+		}
+	}
+	
+	/**
+	 * Marks the faces the eye point can see starting from the given face, adding the edges between the visible faces
+	 * and the faces that aren't visible to the horizon in counter clockwise order
+	 */
+	private void findHorizon(int eye, HullFace face, int startEdge){
+		face.visible = true;
+		visible.add(face);
+		for(int curEdge = 0; curEdge < 3; curEdge++){
+			int edge = (startEdge+curEdge)%3;
+			HullFace neighbor = face.neighbors[edge];
+			if(neighbor.visible){
+				continue;
+			}
+			//a face the point is in front of by any amount has to be replaced, the new face over the edge would tilt
+			//past it and the tilt grows with the length of the face. Faces the point is coplanar with up to the
+			//rounding of the planes are kept, so a face can't be visible while its coplanar neighbor isn't which would
+			//leave a hole in the visible faces and a horizon that isn't a loop
+			if(distance(neighbor, eye) > planeTolerance){
+				//continue across the edge starting from the edge after the one shared with this face
+				int shared = neighbor.edgeIndex(face.verts[(edge+1)%3], face.verts[edge]);
+				findHorizon(eye, neighbor, (shared+1)%3);
+			}else{
+				addHorizonEdge(face.verts[edge], face.verts[(edge+1)%3], neighbor);
+			}
+		}
+	}
+	
+	private void addHorizonEdge(int start, int end, HullFace across){
+		if(horizonSize == horizonA.length){
+			int capacity = horizonSize*2;
+			int[] newA = new int[capacity], newB = new int[capacity];
+			HullFace[] newFaces = new HullFace[capacity];
+			System.arraycopy(horizonA, 0, newA, 0, horizonSize);
+			System.arraycopy(horizonB, 0, newB, 0, horizonSize);
+			System.arraycopy(horizonFaces, 0, newFaces, 0, horizonSize);
+			horizonA = newA;
+			horizonB = newB;
+			horizonFaces = newFaces;
+		}
+		horizonA[horizonSize] = start;
+		horizonB[horizonSize] = end;
+		horizonFaces[horizonSize] = across;
+		horizonSize++;
+	}
+	
+	/**
+	 * Adds the point to the outside set of the first of the given faces it is outside of, points that aren't
+	 * outside any of the faces are inside the hull and are dropped
+	 */
+	private void assignPoint(int point, HullFace[] candidates, int numCandidates){
+		for(int curFace = 0; curFace < numCandidates; curFace++){
+			HullFace face = candidates[curFace];
+			double dist = distance(face, point);
+			if(dist > epsilon){
+				if(face.numOutside == 0){
+					pending.add(face);
+				}
+				face.addOutside(point, dist);
+				return;
+			}
+		}
+	}
+	
+	private void addFace(HullFace face){
+		faces.add(face);
+		for(int curVert = 0; curVert < 3; curVert++){
+			if(faceCount[face.verts[curVert]]++ == 0){
+				numVertices++;
+			}
+		}
+	}
+	
+	private void removeFace(HullFace face){
+		face.removed = true;
+		for(int curVert = 0; curVert < 3; curVert++){
+			if(--faceCount[face.verts[curVert]] == 0){
+				numVertices--;
+			}
+		}
+	}
+	
+	private void computePlane(HullFace face){
+		int a = face.verts[0], b = face.verts[1], c = face.verts[2];
+		//the plane is computed in double precision, the differences and products of the float coordinates are exact in
+		//it so the sides of long thin faces can be trusted
+		double abX = (double)x[b]-x[a], abY = (double)y[b]-y[a], abZ = (double)z[b]-z[a];
+		double acX = (double)x[c]-x[a], acY = (double)y[c]-y[a], acZ = (double)z[c]-z[a];
+		double nX = abY*acZ-abZ*acY, nY = abZ*acX-abX*acZ, nZ = abX*acY-abY*acX;
+		double length = Math.sqrt(nX*nX+nY*nY+nZ*nZ);
+		if(length > 0){
+			nX /= length;
+			nY /= length;
+			nZ /= length;
+		}
+		face.normalX = nX;
+		face.normalY = nY;
+		face.normalZ = nZ;
+		//measure from the centroid to reduce the rounding of long thin faces
+		face.offset = (nX*((double)x[a]+x[b]+x[c])+nY*((double)y[a]+y[b]+y[c])+nZ*((double)z[a]+z[b]+z[c]))/3;
+	}
+	
+	private double distance(HullFace face, int point){
+		return face.normalX*x[point]+face.normalY*y[point]+face.normalZ*z[point]-face.offset;
+	}
+	
+	private float distanceSq(int a, int b){
+		float dX = x[b]-x[a], dY = y[b]-y[a], dZ = z[b]-z[a];
+		return dX*dX+dY*dY+dZ*dZ;
+	}
+	
+	/**
+	 * Creates a convex hull collision mesh from the last computed hull, the vertices of the hull are the given
+	 * vertices that are on it and its faces are linked with the half edges that the support function walks
+	 * 
+	 * @return Convex hull collision mesh
+	 */
+	public ConvexHull createHull(){
+		ArrayList<Vertex> hullVerts = new ArrayList<Vertex>(numVertices);
+		int[] remap = new int[numPoints];
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			if(faceCount[curPoint] > 0){
+				remap[curPoint] = hullVerts.size();
+				hullVerts.add(source.get(curPoint));
+			}
+		}
+		
+		ArrayList<Triangle> triangles = getFaces(remap);
+		return new ConvexHull(hullVerts, triangles.get(0));
+	}
+	
+	/**
+	 * Builds the triangles of the last computed hull with their half edges linked
+	 */
+	private ArrayList<Triangle> getFaces(int[] remap){
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>(faces.size());
+		HashMap<Triangle.Edge, Triangle.HalfEdge> edgesMap = new HashMap<Triangle.Edge, Triangle.HalfEdge>();
+		for(int curFace = 0; curFace < faces.size(); curFace++){
+			HullFace face = faces.get(curFace);
+			Triangle triangle = new Triangle(remap[face.verts[0]], remap[face.verts[1]], remap[face.verts[2]]);
+			linkTriangle(triangle, edgesMap);
+			triangles.add(triangle);
+		}
+		for(int curFace = 0; curFace < triangles.size(); curFace++){
+			triangles.get(curFace).initAdjacent();
+		}
+		return triangles;
+	}
+	
+	/**
+	 * Creates the half edges of the given triangle and links them to the half edges of the triangles already in the
+	 * map, the same way renderables link the faces of their meshes
+	 */
+	private static void linkTriangle(Triangle face, HashMap<Triangle.Edge, Triangle.HalfEdge> edgesMap){
+		for(Triangle.Edge edge : face.edges){
+			Triangle.HalfEdge halfEdge = new Triangle.HalfEdge(edge.start);
+			edgesMap.put(edge, halfEdge);
+			halfEdge.parent = face;
+			face.halfEdges.add(halfEdge);
+		}
+		int numEdges = face.edges.length;
+		for(int edgeGet = 0; edgeGet < numEdges; edgeGet++){
+			Triangle.Edge edge = face.edges[edgeGet];
+			face.halfEdges.get(edgeGet).next = face.halfEdges.get((edgeGet+1)%numEdges);
+			Triangle.HalfEdge opposite = edgesMap.get(new Triangle.Edge(edge.end, edge.start));
+			if(opposite != null){
+				Triangle.HalfEdge halfEdge = face.halfEdges.get(edgeGet);
+				halfEdge.opposite = opposite;
+				opposite.opposite = halfEdge;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of vertices of the last computed hull
+	 * 
+	 * @return Number of hull vertices
+	 */
+	public int getVertexCount(){
+		return numVertices;
+	}
+	
+	/**
+	 * Gets the number of triangles of the last computed hull
+	 * 
+	 * @return Number of hull faces
+	 */
+	public int getFaceCount(){
+		return faces.size();
+	}
+	
+	/**
+	 * Face of the hull being built, the neighbor at each index is the face across the edge from the vertex at the
+	 * same index to the next vertex
+	 */
+	private static class HullFace{
+		int[] verts;
+		HullFace[] neighbors;
+		double normalX, normalY, normalZ, offset;
+		//points outside this face and the farthest of them
+		int[] outside;
+		int numOutside, farthest;
+		double farthestDist;
+		boolean visible, removed;
+		
+		HullFace(int v0, int v1, int v2){
+			verts = new int[]{v0, v1, v2};
+			neighbors = new HullFace[3];
+		}
+		
+		void addOutside(int point, double dist){
+			if(outside == null){
+				outside = new int[4];
+			}else if(numOutside == outside.length){
+				int[] grown = new int[numOutside*2];
+				System.arraycopy(outside, 0, grown, 0, numOutside);
+				outside = grown;
+			}
+			outside[numOutside++] = point;
+			if(numOutside == 1 || dist > farthestDist){
+				farthest = point;
+				farthestDist = dist;
+			}
+		}
+		
+		/**
+		 * Gets the index of the edge going from start to end or -1 if this face doesn't have the edge
+		 */
+		int edgeIndex(int start, int end){
+			for(int curEdge = 0; curEdge < 3; curEdge++){
+				if(verts[curEdge] == start && verts[(curEdge+1)%3] == end){
+					return curEdge;
+				}
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,693 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import core.GameObject;
+
+/**
+ * Broadphase that places the bounding volumes of its game objects into the cells of an unbounded uniform grid.
+ * Only the cells that hold objects are stored, in an open addressing hash table keyed by the packed integer
+ * coordinates of the cell, so the grid costs nothing for empty space. When an object moves only the cells it left
+ * and the cells it entered are changed, an object that stays within the same cells costs a bounds update.
+ * 
+ * This works best for many objects of a similar size such as debris and particles, where a tree spends most of its
+ * time on its depth. The cell size is either given or derived from the typical size of the objects. Objects that
+ * cover too many cells to be placed in the grid, such as the ground, are kept in a separate list and tested against
+ * every other object.
+ * 
+ * @author Kevin
+ *
+ */
+public class SpatialHashGrid implements BroadPhase {
+	
+	private static final int BOX_STRIDE = 6;
+	//objects covering more cells than this are kept out of the grid
+	private static final int MAX_OBJECT_CELLS = 64;
+	//each cell coordinate is packed into 21 bits of the cell key
+	private static final int COORD_BITS = 21;
+	private static final int COORD_MASK = (1 << COORD_BITS)-1;
+	private static final int MAX_COORD = (1 << (COORD_BITS-1))-1;
+	//a derived cell is this many times the median size of the objects, so a typical object covers one or two cells
+	//along each axis
+	private static final float CELL_SCALE = 2;
+	
+	private float cellSize, invCellSize;
+	//whether the cell size is derived from the objects, and the number of objects it was last derived from
+	private boolean autoSize;
+	private int fittedCount;
+	
+	//bounds of each handle as minX, minY, minZ, maxX, maxY, maxZ, and the range of cells it covers in the same order
+	private float[] boxes;
+	private int[] cellRanges;
+	//index of each handle in the oversized list, -1 if the handle is in the grid
+	private int[] oversizedIndex;
+	//game objects by handle and the handles that are free to be reused
+	private GameObject[] objects;
+	private HashMap<GameObject, Integer> handles;
+	private int[] freeHandles;
+	private int numFree, numHandles;
+	//handles of the objects too large to be placed in the grid
+	private int[] oversized;
+	private int numOversized;
+	//counter used to mark handles that have been visited by the current query so duplicates aren't reported
+	private int[] stamps;
+	private int queryStamp;
+	
+	private CellTable cells;
+	
+	public SpatialHashGrid(){
+		this(0, 64);
+	}
+	
+	/**
+	 * Constructs an empty spatial hash grid
+	 * 
+	 * @param cellSize Length of the sides of the cells, if this isn't positive the cell size is derived from the
+	 * bounding volumes of the objects and derived again each time the number of objects doubles
+	 * @param initialCapacity Number of game objects to allocate space for, the grid grows as needed
+	 */
+	public SpatialHashGrid(float cellSize, int initialCapacity){
+		int capacity = Math.max(initialCapacity, 1);
+		autoSize = cellSize <= 0;
+		fittedCount = 0;
+		setCellSize(autoSize ? 0 : cellSize);
+		boxes = new float[capacity*BOX_STRIDE];
+		cellRanges = new int[capacity*BOX_STRIDE];
+		oversizedIndex = new int[capacity];
+		objects = new GameObject[capacity];
+		handles = new HashMap<GameObject, Integer>();
+		freeHandles = new int[capacity];
+		oversized = new int[capacity];
+		stamps = new int[capacity];
+		numFree = 0;
+		numHandles = 0;
+		numOversized = 0;
+		queryStamp = 0;
+		cells = new CellTable(capacity*2);
+	}
+	
+	@Override
+	public boolean add(GameObject object){
+		if(handles.containsKey(object)){
+			return false;
+		}
+		int handle = allocateHandle();
+		objects[handle] = object;
+		handles.put(object, handle);
+		stamps[handle] = queryStamp;
+		oversizedIndex[handle] = -1;
+		computeBounds(handle);
+		//until a derived cell size is known the objects are only placed in the grid once it is fit
+		if(cellSize > 0){
+			insert(handle);
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean remove(GameObject object){
+		Integer handleObj = handles.remove(object);
+		if(handleObj == null){
+			return false;
+		}
+		int handle = handleObj;
+		if(cellSize > 0){
+			extract(handle);
+		}
+		objects[handle] = null;
+		freeHandles[numFree++] = handle;
+		return true;
+	}
+	
+	@Override
+	public void update(GameObject object){
+		Integer handle = handles.get(object);
+		if(handle != null && !checkFit()){
+			move(handle);
+		}
+	}
+	
+	@Override
+	public void update(){
+		//fitting places every object with its current bounds so there's nothing left to update
+		if(checkFit()){
+			return;
+		}
+		//sleeping objects don't move so their cells are already correct
+		for(int handle = 0; handle < numHandles; handle++){
+			if(objects[handle] != null && objects[handle].isAwake()){
+				move(handle);
+			}
+		}
+	}
+	
+	@Override
+	public int findPairs(ArrayList<CandidatePair> pairs){
+		checkFit();
+		int found = 0;
+		long[] keys = cells.keys;
+		for(int curSlot = 0; curSlot < keys.length; curSlot++){
+			int count = cells.counts[curSlot];
+			if(count < 2){
+				continue;
+			}
+			int[] members = cells.members[curSlot];
+			long key = keys[curSlot];
+			for(int curMember = 0; curMember < count; curMember++){
+				int handleA = members[curMember];
+				for(int other = curMember+1; other < count; other++){
+					int handleB = members[other];
+					//a pair sharing several cells is only reported by the first cell of the overlap of their ranges
+					if(overlaps(handleA, handleB) && firstSharedCell(handleA, handleB) == key){
+						found += addPair(handleA, handleB, pairs);
+					}
+				}
+			}
+		}
+		//the oversized objects are tested against every object, pairs between two oversized objects are only
+		//tested by the one earlier in the list
+		for(int curOversized = 0; curOversized < numOversized; curOversized++){
+			int handleA = oversized[curOversized];
+			for(int handleB = 0; handleB < numHandles; handleB++){
+				if(objects[handleB] == null || handleB == handleA ||
+						(oversizedIndex[handleB] != -1 && oversizedIndex[handleB] < curOversized)){
+					continue;
+				}
+				if(overlaps(handleA, handleB)){
+					found += addPair(handleA, handleB, pairs);
+				}
+			}
+		}
+		return found;
+	}
+	
+	@Override
+	public int query(AABB volume, Collection<GameObject> results){
+		return query(volume.getMinX(), volume.getMinY(), volume.getMinZ(),
+				volume.getMaxX(), volume.getMaxY(), volume.getMaxZ(), results);
+	}
+	
+	/**
+	 * Finds the game objects whose bounding volumes overlap the given box
+	 * 
+	 * @param minX Minimum x of the box
+	 * @param minY Minimum y of the box
+	 * @param minZ Minimum z of the box
+	 * @param maxX Maximum x of the box
+	 * @param maxY Maximum y of the box
+	 * @param maxZ Maximum z of the box
+	 * @param results Collection to add the overlapping game objects to
+	 * @return Number of game objects that were added
+	 */
+	public int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Collection<GameObject> results){
+		checkFit();
+		int found = 0;
+		int minCX = cellCoord(minX), minCY = cellCoord(minY), minCZ = cellCoord(minZ);
+		int maxCX = cellCoord(maxX), maxCY = cellCoord(maxY), maxCZ = cellCoord(maxZ);
+		long numCells = (long)(maxCX-minCX+1)*(maxCY-minCY+1)*(maxCZ-minCZ+1);
+		//a box covering more cells than there are objects is faster to test against every object
+		if(cellSize <= 0 || numCells > numHandles){
+			for(int handle = 0; handle < numHandles; handle++){
+				if(objects[handle] != null && overlaps(handle, minX, minY, minZ, maxX, maxY, maxZ)){
+					results.add(objects[handle]);
+					found++;
+				}
+			}
+			return found;
+		}
+		queryStamp++;
+		for(int cellZ = minCZ; cellZ <= maxCZ; cellZ++){
+			for(int cellY = minCY; cellY <= maxCY; cellY++){
+				for(int cellX = minCX; cellX <= maxCX; cellX++){
+					int slot = cells.find(cellKey(cellX, cellY, cellZ));
+					if(slot < 0){
+						continue;
+					}
+					int[] members = cells.members[slot];
+					for(int curMember = 0; curMember < cells.counts[slot]; curMember++){
+						int handle = members[curMember];
+						if(stamps[handle] != queryStamp){
+							stamps[handle] = queryStamp;
+							if(overlaps(handle, minX, minY, minZ, maxX, maxY, maxZ)){
+								results.add(objects[handle]);
+								found++;
+							}
+						}
+					}
+				}
+			}
+		}
+		for(int curOversized = 0; curOversized < numOversized; curOversized++){
+			int handle = oversized[curOversized];
+			if(overlaps(handle, minX, minY, minZ, maxX, maxY, maxZ)){
+				results.add(objects[handle]);
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	@Override
+	public int size(){
+		return handles.size();
+	}
+	
+	/**
+	 * Derives the cell size from the bounding volumes of the current objects and places every object in the grid
+	 * again, the cell size is a multiple of the median of the longest side of each object
+	 */
+	public void fitCellSize(){
+		float[] sides = new float[handles.size()];
+		int numSides = 0;
+		for(int handle = 0; handle < numHandles; handle++){
+			if(objects[handle] != null){
+				computeBounds(handle);
+				int box = handle*BOX_STRIDE;
+				sides[numSides++] = Math.max(boxes[box+3]-boxes[box], Math.max(boxes[box+4]-boxes[box+1], boxes[box+5]-boxes[box+2]));
+			}
+		}
+		fittedCount = numSides;
+		if(numSides == 0){
+			return;
+		}
+		Arrays.sort(sides, 0, numSides);
+		float median = sides[numSides/2];
+		//objects with no size such as points still need a usable cell
+		setCellSize(median > 0 ? median*CELL_SCALE : 1);
+		
+		cells.clear();
+		numOversized = 0;
+		for(int handle = 0; handle < numHandles; handle++){
+			if(objects[handle] != null){
+				oversizedIndex[handle] = -1;
+				insert(handle);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the length of the sides of the cells of this grid
+	 * 
+	 * @return Length of the sides of the cells, 0 if the cell size is derived and no objects have been added yet
+	 */
+	public float getCellSize(){
+		return cellSize;
+	}
+	
+	/**
+	 * Gets the number of cells that currently hold at least one object
+	 * 
+	 * @return Number of occupied cells
+	 */
+	public int getCellCount(){
+		return cells.size;
+	}
+	
+	/**
+	 * Gets the number of objects that are too large to be placed in the grid
+	 * 
+	 * @return Number of objects kept out of the grid
+	 */
+	public int getOversizedCount(){
+		return numOversized;
+	}
+	
+	/**
+	 * Derives the cell size again if it is derived from the objects and the number of objects has doubled since
+	 * it was last derived
+	 * 
+	 * @return True if the cell size was derived and every object was placed in the grid again
+	 */
+	private boolean checkFit(){
+		if(autoSize && handles.size() > 0 && handles.size() >= 2*fittedCount){
+			fitCellSize();
+			return true;
+		}
+		return false;
+	}
+	
+	private void setCellSize(float size){
+		cellSize = size;
+		invCellSize = size > 0 ? 1/size : 0;
+	}
+	
+	/**
+	 * Places the given handle in the cells covered by its current bounds, or in the oversized list if it covers
+	 * too many cells
+	 */
+	private void insert(int handle){
+		int box = handle*BOX_STRIDE;
+		int minCX = cellCoord(boxes[box]), minCY = cellCoord(boxes[box+1]), minCZ = cellCoord(boxes[box+2]);
+		int maxCX = cellCoord(boxes[box+3]), maxCY = cellCoord(boxes[box+4]), maxCZ = cellCoord(boxes[box+5]);
+		setRange(handle, minCX, minCY, minCZ, maxCX, maxCY, maxCZ);
+		if(isOversized(minCX, minCY, minCZ, maxCX, maxCY, maxCZ)){
+			if(numOversized == oversized.length){
+				oversized = copyOf(oversized, oversized.length*2);
+			}
+			oversizedIndex[handle] = numOversized;
+			oversized[numOversized++] = handle;
+			return;
+		}
+		for(int cellZ = minCZ; cellZ <= maxCZ; cellZ++){
+			for(int cellY = minCY; cellY <= maxCY; cellY++){
+				for(int cellX = minCX; cellX <= maxCX; cellX++){
+					cells.add(cellKey(cellX, cellY, cellZ), handle);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Takes the given handle out of the cells it was last placed in, or out of the oversized list
+	 */
+	private void extract(int handle){
+		if(oversizedIndex[handle] != -1){
+			int last = oversized[--numOversized];
+			oversized[oversizedIndex[handle]] = last;
+			oversizedIndex[last] = oversizedIndex[handle];
+			oversizedIndex[handle] = -1;
+			return;
+		}
+		int range = handle*BOX_STRIDE;
+		for(int cellZ = cellRanges[range+2]; cellZ <= cellRanges[range+5]; cellZ++){
+			for(int cellY = cellRanges[range+1]; cellY <= cellRanges[range+4]; cellY++){
+				for(int cellX = cellRanges[range]; cellX <= cellRanges[range+3]; cellX++){
+					cells.remove(cellKey(cellX, cellY, cellZ), handle);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Updates the bounds of the given handle, moving it out of the cells it left and into the cells it entered
+	 */
+	private void move(int handle){
+		computeBounds(handle);
+		int box = handle*BOX_STRIDE, range = handle*BOX_STRIDE;
+		int minCX = cellCoord(boxes[box]), minCY = cellCoord(boxes[box+1]), minCZ = cellCoord(boxes[box+2]);
+		int maxCX = cellCoord(boxes[box+3]), maxCY = cellCoord(boxes[box+4]), maxCZ = cellCoord(boxes[box+5]);
+		int oldMinCX = cellRanges[range], oldMinCY = cellRanges[range+1], oldMinCZ = cellRanges[range+2];
+		int oldMaxCX = cellRanges[range+3], oldMaxCY = cellRanges[range+4], oldMaxCZ = cellRanges[range+5];
+		if(minCX == oldMinCX && minCY == oldMinCY && minCZ == oldMinCZ &&
+				maxCX == oldMaxCX && maxCY == oldMaxCY && maxCZ == oldMaxCZ){
+			return;
+		}
+		//objects that grew or shrunk past the oversized limit are moved between the grid and the oversized list
+		boolean wasOversized = oversizedIndex[handle] != -1;
+		if(wasOversized || isOversized(minCX, minCY, minCZ, maxCX, maxCY, maxCZ)){
+			extract(handle);
+			insert(handle);
+			return;
+		}
+		
+		//leave the cells that are only in the old range
+		for(int cellZ = oldMinCZ; cellZ <= oldMaxCZ; cellZ++){
+			for(int cellY = oldMinCY; cellY <= oldMaxCY; cellY++){
+				for(int cellX = oldMinCX; cellX <= oldMaxCX; cellX++){
+					if(cellX < minCX || cellX > maxCX || cellY < minCY || cellY > maxCY || cellZ < minCZ || cellZ > maxCZ){
+						cells.remove(cellKey(cellX, cellY, cellZ), handle);
+					}
+				}
+			}
+		}
+		//enter the cells that are only in the new range
+		for(int cellZ = minCZ; cellZ <= maxCZ; cellZ++){
+			for(int cellY = minCY; cellY <= maxCY; cellY++){
+				for(int cellX = minCX; cellX <= maxCX; cellX++){
+					if(cellX < oldMinCX || cellX > oldMaxCX || cellY < oldMinCY || cellY > oldMaxCY || cellZ < oldMinCZ || cellZ > oldMaxCZ){
+						cells.add(cellKey(cellX, cellY, cellZ), handle);
+					}
+				}
+			}
+		}
+		setRange(handle, minCX, minCY, minCZ, maxCX, maxCY, maxCZ);
+	}
+	
+	private void setRange(int handle, int minCX, int minCY, int minCZ, int maxCX, int maxCY, int maxCZ){
+		int range = handle*BOX_STRIDE;
+		cellRanges[range] = minCX;
+		cellRanges[range+1] = minCY;
+		cellRanges[range+2] = minCZ;
+		cellRanges[range+3] = maxCX;
+		cellRanges[range+4] = maxCY;
+		cellRanges[range+5] = maxCZ;
+	}
+	
+	private static boolean isOversized(int minCX, int minCY, int minCZ, int maxCX, int maxCY, int maxCZ){
+		return (long)(maxCX-minCX+1)*(maxCY-minCY+1)*(maxCZ-minCZ+1) > MAX_OBJECT_CELLS;
+	}
+	
+	/**
+	 * Finds the key of the first cell covered by both of the given handles, this is the cell at the minimum corner
+	 * of the overlap of their cell ranges
+	 */
+	private long firstSharedCell(int handleA, int handleB){
+		int rangeA = handleA*BOX_STRIDE, rangeB = handleB*BOX_STRIDE;
+		return cellKey(
+				Math.max(cellRanges[rangeA], cellRanges[rangeB]),
+				Math.max(cellRanges[rangeA+1], cellRanges[rangeB+1]),
+				Math.max(cellRanges[rangeA+2], cellRanges[rangeB+2])
+				);
+	}
+	
+	/**
+	 * Adds the pair of the given handles to the given list with the lower handle first
+	 * 
+	 * @return Number of pairs that were added
+	 */
+	private int addPair(int handleA, int handleB, ArrayList<CandidatePair> pairs){
+		if(handleA < handleB){
+			pairs.add(new CandidatePair(objects[handleA], objects[handleB]));
+		}else{
+			pairs.add(new CandidatePair(objects[handleB], objects[handleA]));
+		}
+		return 1;
+	}
+	
+	private boolean overlaps(int handleA, int handleB){
+		int boxA = handleA*BOX_STRIDE, boxB = handleB*BOX_STRIDE;
+		return boxes[boxA] <= boxes[boxB+3] && boxes[boxA+3] >= boxes[boxB] &&
+				boxes[boxA+1] <= boxes[boxB+4] && boxes[boxA+4] >= boxes[boxB+1] &&
+				boxes[boxA+2] <= boxes[boxB+5] && boxes[boxA+5] >= boxes[boxB+2];
+	}
+	
+	private boolean overlaps(int handle, float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		int box = handle*BOX_STRIDE;
+		return boxes[box] <= maxX && boxes[box+3] >= minX &&
+				boxes[box+1] <= maxY && boxes[box+4] >= minY &&
+				boxes[box+2] <= maxZ && boxes[box+5] >= minZ;
+	}
+	
+	/**
+	 * Computes the coordinate of the cell holding the given value along an axis, coordinates beyond the range
+	 * that fits in a cell key are clamped to it
+	 */
+	private int cellCoord(float value){
+		float cell = (float)Math.floor(value*invCellSize);
+		return (int)Math.max(-MAX_COORD, Math.min(MAX_COORD, cell));
+	}
+	
+	private static long cellKey(int cellX, int cellY, int cellZ){
+		return ((long)(cellX & COORD_MASK) << (2*COORD_BITS)) | ((long)(cellY & COORD_MASK) << COORD_BITS) | (cellZ & COORD_MASK);
+	}
+	
+	private int allocateHandle(){
+		if(numFree > 0){
+			return freeHandles[--numFree];
+		}
+		if(numHandles == objects.length){
+			grow(objects.length*2);
+		}
+		return numHandles++;
+	}
+	
+	private void grow(int capacity){
+		boxes = copyOf(boxes, capacity*BOX_STRIDE);
+		cellRanges = copyOf(cellRanges, capacity*BOX_STRIDE);
+		oversizedIndex = copyOf(oversizedIndex, capacity);
+		GameObject[] grownObjects = new GameObject[capacity];
+		System.arraycopy(objects, 0, grownObjects, 0, objects.length);
+		objects = grownObjects;
+		freeHandles = copyOf(freeHandles, capacity);
+		stamps = copyOf(stamps, capacity);
+	}
+	
+	/**
+	 * Computes the bounds of the game object of the given handle storing them in the boxes array
+	 */
+	private void computeBounds(int handle){
+		objects[handle].getBoundingVolume().getBounds(boxes, handle*BOX_STRIDE);
+	}
+	
+	private static float[] copyOf(float[] array, int length){
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+	
+	private static int[] copyOf(int[] array, int length){
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+	
+	/**
+	 * Open addressing hash table from cell keys to the handles in each cell. A cell is removed from the table as
+	 * soon as its last handle leaves, the arrays of handles of removed cells are pooled for the next new cell.
+	 */
+	private static class CellTable{
+		//packed keys only use the low 63 bits so they are never negative
+		private static final long EMPTY = -1;
+		private static final int INITIAL_CELL_CAPACITY = 4;
+		
+		private long[] keys;
+		private int[][] members;
+		private int[] counts;
+		private int size, mask;
+		private int[][] pool;
+		private int numPooled;
+		
+		public CellTable(int capacity){
+			int tableSize = 16;
+			while(tableSize < capacity*2){
+				tableSize <<= 1;
+			}
+			keys = new long[tableSize];
+			members = new int[tableSize][];
+			counts = new int[tableSize];
+			Arrays.fill(keys, EMPTY);
+			mask = tableSize-1;
+			pool = new int[16][];
+			numPooled = 0;
+		}
+		
+		private int slot(long key){
+			long hash = key*0x9E3779B97F4A7C15L;
+			return (int)(hash ^ (hash >>> 32)) & mask;
+		}
+		
+		public int find(long key){
+			int slot = slot(key);
+			while(keys[slot] != EMPTY){
+				if(keys[slot] == key){
+					return slot;
+				}
+				slot = (slot+1) & mask;
+			}
+			return -1;
+		}
+		
+		/**
+		 * Adds the given handle to the cell with the given key, creating the cell if it doesn't exist
+		 */
+		public void add(long key, int handle){
+			int slot = slot(key);
+			while(keys[slot] != EMPTY && keys[slot] != key){
+				slot = (slot+1) & mask;
+			}
+			if(keys[slot] == EMPTY){
+				keys[slot] = key;
+				members[slot] = numPooled > 0 ? pool[--numPooled] : new int[INITIAL_CELL_CAPACITY];
+				counts[slot] = 0;
+				size++;
+				if(size*2 > keys.length){
+					rehash(keys.length*2);
+					slot = find(key);
+				}
+			}
+			int[] cell = members[slot];
+			if(counts[slot] == cell.length){
+				cell = copyOf(cell, cell.length*2);
+				members[slot] = cell;
+			}
+			cell[counts[slot]++] = handle;
+		}
+		
+		/**
+		 * Removes the given handle from the cell with the given key, removing the cell once it is empty
+		 */
+		public void remove(long key, int handle){
+			int slot = find(key);
+			if(slot < 0){
+				return;
+			}
+			int[] cell = members[slot];
+			int count = counts[slot];
+			for(int curMember = 0; curMember < count; curMember++){
+				if(cell[curMember] == handle){
+					cell[curMember] = cell[--count];
+					counts[slot] = count;
+					break;
+				}
+			}
+			if(count == 0){
+				if(numPooled == pool.length){
+					int[][] grown = new int[pool.length*2][];
+					System.arraycopy(pool, 0, grown, 0, pool.length);
+					pool = grown;
+				}
+				pool[numPooled++] = cell;
+				removeSlot(slot);
+			}
+		}
+		
+		public void clear(){
+			for(int curSlot = 0; curSlot < keys.length; curSlot++){
+				if(keys[curSlot] != EMPTY){
+					keys[curSlot] = EMPTY;
+					members[curSlot] = null;
+					counts[curSlot] = 0;
+				}
+			}
+			size = 0;
+		}
+		
+		/**
+		 * Removes the cell in the given slot shifting back the cells that follow it so no tombstones are needed
+		 */
+		private void removeSlot(int slot){
+			size--;
+			int hole = slot;
+			int next = (hole+1) & mask;
+			while(keys[next] != EMPTY){
+				int home = slot(keys[next]);
+				//move the cell into the hole if the hole lies between its home slot and its current slot
+				if(((next-home) & mask) >= ((next-hole) & mask)){
+					keys[hole] = keys[next];
+					members[hole] = members[next];
+					counts[hole] = counts[next];
+					hole = next;
+				}
+				next = (next+1) & mask;
+			}
+			keys[hole] = EMPTY;
+			members[hole] = null;
+			counts[hole] = 0;
+		}
+		
+		private void rehash(int tableSize){
+			long[] oldKeys = keys;
+			int[][] oldMembers = members;
+			int[] oldCounts = counts;
+			keys = new long[tableSize];
+			members = new int[tableSize][];
+			counts = new int[tableSize];
+			Arrays.fill(keys, EMPTY);
+			mask = tableSize-1;
+			for(int curSlot = 0; curSlot < oldKeys.length; curSlot++){
+				if(oldKeys[curSlot] != EMPTY){
+					int slot = slot(oldKeys[curSlot]);
+					while(keys[slot] != EMPTY){
+						slot = (slot+1) & mask;
+					}
+					keys[slot] = oldKeys[curSlot];
+					members[slot] = oldMembers[curSlot];
+					counts[slot] = oldCounts[curSlot];
+				}
+			}
+		}
+	}
+}
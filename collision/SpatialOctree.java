@@ -1,19 +1,47 @@
 package collision;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 
 import core.GameObject;
 import glMath.Vec3;
-import glMath.VecUtil;
+import glMath.Vec4;
 
-public class SpatialOctree {
+public class SpatialOctree implements BroadPhase {
+	//nodes holding at least this many entries test them through their batch of bounds
+	private static final int BATCH_SIZE = 16;
 	//first half of nodes will represent the upper portion of space
 	//the nodes will read in counter clockwise from the -z, +x quadrant
 	private OctreeNode root;
 	private Vec3 halfDim, center;
 	private ArrayList<GameObject> gameObjects;
+	//map from the game objects to their entries in the tree
+	private HashMap<GameObject, ObjectEntry> entries;
 	private int leafCap, maxDepth;
-	
+	//in loose mode each object is stored once in the deepest node whose bounds scaled by the looseness contain it
+	private boolean loose;
+	private float looseness;
+	//counter used to mark entries that have been visited by the current query so duplicates aren't reported
+	private int queryStamp;
+	private float[] bounds;
+	//indices of the entries of a node that passed the batched bounds tests of the current query
+	private int[] hits;
+	//nodes an entry was removed from that need to be checked for merging
+	private ArrayList<OctreeNode> unlinked;
+	//ray being cast through the tree, the direction is also stored inverted for the slab tests
+	private float rayX, rayY, rayZ, rayDirX, rayDirY, rayDirZ, rayInvX, rayInvY, rayInvZ, rayMax, rayBest;
+	private ObjectEntry rayHit;
+	//max heap of the closest entries found by a nearest neighbour query
+	private ObjectEntry[] heapEntries;
+	private float[] heapDist;
+	private int heapSize;
+	//per depth scratch space used to visit the children of a node in order of distance
+	private int[][] childOrder;
+	private float[][] childDist;
+	//update cost statistics
+	private long updates, movedObjects, reinsertions, merges, updateTime;
+
 //	public SpatialOctree(int leafCapacity, int depthCap){
 //		root = new OctreeNode();
 //		center = new Vec3();
@@ -21,7 +49,7 @@ public class SpatialOctree {
 //		leafCap = leafCapacity;
 //		gameObjects = new ArrayList<GameObject>();
 //	}
-//	
+//
 //	public SpatialOctree(int leafCapacity, int depthCap, ArrayList<GameObject> initializer){
 //		root = new OctreeNode();
 //		center = new Vec3();
@@ -46,12 +74,59 @@ public class SpatialOctree {
 	}
 	
 	public SpatialOctree(int leafCapacity, int depthCap, float cX, float cY, float cZ, float dX, float dY, float dZ){
+		this(leafCapacity, depthCap, cX, cY, cZ, dX, dY, dZ, false, 1);
+	}
+	
+	/**
+	 * Constructs a loose octree, each game object is stored exactly once in the deepest node whose bounds contain
+	 * the object once they have been scaled by the looseness factor
+	 * 
+	 * @param leafCapacity Number of objects a node can hold before it is split
+	 * @param depthCap Maximum depth of the tree
+	 * @param center Center of the space covered by the tree
+	 * @param dimensions Dimensions of the space covered by the tree
+	 * @param looseness Factor the bounds of the nodes are scaled by, values less than 1 are treated as 1, 2 is typical
+	 */
+	public SpatialOctree(int leafCapacity, int depthCap, Vec3 center, Vec3 dimensions, float looseness){
+		this(leafCapacity, depthCap, center.x, center.y, center.z, dimensions.x, dimensions.y, dimensions.z, looseness);
+	}
+	
+	/**
+	 * Constructs a loose octree, each game object is stored exactly once in the deepest node whose bounds contain
+	 * the object once they have been scaled by the looseness factor
+	 * 
+	 * @param leafCapacity Number of objects a node can hold before it is split
+	 * @param depthCap Maximum depth of the tree
+	 * @param cX X coordinate of the center of the space covered by the tree
+	 * @param cY Y coordinate of the center of the space covered by the tree
+	 * @param cZ Z coordinate of the center of the space covered by the tree
+	 * @param dX Width of the space covered by the tree
+	 * @param dY Height of the space covered by the tree
+	 * @param dZ Length of the space covered by the tree
+	 * @param looseness Factor the bounds of the nodes are scaled by, values less than 1 are treated as 1, 2 is typical
+	 */
+	public SpatialOctree(int leafCapacity, int depthCap, float cX, float cY, float cZ, float dX, float dY, float dZ, float looseness){
+		this(leafCapacity, depthCap, cX, cY, cZ, dX, dY, dZ, true, looseness);
+	}
+	
+	private SpatialOctree(int leafCapacity, int depthCap, float cX, float cY, float cZ, float dX, float dY, float dZ, boolean loose, float looseness){
 		center = new Vec3(cX, cY, cZ);
 		halfDim = new Vec3(dX/2.0f, dY/2.0f, dZ/2.0f);
-		root = new OctreeNode(null, this.center, this.halfDim, 0);
 		leafCap = leafCapacity;
 		maxDepth = depthCap;
+		this.loose = loose;
+		this.looseness = Math.max(looseness, 1);
+		root = new OctreeNode(null, this.center, this.halfDim, 0);
 		gameObjects = new ArrayList<GameObject>();
+		entries = new HashMap<GameObject, ObjectEntry>();
+		queryStamp = 0;
+		bounds = new float[6];
+		hits = new int[Math.max(leafCapacity, 1)];
+		unlinked = new ArrayList<OctreeNode>();
+		heapEntries = new ObjectEntry[0];
+		heapDist = new float[0];
+		childOrder = new int[maxDepth+1][8];
+		childDist = new float[maxDepth+1][8];
 	}
 	
 	public SpatialOctree(int leafCapacity, int depthCap, Vec3 center, Vec3 dimensions, ArrayList<GameObject> initializer){
@@ -67,12 +142,7 @@ public class SpatialOctree {
 	}
 	
 	public SpatialOctree(int leafCapacity, int depthCap, float cX, float cY, float cZ, float dX, float dY, float dZ, ArrayList<GameObject> initializer){
-		center = new Vec3(cX, cY, cZ);
-		halfDim = new Vec3(dX/2.0f, dY/2.0f, dZ/2.0f);
-		root = new OctreeNode(null, this.center, this.halfDim, 0);
-		leafCap = leafCapacity;
-		maxDepth = depthCap;
-		gameObjects = new ArrayList<GameObject>();
+		this(leafCapacity, depthCap, cX, cY, cZ, dX, dY, dZ);
 		for(GameObject obj : initializer){
 			add(obj);
 		}
@@ -82,40 +152,643 @@ public class SpatialOctree {
 	 * Adds a game object to the tree, if the object cannot fit into the trees primary bounds then it will not be added
 	 * 
 	 * @param object Game object to be added
-	 * @return True if the object was added, false if it wasn't due to out of bounds volumes
+	 * @return True if the object was added, false if it wasn't due to out of bounds volumes or if it was already in the tree
 	 */
+	@Override
 	public boolean add(GameObject object){
 		//alternative might be to have the tree dynamically resize as items are added and removed
-		Vec3 relObjCenter = (Vec3)VecUtil.subtract(object.getPosition(), root.volume.getCenter());
-		AABB objVolume = object.getBoundingVolume();
-		Vec3 objHalfDim = objVolume.getHalfDimensions();
-
-		boolean x = relObjCenter.x+objHalfDim.x < halfDim.x && relObjCenter.x-objHalfDim.x > -halfDim.x;
-		boolean y = relObjCenter.y+objHalfDim.y < halfDim.y && relObjCenter.y-objHalfDim.y > -halfDim.y;
-		boolean z = relObjCenter.z+objHalfDim.z < halfDim.z && relObjCenter.z-objHalfDim.z > -halfDim.z;
+		if(entries.containsKey(object)){
+			return false;
+		}
+		ObjectEntry entry = new ObjectEntry(object);
+		entry.computeBounds();
+		
+		boolean x = entry.minX > center.x-halfDim.x && entry.maxX < center.x+halfDim.x;
+		boolean y = entry.minY > center.y-halfDim.y && entry.maxY < center.y+halfDim.y;
+		boolean z = entry.minZ > center.z-halfDim.z && entry.maxZ < center.z+halfDim.z;
 		
 		if(x && y && z){
+			entry.index = gameObjects.size();
 			gameObjects.add(object);
-			root.add(gameObjects.size()-1, object, 0);
+			entries.put(object, entry);
+			root.add(entry);
 		}else{
 			return false;
 		}
 		return true;
 	}
 	
-	public void remove(GameObject object){
-		//traverse the tree then iterate through the indices of the leaf node to find the array list element
+	/**
+	 * Removes a game object from the tree, merging any nodes whose children no longer hold enough objects
+	 * to justify the split
+	 * 
+	 * @param object Game object to be removed
+	 * @return True if the object was removed, false if it wasn't in the tree
+	 */
+	@Override
+	public boolean remove(GameObject object){
+		ObjectEntry entry = entries.remove(object);
+		if(entry == null){
+			return false;
+		}
+		detach(entry);
+		
+		//fill the hole in the game objects list with the last object so that the indices stay compact
+		int last = gameObjects.size()-1;
+		if(entry.index != last){
+			GameObject moved = gameObjects.get(last);
+			gameObjects.set(entry.index, moved);
+			entries.get(moved).index = entry.index;
+		}
+		gameObjects.remove(last);
+		return true;
 	}
 	
+	/**
+	 * Updates the position of the given game object in the tree, the object is only moved if its bounding
+	 * volume has changed and no longer fits in the nodes that hold it, in which case it is reinserted starting
+	 * from the closest ancestor that contains it
+	 * 
+	 * @param object Game object to update
+	 */
+	@Override
+	public void update(GameObject object){
+		ObjectEntry entry = entries.get(object);
+		if(entry != null){
+			update(entry);
+		}
+	}
+	
+	/**
+	 * Updates the positions of all the game objects in the tree
+	 */
+	@Override
 	public void update(){
+		//sleeping objects don't move so their entries are already in place
+		for(int curObject = 0; curObject < gameObjects.size(); curObject++){
+			if(gameObjects.get(curObject).isAwake()){
+				update(entries.get(gameObjects.get(curObject)));
+			}
+		}
+	}
+	
+	private void update(ObjectEntry entry){
+		updates++;
+		AABB volume = entry.object.getBoundingVolume();
+		if(entry.minX == volume.getMinX() && entry.minY == volume.getMinY() && entry.minZ == volume.getMinZ() &&
+				entry.maxX == volume.getMaxX() && entry.maxY == volume.getMaxY() && entry.maxZ == volume.getMaxZ()){
+			return;
+		}
+		
+		long start = System.nanoTime();
+		movedObjects++;
+		entry.computeBounds();
+		OctreeNode home = entry.nodes.get(0);
+		//the object can stay where it is if it still fits in the single node that holds it
+		if(entry.nodes.size() == 1 && home.fits(entry)){
+			updateTime += System.nanoTime()-start;
+			return;
+		}
+		
+		//find the closest ancestor that fully contains the object before the object is taken out of the tree
+		OctreeNode ancestor = home;
+		while(ancestor.parent != null && !ancestor.contains(entry)){
+			ancestor = ancestor.parent;
+		}
+		//take the object out of its nodes without merging so that the ancestor stays in the tree
+		unlink(entry);
+		ancestor.add(entry);
+		mergeUnlinked();
+		reinsertions++;
+		updateTime += System.nanoTime()-start;
+	}
+	
+	@Override
+	public int findPairs(ArrayList<CandidatePair> pairs){
+		int found = 0;
+		//query the tree with each object reporting only the objects later in the list so each pair is reported once
+		for(int curObject = 0; curObject < gameObjects.size(); curObject++){
+			ObjectEntry entry = entries.get(gameObjects.get(curObject));
+			queryStamp++;
+			found += root.findPairs(entry, pairs);
+		}
+		return found;
+	}
+	
+	@Override
+	public int query(AABB volume, Collection<GameObject> results){
+		return query(volume, results, false);
+	}
+	
+	/**
+	 * Finds the game objects whose bounding volumes overlap the given volume
+	 * 
+	 * @param volume Volume to test against
+	 * @param results Collection to add the overlapping game objects to
+	 * @param firstOnly Whether to stop after the first game object is found
+	 * @return Number of game objects that were added
+	 */
+	public int query(AABB volume, Collection<GameObject> results, boolean firstOnly){
+		return query(volume.getMinX(), volume.getMinY(), volume.getMinZ(),
+				volume.getMaxX(), volume.getMaxY(), volume.getMaxZ(), results, firstOnly);
+	}
+	
+	/**
+	 * Finds the game objects whose bounding volumes overlap the given box
+	 * 
+	 * @param minX Minimum x of the box
+	 * @param minY Minimum y of the box
+	 * @param minZ Minimum z of the box
+	 * @param maxX Maximum x of the box
+	 * @param maxY Maximum y of the box
+	 * @param maxZ Maximum z of the box
+	 * @param results Collection to add the overlapping game objects to
+	 * @param firstOnly Whether to stop after the first game object is found
+	 * @return Number of game objects that were added
+	 */
+	public int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Collection<GameObject> results, boolean firstOnly){
+		bounds[0] = minX;
+		bounds[1] = minY;
+		bounds[2] = minZ;
+		bounds[3] = maxX;
+		bounds[4] = maxY;
+		bounds[5] = maxZ;
+		queryStamp++;
+		return root.query(bounds, results, firstOnly);
+	}
+	
+	/**
+	 * Finds the game objects whose bounding volumes overlap the given sphere
+	 * 
+	 * @param center Center of the sphere
+	 * @param radius Radius of the sphere
+	 * @param results Collection to add the overlapping game objects to
+	 * @param firstOnly Whether to stop after the first game object is found
+	 * @return Number of game objects that were added
+	 */
+	public int querySphere(Vec3 center, float radius, Collection<GameObject> results, boolean firstOnly){
+		queryStamp++;
+		return root.querySphere(center.x, center.y, center.z, radius*radius, results, firstOnly);
+	}
+	
+	/**
+	 * Finds the game objects whose bounding volumes are inside or intersect the frustum formed by the given planes,
+	 * the planes can be computed from a view projection matrix using MatrixUtil.getFrustumPlanes
+	 * 
+	 * @param planes Six planes stored as the normal and distance ax+by+cz+d with the normals facing the inside of the frustum
+	 * @param results Collection to add the game objects to
+	 * @param firstOnly Whether to stop after the first game object is found
+	 * @return Number of game objects that were added
+	 */
+	public int queryFrustum(Vec4[] planes, Collection<GameObject> results, boolean firstOnly){
+		queryStamp++;
+		return root.queryFrustum(planes, results, firstOnly, false);
+	}
+	
+	/**
+	 * Finds the game object whose bounding volume is hit first by the given ray
+	 * 
+	 * @param origin Origin of the ray
+	 * @param direction Direction of the ray, this doesn't need to be normalized
+	 * @param maxDistance Maximum distance along the ray to search
+	 * @param hitPoint Vector to store the point where the ray enters the bounding volume of the hit object, can be null
+	 * @return The game object that was hit, or null if the ray doesn't hit anything
+	 */
+	public GameObject raycast(Vec3 origin, Vec3 direction, float maxDistance, Vec3 hitPoint){
+		if(!setRay(origin, direction, maxDistance)){
+			return null;
+		}
+		rayBest = Float.POSITIVE_INFINITY;
+		rayHit = null;
+		root.raycast(0);
+		if(rayHit != null && hitPoint != null){
+			hitPoint.x = rayX+rayDirX*rayBest;
+			hitPoint.y = rayY+rayDirY*rayBest;
+			hitPoint.z = rayZ+rayDirZ*rayBest;
+		}
+		GameObject hit = rayHit == null ? null : rayHit.object;
+		rayHit = null;
+		return hit;
+	}
+	
+	/**
+	 * Finds all the game objects whose bounding volumes are hit by the given ray, the nodes of the tree are visited
+	 * front to back so the results are roughly ordered by distance but they are not sorted
+	 * 
+	 * @param origin Origin of the ray
+	 * @param direction Direction of the ray, this doesn't need to be normalized
+	 * @param maxDistance Maximum distance along the ray to search
+	 * @param results Collection to add the hit game objects to
+	 * @param firstOnly Whether to stop after the first game object is found, this is not necessarily the closest object
+	 * @return Number of game objects that were added
+	 */
+	public int raycastAll(Vec3 origin, Vec3 direction, float maxDistance, Collection<GameObject> results, boolean firstOnly){
+		if(!setRay(origin, direction, maxDistance)){
+			return 0;
+		}
+		queryStamp++;
+		return root.raycastAll(results, firstOnly);
+	}
+	
+	/**
+	 * Finds the k game objects closest to the given point, the distance to a game object is measured to its bounding volume
+	 * 
+	 * @param point Point to search around
+	 * @param k Number of game objects to find
+	 * @param results Collection to add the game objects to ordered from closest to farthest
+	 * @return Number of game objects that were added, this is less than k if the tree holds fewer than k objects
+	 */
+	public int nearest(Vec3 point, int k, Collection<GameObject> results){
+		if(k <= 0){
+			return 0;
+		}
+		if(heapEntries.length != k){
+			heapEntries = new ObjectEntry[k];
+			heapDist = new float[k];
+		}
+		heapSize = 0;
+		queryStamp++;
+		root.nearest(point.x, point.y, point.z, 0);
+		
+		//pull the entries off the heap from farthest to closest then add them in reverse
+		int found = heapSize;
+		for(int curEntry = heapSize-1; curEntry > 0; curEntry--){
+			ObjectEntry farthest = heapEntries[0];
+			float farthestDist = heapDist[0];
+			heapSize--;
+			heapEntries[0] = heapEntries[heapSize];
+			heapDist[0] = heapDist[heapSize];
+			siftDown();
+			heapEntries[curEntry] = farthest;
+			heapDist[curEntry] = farthestDist;
+		}
+		for(int curEntry = 0; curEntry < found; curEntry++){
+			results.add(heapEntries[curEntry].object);
+			heapEntries[curEntry] = null;
+		}
+		heapSize = 0;
+		return found;
+	}
+	
+	@Override
+	public int size(){
+		return gameObjects.size();
+	}
+	
+	/**
+	 * Gets whether this tree is a loose octree that stores each object once
+	 * 
+	 * @return True if this tree is a loose octree, false if objects are stored in every leaf they overlap
+	 */
+	public boolean isLoose(){
+		return loose;
+	}
+	
+	/**
+	 * Gets the number of objects that were updated since the statistics were last reset
+	 * 
+	 * @return Number of object updates
+	 */
+	public long getUpdateCount(){
+		return updates;
+	}
+	
+	/**
+	 * Gets the number of updated objects whose bounding volumes had changed since their last update
+	 * 
+	 * @return Number of moved objects
+	 */
+	public long getMovedCount(){
+		return movedObjects;
+	}
+	
+	/**
+	 * Gets the number of moved objects that had to be reinserted because they no longer fit their nodes
+	 * 
+	 * @return Number of reinsertions
+	 */
+	public long getReinsertionCount(){
+		return reinsertions;
+	}
+	
+	/**
+	 * Gets the number of times the children of a node were merged back into the node
+	 * 
+	 * @return Number of merges
+	 */
+	public long getMergeCount(){
+		return merges;
+	}
+	
+	/**
+	 * Gets the average time taken to update an object that moved
+	 * 
+	 * @return Average update time in nanoseconds per moved object
+	 */
+	public double getUpdateCostPerMove(){
+		return movedObjects == 0 ? 0 : updateTime/(double)movedObjects;
+	}
+	
+	/**
+	 * Resets the update statistics
+	 */
+	public void resetStats(){
+		updates = 0;
+		movedObjects = 0;
+		reinsertions = 0;
+		merges = 0;
+		updateTime = 0;
+	}
+	
+	/**
+	 * Stores the given ray for the ray casting queries
+	 * 
+	 * @param origin Origin of the ray
+	 * @param direction Direction of the ray
+	 * @param maxDistance Maximum distance along the ray
+	 * @return False if the direction has no length and nothing can be hit
+	 */
+	private boolean setRay(Vec3 origin, Vec3 direction, float maxDistance){
+		float length = (float)Math.sqrt(direction.x*direction.x+direction.y*direction.y+direction.z*direction.z);
+		if(length == 0){
+			return false;
+		}
+		rayX = origin.x;
+		rayY = origin.y;
+		rayZ = origin.z;
+		rayDirX = direction.x/length;
+		rayDirY = direction.y/length;
+		rayDirZ = direction.z/length;
+		rayInvX = 1/rayDirX;
+		rayInvY = 1/rayDirY;
+		rayInvZ = 1/rayDirZ;
+		rayMax = maxDistance;
+		return true;
+	}
+	
+	/**
+	 * Computes the distance along the stored ray at which it enters the given box using the slab test
+	 * 
+	 * @return Distance to the box, 0 if the ray starts inside the box or positive infinity if the ray misses it
+	 */
+	private float rayBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		float near = 0, far = rayMax;
+		
+		float t1 = (minX-rayX)*rayInvX, t2 = (maxX-rayX)*rayInvX;
+		//a ray parallel to the slab hits it only if the origin is between the sides, the products are NaN on the sides
+		if(Float.isInfinite(rayInvX)){
+			if(rayX < minX || rayX > maxX){
+				return Float.POSITIVE_INFINITY;
+			}
+		}else{
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		
+		t1 = (minY-rayY)*rayInvY;
+		t2 = (maxY-rayY)*rayInvY;
+		if(Float.isInfinite(rayInvY)){
+			if(rayY < minY || rayY > maxY){
+				return Float.POSITIVE_INFINITY;
+			}
+		}else{
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		
+		t1 = (minZ-rayZ)*rayInvZ;
+		t2 = (maxZ-rayZ)*rayInvZ;
+		if(Float.isInfinite(rayInvZ)){
+			if(rayZ < minZ || rayZ > maxZ){
+				return Float.POSITIVE_INFINITY;
+			}
+		}else{
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+		}
+		return near <= far ? near : Float.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Offers an entry to the nearest neighbour heap, the entry replaces the farthest entry if the heap is full and it is closer
+	 * 
+	 * @param entry Entry to offer
+	 * @param dist Squared distance of the entry from the query point
+	 */
+	private void heapOffer(ObjectEntry entry, float dist){
+		if(heapSize < heapEntries.length){
+			//sift the new entry up from the bottom of the heap
+			int index = heapSize++;
+			while(index > 0){
+				int parent = (index-1)/2;
+				if(heapDist[parent] >= dist){
+					break;
+				}
+				heapEntries[index] = heapEntries[parent];
+				heapDist[index] = heapDist[parent];
+				index = parent;
+			}
+			heapEntries[index] = entry;
+			heapDist[index] = dist;
+		}else if(dist < heapDist[0]){
+			heapEntries[0] = entry;
+			heapDist[0] = dist;
+			siftDown();
+		}
+	}
+	
+	/**
+	 * Moves the root of the nearest neighbour heap down until the heap is ordered
+	 */
+	private void siftDown(){
+		ObjectEntry entry = heapEntries[0];
+		float dist = heapDist[0];
+		int index = 0;
+		while(true){
+			int child = index*2+1;
+			if(child >= heapSize){
+				break;
+			}
+			if(child+1 < heapSize && heapDist[child+1] > heapDist[child]){
+				child++;
+			}
+			if(heapDist[child] <= dist){
+				break;
+			}
+			heapEntries[index] = heapEntries[child];
+			heapDist[index] = heapDist[child];
+			index = child;
+		}
+		heapEntries[index] = entry;
+		heapDist[index] = dist;
+	}
+	
+	/**
+	 * Computes the squared distance from the given point to the given box
+	 * 
+	 * @return Squared distance to the box, 0 if the point is inside of it
+	 */
+	private static float distanceSq(float x, float y, float z, float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		float dX = x < minX ? minX-x : (x > maxX ? x-maxX : 0);
+		float dY = y < minY ? minY-y : (y > maxY ? y-maxY : 0);
+		float dZ = z < minZ ? minZ-z : (z > maxZ ? z-maxZ : 0);
+		return dX*dX+dY*dY+dZ*dZ;
+	}
+	
+	/**
+	 * Classifies the given box against the frustum formed by the given planes
+	 * 
+	 * @param planes Planes of the frustum with their normals facing the inside of the frustum
+	 * @return -1 if the box is outside of the frustum, 1 if it is completely inside and 0 if it intersects the frustum
+	 */
+	private static int classify(Vec4[] planes, float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		int result = 1;
+		for(int curPlane = 0; curPlane < planes.length; curPlane++){
+			Vec4 plane = planes[curPlane];
+			//the corner of the box farthest along the normal of the plane
+			float farX = plane.x >= 0 ? maxX : minX;
+			float farY = plane.y >= 0 ? maxY : minY;
+			float farZ = plane.z >= 0 ? maxZ : minZ;
+			if(plane.x*farX+plane.y*farY+plane.z*farZ+plane.w < 0){
+				return -1;
+			}
+			//the opposite corner decides whether the box is completely in front of the plane
+			float nearX = plane.x >= 0 ? minX : maxX;
+			float nearY = plane.y >= 0 ? minY : maxY;
+			float nearZ = plane.z >= 0 ? minZ : maxZ;
+			if(plane.x*nearX+plane.y*nearY+plane.z*nearZ+plane.w < 0){
+				result = 0;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Removes the given entry from all the nodes that hold it, merging nodes that no longer need to be split
+	 * 
+	 * @param entry Entry to remove
+	 */
+	private void detach(ObjectEntry entry){
+		unlink(entry);
+		mergeUnlinked();
+	}
+	
+	/**
+	 * Removes the given entry from all the nodes that hold it without merging any nodes, the nodes the entry
+	 * was removed from are kept so they can be merged once the tree is in a consistent state
+	 * 
+	 * @param entry Entry to remove
+	 */
+	private void unlink(ObjectEntry entry){
+		unlinked.clear();
+		for(int curNode = 0; curNode < entry.nodes.size(); curNode++){
+			OctreeNode node = entry.nodes.get(curNode);
+			node.objects.remove(entry);
+			node.packed = false;
+			node.count(-1);
+			unlinked.add(node);
+		}
+		entry.nodes.clear();
+	}
+	
+	/**
+	 * Tries merging the parents of the nodes entries were last unlinked from
+	 */
+	private void mergeUnlinked(){
+		for(int curNode = 0; curNode < unlinked.size(); curNode++){
+			merge(unlinked.get(curNode).parent);
+		}
+		unlinked.clear();
+	}
+	
+	/**
+	 * Merges the children of the given node back into it if the children are leaves and together hold no more
+	 * than the leaf capacity, then continues up the tree
+	 * 
+	 * @param node Node to try merging the children of
+	 */
+	private void merge(OctreeNode node){
+		while(node != null && node.nodes != null){
+			int total = node.objects.size();
+			for(int curNode = 0; curNode < 8; curNode++){
+				if(node.nodes[curNode].nodes != null){
+					return;
+				}
+				total += node.nodes[curNode].objects.size();
+			}
+			if(total > leafCap){
+				return;
+			}
+			for(int curNode = 0; curNode < 8; curNode++){
+				OctreeNode child = node.nodes[curNode];
+				for(ObjectEntry entry : child.objects){
+					entry.nodes.remove(child);
+					//objects that overlapped several children are only added to the merged node once
+					if(!entry.nodes.contains(node)){
+						entry.nodes.add(node);
+						node.objects.add(entry);
+					}
+				}
+				child.objects.clear();
+				child.packed = false;
+				child.total = 0;
+			}
+			node.nodes = null;
+			node.packed = false;
+			if(hits.length < node.objects.size()){
+				hits = new int[Math.max(node.objects.size(), hits.length*2)];
+			}
+			node.count(node.objects.size()-node.total);
+			merges++;
+			node = node.parent;
+		}
+	}
+	
+	/**
+	 * Entry for a game object stored in the tree, caching the bounds of the object when it was last updated
+	 * along with the nodes it is stored in
+	 */
+	private class ObjectEntry{
+		protected GameObject object;
+		protected ArrayList<OctreeNode> nodes;
+		protected float minX, minY, minZ, maxX, maxY, maxZ;
+		protected int index, stamp;
+		
+		public ObjectEntry(GameObject object){
+			this.object = object;
+			nodes = new ArrayList<OctreeNode>(1);
+			stamp = queryStamp;
+		}
 		
+		public void computeBounds(){
+			AABB volume = object.getBoundingVolume();
+			minX = volume.getMinX();
+			minY = volume.getMinY();
+			minZ = volume.getMinZ();
+			maxX = volume.getMaxX();
+			maxY = volume.getMaxY();
+			maxZ = volume.getMaxZ();
+			//the nodes holding the entry have to pack its new bounds before their next query
+			for(int curNode = 0; curNode < nodes.size(); curNode++){
+				nodes.get(curNode).packed = false;
+			}
+		}
 	}
 	
 	private class OctreeNode{
-		protected ArrayList<Integer> gameIndices;
+		protected ArrayList<ObjectEntry> objects;
 		protected OctreeNode[] nodes;
 		protected OctreeNode parent;
 		protected AABB volume;
+		protected Vec3 center, halfDim;
+		//bounds of the entries of this node in the same order as objects, packed again before a query if they
+		//changed since the last one, only used once the node holds BATCH_SIZE entries
+		protected AABBBatch batch;
+		protected boolean packed;
+		//bounds searched by queries, in a loose tree these are the loose bounds of the node
+		protected float minX, minY, minZ, maxX, maxY, maxZ;
+		//total counts the entries held by this node and its descendants so empty subtrees can be skipped
+		protected int depth, total;
 		
 		/**
 		 * Constructs an octree node
@@ -126,115 +799,619 @@ public class SpatialOctree {
 		 * @param index Index that represents what quadrant of the parent this node is meant to represent
 		 */
 		public OctreeNode(OctreeNode parent, Vec3 parentCenter, Vec3 parentHalfDim, int index){
-			gameIndices = new ArrayList<Integer>(leafCap);
+			objects = new ArrayList<ObjectEntry>(leafCap);
+			batch = new AABBBatch(leafCap);
+			packed = true;
 			if(parent == null){
 				this.parent = null;
+				depth = 0;
 				volume = new AABB(parentHalfDim.x*2.0f, parentHalfDim.y*2.0f, parentHalfDim.z*2.0f);
 				volume.translate(parentCenter);
 			}else{
 				this.parent = parent;
-				volume = new AABB(parentHalfDim.x*.5f, parentHalfDim.y*.5f, parentHalfDim.z*.5f);
+				depth = parent.depth+1;
+				//each child covers an eighth of the parent so its dimensions are the half dimensions of the parent
+				volume = new AABB(parentHalfDim.x, parentHalfDim.y, parentHalfDim.z);
+				float offsetX = parentHalfDim.x*.5f;
+				float offsetY = parentHalfDim.y*.5f;
+				float offsetZ = parentHalfDim.z*.5f;
 				switch(index){
 					//first 4 are upper half of node
 					case 0:
-						volume.translate(parentCenter.x-halfDim.x, parentCenter.y-halfDim.y, parentCenter.z+halfDim.z);
+						volume.translate(parentCenter.x-offsetX, parentCenter.y-offsetY, parentCenter.z+offsetZ);
 						break;
 					case 1:
-						volume.translate(parentCenter.x+halfDim.x, parentCenter.y-halfDim.y, parentCenter.z+halfDim.z);
+						volume.translate(parentCenter.x+offsetX, parentCenter.y-offsetY, parentCenter.z+offsetZ);
 						break;
 					case 2:
-						volume.translate(parentCenter.x+halfDim.x, parentCenter.y-halfDim.y, parentCenter.z-halfDim.z);
+						volume.translate(parentCenter.x+offsetX, parentCenter.y-offsetY, parentCenter.z-offsetZ);
 						break;
 					case 3:
-						volume.translate(parentCenter.x-halfDim.x, parentCenter.y-halfDim.y, parentCenter.z-halfDim.z);
+						volume.translate(parentCenter.x-offsetX, parentCenter.y-offsetY, parentCenter.z-offsetZ);
 						break;
 					case 4:
-						volume.translate(parentCenter.x-halfDim.x, parentCenter.y+halfDim.y, parentCenter.z+halfDim.z);
+						volume.translate(parentCenter.x-offsetX, parentCenter.y+offsetY, parentCenter.z+offsetZ);
 						break;
 					case 5:
-						volume.translate(parentCenter.x+halfDim.x, parentCenter.y+halfDim.y, parentCenter.z+halfDim.z);
+						volume.translate(parentCenter.x+offsetX, parentCenter.y+offsetY, parentCenter.z+offsetZ);
 						break;
 					case 6:
-						volume.translate(parentCenter.x+halfDim.x, parentCenter.y+halfDim.y, parentCenter.z-halfDim.z);
+						volume.translate(parentCenter.x+offsetX, parentCenter.y+offsetY, parentCenter.z-offsetZ);
 						break;
 					case 7:
-						volume.translate(parentCenter.x-halfDim.x, parentCenter.y+halfDim.y, parentCenter.z-halfDim.z);
+						volume.translate(parentCenter.x-offsetX, parentCenter.y+offsetY, parentCenter.z-offsetZ);
 						break;
 					default:
 						volume.translate(parentCenter);
 						break;
 				}
 			}
+			//cache the bounds of the node so tests against it don't need to go through the volume
+			center = volume.getCenter();
+			halfDim = new Vec3(volume.getHalfDimensions());
+			float scale = loose ? looseness : 1;
+			minX = center.x-halfDim.x*scale;
+			minY = center.y-halfDim.y*scale;
+			minZ = center.z-halfDim.z*scale;
+			maxX = center.x+halfDim.x*scale;
+			maxY = center.y+halfDim.y*scale;
+			maxZ = center.z+halfDim.z*scale;
 		}
 		
 		/**
 		 * Adds a Game Object to the tree, passing the object down the tree finding the proper node to place it in
 		 * 
-		 * @param index Index into the primary game objects array where the game object is stored
-		 * @param object Actual game object to be added, this is used to check bounds and position against the node
-		 * @param curDepth The current traversal depth of the tree
+		 * @param entry Entry of the game object to be added, the bounds of the entry must be up to date
 		 */
-		public void add(int index, GameObject object, int curDepth){
-			//check if we have reached the depth cap for the tree, at this point the object can only be added to the 
+		public void add(ObjectEntry entry){
+			//check if this node has been split yet, if it has the continuing moving down the tree to find
+			//the leaf for the game object that is to be added
+			if(nodes != null){
+				if(pushDown(entry)){
+					return;
+				}
+			}
+			entry.nodes.add(this);
+			objects.add(entry);
+			packed = false;
+			if(hits.length < objects.size()){
+				hits = new int[Math.max(objects.size(), hits.length*2)];
+			}
+			count(1);
+			
+			//check if we have reached the depth cap for the tree, at this point the object can only be added to the
 			//current node regardless of the leaf capacity set by the tree
-			if(curDepth == maxDepth){
-				gameIndices.add(index);
+			if(nodes == null && objects.size() > leafCap && depth < maxDepth){
+				//break this node up
+				split();
+				//parse the objects that are contained in this node and distribute them to the sub nodes
+				//that were made, any objects that can't be moved down stay in this node
+				int kept = 0;
+				for(int curObject = 0; curObject < objects.size(); curObject++){
+					ObjectEntry curEntry = objects.get(curObject);
+					curEntry.nodes.remove(this);
+					if(!pushDown(curEntry)){
+						curEntry.nodes.add(this);
+						objects.set(kept++, curEntry);
+					}else{
+						//the children have counted the entry so it no longer counts towards this node
+						count(-1);
+					}
+				}
+				//clear the entries that were moved down since this node is no longer a leaf
+				for(int curObject = objects.size()-1; curObject >= kept; curObject--){
+					objects.remove(curObject);
+				}
+			}
+		}
+		
+		/**
+		 * Adds the given amount to the entry count of this node and its ancestors
+		 * 
+		 * @param amount Amount to change the entry counts by
+		 */
+		public void count(int amount){
+			for(OctreeNode node = this; node != null; node = node.parent){
+				node.total += amount;
+			}
+		}
+		
+		/**
+		 * Passes the given entry to the children of this node that should hold it
+		 * 
+		 * @param entry Entry to pass down
+		 * @return True if the entry was passed to the children, false if it must stay in this node
+		 */
+		private boolean pushDown(ObjectEntry entry){
+			if(loose){
+				//the child is chosen by the center of the object and it can only move down if the child's loose bounds contain it
+				float objX = (entry.minX+entry.maxX)*.5f;
+				float objY = (entry.minY+entry.maxY)*.5f;
+				float objZ = (entry.minZ+entry.maxZ)*.5f;
+				for(int curNode = 0; curNode < 8; curNode++){
+					OctreeNode child = nodes[curNode];
+					if(child.containsPoint(objX, objY, objZ)){
+						if(child.contains(entry)){
+							child.add(entry);
+							return true;
+						}
+						return false;
+					}
+				}
+				return false;
 			}else{
-				//check if this node has been split yet, if it has the continuing moving down the tree to find 
-				//the leaf for the game object that is to be added
+				//objects that are outside of the root can't be split between the children and stay in the root
+				if(parent == null && !contains(entry)){
+					return false;
+				}
+				//check whether the object intersects the bounding volumes of the nodes and add it to every node that it touches
+				for(int curNode = 0; curNode < 8; curNode++){
+					if(nodes[curNode].overlaps(entry)){
+						nodes[curNode].add(entry);
+					}
+				}
+				return true;
+			}
+		}
+		
+		public void split(){
+			nodes = new OctreeNode[]{
+					new OctreeNode(this, center, halfDim, 0),
+					new OctreeNode(this, center, halfDim, 1),
+					new OctreeNode(this, center, halfDim, 2),
+					new OctreeNode(this, center, halfDim, 3),
+					new OctreeNode(this, center, halfDim, 4),
+					new OctreeNode(this, center, halfDim, 5),
+					new OctreeNode(this, center, halfDim, 6),
+					new OctreeNode(this, center, halfDim, 7)
+			};
+		}
+		
+		/**
+		 * Determines whether the given entry can stay in this node without being reinserted
+		 * 
+		 * @param entry Entry to check
+		 * @return True if the entry still belongs in this node
+		 */
+		public boolean fits(ObjectEntry entry){
+			if(loose){
+				//in a loose tree the object must stay within the loose bounds and not be small enough to move down
+				if(parent != null && !contains(entry)){
+					return false;
+				}
 				if(nodes != null){
-					//check whether the add object intersects the bounding volumes of the nodes and add it to the
-					//node that contains it
+					float objX = (entry.minX+entry.maxX)*.5f;
+					float objY = (entry.minY+entry.maxY)*.5f;
+					float objZ = (entry.minZ+entry.maxZ)*.5f;
 					for(int curNode = 0; curNode < 8; curNode++){
-						if(nodes[curNode].volume.colliding(object.getBoundingVolume())){
-							nodes[curNode].add(index, object, curDepth+1);
+						OctreeNode child = nodes[curNode];
+						if(child.containsPoint(objX, objY, objZ)){
+							return !child.contains(entry);
 						}
 					}
-				}else{
-					//if there is room for this object at this level then add it
-					if(gameIndices.size() < leafCap){
-						gameIndices.add(index);
-					}else{
-						//break this node up
-						split();
-						//parse the objects that are contained in this node and distribute them to the sub nodes
-						//that were made
-						for(Integer objIndex : gameIndices){
-							GameObject curObject = gameObjects.get(objIndex.intValue());
-							//check which sub space to put the object in
-							for(int curNode = 0; curNode < 8; curNode++){
-								if(nodes[curNode].volume.colliding(curObject.getBoundingVolume())){
-									nodes[curNode].add(objIndex.intValue(), curObject, curDepth+1);
-								}
-							}
+				}
+				return true;
+			}else{
+				return nodes == null && (parent == null || contains(entry));
+			}
+		}
+		
+		/**
+		 * Determines whether the given entry is completely inside of this node, in a loose tree this is tested
+		 * against the loose bounds of the node
+		 * 
+		 * @param entry Entry to test
+		 * @return True if this node contains the entry
+		 */
+		public boolean contains(ObjectEntry entry){
+			return entry.minX >= minX && entry.maxX <= maxX &&
+					entry.minY >= minY && entry.maxY <= maxY &&
+					entry.minZ >= minZ && entry.maxZ <= maxZ;
+		}
+		
+		/**
+		 * Determines whether the given point is inside the tight bounds of this node, the minimum sides of the
+		 * node are inclusive and the maximum sides exclusive so that a point belongs to at most one child
+		 * 
+		 * @param x X coordinate of the point
+		 * @param y Y coordinate of the point
+		 * @param z Z coordinate of the point
+		 * @return True if the point is inside this node
+		 */
+		public boolean containsPoint(float x, float y, float z){
+			return x >= center.x-halfDim.x && x < center.x+halfDim.x &&
+					y >= center.y-halfDim.y && y < center.y+halfDim.y &&
+					z >= center.z-halfDim.z && z < center.z+halfDim.z;
+		}
+		
+		/**
+		 * Determines whether the given entry overlaps the tight bounds of this node
+		 * 
+		 * @param entry Entry to test
+		 * @return True if the entry overlaps this node
+		 */
+		public boolean overlaps(ObjectEntry entry){
+			return entry.minX <= center.x+halfDim.x && entry.maxX >= center.x-halfDim.x &&
+					entry.minY <= center.y+halfDim.y && entry.maxY >= center.y-halfDim.y &&
+					entry.minZ <= center.z+halfDim.z && entry.maxZ >= center.z-halfDim.z;
+		}
+		
+		/**
+		 * Determines whether the given box overlaps the bounds of this node, the loose bounds are used in a loose tree
+		 * 
+		 * @param bounds Box to test given as minX, minY, minZ, maxX, maxY, maxZ
+		 * @return True if the box overlaps this node
+		 */
+		public boolean overlaps(float[] bounds){
+			//the root can hold objects outside of its bounds so it always has to be checked
+			if(parent == null){
+				return true;
+			}
+			return bounds[0] <= maxX && bounds[3] >= minX &&
+					bounds[1] <= maxY && bounds[4] >= minY &&
+					bounds[2] <= maxZ && bounds[5] >= minZ;
+		}
+		
+		/**
+		 * Finds the game objects in this subtree that overlap the given box, objects already marked with the
+		 * current query stamp are skipped
+		 * 
+		 * @param bounds Box to test given as minX, minY, minZ, maxX, maxY, maxZ
+		 * @param results Collection to add the overlapping game objects to
+		 * @return Number of game objects that were added
+		 */
+		public int query(float[] bounds, Collection<GameObject> results, boolean firstOnly){
+			if(total == 0 || !overlaps(bounds)){
+				return 0;
+			}
+			int found = 0;
+			int numHits = overlapping(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+			for(int curHit = 0; curHit < numHits; curHit++){
+				ObjectEntry entry = objects.get(hits[curHit]);
+				if(entry.stamp != queryStamp){
+					entry.stamp = queryStamp;
+					results.add(entry.object);
+					found++;
+					if(firstOnly){
+						return found;
+					}
+				}
+			}
+			if(nodes != null){
+				for(int curNode = 0; curNode < 8; curNode++){
+					found += nodes[curNode].query(bounds, results, firstOnly);
+					if(firstOnly && found > 0){
+						return found;
+					}
+				}
+			}
+			return found;
+		}
+		
+		/**
+		 * Finds the game objects in this subtree whose bounding volumes overlap the given sphere
+		 * 
+		 * @param x X coordinate of the center of the sphere
+		 * @param y Y coordinate of the center of the sphere
+		 * @param z Z coordinate of the center of the sphere
+		 * @param radiusSq Squared radius of the sphere
+		 * @param results Collection to add the overlapping game objects to
+		 * @param firstOnly Whether to stop after the first game object is found
+		 * @return Number of game objects that were added
+		 */
+		public int querySphere(float x, float y, float z, float radiusSq, Collection<GameObject> results, boolean firstOnly){
+			if(total == 0 || (parent != null && distanceSq(x, y, z, minX, minY, minZ, maxX, maxY, maxZ) > radiusSq)){
+				return 0;
+			}
+			int found = 0;
+			for(int curObject = 0; curObject < objects.size(); curObject++){
+				ObjectEntry entry = objects.get(curObject);
+				if(entry.stamp != queryStamp){
+					entry.stamp = queryStamp;
+					if(distanceSq(x, y, z, entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ) <= radiusSq){
+						results.add(entry.object);
+						found++;
+						if(firstOnly){
+							return found;
 						}
-						//after splitting this node into the sub nodes and distributing the current nodes objects among them
-						//put the current object into the nodes it belongs
-						for(int curNode = 0; curNode < 8; curNode++){
-							if(nodes[curNode].volume.colliding(object.getBoundingVolume())){
-								nodes[curNode].add(index, object, curDepth+1);
-							}
+					}
+				}
+			}
+			if(nodes != null){
+				for(int curNode = 0; curNode < 8; curNode++){
+					found += nodes[curNode].querySphere(x, y, z, radiusSq, results, firstOnly);
+					if(firstOnly && found > 0){
+						return found;
+					}
+				}
+			}
+			return found;
+		}
+		
+		/**
+		 * Finds the game objects in this subtree whose bounding volumes are inside or intersect the given frustum
+		 * 
+		 * @param planes Planes of the frustum with their normals facing the inside of the frustum
+		 * @param results Collection to add the game objects to
+		 * @param firstOnly Whether to stop after the first game object is found
+		 * @param inside Whether this node is already known to be completely inside of the frustum
+		 * @return Number of game objects that were added
+		 */
+		public int queryFrustum(Vec4[] planes, Collection<GameObject> results, boolean firstOnly, boolean inside){
+			if(total == 0){
+				return 0;
+			}
+			//the root can hold objects outside of its bounds so its entries have to be tested individually
+			if(parent != null && !inside){
+				int classification = classify(planes, minX, minY, minZ, maxX, maxY, maxZ);
+				if(classification < 0){
+					return 0;
+				}
+				//only a loose tree guarantees the objects of a node are inside of its bounds
+				inside = classification > 0 && loose;
+			}
+			int found = 0;
+			//every entry of a node inside of the frustum is visible so only the other nodes cull their entries
+			int numHits = inside ? objects.size() : visible(planes);
+			for(int curHit = 0; curHit < numHits; curHit++){
+				ObjectEntry entry = objects.get(inside ? curHit : hits[curHit]);
+				if(entry.stamp != queryStamp){
+					entry.stamp = queryStamp;
+					results.add(entry.object);
+					found++;
+					if(firstOnly){
+						return found;
+					}
+				}
+			}
+			if(nodes != null){
+				for(int curNode = 0; curNode < 8; curNode++){
+					found += nodes[curNode].queryFrustum(planes, results, firstOnly, inside);
+					if(firstOnly && found > 0){
+						return found;
+					}
+				}
+			}
+			return found;
+		}
+		
+		/**
+		 * Finds the closest game object in this subtree hit by the ray stored in the tree, visiting the children
+		 * front to back and skipping the nodes that are farther away than the closest hit found so far
+		 * 
+		 * @param entryDist Distance along the ray at which it enters this node
+		 */
+		public void raycast(float entryDist){
+			if(total == 0 || entryDist > rayBest){
+				return;
+			}
+			for(int curObject = 0; curObject < objects.size(); curObject++){
+				ObjectEntry entry = objects.get(curObject);
+				float dist = rayBox(entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ);
+				if(dist < rayBest){
+					rayBest = dist;
+					rayHit = entry;
+				}
+			}
+			if(nodes != null){
+				int children = sortChildren();
+				int[] order = childOrder[depth];
+				float[] dists = childDist[depth];
+				for(int curNode = 0; curNode < children; curNode++){
+					nodes[order[curNode]].raycast(dists[curNode]);
+				}
+			}
+		}
+		
+		/**
+		 * Finds all the game objects in this subtree hit by the ray stored in the tree, the children are visited
+		 * front to back so the results are roughly ordered by distance
+		 * 
+		 * @param results Collection to add the hit game objects to
+		 * @param firstOnly Whether to stop after the first game object is found
+		 * @return Number of game objects that were added
+		 */
+		public int raycastAll(Collection<GameObject> results, boolean firstOnly){
+			if(total == 0){
+				return 0;
+			}
+			int found = 0;
+			for(int curObject = 0; curObject < objects.size(); curObject++){
+				ObjectEntry entry = objects.get(curObject);
+				if(entry.stamp != queryStamp){
+					entry.stamp = queryStamp;
+					if(rayBox(entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ) != Float.POSITIVE_INFINITY){
+						results.add(entry.object);
+						found++;
+						if(firstOnly){
+							return found;
 						}
-						//clear the indices stored at this level since this node is no longer a leaf
-						gameIndices.clear();
 					}
 				}
 			}
+			if(nodes != null){
+				int children = sortChildren();
+				int[] order = childOrder[depth];
+				for(int curNode = 0; curNode < children; curNode++){
+					found += nodes[order[curNode]].raycastAll(results, firstOnly);
+					if(firstOnly && found > 0){
+						return found;
+					}
+				}
+			}
+			return found;
 		}
 		
-		public void split(){
-			Vec3 center = volume.getCenter();
-			Vec3 hlafDimensions = volume.getHalfDimensions();
-			nodes = new OctreeNode[]{
-					new OctreeNode(this, center, hlafDimensions, 0),
-					new OctreeNode(this, center, hlafDimensions, 1),
-					new OctreeNode(this, center, hlafDimensions, 2),
-					new OctreeNode(this, center, hlafDimensions, 3),
-					new OctreeNode(this, center, hlafDimensions, 4),
-					new OctreeNode(this, center, hlafDimensions, 5),
-					new OctreeNode(this, center, hlafDimensions, 6),
-					new OctreeNode(this, center, hlafDimensions, 7)
-			};
+		/**
+		 * Sorts the children of this node hit by the ray stored in the tree by the distance at which the ray enters them,
+		 * the order and distances are stored in the scratch arrays for the depth of this node
+		 * 
+		 * @return Number of children hit by the ray
+		 */
+		private int sortChildren(){
+			int[] order = childOrder[depth];
+			float[] dists = childDist[depth];
+			int children = 0;
+			for(int curNode = 0; curNode < 8; curNode++){
+				OctreeNode child = nodes[curNode];
+				if(child.total == 0){
+					continue;
+				}
+				float dist = rayBox(child.minX, child.minY, child.minZ, child.maxX, child.maxY, child.maxZ);
+				if(dist == Float.POSITIVE_INFINITY){
+					continue;
+				}
+				//insertion sort, there are at most 8 children
+				int insert = children++;
+				while(insert > 0 && dists[insert-1] > dist){
+					dists[insert] = dists[insert-1];
+					order[insert] = order[insert-1];
+					insert--;
+				}
+				dists[insert] = dist;
+				order[insert] = curNode;
+			}
+			return children;
+		}
+		
+		/**
+		 * Finds the k game objects in this subtree closest to the given point, keeping the closest objects found so far
+		 * in the nearest neighbour heap of the tree and skipping nodes farther away than the farthest object in a full heap
+		 * 
+		 * @param x X coordinate of the point
+		 * @param y Y coordinate of the point
+		 * @param z Z coordinate of the point
+		 * @param nodeDist Squared distance from the point to this node
+		 */
+		public void nearest(float x, float y, float z, float nodeDist){
+			if(total == 0 || (heapSize == heapEntries.length && nodeDist >= heapDist[0])){
+				return;
+			}
+			for(int curObject = 0; curObject < objects.size(); curObject++){
+				ObjectEntry entry = objects.get(curObject);
+				if(entry.stamp != queryStamp){
+					entry.stamp = queryStamp;
+					heapOffer(entry, distanceSq(x, y, z, entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ));
+				}
+			}
+			if(nodes != null){
+				int[] order = childOrder[depth];
+				float[] dists = childDist[depth];
+				for(int curNode = 0; curNode < 8; curNode++){
+					OctreeNode child = nodes[curNode];
+					float dist = distanceSq(x, y, z, child.minX, child.minY, child.minZ, child.maxX, child.maxY, child.maxZ);
+					int insert = curNode;
+					while(insert > 0 && dists[insert-1] > dist){
+						dists[insert] = dists[insert-1];
+						order[insert] = order[insert-1];
+						insert--;
+					}
+					dists[insert] = dist;
+					order[insert] = curNode;
+				}
+				for(int curNode = 0; curNode < 8; curNode++){
+					nodes[order[curNode]].nearest(x, y, z, dists[curNode]);
+				}
+			}
+		}
+		
+		/**
+		 * Finds the entries of this node that overlap the given box, storing their indices in the hits array of the
+		 * tree. Small nodes test their entries one at a time skipping the ones the current query already visited,
+		 * larger nodes test all of their entries together
+		 * 
+		 * @return Number of indices stored in hits
+		 */
+		private int overlapping(float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+			if(objects.size() < BATCH_SIZE){
+				int found = 0;
+				for(int curObject = 0; curObject < objects.size(); curObject++){
+					ObjectEntry entry = objects.get(curObject);
+					if(entry.stamp != queryStamp &&
+							entry.minX <= maxX && entry.maxX >= minX &&
+							entry.minY <= maxY && entry.maxY >= minY &&
+							entry.minZ <= maxZ && entry.maxZ >= minZ){
+						hits[found++] = curObject;
+					}
+				}
+				return found;
+			}
+			return pack().overlapping(minX, minY, minZ, maxX, maxY, maxZ, hits);
+		}
+		
+		/**
+		 * Finds the entries of this node that are inside or intersect the given frustum, storing their indices in
+		 * the hits array of the tree
+		 * 
+		 * @param planes Planes of the frustum with their normals facing the inside of the frustum
+		 * @return Number of indices stored in hits
+		 */
+		private int visible(Vec4[] planes){
+			if(objects.size() < BATCH_SIZE){
+				int found = 0;
+				for(int curObject = 0; curObject < objects.size(); curObject++){
+					ObjectEntry entry = objects.get(curObject);
+					if(entry.stamp != queryStamp &&
+							classify(planes, entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ) >= 0){
+						hits[found++] = curObject;
+					}
+				}
+				return found;
+			}
+			return pack().visible(planes, hits);
+		}
+		
+		/**
+		 * Copies the bounds of the entries of this node into its batch if any of them changed since it was last packed,
+		 * and makes sure the hits array of the tree can hold an index for every entry
+		 * 
+		 * @return The batch of the bounds of the entries of this node
+		 */
+		private AABBBatch pack(){
+			if(!packed){
+				batch.clear();
+				batch.ensureCapacity(objects.size());
+				for(int curObject = 0; curObject < objects.size(); curObject++){
+					ObjectEntry entry = objects.get(curObject);
+					batch.add(entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ);
+				}
+				packed = true;
+			}
+			return batch;
+		}
+		
+		/**
+		 * Finds the entries in this subtree that overlap the given entry and come after it in the game objects list
+		 * 
+		 * @param entry Entry to find the pairs of
+		 * @param pairs List to add the pairs to
+		 * @return Number of pairs that were added
+		 */
+		public int findPairs(ObjectEntry entry, ArrayList<CandidatePair> pairs){
+			if(total == 0){
+				return 0;
+			}
+			if(parent != null && (entry.minX > maxX || entry.maxX < minX ||
+					entry.minY > maxY || entry.maxY < minY ||
+					entry.minZ > maxZ || entry.maxZ < minZ)){
+				return 0;
+			}
+			int found = 0;
+			int numHits = overlapping(entry.minX, entry.minY, entry.minZ, entry.maxX, entry.maxY, entry.maxZ);
+			for(int curHit = 0; curHit < numHits; curHit++){
+				ObjectEntry other = objects.get(hits[curHit]);
+				if(other.index > entry.index && other.stamp != queryStamp){
+					other.stamp = queryStamp;
+					pairs.add(new CandidatePair(entry.object, other.object));
+					found++;
+				}
+			}
+			if(nodes != null){
+				for(int curNode = 0; curNode < 8; curNode++){
+					found += nodes[curNode].findPairs(entry, pairs);
+				}
+			}
+			return found;
 		}
 	}
 }
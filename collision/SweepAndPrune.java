@@ -0,0 +1,857 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import core.GameObject;
+
+/**
+ * Broadphase that keeps the minimum and maximum endpoints of the bounding volumes of its game objects sorted
+ * along a single axis. The endpoints are kept sorted with an insertion sort so when objects only move a small amount
+ * between updates, which is the common case, only a few endpoints swap places. Each time a minimum endpoint passes
+ * a maximum endpoint the pair of objects starts or stops overlapping along the sort axis, so the pairs overlapping
+ * along that axis are tracked incrementally from the swaps and only those pairs are tested along the other two axes.
+ * 
+ * This works best for scenes where the objects are spread out along the sort axis and mostly move along it, such as
+ * corridors or tracks, scenes that are dense along every axis should use a tree or octree instead.
+ * 
+ * Along with the full set of overlapping pairs the changes to the set since the last call to findPairChanges can be
+ * retrieved, this lets the contact register only process the pairs that started or stopped overlapping.
+ * 
+ * @author Kevin
+ *
+ */
+public class SweepAndPrune implements BroadPhase {
+	
+	private static final int NULL_HANDLE = -1;
+	//number of pending objects above which the endpoints are sorted from scratch instead of inserted one at a time
+	private static final int REBUILD_THRESHOLD = 16;
+	private static final int BOX_STRIDE = 6;
+	
+	private int axis;
+	//endpoints sorted by value, each endpoint is the handle of its object shifted left once with the low bit
+	//set if it is a maximum endpoint
+	private float[] values;
+	private int[] endpoints;
+	//index of the minimum and maximum endpoint of each handle
+	private int[] minIndex, maxIndex;
+	private int numEndpoints;
+	//bounds of each handle as minX, minY, minZ, maxX, maxY, maxZ
+	private float[] boxes;
+	
+	//game objects by handle and the handles that are free to be reused
+	private GameObject[] objects;
+	private HashMap<GameObject, Integer> handles;
+	private int[] freeHandles;
+	private int numFree, numHandles;
+	//handles of objects that were added but haven't had their endpoints inserted yet and the index of each
+	//handle in the pending list, -1 if the handle isn't pending
+	private int[] pending, pendingIndex;
+	private int numPending;
+	//scratch arrays used when rebuilding
+	private long[] sortKeys;
+	private int[] active, activeIndex;
+	
+	private PairSet pairs;
+	//whether objects moved since the pairs were last tested along the other axes
+	private boolean dirty;
+	//pairs that stopped overlapping because one of the objects was removed from the broadphase
+	private ArrayList<CandidatePair> removedPairs;
+	//handle currently being removed, pairs containing it are dropped as they're found
+	private int removing;
+	
+	//statistics of the work done by the insertion sort
+	private long swaps;
+	
+	public SweepAndPrune(){
+		this(0, 64);
+	}
+	
+	/**
+	 * Constructs an empty sweep and prune broadphase
+	 * 
+	 * @param axis Axis to sort the endpoints along, 0, 1 or 2 for the x, y or z axis, this should be the axis
+	 * the objects are most spread out along
+	 * @param initialCapacity Number of game objects to allocate space for, the broadphase grows as needed
+	 */
+	public SweepAndPrune(int axis, int initialCapacity){
+		if(axis < 0 || axis > 2){
+			System.err.println("Invalid sweep and prune axis "+axis+", using the x axis");
+			axis = 0;
+		}
+		this.axis = axis;
+		int capacity = Math.max(initialCapacity, 1);
+		values = new float[capacity*2];
+		endpoints = new int[capacity*2];
+		minIndex = new int[capacity];
+		maxIndex = new int[capacity];
+		boxes = new float[capacity*BOX_STRIDE];
+		objects = new GameObject[capacity];
+		handles = new HashMap<GameObject, Integer>();
+		freeHandles = new int[capacity];
+		pending = new int[capacity];
+		pendingIndex = new int[capacity];
+		active = new int[capacity];
+		activeIndex = new int[capacity];
+		numFree = 0;
+		numHandles = 0;
+		numPending = 0;
+		numEndpoints = 0;
+		pairs = new PairSet(capacity*4);
+		dirty = false;
+		removedPairs = new ArrayList<CandidatePair>();
+		removing = NULL_HANDLE;
+	}
+	
+	/**
+	 * Adds the given game object to this broadphase, the endpoints of the object are inserted at the next update
+	 * or query so that a large number of objects added at once can be sorted together instead of one at a time
+	 */
+	@Override
+	public boolean add(GameObject object){
+		if(handles.containsKey(object)){
+			return false;
+		}
+		int handle = allocateHandle();
+		objects[handle] = object;
+		handles.put(object, handle);
+		pendingIndex[handle] = numPending;
+		pending[numPending++] = handle;
+		return true;
+	}
+	
+	@Override
+	public boolean remove(GameObject object){
+		Integer handleObj = handles.remove(object);
+		if(handleObj == null){
+			return false;
+		}
+		int handle = handleObj;
+		//objects that are still pending have no endpoints or pairs to remove
+		if(pendingIndex[handle] != -1){
+			int last = pending[--numPending];
+			pending[pendingIndex[handle]] = last;
+			pendingIndex[last] = pendingIndex[handle];
+			pendingIndex[handle] = -1;
+		}else{
+			removeEndpoints(handle);
+		}
+		objects[handle] = null;
+		freeHandles[numFree++] = handle;
+		return true;
+	}
+	
+	@Override
+	public void update(GameObject object){
+		Integer handle = handles.get(object);
+		//pending objects get their current bounds when they are inserted
+		if(handle != null && pendingIndex[handle] == -1){
+			update(handle.intValue());
+		}
+	}
+	
+	@Override
+	public void update(){
+		//rebuilding reads the current bounds of every object so there's nothing left to update
+		if(numPending > REBUILD_THRESHOLD){
+			rebuild();
+			return;
+		}
+		insertPending();
+		//sleeping objects don't move so their endpoints are already in place
+		for(int handle = 0; handle < numHandles; handle++){
+			if(objects[handle] != null && objects[handle].isAwake()){
+				update(handle);
+			}
+		}
+	}
+	
+	private void update(int handle){
+		computeBounds(handle);
+		int minEnd = minIndex[handle];
+		int maxEnd = maxIndex[handle];
+		float oldMin = values[minEnd];
+		float oldMax = values[maxEnd];
+		float newMin = boxes[handle*BOX_STRIDE+axis];
+		float newMax = boxes[handle*BOX_STRIDE+axis+3];
+		
+		//grow the box first so that the minimum and maximum endpoints never pass each other
+		if(newMin < oldMin){
+			values[minEnd] = newMin;
+			sortMinDown(minEnd);
+		}
+		if(newMax > oldMax){
+			values[maxEnd] = newMax;
+			sortMaxUp(maxEnd);
+		}
+		if(newMin > oldMin){
+			values[minIndex[handle]] = newMin;
+			sortMinUp(minIndex[handle]);
+		}
+		if(newMax < oldMax){
+			values[maxIndex[handle]] = newMax;
+			sortMaxDown(maxIndex[handle]);
+		}
+		dirty = true;
+	}
+	
+	@Override
+	public int findPairs(ArrayList<CandidatePair> pairs){
+		refresh();
+		int found = 0;
+		long[] keys = this.pairs.keys;
+		byte[] states = this.pairs.states;
+		for(int curSlot = 0; curSlot < keys.length; curSlot++){
+			if((states[curSlot] & PairSet.CURRENT) != 0){
+				pairs.add(new CandidatePair(objects[(int)(keys[curSlot] >>> 32)], objects[(int)keys[curSlot]]));
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Finds the pairs that started or stopped overlapping since the last call to this method, a pair that started
+	 * and then stopped overlapping in between calls is not reported
+	 * 
+	 * @param added List to add the pairs that started overlapping to
+	 * @param removed List to add the pairs that stopped overlapping to, this includes pairs dropped because one
+	 * of the game objects was removed from the broadphase
+	 * @return Total number of pairs added to both lists
+	 */
+	public int findPairChanges(ArrayList<CandidatePair> added, ArrayList<CandidatePair> removed){
+		refresh();
+		int found = removedPairs.size();
+		removed.addAll(removedPairs);
+		removedPairs.clear();
+		
+		for(int curPair = 0; curPair < pairs.numTouched; curPair++){
+			long key = pairs.touched[curPair];
+			int slot = pairs.find(key);
+			//pairs of removed objects have already been dropped and pairs can be listed more than once if they
+			//were dropped and found again
+			if(slot < 0 || (pairs.states[slot] & PairSet.TOUCHED) == 0){
+				continue;
+			}
+			byte state = pairs.states[slot];
+			boolean current = (state & PairSet.CURRENT) != 0;
+			boolean previous = (state & PairSet.PREVIOUS) != 0;
+			if(current != previous){
+				CandidatePair pair = new CandidatePair(objects[(int)(key >>> 32)], objects[(int)key]);
+				if(current){
+					added.add(pair);
+				}else{
+					removed.add(pair);
+				}
+				found++;
+			}
+			if((state & PairSet.AXIS) != 0){
+				pairs.states[slot] = current ? PairSet.AXIS | PairSet.CURRENT | PairSet.PREVIOUS : PairSet.AXIS;
+			}else{
+				pairs.removeSlot(slot);
+			}
+		}
+		pairs.numTouched = 0;
+		return found;
+	}
+	
+	@Override
+	public int query(AABB volume, Collection<GameObject> results){
+		flushPending();
+		float minX = volume.getMinX(), maxX = volume.getMaxX();
+		float minY = volume.getMinY(), maxY = volume.getMaxY();
+		float minZ = volume.getMinZ(), maxZ = volume.getMaxZ();
+		float axisMax = axis == 0 ? maxX : axis == 1 ? maxY : maxZ;
+		
+		//every object overlapping the volume has its minimum endpoint before the maximum of the volume
+		int found = 0;
+		for(int curEnd = 0; curEnd < numEndpoints && values[curEnd] <= axisMax; curEnd++){
+			int endpoint = endpoints[curEnd];
+			if((endpoint & 1) != 0){
+				continue;
+			}
+			int handle = endpoint >> 1;
+			int box = handle*BOX_STRIDE;
+			if(boxes[box] <= maxX && boxes[box+3] >= minX &&
+					boxes[box+1] <= maxY && boxes[box+4] >= minY &&
+					boxes[box+2] <= maxZ && boxes[box+5] >= minZ){
+				results.add(objects[handle]);
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	@Override
+	public int size(){
+		return handles.size();
+	}
+	
+	/**
+	 * Gets the number of overlapping pairs currently tracked by this broadphase
+	 * 
+	 * @return Number of overlapping pairs
+	 */
+	public int getPairCount(){
+		refresh();
+		return pairs.numCurrent;
+	}
+	
+	/**
+	 * Gets the number of pairs that overlap along the sort axis, these are the pairs tested along the other axes
+	 * after each update
+	 * 
+	 * @return Number of pairs overlapping along the sort axis
+	 */
+	public int getAxisPairCount(){
+		flushPending();
+		return pairs.numAxis;
+	}
+	
+	public int getAxis(){
+		return axis;
+	}
+	
+	/**
+	 * Gets the number of endpoint swaps the insertion sort has performed since the statistics were last reset
+	 * 
+	 * @return Number of endpoint swaps
+	 */
+	public long getSwapCount(){
+		return swaps;
+	}
+	
+	public void resetStats(){
+		swaps = 0;
+	}
+	
+	private void flushPending(){
+		if(numPending > REBUILD_THRESHOLD){
+			rebuild();
+		}else{
+			insertPending();
+		}
+	}
+	
+	/**
+	 * Inserts the endpoints of the pending objects one at a time, the endpoints are appended at the end of the axis
+	 * and sorted down into place
+	 */
+	private void insertPending(){
+		for(int curPending = 0; curPending < numPending; curPending++){
+			int handle = pending[curPending];
+			pendingIndex[handle] = -1;
+			computeBounds(handle);
+			int minEnd = numEndpoints;
+			int maxEnd = numEndpoints+1;
+			values[minEnd] = boxes[handle*BOX_STRIDE+axis];
+			values[maxEnd] = Float.MAX_VALUE;
+			endpoints[minEnd] = handle << 1;
+			endpoints[maxEnd] = (handle << 1) | 1;
+			minIndex[handle] = minEnd;
+			maxIndex[handle] = maxEnd;
+			numEndpoints += 2;
+			
+			//the minimum passes the maximum of every object whose maximum is past it, then the maximum passes back
+			//over the minimums that are past it leaving the objects it overlaps
+			sortMinDown(minEnd);
+			values[maxIndex[handle]] = boxes[handle*BOX_STRIDE+axis+3];
+			sortMaxDown(maxIndex[handle]);
+			dirty = true;
+		}
+		numPending = 0;
+	}
+	
+	/**
+	 * Rebuilds the endpoints of every object from their current bounds, the axis is sorted from scratch and the
+	 * pairs overlapping along it are found with a single sweep. Pairs that were already overlapping keep their
+	 * state so only the differences are reported as changes.
+	 */
+	private void rebuild(){
+		numPending = 0;
+		numEndpoints = 0;
+		if(sortKeys == null || sortKeys.length < values.length){
+			sortKeys = new long[values.length];
+		}
+		for(int handle = 0; handle < numHandles; handle++){
+			if(objects[handle] != null){
+				pendingIndex[handle] = -1;
+				computeBounds(handle);
+				sortKeys[numEndpoints++] = sortKey(boxes[handle*BOX_STRIDE+axis], handle << 1);
+				sortKeys[numEndpoints++] = sortKey(boxes[handle*BOX_STRIDE+axis+3], (handle << 1) | 1);
+			}
+		}
+		Arrays.sort(sortKeys, 0, numEndpoints);
+		
+		pairs.beginRebuild();
+		//sweep the axis keeping the objects whose minimum has been passed but not their maximum
+		int numActive = 0;
+		for(int curEnd = 0; curEnd < numEndpoints; curEnd++){
+			int bits = (int)(sortKeys[curEnd] >> 32);
+			bits ^= (bits >> 31) & 0x7FFFFFFF;
+			int endpoint = (int)sortKeys[curEnd];
+			int handle = endpoint >> 1;
+			values[curEnd] = Float.intBitsToFloat(bits);
+			endpoints[curEnd] = endpoint;
+			if((endpoint & 1) == 0){
+				minIndex[handle] = curEnd;
+				for(int curActive = 0; curActive < numActive; curActive++){
+					pairs.addAxis(handle, active[curActive]);
+				}
+				activeIndex[handle] = numActive;
+				active[numActive++] = handle;
+			}else{
+				maxIndex[handle] = curEnd;
+				int last = active[--numActive];
+				active[activeIndex[handle]] = last;
+				activeIndex[last] = activeIndex[handle];
+			}
+		}
+		pairs.endRebuild();
+		dirty = true;
+	}
+	
+	/**
+	 * Packs the given value and endpoint into a long that sorts in the same order as the value, the float is
+	 * converted to an int that keeps the order of the floats when compared as signed ints
+	 */
+	private static long sortKey(float value, int endpoint){
+		int bits = Float.floatToIntBits(value);
+		bits ^= (bits >> 31) & 0x7FFFFFFF;
+		return ((long)bits << 32) | (endpoint & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Tests each pair overlapping along the sort axis along the other two axes, updating which pairs are overlapping
+	 */
+	private void refresh(){
+		flushPending();
+		if(!dirty){
+			return;
+		}
+		dirty = false;
+		int otherA = axis == 0 ? 1 : 0;
+		int otherB = axis == 2 ? 1 : 2;
+		long[] keys = pairs.keys;
+		byte[] states = pairs.states;
+		for(int curSlot = 0; curSlot < keys.length; curSlot++){
+			byte state = states[curSlot];
+			if((state & PairSet.AXIS) == 0){
+				continue;
+			}
+			int boxA = (int)(keys[curSlot] >>> 32)*BOX_STRIDE;
+			int boxB = (int)keys[curSlot]*BOX_STRIDE;
+			boolean overlap = boxes[boxA+otherA] <= boxes[boxB+otherA+3] && boxes[boxB+otherA] <= boxes[boxA+otherA+3] &&
+					boxes[boxA+otherB] <= boxes[boxB+otherB+3] && boxes[boxB+otherB] <= boxes[boxA+otherB+3];
+			if(overlap != ((state & PairSet.CURRENT) != 0)){
+				if(overlap){
+					states[curSlot] |= PairSet.CURRENT;
+					pairs.numCurrent++;
+				}else{
+					states[curSlot] &= ~PairSet.CURRENT;
+					pairs.numCurrent--;
+				}
+				pairs.touch(curSlot);
+			}
+		}
+	}
+	
+	/**
+	 * Moves the endpoints of the given handle to the end of the axis and drops them, the minimum endpoint passes
+	 * the maximum endpoint of every object it overlaps along the axis which drops all of the pairs of the handle
+	 */
+	private void removeEndpoints(int handle){
+		removing = handle;
+		//pairs that stopped overlapping along the axis since the last call to findPairChanges are no longer
+		//found by the sort so they are dropped from the touched list
+		for(int curPair = 0; curPair < pairs.numTouched; curPair++){
+			long key = pairs.touched[curPair];
+			if((int)(key >>> 32) == handle || (int)key == handle){
+				int slot = pairs.find(key);
+				if(slot >= 0 && (pairs.states[slot] & PairSet.AXIS) == 0){
+					dropPair(slot);
+				}
+			}
+		}
+		values[maxIndex[handle]] = Float.MAX_VALUE;
+		sortMaxUp(maxIndex[handle]);
+		values[minIndex[handle]] = Float.MAX_VALUE;
+		sortMinUp(minIndex[handle]);
+		numEndpoints -= 2;
+		removing = NULL_HANDLE;
+	}
+	
+	private void sortMinDown(int index){
+		int endpoint = endpoints[index];
+		int handle = endpoint >> 1;
+		float value = values[index];
+		
+		while(index > 0 && values[index-1] > value){
+			int prev = endpoints[index-1];
+			int prevHandle = prev >> 1;
+			if((prev & 1) != 0){
+				//the minimum passed a maximum so the objects now overlap along the axis
+				pairs.addAxis(handle, prevHandle);
+				maxIndex[prevHandle] = index;
+			}else{
+				minIndex[prevHandle] = index;
+			}
+			values[index] = values[index-1];
+			endpoints[index] = prev;
+			index--;
+			swaps++;
+		}
+		values[index] = value;
+		endpoints[index] = endpoint;
+		minIndex[handle] = index;
+	}
+	
+	private void sortMinUp(int index){
+		int endpoint = endpoints[index];
+		int handle = endpoint >> 1;
+		float value = values[index];
+		
+		while(index < numEndpoints-1 && values[index+1] < value){
+			int next = endpoints[index+1];
+			int nextHandle = next >> 1;
+			if((next & 1) != 0){
+				//the minimum passed a maximum so the objects no longer overlap along the axis
+				removeAxisPair(handle, nextHandle);
+				maxIndex[nextHandle] = index;
+			}else{
+				minIndex[nextHandle] = index;
+			}
+			values[index] = values[index+1];
+			endpoints[index] = next;
+			index++;
+			swaps++;
+		}
+		values[index] = value;
+		endpoints[index] = endpoint;
+		minIndex[handle] = index;
+	}
+	
+	private void sortMaxDown(int index){
+		int endpoint = endpoints[index];
+		int handle = endpoint >> 1;
+		float value = values[index];
+		
+		while(index > 0 && values[index-1] > value){
+			int prev = endpoints[index-1];
+			int prevHandle = prev >> 1;
+			if((prev & 1) == 0){
+				//the maximum passed a minimum so the objects no longer overlap along the axis
+				removeAxisPair(handle, prevHandle);
+				minIndex[prevHandle] = index;
+			}else{
+				maxIndex[prevHandle] = index;
+			}
+			values[index] = values[index-1];
+			endpoints[index] = prev;
+			index--;
+			swaps++;
+		}
+		values[index] = value;
+		endpoints[index] = endpoint;
+		maxIndex[handle] = index;
+	}
+	
+	private void sortMaxUp(int index){
+		int endpoint = endpoints[index];
+		int handle = endpoint >> 1;
+		float value = values[index];
+		
+		while(index < numEndpoints-1 && values[index+1] < value){
+			int next = endpoints[index+1];
+			int nextHandle = next >> 1;
+			if((next & 1) == 0){
+				//the maximum passed a minimum so the objects now overlap along the axis, the endpoints of
+				//an object being removed are moved out of the way without creating pairs
+				if(removing != handle){
+					pairs.addAxis(handle, nextHandle);
+				}
+				minIndex[nextHandle] = index;
+			}else{
+				maxIndex[nextHandle] = index;
+			}
+			values[index] = values[index+1];
+			endpoints[index] = next;
+			index++;
+			swaps++;
+		}
+		values[index] = value;
+		endpoints[index] = endpoint;
+		maxIndex[handle] = index;
+	}
+	
+	/**
+	 * Removes the pair of the given handles from the pairs overlapping along the axis, if one of the handles is being
+	 * removed from the broadphase the pair is dropped immediately so that the handle can be reused
+	 */
+	private void removeAxisPair(int handleA, int handleB){
+		if(removing == NULL_HANDLE){
+			pairs.removeAxis(handleA, handleB);
+		}else if(handleA != handleB){
+			int slot = pairs.find(PairSet.key(handleA, handleB));
+			if(slot >= 0){
+				dropPair(slot);
+			}
+		}
+	}
+	
+	/**
+	 * Drops the pair in the given slot, reporting it as removed if it was overlapping at the last call to findPairChanges
+	 */
+	private void dropPair(int slot){
+		byte state = pairs.states[slot];
+		long key = pairs.keys[slot];
+		if((state & PairSet.PREVIOUS) != 0){
+			removedPairs.add(new CandidatePair(objects[(int)(key >>> 32)], objects[(int)key]));
+		}
+		if((state & PairSet.CURRENT) != 0){
+			pairs.numCurrent--;
+		}
+		if((state & PairSet.AXIS) != 0){
+			pairs.numAxis--;
+		}
+		pairs.removeSlot(slot);
+	}
+	
+	private int allocateHandle(){
+		if(numFree > 0){
+			return freeHandles[--numFree];
+		}
+		if(numHandles == objects.length){
+			grow(objects.length*2);
+		}
+		return numHandles++;
+	}
+	
+	private void grow(int capacity){
+		values = copyOf(values, capacity*2);
+		endpoints = copyOf(endpoints, capacity*2);
+		minIndex = copyOf(minIndex, capacity);
+		maxIndex = copyOf(maxIndex, capacity);
+		boxes = copyOf(boxes, capacity*BOX_STRIDE);
+		GameObject[] grownObjects = new GameObject[capacity];
+		System.arraycopy(objects, 0, grownObjects, 0, objects.length);
+		objects = grownObjects;
+		freeHandles = copyOf(freeHandles, capacity);
+		pending = copyOf(pending, capacity);
+		pendingIndex = copyOf(pendingIndex, capacity);
+		active = copyOf(active, capacity);
+		activeIndex = copyOf(activeIndex, capacity);
+	}
+	
+	/**
+	 * Computes the bounds of the game object of the given handle storing them in the boxes array
+	 */
+	private void computeBounds(int handle){
+		objects[handle].getBoundingVolume().getBounds(boxes, handle*BOX_STRIDE);
+	}
+	
+	private static float[] copyOf(float[] array, int length){
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+	
+	private static int[] copyOf(int[] array, int length){
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+	
+	/**
+	 * Open addressing hash set of handle pairs. Each pair stores whether it overlaps along the sort axis, whether it
+	 * currently overlaps along every axis and whether it overlapped at the last call to findPairChanges. Pairs whose
+	 * overlap changed are recorded in the touched list.
+	 */
+	private static class PairSet{
+		private static final byte AXIS = 1, CURRENT = 2, PREVIOUS = 4, TOUCHED = 8, STALE = 16;
+		private static final long EMPTY = -1;
+		
+		private long[] keys;
+		private byte[] states;
+		private int size, numAxis, numCurrent, mask;
+		private long[] touched;
+		private int numTouched;
+		
+		public PairSet(int capacity){
+			int tableSize = 16;
+			while(tableSize < capacity*2){
+				tableSize <<= 1;
+			}
+			keys = new long[tableSize];
+			states = new byte[tableSize];
+			Arrays.fill(keys, EMPTY);
+			mask = tableSize-1;
+			touched = new long[16];
+		}
+		
+		/**
+		 * Creates the key for a pair of handles, the lower handle is stored in the upper half of the key so
+		 * the key is the same regardless of the order of the handles
+		 */
+		public static long key(int handleA, int handleB){
+			return handleA < handleB ? ((long)handleA << 32) | handleB : ((long)handleB << 32) | handleA;
+		}
+		
+		private int slot(long key){
+			long hash = key*0x9E3779B97F4A7C15L;
+			return (int)(hash ^ (hash >>> 32)) & mask;
+		}
+		
+		public int find(long key){
+			int slot = slot(key);
+			while(keys[slot] != EMPTY){
+				if(keys[slot] == key){
+					return slot;
+				}
+				slot = (slot+1) & mask;
+			}
+			return -1;
+		}
+		
+		/**
+		 * Marks the pair of the given handles as overlapping along the sort axis
+		 */
+		public void addAxis(int handleA, int handleB){
+			long key = key(handleA, handleB);
+			int slot = slot(key);
+			while(keys[slot] != EMPTY){
+				if(keys[slot] == key){
+					if((states[slot] & AXIS) == 0){
+						states[slot] = (byte)((states[slot] & ~STALE) | AXIS);
+						numAxis++;
+					}
+					return;
+				}
+				slot = (slot+1) & mask;
+			}
+			keys[slot] = key;
+			states[slot] = AXIS;
+			size++;
+			numAxis++;
+			if(size*2 > keys.length){
+				rehash(keys.length*2);
+			}
+		}
+		
+		/**
+		 * Marks the pair of the given handles as no longer overlapping along the sort axis
+		 */
+		public void removeAxis(int handleA, int handleB){
+			int slot = find(key(handleA, handleB));
+			if(slot >= 0 && (states[slot] & AXIS) != 0){
+				clearAxis(slot);
+			}
+		}
+		
+		/**
+		 * Clears the axis overlap of the pair in the given slot, the pair is removed unless it still has to be
+		 * reported as removed
+		 * 
+		 * @return True if the pair was removed from the slot
+		 */
+		private boolean clearAxis(int slot){
+			states[slot] &= ~AXIS;
+			numAxis--;
+			if((states[slot] & CURRENT) != 0){
+				states[slot] &= ~CURRENT;
+				numCurrent--;
+			}
+			if((states[slot] & PREVIOUS) == 0){
+				removeSlot(slot);
+				return true;
+			}
+			touch(slot);
+			return false;
+		}
+		
+		/**
+		 * Marks every pair overlapping along the sort axis as stale before the pairs are found again from scratch,
+		 * pairs that are found again lose the mark
+		 */
+		public void beginRebuild(){
+			for(int curSlot = 0; curSlot < keys.length; curSlot++){
+				if((states[curSlot] & AXIS) != 0){
+					states[curSlot] = (byte)((states[curSlot] & ~AXIS) | STALE);
+				}
+			}
+			numAxis = 0;
+		}
+		
+		/**
+		 * Clears the axis overlap of the pairs that weren't found again since the call to beginRebuild
+		 */
+		public void endRebuild(){
+			int curSlot = 0;
+			while(curSlot < keys.length){
+				if((states[curSlot] & STALE) != 0){
+					states[curSlot] = (byte)((states[curSlot] & ~STALE) | AXIS);
+					numAxis++;
+					//removing shifts the following pairs back so the slot has to be checked again
+					if(clearAxis(curSlot)){
+						continue;
+					}
+				}
+				curSlot++;
+			}
+		}
+		
+		public void touch(int slot){
+			if((states[slot] & TOUCHED) == 0){
+				states[slot] |= TOUCHED;
+				if(numTouched == touched.length){
+					long[] grown = new long[touched.length*2];
+					System.arraycopy(touched, 0, grown, 0, touched.length);
+					touched = grown;
+				}
+				touched[numTouched++] = keys[slot];
+			}
+		}
+		
+		/**
+		 * Removes the pair in the given slot shifting back the pairs that follow it so no tombstones are needed
+		 */
+		public void removeSlot(int slot){
+			size--;
+			int hole = slot;
+			int next = (hole+1) & mask;
+			while(keys[next] != EMPTY){
+				int home = slot(keys[next]);
+				//move the pair into the hole if the hole lies between its home slot and its current slot
+				if(((next-home) & mask) >= ((next-hole) & mask)){
+					keys[hole] = keys[next];
+					states[hole] = states[next];
+					hole = next;
+				}
+				next = (next+1) & mask;
+			}
+			keys[hole] = EMPTY;
+			states[hole] = 0;
+		}
+		
+		private void rehash(int tableSize){
+			long[] oldKeys = keys;
+			byte[] oldStates = states;
+			keys = new long[tableSize];
+			states = new byte[tableSize];
+			Arrays.fill(keys, EMPTY);
+			mask = tableSize-1;
+			for(int curSlot = 0; curSlot < oldKeys.length; curSlot++){
+				if(oldKeys[curSlot] != EMPTY){
+					int slot = slot(oldKeys[curSlot]);
+					while(keys[slot] != EMPTY){
+						slot = (slot+1) & mask;
+					}
+					keys[slot] = oldKeys[curSlot];
+					states[slot] = oldStates[curSlot];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,496 @@
+package collision;
+
+import java.util.List;
+
+import primitives.Triangle;
+import primitives.Vertex;
+import glMath.Mat4;
+import glMath.MatrixUtil;
+import glMath.Quaternion;
+import glMath.Vec3;
+
+/**
+ * Collision mesh of a static concave triangle mesh such as level geometry. The triangles are kept in a bounding
+ * volume hierarchy flattened into arrays in depth first order, so the left child of a node is the node after it and
+ * only the right child needs to be stored. Leaves hold a short run of triangles in the reordered triangle list.
+ * 
+ * The shape of the hierarchy is built once from the local triangles, moving the mesh transforms the vertices into
+ * world space and refits the bounds of the nodes, which makes moving the mesh as expensive as a pass over its
+ * vertices. The mesh isn't convex so its support function only describes its convex hull, the CollisionDispatcher
+ * tests convex meshes against the triangles near them with the TriangleMeshTest instead.
+ * 
+ * @author Kevin
+ *
+ */
+public class TriangleMeshCollider implements CollisionMesh, TriangleMeshTest.TriangleSource {
+	
+	//most triangles a leaf holds before it is split
+	private static final int LEAF_SIZE = 4;
+	private static final int BOX_STRIDE = 6;
+	
+	//positions of the vertices in the local space of the mesh and in world space
+	private float[] localX, localY, localZ;
+	private float[] worldX, worldY, worldZ;
+	private int numVertices;
+	//vertex indices of each triangle, reordered so the triangles of each leaf are next to each other
+	private int[] triangles;
+	private int numTriangles;
+	
+	//world bounds of each node, the right child of internal nodes or the first triangle of leaves, and the number
+	//of triangles in each leaf which is 0 for internal nodes
+	private float[] nodeBounds;
+	private int[] nodeData, nodeCounts;
+	private int numNodes, depth;
+	
+	private Mat4 modelMat, origModel;
+	private Quaternion orientation, origOrient;
+	
+	/**
+	 * Constructs a collider of the given triangles
+	 * 
+	 * @param vertices Vertices the triangles index into
+	 * @param faces Triangles of the mesh
+	 */
+	public TriangleMeshCollider(List<Vertex> vertices, List<Triangle> faces){
+		modelMat = new Mat4(1);
+		orientation = new Quaternion();
+		origModel = new Mat4(1);
+		origOrient = new Quaternion();
+		
+		numVertices = vertices.size();
+		localX = new float[numVertices];
+		localY = new float[numVertices];
+		localZ = new float[numVertices];
+		for(int curVert = 0; curVert < numVertices; curVert++){
+			Vec3 pos = vertices.get(curVert).getPos();
+			localX[curVert] = pos.x;
+			localY[curVert] = pos.y;
+			localZ[curVert] = pos.z;
+		}
+		numTriangles = faces.size();
+		triangles = new int[3*numTriangles];
+		for(int curTriangle = 0; curTriangle < numTriangles; curTriangle++){
+			int[] primitive = faces.get(curTriangle).primitive;
+			triangles[3*curTriangle] = primitive[0];
+			triangles[3*curTriangle+1] = primitive[1];
+			triangles[3*curTriangle+2] = primitive[2];
+		}
+		worldX = new float[numVertices];
+		worldY = new float[numVertices];
+		worldZ = new float[numVertices];
+		
+		build();
+		refit();
+	}
+	
+	public TriangleMeshCollider(TriangleMeshCollider copy){
+		//the local geometry and the shape of the hierarchy never change so they are shared
+		localX = copy.localX;
+		localY = copy.localY;
+		localZ = copy.localZ;
+		numVertices = copy.numVertices;
+		triangles = copy.triangles;
+		numTriangles = copy.numTriangles;
+		nodeData = copy.nodeData;
+		nodeCounts = copy.nodeCounts;
+		numNodes = copy.numNodes;
+		depth = copy.depth;
+		
+		worldX = new float[numVertices];
+		worldY = new float[numVertices];
+		worldZ = new float[numVertices];
+		nodeBounds = new float[copy.nodeBounds.length];
+		modelMat = new Mat4(copy.modelMat);
+		orientation = new Quaternion(copy.orientation);
+		origModel = new Mat4(copy.modelMat);
+		origOrient = new Quaternion(copy.orientation);
+		refit();
+	}
+	
+	/**
+	 * Finds the triangles whose bounds overlap the given box
+	 * 
+	 * @param bounds Box to test as the minimum x, y, z followed by the maximum x, y, z
+	 * @param workspace Workspace whose mesh stack is used for the traversal and whose mesh triangles receive the
+	 * indices of the overlapping triangles
+	 * @return Number of overlapping triangles
+	 */
+	@Override
+	public int overlapping(float[] bounds, GJKWorkspace workspace){
+		if(numNodes == 0){
+			return 0;
+		}
+		workspace.ensureMeshCapacity(depth+1, numTriangles);
+		int[] stack = workspace.meshStack, hits = workspace.meshTriangles;
+		int stackSize = 0, found = 0;
+		stack[stackSize++] = 0;
+		while(stackSize > 0){
+			int node = stack[--stackSize];
+			int box = node*BOX_STRIDE;
+			if(nodeBounds[box] > bounds[3] || nodeBounds[box+3] < bounds[0] ||
+					nodeBounds[box+1] > bounds[4] || nodeBounds[box+4] < bounds[1] ||
+					nodeBounds[box+2] > bounds[5] || nodeBounds[box+5] < bounds[2]){
+				continue;
+			}
+			int count = nodeCounts[node];
+			if(count == 0){
+				stack[stackSize++] = nodeData[node];
+				stack[stackSize++] = node+1;
+				continue;
+			}
+			//a leaf can hold triangles whose own bounds miss the box even though the leaf bounds don't
+			for(int curTriangle = nodeData[node]; curTriangle < nodeData[node]+count; curTriangle++){
+				if(triangleOverlaps(curTriangle, bounds)){
+					hits[found++] = curTriangle;
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Gets the world space vertices of the triangle at the given index of the reordered triangle list
+	 * 
+	 * @param index Index of the triangle
+	 * @param a Vector to store the first vertex in
+	 * @param b Vector to store the second vertex in
+	 * @param c Vector to store the third vertex in
+	 */
+	@Override
+	public void getTriangle(int index, Vec3 a, Vec3 b, Vec3 c){
+		int vertA = triangles[3*index], vertB = triangles[3*index+1], vertC = triangles[3*index+2];
+		a.x = worldX[vertA];
+		a.y = worldY[vertA];
+		a.z = worldZ[vertA];
+		b.x = worldX[vertB];
+		b.y = worldY[vertB];
+		b.z = worldZ[vertB];
+		c.x = worldX[vertC];
+		c.y = worldY[vertC];
+		c.z = worldZ[vertC];
+	}
+	
+	/**
+	 * Gets whether the mesh bounds a solid, a triangle mesh is only treated as a surface since level meshes aren't
+	 * always closed or consistently wound
+	 */
+	@Override
+	public boolean isSolid(){
+		return false;
+	}
+	
+	public int getTriangleCount(){
+		return numTriangles;
+	}
+	
+	public int getNodeCount(){
+		return numNodes;
+	}
+	
+	public int getDepth(){
+		return depth;
+	}
+	
+	private boolean triangleOverlaps(int index, float[] bounds){
+		int vertA = triangles[3*index], vertB = triangles[3*index+1], vertC = triangles[3*index+2];
+		return Math.min(worldX[vertA], Math.min(worldX[vertB], worldX[vertC])) <= bounds[3] &&
+				Math.max(worldX[vertA], Math.max(worldX[vertB], worldX[vertC])) >= bounds[0] &&
+				Math.min(worldY[vertA], Math.min(worldY[vertB], worldY[vertC])) <= bounds[4] &&
+				Math.max(worldY[vertA], Math.max(worldY[vertB], worldY[vertC])) >= bounds[1] &&
+				Math.min(worldZ[vertA], Math.min(worldZ[vertB], worldZ[vertC])) <= bounds[5] &&
+				Math.max(worldZ[vertA], Math.max(worldZ[vertB], worldZ[vertC])) >= bounds[2];
+	}
+	
+	/**
+	 * Builds the shape of the hierarchy from the local triangles, each node is split at the median of the centroids
+	 * of its triangles along the longest axis of their bounds
+	 */
+	private void build(){
+		numNodes = 0;
+		depth = 0;
+		int maxNodes = Math.max(1, 2*numTriangles);
+		nodeData = new int[maxNodes];
+		nodeCounts = new int[maxNodes];
+		if(numTriangles == 0){
+			nodeBounds = new float[0];
+			return;
+		}
+		float[] centroids = new float[3*numTriangles];
+		int[] order = new int[numTriangles];
+		for(int curTriangle = 0; curTriangle < numTriangles; curTriangle++){
+			int vertA = triangles[3*curTriangle], vertB = triangles[3*curTriangle+1], vertC = triangles[3*curTriangle+2];
+			centroids[3*curTriangle] = localX[vertA]+localX[vertB]+localX[vertC];
+			centroids[3*curTriangle+1] = localY[vertA]+localY[vertB]+localY[vertC];
+			centroids[3*curTriangle+2] = localZ[vertA]+localZ[vertB]+localZ[vertC];
+			order[curTriangle] = curTriangle;
+		}
+		buildNode(order, centroids, 0, numTriangles, 1);
+		nodeBounds = new float[numNodes*BOX_STRIDE];
+		
+		//put the vertex indices in the order the leaves reference the triangles
+		int[] sorted = new int[3*numTriangles];
+		for(int curTriangle = 0; curTriangle < numTriangles; curTriangle++){
+			System.arraycopy(triangles, 3*order[curTriangle], sorted, 3*curTriangle, 3);
+		}
+		triangles = sorted;
+	}
+	
+	private int buildNode(int[] order, float[] centroids, int start, int end, int level){
+		int node = numNodes++;
+		depth = Math.max(depth, level);
+		if(end-start <= LEAF_SIZE){
+			nodeData[node] = start;
+			nodeCounts[node] = end-start;
+			return node;
+		}
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		for(int curTriangle = start; curTriangle < end; curTriangle++){
+			int centroid = 3*order[curTriangle];
+			minX = Math.min(minX, centroids[centroid]);
+			minY = Math.min(minY, centroids[centroid+1]);
+			minZ = Math.min(minZ, centroids[centroid+2]);
+			maxX = Math.max(maxX, centroids[centroid]);
+			maxY = Math.max(maxY, centroids[centroid+1]);
+			maxZ = Math.max(maxZ, centroids[centroid+2]);
+		}
+		int axis = 0;
+		if(maxY-minY > maxX-minX && maxY-minY >= maxZ-minZ){
+			axis = 1;
+		}else if(maxZ-minZ > maxX-minX && maxZ-minZ > maxY-minY){
+			axis = 2;
+		}
+		int middle = (start+end) >>> 1;
+		select(order, centroids, axis, start, end-1, middle);
+		
+		buildNode(order, centroids, start, middle, level+1);
+		nodeData[node] = buildNode(order, centroids, middle, end, level+1);
+		nodeCounts[node] = 0;
+		return node;
+	}
+	
+	/**
+	 * Partially sorts the given range of the order so the triangle at the given index has the centroid it would have
+	 * if the range were sorted along the given axis, with no larger centroids before it and no smaller ones after it
+	 */
+	private static void select(int[] order, float[] centroids, int axis, int low, int high, int target){
+		while(high > low){
+			float pivot = centroids[3*order[(low+high) >>> 1]+axis];
+			int left = low, right = high;
+			while(left <= right){
+				while(centroids[3*order[left]+axis] < pivot){
+					left++;
+				}
+				while(centroids[3*order[right]+axis] > pivot){
+					right--;
+				}
+				if(left <= right){
+					int swap = order[left];
+					order[left] = order[right];
+					order[right] = swap;
+					left++;
+					right--;
+				}
+			}
+			if(target <= right){
+				high = right;
+			}else if(target >= left){
+				low = left;
+			}else{
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Transforms the vertices into world space and recomputes the bounds of every node, children come after their
+	 * parents so the nodes are visited in reverse
+	 */
+	private void refit(){
+		Vec3 vert = new Vec3();
+		for(int curVert = 0; curVert < numVertices; curVert++){
+			vert.x = localX[curVert];
+			vert.y = localY[curVert];
+			vert.z = localZ[curVert];
+			orientation.rotateInverse(vert, vert);
+			modelMat.multVec(vert, vert);
+			worldX[curVert] = vert.x;
+			worldY[curVert] = vert.y;
+			worldZ[curVert] = vert.z;
+		}
+		for(int node = numNodes-1; node >= 0; node--){
+			int box = node*BOX_STRIDE;
+			int count = nodeCounts[node];
+			if(count == 0){
+				int left = (node+1)*BOX_STRIDE, right = nodeData[node]*BOX_STRIDE;
+				for(int curAxis = 0; curAxis < 3; curAxis++){
+					nodeBounds[box+curAxis] = Math.min(nodeBounds[left+curAxis], nodeBounds[right+curAxis]);
+					nodeBounds[box+curAxis+3] = Math.max(nodeBounds[left+curAxis+3], nodeBounds[right+curAxis+3]);
+				}
+				continue;
+			}
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+			float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+			for(int curIndex = 3*nodeData[node]; curIndex < 3*(nodeData[node]+count); curIndex++){
+				int curVert = triangles[curIndex];
+				minX = Math.min(minX, worldX[curVert]);
+				minY = Math.min(minY, worldY[curVert]);
+				minZ = Math.min(minZ, worldZ[curVert]);
+				maxX = Math.max(maxX, worldX[curVert]);
+				maxY = Math.max(maxY, worldY[curVert]);
+				maxZ = Math.max(maxZ, worldZ[curVert]);
+			}
+			nodeBounds[box] = minX;
+			nodeBounds[box+1] = minY;
+			nodeBounds[box+2] = minZ;
+			nodeBounds[box+3] = maxX;
+			nodeBounds[box+4] = maxY;
+			nodeBounds[box+5] = maxZ;
+		}
+	}
+	
+	public void translate(float x, float y, float z){
+		modelMat.leftMult(MatrixUtil.translate(x, y, z));
+		refit();
+	}
+	
+	public void translate(Vec3 translation){
+		modelMat.leftMult(MatrixUtil.translate(translation));
+		refit();
+	}
+	
+	public void scale(float factor){
+		modelMat.leftMult(MatrixUtil.scale(factor, factor, factor));
+		refit();
+	}
+	
+	public void scale(float x, float y, float z){
+		modelMat.leftMult(MatrixUtil.scale(x, y, z));
+		refit();
+	}
+	
+	public void scale(Vec3 scalars){
+		modelMat.leftMult(MatrixUtil.scale(scalars));
+		refit();
+	}
+	
+	public void orient(float x, float y, float z, float theta){
+		orientation.set(Quaternion.multiply(Quaternion.fromAxisAngle(x, y, z, theta), orientation));
+		refit();
+	}
+	
+	public void orient(Vec3 axis, float theta){
+		orientation.set(Quaternion.multiply(Quaternion.fromAxisAngle(axis, theta), orientation));
+		refit();
+	}
+	
+	public void orient(Vec3 angles){
+		orientation.set(Quaternion.multiply(new Quaternion(angles), orientation));
+		refit();
+	}
+	
+	public void orient(float roll, float pitch, float yaw){
+		orientation.set(Quaternion.multiply(new Quaternion(roll, pitch, yaw), orientation));
+		refit();
+	}
+	
+	public void setOrientation(Quaternion orient){
+		orientation.set(orient);
+		refit();
+	}
+	
+	public Quaternion getOrientation(){
+		return orientation;
+	}
+	
+	public Mat4 getModelMatrix(){
+		return modelMat;
+	}
+	
+	@Override
+	public Vec3 getCenter(){
+		return getCenter(new Vec3());
+	}
+	
+	/**
+	 * Gets the center of the world bounds of this mesh
+	 */
+	@Override
+	public Vec3 getCenter(Vec3 result){
+		if(numNodes == 0){
+			return modelMat.multVec(center, result);
+		}
+		result.x = (nodeBounds[0]+nodeBounds[3])*.5f;
+		result.y = (nodeBounds[1]+nodeBounds[4])*.5f;
+		result.z = (nodeBounds[2]+nodeBounds[5])*.5f;
+		return result;
+	}
+	
+	@Override
+	public void setData(Mat4 modelMat, Quaternion orient){
+		this.modelMat.setMatrix(modelMat);
+		orientation.set(orient);
+		refit();
+	}
+	
+	@Override
+	public void setData(Mat4 modelMat){
+		this.modelMat.setMatrix(modelMat);
+		orientation.set(0,0,0);
+		refit();
+	}
+	
+	@Override
+	public Vec3 support(Vec3 direction){
+		return support(direction, new Vec3());
+	}
+	
+	/**
+	 * Finds the vertex of this mesh farthest along the given direction, this is the support point of the convex
+	 * hull of the mesh rather than of the mesh itself
+	 */
+	@Override
+	public Vec3 support(Vec3 direction, Vec3 result){
+		int farthest = 0;
+		float maxDot = -Float.MAX_VALUE;
+		for(int curVert = 0; curVert < numVertices; curVert++){
+			float dotDir = worldX[curVert]*direction.x+worldY[curVert]*direction.y+worldZ[curVert]*direction.z;
+			if(dotDir > maxDot){
+				farthest = curVert;
+				maxDot = dotDir;
+			}
+		}
+		if(numVertices == 0){
+			result.x = result.y = result.z = 0;
+			return result;
+		}
+		result.x = worldX[farthest];
+		result.y = worldY[farthest];
+		result.z = worldZ[farthest];
+		return result;
+	}
+	
+	@Override
+	public CollisionMesh copy(){
+		return new TriangleMeshCollider(this);
+	}
+	
+	@Override
+	public void resetModel(){
+		modelMat.setMatrix(origModel);
+		refit();
+	}
+	
+	@Override
+	public void resetOrientation(){
+		orientation.set(origOrient);
+		refit();
+	}
+	
+	@Override
+	public void reset(){
+		modelMat.setMatrix(origModel);
+		orientation.set(origOrient);
+		refit();
+	}
+}
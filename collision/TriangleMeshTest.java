@@ -0,0 +1,775 @@
+package collision;
+
+import glMath.Mat4;
+import glMath.Quaternion;
+import glMath.Vec3;
+
+/**
+ * Intersection test of a convex collision mesh against a collision mesh made of triangles, such as a
+ * TriangleMeshCollider or a HeightfieldCollider. Only the triangles whose bounds overlap the bounds of the convex mesh
+ * are tested, each of them on its own, and the contacts of every triangle are merged into a single manifold of up to 4
+ * points. The triangles of a solid are only pushed out of along the way they face, the triangles of other meshes push
+ * the convex mesh out towards the side its center is on.
+ * 
+ * Spheres are tested against the closest point of each triangle. Boxes are tested with a separating axis test on the
+ * normal of the triangle, the axes of the box and the cross products of their edges. Any other convex mesh only has
+ * a support function, so whether it touches a triangle is found with the GJK distance between them and the normal is
+ * the axis of least penetration among the normal of the triangle and the normals of its edges in its plane. As with
+ * the box test face axes are preferred over edge axes unless they are clearly deeper.
+ * 
+ * The manifold takes the normal of the deepest contact against the face of a triangle, or of the deepest contact if
+ * none are against a face, so a mesh resting across the shared edges of flat triangles isn't pushed sideways by
+ * them. Only the contacts whose normals are close to it are kept and their depths are measured along it. Of those the deepest, the one farthest from it and the two that span the
+ * largest area with them are stored in the points of the collision data. When the mesh isn't colliding the depth is
+ * the distance to the nearest triangle, found by growing the search bounds until they reach one. The search only
+ * grows to a few times the size of the convex mesh, beyond that the depth is a lower bound of the distance.
+ * 
+ * @author Kevin
+ *
+ */
+public class TriangleMeshTest implements CollisionDispatcher.PairTest {
+	
+	//floats per contact, the point on the convex mesh, the point on the triangle, the normal, the depth and 1 if the
+	//normal is the face normal of the triangle or 0 if it comes from an edge
+	static final int CONTACT_STRIDE = 11;
+	//contacts whose normals are further than about 45 degrees from the normal of the deepest contact are dropped
+	private static final float NORMAL_TOLERANCE = .7f;
+	//an axis only replaces the preferred axis when its separation is larger than the relative tolerance times the
+	//preferred separation plus the absolute tolerance, separations are negative when the meshes overlap
+	private static final float RELATIVE_TOLERANCE = .95f, ABSOLUTE_TOLERANCE = .001f;
+	//cross products shorter than this come from nearly parallel edges, the face axes already cover them
+	private static final float PARALLEL_EPSILON = 1e-4f;
+	//smallest squared length a vector can have and still be normalized reliably
+	private static final float EPSILON = 1e-12f;
+	//the search for the nearest triangle of a mesh that isn't collided with stops once its bounds have grown by this
+	//many times the size of the convex mesh, the distance is then only known to be at least the margin searched
+	private static final float SEARCH_LIMIT = 8;
+	
+	private static final int SHAPE_SPHERE = 0, SHAPE_BOX = 1, SHAPE_CONVEX = 2;
+	
+	/**
+	 * Collision mesh made of triangles that can be found by the bounds they overlap
+	 */
+	public interface TriangleSource {
+		
+		/**
+		 * Finds the triangles whose bounds overlap the given box
+		 * 
+		 * @param bounds Box to test as the minimum x, y, z followed by the maximum x, y, z
+		 * @param workspace Workspace whose mesh stack can be used for the search and whose mesh triangles receive the
+		 * indices of the overlapping triangles
+		 * @return Number of overlapping triangles
+		 */
+		public int overlapping(float[] bounds, GJKWorkspace workspace);
+		
+		/**
+		 * Gets the world space vertices of the triangle at the given index
+		 * 
+		 * @param index Index of the triangle
+		 * @param a Vector to store the first vertex in
+		 * @param b Vector to store the second vertex in
+		 * @param c Vector to store the third vertex in
+		 */
+		public void getTriangle(int index, Vec3 a, Vec3 b, Vec3 c);
+		
+		/**
+		 * Gets whether the space behind the triangles is solid, the triangles face away from it by their counter
+		 * clockwise winding
+		 * 
+		 * @return True if the triangles bound a solid, false if they are only a surface
+		 */
+		public boolean isSolid();
+	}
+	
+	@Override
+	public CollisionData intersect(CollisionMesh objA, CollisionMesh objB, CollisionData result, GJKWorkspace workspace){
+		TriangleSource mesh = (TriangleSource)objB;
+		boolean solid = mesh.isSolid();
+		float[] bounds = getBounds(objA, workspace.boundsA, workspace);
+		int numTriangles = mesh.overlapping(bounds, workspace);
+		
+		int shape = SHAPE_CONVEX;
+		if(objA instanceof BoundingSphere){
+			shape = SHAPE_SPHERE;
+		}else if(BoxSAT.getBox(objA, workspace.boxAxes, workspace.boxExtents, workspace.supportA)){
+			shape = SHAPE_BOX;
+		}
+		
+		workspace.numMeshContacts = 0;
+		Vec3[] triangle = workspace.triangle;
+		for(int curTriangle = 0; curTriangle < numTriangles; curTriangle++){
+			mesh.getTriangle(workspace.meshTriangles[curTriangle], triangle[0], triangle[1], triangle[2]);
+			//the separations are only lower bounds for boxes, the exact distance is found if none of them collide
+			if(shape == SHAPE_SPHERE){
+				sphereTriangle((BoundingSphere)objA, solid, workspace);
+			}else{
+				convexTriangle(objA, shape == SHAPE_BOX, solid, workspace);
+			}
+		}
+		
+		if(workspace.numMeshContacts == 0){
+			result.reset();
+			result.depth = distance(objA, shape == SHAPE_SPHERE, objB, numTriangles, workspace);
+			return result;
+		}
+		return reduce(result, workspace);
+	}
+	
+	/**
+	 * Finds the distance between a convex mesh and the triangles of a mesh it doesn't collide with. The search bounds
+	 * grow from the bounds of the convex mesh by its size, doubling the step each time, until they reach a triangle.
+	 * Every triangle closer than the nearest one found overlaps the bounds grown by its distance so one more search
+	 * over those bounds gives the exact distance.
+	 * 
+	 * The bounds grow no more than SEARCH_LIMIT times the size of the convex mesh, so the cost of the search depends on
+	 * the size of the convex mesh rather than how far it is from the triangles. When no triangle is within that margin
+	 * the margin is returned, or the gap to the bounds of the mesh if that is larger, as a lower bound of the distance.
+	 * 
+	 * @param numTriangles Number of triangles the first search found in the workspace
+	 * @return Distance to the nearest triangle or a lower bound of it, or the largest float if the mesh has no
+	 * triangles
+	 */
+	private static float distance(CollisionMesh convex, boolean isSphere, CollisionMesh meshShape, int numTriangles, GJKWorkspace workspace){
+		TriangleSource mesh = (TriangleSource)meshShape;
+		float[] bounds = workspace.boundsA;
+		float[] meshBounds = getBounds(meshShape, workspace.boundsB, workspace);
+		//margin the bounds need to cover the whole mesh, no triangle can be found beyond it, and the gap between the
+		//bounds of the meshes, no triangle can be closer than it
+		float limit = 0, gap = 0;
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			limit = Math.max(limit, Math.max(bounds[curAxis]-meshBounds[curAxis], meshBounds[curAxis+3]-bounds[curAxis+3]));
+			gap = Math.max(gap, Math.max(meshBounds[curAxis]-bounds[curAxis+3], bounds[curAxis]-meshBounds[curAxis+3]));
+		}
+		float size = Math.max(bounds[3]-bounds[0], Math.max(bounds[4]-bounds[1], bounds[5]-bounds[2]));
+		float searchLimit = Math.min(limit, SEARCH_LIMIT*size);
+		float nearest = nearest(convex, isSphere, mesh, numTriangles, workspace);
+		float margin = 0;
+		float grow = size;
+		//nothing is searched if the meshes are further apart than the search could reach
+		while(nearest == Float.MAX_VALUE && margin < searchLimit && gap < searchLimit){
+			float step = Math.min(grow, searchLimit-margin);
+			expand(bounds, step);
+			margin += step;
+			grow *= 2;
+			nearest = nearest(convex, isSphere, mesh, mesh.overlapping(bounds, workspace), workspace);
+		}
+		if(nearest == Float.MAX_VALUE){
+			//the mesh has no triangles if the whole of it was searched
+			return margin < limit ? Math.max(margin, gap) : nearest;
+		}
+		if(nearest > margin){
+			float reach = Math.min(nearest, searchLimit);
+			expand(bounds, reach-margin);
+			nearest = Math.min(nearest, nearest(convex, isSphere, mesh, mesh.overlapping(bounds, workspace), workspace));
+			//a closer triangle could be beyond the bounds if they stopped short of the nearest one found
+			if(nearest > reach){
+				return Math.max(reach, gap);
+			}
+		}
+		return nearest;
+	}
+	
+	/**
+	 * Finds the distance from a convex mesh to the nearest of the triangles found by the last search of the workspace
+	 */
+	private static float nearest(CollisionMesh convex, boolean isSphere, TriangleSource mesh, int numTriangles, GJKWorkspace workspace){
+		float nearest = Float.MAX_VALUE;
+		Vec3[] triangle = workspace.triangle;
+		for(int curTriangle = 0; curTriangle < numTriangles; curTriangle++){
+			mesh.getTriangle(workspace.meshTriangles[curTriangle], triangle[0], triangle[1], triangle[2]);
+			float distance;
+			if(isSphere){
+				BoundingSphere sphere = (BoundingSphere)convex;
+				Vec3 center = sphere.getCenter(workspace.aPoint);
+				Vec3 closest = closestOnTriangle(center, triangle, workspace.bPoint);
+				float dX = center.x-closest.x, dY = center.y-closest.y, dZ = center.z-closest.z;
+				distance = (float)Math.sqrt(dX*dX+dY*dY+dZ*dZ)-sphere.getRadius();
+			}else{
+				distance = workspace.distanceQuery.distance(convex, workspace.triangleShape);
+			}
+			nearest = Math.min(nearest, Math.max(distance, 0));
+		}
+		return nearest;
+	}
+	
+	private static void expand(float[] bounds, float margin){
+		for(int curAxis = 0; curAxis < 3; curAxis++){
+			bounds[curAxis] -= margin;
+			bounds[curAxis+3] += margin;
+		}
+	}
+	
+	/**
+	 * Tests a sphere against the triangle in the workspace adding a contact if they collide
+	 * 
+	 * @param solid Whether the triangle bounds a solid the sphere has to be pushed out of along its face
+	 * @return Distance between the sphere and the triangle, negative by the depth when they collide
+	 */
+	private static float sphereTriangle(BoundingSphere sphere, boolean solid, GJKWorkspace workspace){
+		Vec3 center = sphere.getCenter(workspace.aPoint);
+		float radius = sphere.getRadius();
+		Vec3 closest = closestOnTriangle(center, workspace.triangle, workspace.bPoint);
+		float dX = center.x-closest.x, dY = center.y-closest.y, dZ = center.z-closest.z;
+		float distSq = dX*dX+dY*dY+dZ*dZ;
+		if(distSq >= radius*radius){
+			return (float)Math.sqrt(distSq)-radius;
+		}
+		float distance = (float)Math.sqrt(distSq);
+		Vec3 normal = workspace.normal;
+		if(solid && triangleNormal(workspace.triangle, normal) && normal.dot(center) < normal.dot(workspace.triangle[0])){
+			//a center behind the face of a solid is pushed back out through the face
+			float depth = radius+normal.dot(workspace.triangle[0])-normal.dot(center);
+			float aX = center.x-normal.x*radius, aY = center.y-normal.y*radius, aZ = center.z-normal.z*radius;
+			addContact(workspace, aX, aY, aZ, aX+normal.x*depth, aY+normal.y*depth, aZ+normal.z*depth, normal, depth, true);
+			return -depth;
+		}
+		if(distSq > EPSILON){
+			normal.set(dX/distance, dY/distance, dZ/distance);
+		}else if(!triangleNormal(workspace.triangle, normal)){
+			return Float.MAX_VALUE;
+		}
+		addContact(workspace, center.x-normal.x*radius, center.y-normal.y*radius, center.z-normal.z*radius,
+				closest.x, closest.y, closest.z, normal, radius-distance, true);
+		return distance-radius;
+	}
+	
+	/**
+	 * Tests a box or other convex mesh against the triangle in the workspace along the candidate separating axes,
+	 * adding the contacts of the axis of least penetration if no axis separates them
+	 * 
+	 * @param isBox Whether the mesh is a box whose axes and extents are in the workspace
+	 * @param solid Whether the triangle bounds a solid the mesh has to be pushed out of along its face
+	 * @return Largest separation along the tested axes, negative by the depth when they collide
+	 */
+	private static float convexTriangle(CollisionMesh convex, boolean isBox, boolean solid, GJKWorkspace workspace){
+		Vec3[] triangle = workspace.triangle;
+		Vec3 faceNormal = workspace.abc;
+		if(!triangleNormal(triangle, faceNormal)){
+			return Float.MAX_VALUE;
+		}
+		//the distance query is exact for meshes that only have a support function, the axes below only choose the
+		//normal once they are known to touch
+		if(!isBox){
+			float distance = workspace.distanceQuery.distance(convex, workspace.triangleShape);
+			if(distance > 0){
+				return distance;
+			}
+		}
+		Vec3 axis = workspace.direction, edge = workspace.ab;
+		Vec3[] boxAxes = workspace.boxAxes;
+		
+		//the face of the triangle is pushed out towards the side the center of the mesh is on, or the side it faces
+		//for a solid
+		Vec3 center = isBox ? workspace.supportA : convex.getCenter(workspace.ao);
+		float side = solid ? 1 : faceNormal.dot(center)-faceNormal.dot(triangle[0]);
+		float faceSeparation = separation(convex, isBox, faceNormal, side >= 0 ? 1 : -1, workspace);
+		if(faceSeparation > 0){
+			return faceSeparation;
+		}
+		float bestSeparation = faceSeparation;
+		//0 for the face of the triangle, 1 to 3 for the axes of the box and 4 onwards for the edge axes
+		int bestAxis = 0;
+		float bestSign = side >= 0 ? 1 : -1;
+		
+		int numAxes = isBox ? 3+9 : 3;
+		for(int curAxis = 0; curAxis < numAxes; curAxis++){
+			if(isBox && curAxis < 3){
+				axis.set(boxAxes[curAxis]);
+			}else{
+				int curEdge = isBox ? (curAxis-3)/3 : curAxis;
+				edge.set(triangle[(curEdge+1)%3]).subtract(triangle[curEdge]);
+				//the edges of the triangle are crossed with the axes of the box, or with the normal of the triangle
+				//to get the normal of the edge in the plane of the triangle
+				edge.cross(isBox ? boxAxes[(curAxis-3)%3] : faceNormal, axis);
+				float length = axis.length();
+				if(length < PARALLEL_EPSILON*edge.length()){
+					continue;
+				}
+				axis.scale(1/length);
+			}
+			//the axes are turned to point from the triangle towards the mesh
+			float sign = axis.dot(center) >= centroidDot(triangle, axis) ? 1 : -1;
+			float separation = separation(convex, isBox, axis, sign, workspace);
+			if(separation > 0){
+				return separation;
+			}
+			//the face is tested first and the axes of the box before the edge axes, so each kind of axis is preferred
+			//over the ones after it
+			if(separation > RELATIVE_TOLERANCE*bestSeparation+ABSOLUTE_TOLERANCE){
+				bestSeparation = separation;
+				bestAxis = isBox && curAxis < 3 ? curAxis+1 : 4;
+				bestSign = sign;
+				workspace.coords.set(axis);
+			}
+		}
+		
+		Vec3 normal = workspace.normal;
+		if(bestAxis == 0){
+			normal.set(faceNormal).scale(bestSign);
+		}else{
+			normal.set(workspace.coords).scale(bestSign);
+		}
+		int added = 0;
+		if(isBox && bestAxis == 0){
+			added = boxCorners(normal, workspace);
+		}else if(isBox && bestAxis <= 3){
+			added = triangleCorners(normal, -bestSeparation, workspace);
+		}
+		if(added == 0){
+			addDeepest(convex, normal, -bestSeparation, bestAxis == 0, workspace);
+		}
+		//the face contacts are kept as well, the edge axis is only the way out of this one triangle while the faces
+		//of the triangles around it may cover that way
+		if(bestAxis != 0){
+			normal.set(faceNormal).scale(side >= 0 ? 1 : -1);
+			if(!isBox || boxCorners(normal, workspace) == 0){
+				addDeepest(convex, normal, -faceSeparation, true, workspace);
+			}
+		}
+		return bestSeparation;
+	}
+	
+	/**
+	 * Adds a contact for the deepest point of the mesh along the given normal pushed out onto the surface of the triangle
+	 */
+	private static void addDeepest(CollisionMesh convex, Vec3 normal, float depth, boolean face, GJKWorkspace workspace){
+		Vec3 deepest = convex.support(workspace.temp.set(normal).scale(-1), workspace.aPoint);
+		addContact(workspace, deepest.x, deepest.y, deepest.z,
+				deepest.x+normal.x*depth, deepest.y+normal.y*depth, deepest.z+normal.z*depth, normal, depth, face);
+	}
+	
+	/**
+	 * Computes the separation of the mesh from the triangle in the workspace along the given axis turned by the given
+	 * sign, the separation is positive when their projections don't overlap and negative by how far the mesh would
+	 * have to move along the turned axis to leave the triangle otherwise
+	 */
+	private static float separation(CollisionMesh convex, boolean isBox, Vec3 axis, float sign, GJKWorkspace workspace){
+		Vec3[] triangle = workspace.triangle;
+		//highest point of the triangle and lowest point of the mesh along the turned axis
+		float triMax = Math.max(triangle[0].dot(axis)*sign, Math.max(triangle[1].dot(axis)*sign, triangle[2].dot(axis)*sign));
+		float meshMin;
+		if(isBox){
+			Vec3[] boxAxes = workspace.boxAxes;
+			float[] extents = workspace.boxExtents;
+			float radius = extents[0]*Math.abs(boxAxes[0].dot(axis))+extents[1]*Math.abs(boxAxes[1].dot(axis))+
+					extents[2]*Math.abs(boxAxes[2].dot(axis));
+			meshMin = workspace.supportA.dot(axis)*sign-radius;
+		}else{
+			Vec3 direction = workspace.temp.set(axis).scale(-sign);
+			meshMin = convex.support(direction, workspace.bPoint).dot(axis)*sign;
+		}
+		return meshMin-triMax;
+	}
+	
+	private static float centroidDot(Vec3[] triangle, Vec3 axis){
+		return (triangle[0].dot(axis)+triangle[1].dot(axis)+triangle[2].dot(axis))/3;
+	}
+	
+	/**
+	 * Adds a contact for each corner of the box in the workspace that is behind the face of the triangle along the
+	 * given normal and inside the edges of the triangle
+	 * 
+	 * @return Number of contacts that were added
+	 */
+	private static int boxCorners(Vec3 normal, GJKWorkspace workspace){
+		Vec3[] triangle = workspace.triangle;
+		Vec3[] boxAxes = workspace.boxAxes;
+		float[] extents = workspace.boxExtents;
+		Vec3 center = workspace.supportA, corner = workspace.aPoint;
+		float planeDist = normal.dot(triangle[0]);
+		int added = 0;
+		for(int curCorner = 0; curCorner < 8; curCorner++){
+			corner.set(center);
+			for(int curAxis = 0; curAxis < 3; curAxis++){
+				float extent = (curCorner & (1 << curAxis)) == 0 ? -extents[curAxis] : extents[curAxis];
+				corner.x += boxAxes[curAxis].x*extent;
+				corner.y += boxAxes[curAxis].y*extent;
+				corner.z += boxAxes[curAxis].z*extent;
+			}
+			float depth = planeDist-normal.dot(corner);
+			if(depth > 0 && insideTriangle(corner, normal, triangle)){
+				addContact(workspace, corner.x, corner.y, corner.z,
+						corner.x+normal.x*depth, corner.y+normal.y*depth, corner.z+normal.z*depth, normal, depth, true);
+				added++;
+			}
+		}
+		return added;
+	}
+	
+	/**
+	 * Adds a contact for each corner of the triangle in the workspace that is inside the box in the workspace, the
+	 * depth of each is measured from the face of the box facing away from the given normal
+	 * 
+	 * @return Number of contacts that were added
+	 */
+	private static int triangleCorners(Vec3 normal, float depth, GJKWorkspace workspace){
+		Vec3[] triangle = workspace.triangle;
+		Vec3[] boxAxes = workspace.boxAxes;
+		float[] extents = workspace.boxExtents;
+		Vec3 center = workspace.supportA, offset = workspace.temp;
+		float radius = extents[0]*Math.abs(boxAxes[0].dot(normal))+extents[1]*Math.abs(boxAxes[1].dot(normal))+
+				extents[2]*Math.abs(boxAxes[2].dot(normal));
+		float faceDist = center.dot(normal)-radius;
+		int added = 0;
+		for(int curCorner = 0; curCorner < 3; curCorner++){
+			Vec3 corner = triangle[curCorner];
+			offset.set(corner).subtract(center);
+			if(Math.abs(offset.dot(boxAxes[0])) > extents[0] || Math.abs(offset.dot(boxAxes[1])) > extents[1] ||
+					Math.abs(offset.dot(boxAxes[2])) > extents[2]){
+				continue;
+			}
+			float cornerDepth = Math.min(corner.dot(normal)-faceDist, depth);
+			addContact(workspace, corner.x-normal.x*cornerDepth, corner.y-normal.y*cornerDepth, corner.z-normal.z*cornerDepth,
+					corner.x, corner.y, corner.z, normal, cornerDepth, false);
+			added++;
+		}
+		return added;
+	}
+	
+	/**
+	 * Merges the contacts found against all the triangles into a manifold sharing the normal of the deepest contact
+	 */
+	private static CollisionData reduce(CollisionData result, GJKWorkspace workspace){
+		float[] contacts = workspace.meshContacts;
+		int numContacts = workspace.numMeshContacts;
+		int deepest = 0;
+		for(int curContact = 1; curContact < numContacts; curContact++){
+			int contact = curContact*CONTACT_STRIDE, best = deepest*CONTACT_STRIDE;
+			//contacts against faces come before the deeper ones against edges
+			if(contacts[contact+10] > contacts[best+10] ||
+					(contacts[contact+10] == contacts[best+10] && contacts[contact+9] > contacts[best+9])){
+				deepest = curContact;
+			}
+		}
+		int base = deepest*CONTACT_STRIDE;
+		float normalX = contacts[base+6], normalY = contacts[base+7], normalZ = contacts[base+8];
+		
+		//measure the kept contacts along the shared normal, dropped contacts get a depth of 0
+		for(int curContact = 0; curContact < numContacts; curContact++){
+			int contact = curContact*CONTACT_STRIDE;
+			float alignment = contacts[contact+6]*normalX+contacts[contact+7]*normalY+contacts[contact+8]*normalZ;
+			contacts[contact+9] = alignment < NORMAL_TOLERANCE ? 0 :
+				(contacts[contact+3]-contacts[contact])*normalX+(contacts[contact+4]-contacts[contact+1])*normalY+
+				(contacts[contact+5]-contacts[contact+2])*normalZ;
+		}
+		
+		//the point farthest from the deepest one
+		int second = -1;
+		float maxDistSq = EPSILON;
+		for(int curContact = 0; curContact < numContacts; curContact++){
+			int contact = curContact*CONTACT_STRIDE;
+			if(contacts[contact+9] <= 0){
+				continue;
+			}
+			float dX = contacts[contact]-contacts[base], dY = contacts[contact+1]-contacts[base+1], dZ = contacts[contact+2]-contacts[base+2];
+			float distSq = dX*dX+dY*dY+dZ*dZ;
+			if(distSq > maxDistSq){
+				maxDistSq = distSq;
+				second = curContact;
+			}
+		}
+		//the point spanning the largest triangle with them, and the point furthest outside that triangle
+		int third = -1, fourth = -1;
+		if(second != -1){
+			float maxArea = EPSILON;
+			for(int curContact = 0; curContact < numContacts; curContact++){
+				if(contacts[curContact*CONTACT_STRIDE+9] > 0){
+					float area = Math.abs(area(contacts, deepest, second, curContact, normalX, normalY, normalZ));
+					if(area > maxArea){
+						maxArea = area;
+						third = curContact;
+					}
+				}
+			}
+		}
+		if(third != -1){
+			float winding = area(contacts, deepest, second, third, normalX, normalY, normalZ) > 0 ? 1 : -1;
+			float maxOutside = EPSILON;
+			for(int curContact = 0; curContact < numContacts; curContact++){
+				if(contacts[curContact*CONTACT_STRIDE+9] > 0){
+					float inside = Math.min(area(contacts, deepest, second, curContact, normalX, normalY, normalZ)*winding,
+							Math.min(area(contacts, second, third, curContact, normalX, normalY, normalZ)*winding,
+									area(contacts, third, deepest, curContact, normalX, normalY, normalZ)*winding));
+					if(-inside > maxOutside){
+						maxOutside = -inside;
+						fourth = curContact;
+					}
+				}
+			}
+		}
+		
+		Vec3 normal = workspace.normal.set(normalX, normalY, normalZ);
+		Vec3 pointA = workspace.aPoint, pointB = workspace.bPoint;
+		setPoints(contacts, deepest, normal, pointA, pointB);
+		result.set(normal, pointA, pointB, contacts[base+9], true);
+		result.addPoint(pointA, pointB, contacts[base+9]);
+		addPoint(result, contacts, second, workspace);
+		addPoint(result, contacts, third, workspace);
+		addPoint(result, contacts, fourth, workspace);
+		return result;
+	}
+	
+	/**
+	 * Adds the contact at the given index to the manifold of the result, indices of -1 are skipped
+	 */
+	private static void addPoint(CollisionData result, float[] contacts, int index, GJKWorkspace workspace){
+		if(index != -1){
+			setPoints(contacts, index, workspace.normal, workspace.aPoint, workspace.bPoint);
+			result.addPoint(workspace.aPoint, workspace.bPoint, contacts[index*CONTACT_STRIDE+9]);
+		}
+	}
+	
+	/**
+	 * Sets the given points to the point of the given contact on the convex mesh and that point pushed out along the
+	 * shared normal by the depth of the contact
+	 */
+	private static void setPoints(float[] contacts, int index, Vec3 normal, Vec3 pointA, Vec3 pointB){
+		int contact = index*CONTACT_STRIDE;
+		float depth = contacts[contact+9];
+		pointA.set(contacts[contact], contacts[contact+1], contacts[contact+2]);
+		pointB.set(pointA.x+normal.x*depth, pointA.y+normal.y*depth, pointA.z+normal.z*depth);
+	}
+	
+	/**
+	 * Computes twice the signed area of the triangle of the points of the given contacts on the convex mesh, projected
+	 * onto the plane of the given normal
+	 */
+	private static float area(float[] contacts, int first, int second, int third, float normalX, float normalY, float normalZ){
+		int a = first*CONTACT_STRIDE, b = second*CONTACT_STRIDE, c = third*CONTACT_STRIDE;
+		float abX = contacts[b]-contacts[a], abY = contacts[b+1]-contacts[a+1], abZ = contacts[b+2]-contacts[a+2];
+		float acX = contacts[c]-contacts[a], acY = contacts[c+1]-contacts[a+1], acZ = contacts[c+2]-contacts[a+2];
+		return (abY*acZ-abZ*acY)*normalX+(abZ*acX-abX*acZ)*normalY+(abX*acY-abY*acX)*normalZ;
+	}
+	
+	private static void addContact(GJKWorkspace workspace, float aX, float aY, float aZ, float bX, float bY, float bZ,
+			Vec3 normal, float depth, boolean face){
+		int contact = workspace.numMeshContacts*CONTACT_STRIDE;
+		if(contact+CONTACT_STRIDE > workspace.meshContacts.length){
+			float[] grown = new float[workspace.meshContacts.length*2];
+			System.arraycopy(workspace.meshContacts, 0, grown, 0, workspace.meshContacts.length);
+			workspace.meshContacts = grown;
+		}
+		float[] contacts = workspace.meshContacts;
+		contacts[contact] = aX;
+		contacts[contact+1] = aY;
+		contacts[contact+2] = aZ;
+		contacts[contact+3] = bX;
+		contacts[contact+4] = bY;
+		contacts[contact+5] = bZ;
+		contacts[contact+6] = normal.x;
+		contacts[contact+7] = normal.y;
+		contacts[contact+8] = normal.z;
+		contacts[contact+9] = depth;
+		contacts[contact+10] = face ? 1 : 0;
+		workspace.numMeshContacts++;
+	}
+	
+	/**
+	 * Computes the unit normal of the given triangle, facing the side its vertices are wound counter clockwise from
+	 * 
+	 * @return False if the triangle is degenerate and has no normal
+	 */
+	private static boolean triangleNormal(Vec3[] triangle, Vec3 result){
+		float abX = triangle[1].x-triangle[0].x, abY = triangle[1].y-triangle[0].y, abZ = triangle[1].z-triangle[0].z;
+		float acX = triangle[2].x-triangle[0].x, acY = triangle[2].y-triangle[0].y, acZ = triangle[2].z-triangle[0].z;
+		float x = abY*acZ-abZ*acY, y = abZ*acX-abX*acZ, z = abX*acY-abY*acX;
+		float lengthSq = x*x+y*y+z*z;
+		if(lengthSq <= EPSILON){
+			return false;
+		}
+		float length = (float)Math.sqrt(lengthSq);
+		result.set(x/length, y/length, z/length);
+		return true;
+	}
+	
+	/**
+	 * Determines whether the given point projects onto the given triangle along the given normal
+	 */
+	private static boolean insideTriangle(Vec3 point, Vec3 normal, Vec3[] triangle){
+		for(int curEdge = 0; curEdge < 3; curEdge++){
+			Vec3 start = triangle[curEdge], end = triangle[(curEdge+1)%3];
+			float edgeX = end.x-start.x, edgeY = end.y-start.y, edgeZ = end.z-start.z;
+			float toX = point.x-start.x, toY = point.y-start.y, toZ = point.z-start.z;
+			float side = (edgeY*toZ-edgeZ*toY)*normal.x+(edgeZ*toX-edgeX*toZ)*normal.y+(edgeX*toY-edgeY*toX)*normal.z;
+			if(side < 0){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds the point on the given triangle closest to the given point by the regions of its vertices, edges and face
+	 */
+	private static Vec3 closestOnTriangle(Vec3 point, Vec3[] triangle, Vec3 result){
+		Vec3 a = triangle[0], b = triangle[1], c = triangle[2];
+		float abX = b.x-a.x, abY = b.y-a.y, abZ = b.z-a.z;
+		float acX = c.x-a.x, acY = c.y-a.y, acZ = c.z-a.z;
+		float apX = point.x-a.x, apY = point.y-a.y, apZ = point.z-a.z;
+		float d1 = abX*apX+abY*apY+abZ*apZ, d2 = acX*apX+acY*apY+acZ*apZ;
+		if(d1 <= 0 && d2 <= 0){
+			return result.set(a);
+		}
+		float bpX = point.x-b.x, bpY = point.y-b.y, bpZ = point.z-b.z;
+		float d3 = abX*bpX+abY*bpY+abZ*bpZ, d4 = acX*bpX+acY*bpY+acZ*bpZ;
+		if(d3 >= 0 && d4 <= d3){
+			return result.set(b);
+		}
+		float vc = d1*d4-d3*d2;
+		if(vc <= 0 && d1 >= 0 && d3 <= 0){
+			float v = d1/(d1-d3);
+			return result.set(a.x+abX*v, a.y+abY*v, a.z+abZ*v);
+		}
+		float cpX = point.x-c.x, cpY = point.y-c.y, cpZ = point.z-c.z;
+		float d5 = abX*cpX+abY*cpY+abZ*cpZ, d6 = acX*cpX+acY*cpY+acZ*cpZ;
+		if(d6 >= 0 && d5 <= d6){
+			return result.set(c);
+		}
+		float vb = d5*d2-d1*d6;
+		if(vb <= 0 && d2 >= 0 && d6 <= 0){
+			float w = d2/(d2-d6);
+			return result.set(a.x+acX*w, a.y+acY*w, a.z+acZ*w);
+		}
+		float va = d3*d6-d5*d4;
+		if(va <= 0 && d4-d3 >= 0 && d5-d6 >= 0){
+			float w = (d4-d3)/((d4-d3)+(d5-d6));
+			return result.set(b.x+(c.x-b.x)*w, b.y+(c.y-b.y)*w, b.z+(c.z-b.z)*w);
+		}
+		float denom = 1/(va+vb+vc);
+		float v = vb*denom, w = vc*denom;
+		return result.set(a.x+abX*v+acX*w, a.y+abY*v+acY*w, a.z+abZ*v+acZ*w);
+	}
+	
+	/**
+	 * Computes the world bounds of the given mesh from its support points along the axes
+	 */
+	private static float[] getBounds(CollisionMesh mesh, float[] bounds, GJKWorkspace workspace){
+		Vec3 direction = workspace.direction, point = workspace.temp;
+		bounds[0] = mesh.support(direction.set(-1, 0, 0), point).x;
+		bounds[1] = mesh.support(direction.set(0, -1, 0), point).y;
+		bounds[2] = mesh.support(direction.set(0, 0, -1), point).z;
+		bounds[3] = mesh.support(direction.set(1, 0, 0), point).x;
+		bounds[4] = mesh.support(direction.set(0, 1, 0), point).y;
+		bounds[5] = mesh.support(direction.set(0, 0, 1), point).z;
+		return bounds;
+	}
+	
+	/**
+	 * The triangle being tested by a workspace as a collision mesh for the distance query, its vertices are the
+	 * triangle of the workspace so it is only ever moved by the test changing them
+	 */
+	static final class TriangleShape implements CollisionMesh{
+		private final Vec3[] vertices;
+		
+		TriangleShape(Vec3[] vertices){
+			this.vertices = vertices;
+		}
+		
+		@Override
+		public Vec3 getCenter(){
+			return getCenter(new Vec3());
+		}
+		
+		@Override
+		public Vec3 getCenter(Vec3 result){
+			result.x = (vertices[0].x+vertices[1].x+vertices[2].x)/3;
+			result.y = (vertices[0].y+vertices[1].y+vertices[2].y)/3;
+			result.z = (vertices[0].z+vertices[1].z+vertices[2].z)/3;
+			return result;
+		}
+		
+		@Override
+		public Vec3 support(Vec3 direction){
+			return support(direction, new Vec3());
+		}
+		
+		@Override
+		public Vec3 support(Vec3 direction, Vec3 result){
+			float dotA = vertices[0].dot(direction), dotB = vertices[1].dot(direction), dotC = vertices[2].dot(direction);
+			if(dotA >= dotB && dotA >= dotC){
+				return result.set(vertices[0]);
+			}
+			return result.set(dotB >= dotC ? vertices[1] : vertices[2]);
+		}
+		
+		@Override
+		public CollisionMesh copy(){
+			return new TriangleShape(new Vec3[]{new Vec3(vertices[0]), new Vec3(vertices[1]), new Vec3(vertices[2])});
+		}
+		
+		@Override
+		public void setData(Mat4 modelMat, Quaternion orient){
+			
+		}
+		
+		@Override
+		public void setData(Mat4 modelMat){
+			
+		}
+		
+		@Override
+		public void resetModel(){
+			
+		}
+		
+		@Override
+		public void resetOrientation(){
+			
+		}
+		
+		@Override
+		public void reset(){
+			
+		}
+		
+		@Override
+		public void translate(float x, float y, float z){
+			
+		}
+		
+		@Override
+		public void translate(Vec3 translation){
+			
+		}
+		
+		@Override
+		public void scale(float factor){
+			
+		}
+		
+		@Override
+		public void scale(float x, float y, float z){
+			
+		}
+		
+		@Override
+		public void scale(Vec3 scalars){
+			
+		}
+		
+		@Override
+		public void orient(float x, float y, float z, float theta){
+			
+		}
+		
+		@Override
+		public void orient(Vec3 axis, float theta){
+			
+		}
+		
+		@Override
+		public void orient(Vec3 angles){
+			
+		}
+		
+		@Override
+		public void orient(float roll, float pitch, float yaw){
+			
+		}
+		
+		@Override
+		public void setOrientation(Quaternion orient){
+			
+		}
+	}
+}
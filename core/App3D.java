@@ -1,6 +1,7 @@
 package core;
 import java.awt.Dimension;
 import java.awt.Toolkit;
+import java.util.ArrayList;
 
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.DisplayMode;
@@ -19,6 +20,7 @@ public class App3D {
 	private DisplayMode curDisplay;
 	private boolean isFullscreen;
 	private int width, height, screenWidth, screenHeight;
+	private PhysicsWorld world;
 	
 	/**
 	 * Constructs the class that retains information about the display window for the opengl drawing canvas
@@ -29,6 +31,7 @@ public class App3D {
 	 */
 	public App3D(int width, int height, boolean fullScreen){
 		isFullscreen = fullScreen;
+		world = new PhysicsWorld();
 		//get the width and height of the display
 		Toolkit screenTools = Toolkit.getDefaultToolkit();
 		Dimension screen = screenTools.getScreenSize();
@@ -100,14 +103,40 @@ public class App3D {
 			System.exit(-1);
 		}
 		//glClearColor(.5f,.7f,1,1);
+		long lastTime = System.nanoTime();
 		while(!Display.isCloseRequested()){
 			Display.sync(60);
+			long curTime = System.nanoTime();
+			//the world steps at its own fixed rate however long the frame took, renderWorld draws the objects
+			//interpolated by the world's alpha
+			world.update((curTime-lastTime)/1000000000.0f);
+			lastTime = curTime;
 			//do everything else
 			Display.update();
 		}
 		cleanUp();
 	}
 	
+	public PhysicsWorld getWorld(){
+		return world;
+	}
+	
+	/**
+	 * Renders the objects of the world with their transforms interpolated between the last two steps by the alpha of
+	 * the world's last update, so motion stays smooth when the display runs at a different rate than the physics.
+	 * This should be called each frame after the world is updated with the shader that draws the objects.
+	 * 
+	 * @param shader Shader program to render with
+	 * @param model Name of the model matrix uniform
+	 */
+	public void renderWorld(ShaderProgram shader, String model){
+		float alpha = world.getAlpha();
+		ArrayList<GameObject> objects = world.getObjects();
+		for(int curObject = 0; curObject < objects.size(); curObject++){
+			objects.get(curObject).render(shader, model, alpha);
+		}
+	}
+	
 	public void cleanUp(){
 		Display.destroy();
 	}
@@ -9,8 +9,10 @@ import collision.CollisionData;
 import collision.CollisionDetector;
 import collision.ContactPair;
 import glMath.Mat3;
+import glMath.Mat4;
 import glMath.Quaternion;
 import glMath.Vec3;
+import glMath.Vec4;
 import glMath.VecUtil;
 import renderers.Renderable;
 
@@ -20,9 +22,15 @@ public class GameObject{
 	public Vec3 velocity, angVel, position, prevVel, prevPos, origPos, origVel, origAngVel;
 	public float restitution, mass, massInv, gravity, sFriction, dFriction;
 	private boolean isFixed;
+	//sleeping objects are skipped by integration, broadphase updates and the solver until they are woken
+	private boolean awake;
+	//number of consecutive steps this object has been moving slower than the sleep thresholds
+	private int restFrames;
 	public Mat3 invInertiaTensor;
 	public Quaternion origOrientation, prevOrient;
 	private HashMap<ContactPair, ContactPair> contacts;
+	//scratch vector for the angular velocity scaled to a partial step
+	private Vec3 scaledAngVel;
 	
 	public GameObject(Renderable mesh, float staticF, float dynamicF){
 		this(mesh, 0,0,0, staticF, dynamicF);
@@ -67,6 +75,7 @@ public class GameObject{
 		this.prevPos = new Vec3(cX, cY, cZ);
 		
 		this.origOrientation = new Quaternion(this.mesh.getOrientation());
+		this.prevOrient = new Quaternion(this.mesh.getOrientation());
 		
 		this.restitution = elasticity;
 		this.mass = mass;
@@ -80,8 +89,11 @@ public class GameObject{
 		this.prevVel = new Vec3(vX, vY, vZ);
 		this.angVel = new Vec3();
 		this.origAngVel = new Vec3();
+		this.scaledAngVel = new Vec3();
 		
 		this.isFixed = isFixed;
+		this.awake = true;
+		this.restFrames = 0;
 		
 		this.sFriction = staticF;
 		this.dFriction = dynamicF;
@@ -156,11 +168,105 @@ public class GameObject{
 //	}
 	
 	public void update(){
-		velocity.add(0, gravity, 0);
-		mesh.translate(velocity);
-		mesh.setOrientation(mesh.getOrientation().addVector(angVel));
-		angVel.scale(.85f);
-		position.add(velocity);
+		update(1);
+	}
+	
+	/**
+	 * Integrates this object over part of a step, the velocity, angular velocity and gravity of an object are 
+	 * measured per step so a scale of 1 moves the object by its full velocity
+	 * 
+	 * @param scale Fraction of a step to integrate over
+	 */
+	public void update(float scale){
+		if(!awake){
+			return;
+		}
+		velocity.add(0, gravity*scale, 0);
+		if(scale == 1){
+			mesh.translate(velocity);
+			mesh.setOrientation(mesh.getOrientation().addVector(angVel));
+			angVel.scale(.85f);
+			position.add(velocity);
+		}else{
+			mesh.translate(velocity.x*scale, velocity.y*scale, velocity.z*scale);
+			scaledAngVel.set(angVel).scale(scale);
+			mesh.setOrientation(mesh.getOrientation().addVector(scaledAngVel));
+			angVel.scale((float)Math.pow(.85f, scale));
+			position.add(velocity.x*scale, velocity.y*scale, velocity.z*scale);
+		}
+	}
+	
+	/**
+	 * Stores the current position and orientation of this object as its previous state, the previous state is used 
+	 * to interpolate the rendered transform between physics steps
+	 */
+	public void storePrevious(){
+		prevPos.set(position);
+		prevVel.set(velocity);
+		prevOrient.set(mesh.getOrientation());
+	}
+	
+	/**
+	 * Interpolates between the previous and current positions of this object
+	 * 
+	 * @param alpha Interpolation factor, 0 gives the previous position and 1 the current position
+	 * @param result Vector to store the interpolated position in
+	 * @return The result vector
+	 */
+	public Vec3 getInterpolatedPosition(float alpha, Vec3 result){
+		result.x = prevPos.x+(position.x-prevPos.x)*alpha;
+		result.y = prevPos.y+(position.y-prevPos.y)*alpha;
+		result.z = prevPos.z+(position.z-prevPos.z)*alpha;
+		return result;
+	}
+	
+	/**
+	 * Interpolates between the previous and current orientations of this object along the shorter arc, the 
+	 * quaternions are blended linearly and normalized which is close enough to a slerp for the small rotations 
+	 * made in a single step
+	 * 
+	 * @param alpha Interpolation factor, 0 gives the previous orientation and 1 the current orientation
+	 * @param result Quaternion to store the interpolated orientation in
+	 * @return The result quaternion
+	 */
+	public Quaternion getInterpolatedOrientation(float alpha, Quaternion result){
+		Vec4 prev = prevOrient.getData();
+		Vec4 cur = mesh.getOrientation().getData();
+		float sign = prev.x*cur.x+prev.y*cur.y+prev.z*cur.z+prev.w*cur.w < 0 ? -1 : 1;
+		result.set(prev.x+(cur.x*sign-prev.x)*alpha,
+				prev.y+(cur.y*sign-prev.y)*alpha,
+				prev.z+(cur.z*sign-prev.z)*alpha,
+				prev.w+(cur.w*sign-prev.w)*alpha);
+		result.normalize();
+		return result;
+	}
+	
+	/**
+	 * Computes the model matrix of this object at a point between its previous and current states, rendering with 
+	 * this matrix keeps motion smooth when the physics runs at a different rate than the display
+	 * 
+	 * @param alpha Interpolation factor, 0 gives the previous state and 1 the current state
+	 * @return Interpolated model matrix
+	 */
+	public Mat4 getInterpolatedMatrix(float alpha){
+		Vec3 offset = getInterpolatedPosition(alpha, new Vec3()).subtract(position);
+		Mat4 result = getInterpolatedOrientation(alpha, new Quaternion()).asMatrix();
+		//the transform of the mesh is affine and the rotation has no translation, so the upper 3x3 of the transform
+		//rotates the columns of the rotation in place and the translation is the transforms moved by the offset
+		Vec4[] transform = mesh.getTransformMatrix().getMatrix();
+		Vec4[] columns = result.getMatrix();
+		for(int curCol = 0; curCol < 3; curCol++){
+			Vec4 column = columns[curCol];
+			float x = column.x, y = column.y, z = column.z;
+			column.x = transform[0].x*x+transform[1].x*y+transform[2].x*z;
+			column.y = transform[0].y*x+transform[1].y*y+transform[2].y*z;
+			column.z = transform[0].z*x+transform[1].z*y+transform[2].z*z;
+		}
+		Vec4 translation = columns[3];
+		translation.x = transform[3].x+offset.x;
+		translation.y = transform[3].y+offset.y;
+		translation.z = transform[3].z+offset.z;
+		return result;
 	}
 	
 	public void render(){
@@ -178,6 +284,18 @@ public class GameObject{
 		mesh.render();
 	}
 	
+	/**
+	 * Renders this object with its transform interpolated between the last two physics steps
+	 * 
+	 * @param shader Shader program to render with
+	 * @param model Name of the model matrix uniform
+	 * @param alpha Interpolation factor given by the physics world
+	 */
+	public void render(ShaderProgram shader, String model, float alpha){
+		shader.setUniform(model, getInterpolatedMatrix(alpha).asBuffer());
+		mesh.render();
+	}
+	
 	public void orient(float x, float y, float z, float theta){
 		mesh.orient(x,y,z,theta);
 	}
@@ -212,26 +330,32 @@ public class GameObject{
 
 	public void setVelocity(Vec3 velocity) {
 		this.velocity.set(velocity);
+		wake();
 	}
 	
 	public void setVelocity(float x, float y, float z) {
 		this.velocity.set(x,y,z);
+		wake();
 	}
 	
 	public void accelerate(float x, float y, float z){
 		velocity.add(x,y,z);
+		wake();
 	}
 	
 	public void accelerate(Vec3 acceleration){
 		velocity.add(acceleration);
+		wake();
 	}
 	
 	public void decelerate(float x, float y, float z){
 		velocity.subtract(x,y,z);
+		wake();
 	}
 
 	public void decelerate(Vec3 acceleration){
 		velocity.subtract(acceleration);
+		wake();
 	}
 	
 	public float getGravity() {
@@ -254,6 +378,45 @@ public class GameObject{
 		this.isFixed = isFixed;
 	}
 	
+	public boolean isAwake(){
+		return awake;
+	}
+	
+	/**
+	 * Checks whether this object is awake and can be moved by collisions, pairs of objects that are both
+	 * inactive don't need to be tested or solved
+	 * 
+	 * @return True if this object is awake and has finite mass, false otherwise
+	 */
+	public boolean isActive(){
+		return awake && !isFixed && massInv != 0;
+	}
+	
+	/**
+	 * Wakes this object so that it is integrated and solved again, resetting the number of steps it has been at rest
+	 */
+	public void wake(){
+		awake = true;
+		restFrames = 0;
+	}
+	
+	/**
+	 * Puts this object to sleep, stopping it so that it doesn't drift while it isn't being solved
+	 */
+	public void sleep(){
+		awake = false;
+		velocity.set(0, 0, 0);
+		angVel.set(0, 0, 0);
+	}
+	
+	public int getRestFrames(){
+		return restFrames;
+	}
+	
+	public void setRestFrames(int restFrames){
+		this.restFrames = restFrames;
+	}
+	
 	public Vec3 getPosition(){
 		return mesh.getCollisionMesh().getCenter();
 	}
@@ -266,6 +429,7 @@ public class GameObject{
 		this.position.set(origPos);
 		this.velocity.set(origVel);
 		this.angVel.set(origAngVel);
+		wake();
 		
 		mesh.resetModel();
 		mesh.setOrientation(origOrientation);
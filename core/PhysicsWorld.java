@@ -0,0 +1,488 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import collision.AABB;
+import collision.BatchNarrowPhase;
+import collision.BatchRaycast;
+import collision.BroadPhase;
+import collision.CandidatePair;
+import collision.CastResult;
+import collision.CollisionData;
+import collision.ContactRegister;
+import collision.ContinuousCollision;
+import collision.GJKPairCache;
+import collision.IslandManager;
+import collision.SweepAndPrune;
+import glMath.Vec3;
+
+/**
+ * Steps the game objects it contains at a fixed rate independent of the frame rate. The time of each frame is added
+ * to an accumulator and whole steps are taken out of it, with the number of steps per frame capped so that a slow
+ * frame can't cause more and more steps to be taken each frame. The time left in the accumulator gives the
+ * interpolation alpha that objects are rendered with, blending their previous and current states.
+ * 
+ * Each step is split into a number of substeps that integrate, detect and resolve collisions over a fraction of the
+ * step. Velocities and gravity of the objects are measured per reference frame of 1/60 of a second, the rate the
+ * objects were originally updated at, so objects move at the same speed regardless of the step rate.
+ * 
+ * Objects that move further than a fraction of their size in a substep are swept with continuous collision detection
+ * after they are integrated, if the sweep hits another object the mover is pulled back to the time of impact and a
+ * contact is added at the point of impact so the solver stops it instead of letting it pass through.
+ * 
+ * @author Kevin
+ *
+ */
+public class PhysicsWorld {
+	
+	//rate the velocities of game objects are measured at
+	public static final float REFERENCE_RATE = 60;
+	public static final float DEFAULT_TIME_STEP = 1/120.0f;
+	public static final int DEFAULT_MAX_STEPS = 8;
+	public static final int DEFAULT_ITERATIONS = 8;
+	
+	private ArrayList<GameObject> objects;
+	private BroadPhase broadphase;
+	private BatchNarrowPhase narrowphase;
+	private GJKPairCache pairCache;
+	private ContactRegister contacts;
+	private IslandManager islands;
+	private ContinuousCollision continuous;
+	private BatchRaycast raycaster;
+	
+	private float timeStep, accumulator, alpha, ccdThreshold;
+	private boolean ccdEnabled;
+	private long ccdSweeps, ccdHits;
+	private int substeps, maxSteps, iterations;
+	private long stepCount, droppedSteps;
+	
+	private ArrayList<CandidatePair> pairs;
+	//pairs a sweep and prune broadphase reports as having started or stopped overlapping
+	private ArrayList<CandidatePair> addedPairs, removedPairs;
+	private ArrayList<CollisionData> results;
+	private ArrayList<GameObject> sweepCandidates;
+	private CastResult cast, bestCast;
+	private ArrayList<GameObject> rayCandidates;
+	private CollisionData impact;
+	private Vec3 motion, otherMotion, start, otherStart, sweepCenter, sweepHalf;
+	//boxes the broadphase is queried with, their bounds are set in place for each query
+	private AABB sweepBounds, rayBounds;
+	
+	public PhysicsWorld(){
+		this(DEFAULT_TIME_STEP, 1, DEFAULT_MAX_STEPS);
+	}
+	
+	public PhysicsWorld(float timeStep, int substeps, int maxSteps){
+		this(timeStep, substeps, maxSteps, new SweepAndPrune());
+	}
+	
+	/**
+	 * Constructs a physics world stepping at the given rate
+	 * 
+	 * @param timeStep Length of a step in seconds
+	 * @param substeps Number of substeps each step is split into
+	 * @param maxSteps Maximum number of steps taken in a single frame, time beyond this is dropped
+	 * @param broadphase Broadphase used to find the candidate pairs of each substep
+	 */
+	public PhysicsWorld(float timeStep, int substeps, int maxSteps, BroadPhase broadphase){
+		if(timeStep <= 0){
+			System.err.println("Invalid time step "+timeStep+", using "+DEFAULT_TIME_STEP);
+			timeStep = DEFAULT_TIME_STEP;
+		}
+		this.timeStep = timeStep;
+		this.substeps = Math.max(substeps, 1);
+		this.maxSteps = Math.max(maxSteps, 1);
+		this.broadphase = broadphase;
+		iterations = DEFAULT_ITERATIONS;
+		
+		objects = new ArrayList<GameObject>();
+		narrowphase = new BatchNarrowPhase();
+		contacts = new ContactRegister();
+		//pairs tested with gjk start from the direction their last test ended in
+		pairCache = new GJKPairCache();
+		narrowphase.setPairCache(pairCache);
+		contacts.setPairCache(pairCache);
+		islands = new IslandManager();
+		pairs = new ArrayList<CandidatePair>();
+		addedPairs = new ArrayList<CandidatePair>();
+		removedPairs = new ArrayList<CandidatePair>();
+		results = new ArrayList<CollisionData>();
+		continuous = new ContinuousCollision();
+		raycaster = new BatchRaycast();
+		rayCandidates = new ArrayList<GameObject>();
+		ccdThreshold = ContinuousCollision.DEFAULT_MOTION_THRESHOLD;
+		ccdEnabled = true;
+		sweepCandidates = new ArrayList<GameObject>();
+		cast = new CastResult();
+		bestCast = new CastResult();
+		impact = new CollisionData();
+		motion = new Vec3();
+		otherMotion = new Vec3();
+		start = new Vec3();
+		otherStart = new Vec3();
+		sweepCenter = new Vec3();
+		sweepHalf = new Vec3();
+		sweepBounds = new AABB();
+		rayBounds = new AABB();
+		accumulator = 0;
+		alpha = 0;
+	}
+	
+	public void add(GameObject object){
+		objects.add(object);
+		broadphase.add(object);
+	}
+	
+	/**
+	 * Removes an object from the world along with its contacts, the objects it was touching or in an island with are
+	 * woken so nothing is left resting on it
+	 * 
+	 * @param object Object to remove
+	 * @return True if the object was in the world
+	 */
+	public boolean remove(GameObject object){
+		if(objects.remove(object)){
+			broadphase.remove(object);
+			contacts.remove(object);
+			islands.remove(object);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Advances the world by the time of a frame, taking as many whole steps as fit in the accumulated time up to the
+	 * maximum number of steps
+	 * 
+	 * @param frameTime Time passed since the last frame in seconds
+	 * @return Number of steps taken
+	 */
+	public int update(float frameTime){
+		if(frameTime > 0){
+			accumulator += frameTime;
+		}
+		int steps = 0;
+		while(accumulator >= timeStep && steps < maxSteps){
+			step();
+			accumulator -= timeStep;
+			steps++;
+		}
+		//drop the whole steps that didn't fit instead of carrying them over into the next frame
+		if(accumulator >= timeStep){
+			int dropped = (int)(accumulator/timeStep);
+			droppedSteps += dropped;
+			accumulator -= dropped*timeStep;
+		}
+		alpha = accumulator/timeStep;
+		return steps;
+	}
+	
+	/**
+	 * Takes a single step, storing the current state of the objects as their previous state first
+	 */
+	public void step(){
+		for(int curObject = 0; curObject < objects.size(); curObject++){
+			objects.get(curObject).storePrevious();
+		}
+		float scale = timeStep*REFERENCE_RATE/substeps;
+		for(int curSub = 0; curSub < substeps; curSub++){
+			substep(scale);
+		}
+		islands.update(objects, contacts);
+		//only sweep and prune reports the pairs that stopped overlapping so for other broadphases the pairs untested
+		//for a step are dropped
+		pairCache.evict(substeps-1);
+		stepCount++;
+	}
+	
+	private void substep(float scale){
+		for(int curObject = 0; curObject < objects.size(); curObject++){
+			objects.get(curObject).update(scale);
+		}
+		//the sweeps query the broadphase so it's brought up to the end of the substep first, otherwise the objects
+		//around a path would be found where they were a substep ago
+		broadphase.update();
+		if(ccdEnabled){
+			for(int curObject = 0; curObject < objects.size(); curObject++){
+				GameObject object = objects.get(curObject);
+				if(object.isActive()){
+					getMotion(object, scale, motion);
+					if(continuous.needsContinuous(object, motion, ccdThreshold)){
+						sweep(object, scale);
+					}
+				}
+			}
+		}
+		findPairs();
+		narrowphase.intersect(pairs, results);
+		for(int curPair = 0; curPair < pairs.size(); curPair++){
+			CollisionData data = results.get(curPair);
+			if(data.areColliding){
+				CandidatePair pair = pairs.get(curPair);
+				contacts.add(pair.objA, pair.objB, data);
+			}
+		}
+		contacts.resolve(iterations);
+	}
+	
+	/**
+	 * Fills the list of pairs to test in this substep. A sweep and prune broadphase only reports the pairs that started
+	 * or stopped overlapping and the contact register keeps the rest, so only the pairs that started overlapping are
+	 * created rather than every overlapping pair each substep
+	 */
+	private void findPairs(){
+		pairs.clear();
+		if(broadphase instanceof SweepAndPrune){
+			addedPairs.clear();
+			removedPairs.clear();
+			((SweepAndPrune)broadphase).findPairChanges(addedPairs, removedPairs);
+			contacts.updateCandidates(addedPairs, removedPairs);
+			for(CandidatePair pair : contacts.getCandidates()){
+				pairs.add(pair);
+			}
+		}else{
+			broadphase.findPairs(pairs);
+		}
+	}
+	
+	/**
+	 * Sweeps an object that was just integrated from where it started the substep to where it is now against the
+	 * objects around its path, pulling it back to the earliest impact and adding a contact for it
+	 */
+	private void sweep(GameObject object, float scale){
+		ccdSweeps++;
+		//the objects are already at the end of the substep so the sweeps start a whole motion back
+		start.set(motion).scale(-1);
+		
+		//query the broadphase with the volume covering the whole path of the object
+		AABB bounds = object.getBoundingVolume();
+		bounds.getCenter(sweepCenter);
+		sweepHalf.set(1, 1, 1);
+		bounds.support(sweepHalf, sweepHalf).subtract(sweepCenter);
+		//the path is centered halfway back along the motion
+		sweepCenter.x -= motion.x*.5f;
+		sweepCenter.y -= motion.y*.5f;
+		sweepCenter.z -= motion.z*.5f;
+		sweepHalf.x += Math.abs(motion.x)*.5f;
+		sweepHalf.y += Math.abs(motion.y)*.5f;
+		sweepHalf.z += Math.abs(motion.z)*.5f;
+		sweepBounds.setBounds(sweepCenter.x-sweepHalf.x, sweepCenter.y-sweepHalf.y, sweepCenter.z-sweepHalf.z, 
+				sweepCenter.x+sweepHalf.x, sweepCenter.y+sweepHalf.y, sweepCenter.z+sweepHalf.z);
+		sweepCandidates.clear();
+		broadphase.query(sweepBounds, sweepCandidates);
+		
+		GameObject hitObject = null;
+		bestCast.reset();
+		for(int curCandidate = 0; curCandidate < sweepCandidates.size(); curCandidate++){
+			GameObject other = sweepCandidates.get(curCandidate);
+			if(other == object){
+				continue;
+			}
+			getMotion(other, scale, otherMotion);
+			otherStart.set(otherMotion).scale(-1);
+			if(continuous.timeOfImpact(object.mesh.getCollisionMesh(), start, motion, 
+					other.mesh.getCollisionMesh(), otherStart, otherMotion, cast) && cast.fraction < bestCast.fraction){
+				bestCast.set(cast.fraction, cast.point, cast.normal);
+				hitObject = other;
+			}
+		}
+		if(hitObject == null){
+			return;
+		}
+		ccdHits++;
+		//move the object back to where it was at the time of impact
+		float back = 1-bestCast.fraction;
+		object.mesh.translate(-motion.x*back, -motion.y*back, -motion.z*back);
+		object.position.subtract(motion.x*back, motion.y*back, motion.z*back);
+		broadphase.update(object);
+		//the impact point is on the other object at the time of impact, carry it along to where that object is now
+		getMotion(hitObject, scale, otherMotion);
+		bestCast.point.add(otherMotion.x*back, otherMotion.y*back, otherMotion.z*back);
+		impact.set(bestCast.normal, bestCast.point, bestCast.point, 0, true);
+		contacts.add(object, hitObject, impact);
+	}
+	
+	/**
+	 * Gets the translation of an object over the substep that was just integrated
+	 */
+	private void getMotion(GameObject object, float scale, Vec3 result){
+		if(object.isAwake()){
+			result.set(object.velocity).scale(scale);
+		}else{
+			result.set(0, 0, 0);
+		}
+	}
+	
+	/**
+	 * Casts a ray into the world and finds the closest object it hits, the objects the ray could hit are found by
+	 * querying the broadphase with the bounds of the ray
+	 * 
+	 * @param origin Start of the ray
+	 * @param ray Direction of the ray, its length is the furthest the ray is cast
+	 * @param result Cast result to store the closest hit in
+	 * @return Object that was hit or null if the ray didn't hit anything
+	 */
+	public GameObject raycast(Vec3 origin, Vec3 ray, CastResult result){
+		result.reset();
+		rayBounds.setBounds(Math.min(origin.x, origin.x+ray.x), Math.min(origin.y, origin.y+ray.y), Math.min(origin.z, origin.z+ray.z), 
+				Math.max(origin.x, origin.x+ray.x), Math.max(origin.y, origin.y+ray.y), Math.max(origin.z, origin.z+ray.z));
+		rayCandidates.clear();
+		broadphase.query(rayBounds, rayCandidates);
+		for(int curCandidate = 0; curCandidate < rayCandidates.size(); curCandidate++){
+			GameObject candidate = rayCandidates.get(curCandidate);
+			if(BatchRaycast.raycast(origin, ray, candidate.mesh.getCollisionMesh(), cast) 
+					&& (!result.hit || cast.fraction < result.fraction)){
+				result.set(cast.fraction, cast.point, cast.normal);
+				result.iterations = cast.iterations;
+				result.object = candidate;
+			}
+		}
+		rayCandidates.clear();
+		return result.object;
+	}
+	
+	/**
+	 * Casts a batch of rays into the world, the rays are cast in parallel and the result of each ray is stored at
+	 * the same index of the results list
+	 * 
+	 * @param origins Start of each ray
+	 * @param rays Direction of each ray, its length is the furthest the ray is cast
+	 * @param results List to store the result of each ray in
+	 * @param closest Whether each ray should find its closest hit or stop at the first hit, such as for line of sight
+	 * @return Number of rays that hit an object
+	 */
+	public int raycast(List<Vec3> origins, List<Vec3> rays, ArrayList<CastResult> results, boolean closest){
+		return raycaster.raycast(objects, origins, rays, results, closest);
+	}
+	
+	/**
+	 * Gets the interpolation factor between the previous and current states of the objects, this is the fraction of
+	 * a step left in the accumulator after the last update
+	 * 
+	 * @return Interpolation factor between 0 and 1
+	 */
+	public float getAlpha(){
+		return alpha;
+	}
+	
+	public float getTimeStep(){
+		return timeStep;
+	}
+	
+	public void setTimeStep(float timeStep){
+		if(timeStep > 0){
+			this.timeStep = timeStep;
+		}
+	}
+	
+	public int getSubsteps(){
+		return substeps;
+	}
+	
+	public void setSubsteps(int substeps){
+		this.substeps = Math.max(substeps, 1);
+	}
+	
+	public int getMaxSteps(){
+		return maxSteps;
+	}
+	
+	public void setMaxSteps(int maxSteps){
+		this.maxSteps = Math.max(maxSteps, 1);
+	}
+	
+	public int getIterations(){
+		return iterations;
+	}
+	
+	public void setIterations(int iterations){
+		this.iterations = Math.max(iterations, 1);
+	}
+	
+	/**
+	 * Gets the total number of steps taken by this world
+	 * 
+	 * @return Number of steps taken
+	 */
+	public long getStepCount(){
+		return stepCount;
+	}
+	
+	/**
+	 * Gets the number of steps that were dropped because a frame needed more than the maximum number of steps
+	 * 
+	 * @return Number of dropped steps
+	 */
+	public long getDroppedSteps(){
+		return droppedSteps;
+	}
+	
+	public boolean isContinuousEnabled(){
+		return ccdEnabled;
+	}
+	
+	public void setContinuousEnabled(boolean enabled){
+		ccdEnabled = enabled;
+	}
+	
+	/**
+	 * Gets the fraction of its smallest bounding extent an object has to move in a substep before it is swept with
+	 * continuous collision detection
+	 * 
+	 * @return Motion threshold of continuous collision detection
+	 */
+	public float getContinuousThreshold(){
+		return ccdThreshold;
+	}
+	
+	public void setContinuousThreshold(float threshold){
+		ccdThreshold = Math.max(threshold, 0);
+	}
+	
+	/**
+	 * Gets the number of objects that have been swept with continuous collision detection
+	 * 
+	 * @return Number of sweeps
+	 */
+	public long getContinuousSweeps(){
+		return ccdSweeps;
+	}
+	
+	/**
+	 * Gets the number of sweeps that hit another object and pulled the swept object back
+	 * 
+	 * @return Number of sweep hits
+	 */
+	public long getContinuousHits(){
+		return ccdHits;
+	}
+	
+	public BatchRaycast getRaycaster(){
+		return raycaster;
+	}
+	
+	public ContinuousCollision getContinuous(){
+		return continuous;
+	}
+	
+	public ArrayList<GameObject> getObjects(){
+		return objects;
+	}
+	
+	public BroadPhase getBroadPhase(){
+		return broadphase;
+	}
+	
+	public ContactRegister getContacts(){
+		return contacts;
+	}
+	
+	public GJKPairCache getPairCache(){
+		return pairCache;
+	}
+	
+	public IslandManager getIslands(){
+		return islands;
+	}
+}
@@ -249,6 +249,24 @@ public class Mat4 implements Matrix {
 		return null;
 	}
 
+	/**
+	 * Multiplies the given vector by this matrix treating it as a point with a w component of 1, the xyz
+	 * components of the product are stored in the given result vector instead of allocating a new vector
+	 * 
+	 * @param vec Point to transform by this matrix
+	 * @param result Vector to store the transformed point in, this can be the same vector as vec
+	 * @return The result vector post operation
+	 */
+	public Vec3 multVec(Vec3 vec, Vec3 result){
+		float x = matrix[0].x*vec.x+matrix[1].x*vec.y+matrix[2].x*vec.z+matrix[3].x;
+		float y = matrix[0].y*vec.x+matrix[1].y*vec.y+matrix[2].y*vec.z+matrix[3].y;
+		float z = matrix[0].z*vec.x+matrix[1].z*vec.y+matrix[2].z*vec.z+matrix[3].z;
+		result.x = x;
+		result.y = y;
+		result.z = z;
+		return result;
+	}
+
 	@Override
 	public Mat4 multiply(Matrix rhs) {
 		if(rhs instanceof Mat4){
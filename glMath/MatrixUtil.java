@@ -422,4 +422,35 @@ public abstract class MatrixUtil {
 				new Vec4(-((right+left)/(right-left)), -((top+bottom)/(top-bottom)), -(zNear/(zFar-zNear)), 1)
 				);
 	}
+	
+	/**
+	 * Extracts the six clipping planes of the view frustum from the given view projection matrix, the planes are
+	 * stored as the normal and distance of the plane equation ax+by+cz+d with the normals facing the inside of the
+	 * frustum and normalized so that the plane equation gives the distance to the plane
+	 * 
+	 * @param viewProjection Product of the projection matrix and the view matrix
+	 * @param planes Array of at least six vectors to store the left, right, bottom, top, near and far planes in
+	 * @return The planes array post operation
+	 */
+	public static Vec4[] getFrustumPlanes(Mat4 viewProjection, Vec4[] planes){
+		Vec4 col0 = viewProjection.col(0);
+		Vec4 col1 = viewProjection.col(1);
+		Vec4 col2 = viewProjection.col(2);
+		Vec4 col3 = viewProjection.col(3);
+		//each plane is the sum or difference of the last row and one of the other rows of the matrix
+		for(int curPlane = 0; curPlane < 6; curPlane++){
+			float sign = curPlane%2 == 0 ? 1 : -1;
+			int row = curPlane/2;
+			float a = col0.w+sign*(row == 0 ? col0.x : (row == 1 ? col0.y : col0.z));
+			float b = col1.w+sign*(row == 0 ? col1.x : (row == 1 ? col1.y : col1.z));
+			float c = col2.w+sign*(row == 0 ? col2.x : (row == 1 ? col2.y : col2.z));
+			float d = col3.w+sign*(row == 0 ? col3.x : (row == 1 ? col3.y : col3.z));
+			float length = (float)Math.sqrt(a*a+b*b+c*c);
+			planes[curPlane].x = a/length;
+			planes[curPlane].y = b/length;
+			planes[curPlane].z = c/length;
+			planes[curPlane].w = d/length;
+		}
+		return planes;
+	}
 }
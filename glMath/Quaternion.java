@@ -105,6 +105,64 @@ public class Quaternion {
 		return (Vec3)multiply(this, vec, conjugate()).getData().swizzle("xyz");
 	}
 	
+	/**
+	 * Rotates the given vector by this quaternion, unlike multVec the given vector is not normalized 
+	 * and the rotated vector is stored in the result vector instead of allocating a new vector
+	 * 
+	 * @param vector Vector to be rotated
+	 * @param result Vector to store the rotated vector in, this can be the same vector as the one being rotated
+	 * @return The result vector post operation
+	 */
+	public Vec3 rotate(Vec3 vector, Vec3 result){
+		return rotate(vector, result, false);
+	}
+	
+	/**
+	 * Rotates the given vector by the inverse of this quaternion, this is the same rotation applied by the 
+	 * matrix returned from asMatrix, the rotated vector is stored in the result vector instead of allocating
+	 * a new vector
+	 * 
+	 * @param vector Vector to be rotated
+	 * @param result Vector to store the rotated vector in, this can be the same vector as the one being rotated
+	 * @return The result vector post operation
+	 */
+	public Vec3 rotateInverse(Vec3 vector, Vec3 result){
+		return rotate(vector, result, true);
+	}
+	
+	private Vec3 rotate(Vec3 vector, Vec3 result, boolean inverse){
+		//normalize the components locally so that this quaternion isn't modified by the rotation
+		float length = (float)Math.sqrt(data.x*data.x+data.y*data.y+data.z*data.z+data.w*data.w);
+		float qX = data.x/length;
+		float qY = data.y/length;
+		float qZ = data.z/length;
+		float qW = data.w/length;
+		
+		float x2 = qX*qX;
+		float y2 = qY*qY;
+		float z2 = qZ*qZ;
+		
+		float xy = qX*qY;
+		float xz = qX*qZ;
+		float yz = qY*qZ;
+		
+		float wx = qW*qX;
+		float wy = qW*qY;
+		float wz = qW*qZ;
+		
+		//the inverse rotation is the transpose of the rotation matrix so the off diagonal terms flip signs
+		float sign = inverse ? -1 : 1;
+		
+		float x = (1.0f - 2.0f * (y2 + z2))*vector.x + 2.0f * (xy - sign*wz)*vector.y + 2.0f * (xz + sign*wy)*vector.z;
+		float y = 2.0f * (xy + sign*wz)*vector.x + (1.0f - 2.0f * (x2 + z2))*vector.y + 2.0f * (yz - sign*wx)*vector.z;
+		float z = 2.0f * (xz - sign*wy)*vector.x + 2.0f * (yz + sign*wx)*vector.y + (1.0f - 2.0f * (x2 + y2))*vector.z;
+		
+		result.x = x;
+		result.y = y;
+		result.z = z;
+		return result;
+	}
+	
 	public void set(Quaternion dupe){
 		data.set(dupe.getData());
 	}
@@ -102,6 +102,24 @@ public class Vec3 implements Vector {
 				);
 	}
 	
+	/**
+	 * Computes the cross product of this vector with the given vector, storing it in the given result
+	 * vector instead of allocating a new vector
+	 * 
+	 * @param vector Vector to compute the cross product with
+	 * @param result Vector to store the cross product in, this can be either this vector or the given vector
+	 * @return The result vector post operation
+	 */
+	public Vec3 cross(Vec3 vector, Vec3 result){
+		float cX = y*vector.z - z*vector.y;
+		float cY = z*vector.x - x*vector.z;
+		float cZ = x*vector.y - y*vector.x;
+		result.x = cX;
+		result.y = cY;
+		result.z = cZ;
+		return result;
+	}
+	
 	@Override
 	public float dot(Vector vector) {
 		if(vector instanceof Vec3){
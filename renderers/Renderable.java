@@ -108,22 +108,26 @@ public abstract class Renderable {
 	public void orient(float x, float y, float z, float theta){
 		orientation.set(Quaternion.multiply(Quaternion.fromAxisAngle(x, y, z, theta), orientation));
 		collider.orient(x, y, z, theta);
-		//additional code needs to be written for changing the bounding volume
+		//the bounding volume can't rotate so it is refit around the rotated collider instead
+		boundingVolume.refit(collider);
 	}
 	
 	public void orient(Vec3 axis, float theta){
 		orientation.set(Quaternion.multiply(Quaternion.fromAxisAngle(axis, theta), orientation));
 		collider.orient(axis, theta);
+		boundingVolume.refit(collider);
 	}
 	
 	public void orient(Vec3 angles){
 		orientation.set(Quaternion.multiply(new Quaternion(angles), orientation));
 		collider.orient(angles);
+		boundingVolume.refit(collider);
 	}
 	
 	public void orient(float roll, float pitch, float yaw){
 		orientation.set(Quaternion.multiply(new Quaternion(roll, pitch, yaw), orientation));
 		collider.orient(roll, pitch, yaw);
+		boundingVolume.refit(collider);
 	}
 	
 	public Quaternion getOrientation(){
@@ -133,12 +137,23 @@ public abstract class Renderable {
 	public void setOrientation(Quaternion orient){
 		orientation.set(orient);
 		collider.setOrientation(orient);
+		boundingVolume.refit(collider);
 	}
 	
 	public Mat4 getModelMatrix(){
 		return (Mat4)MatrixUtil.multiply(modelMat, orientation.asMatrix());
 	}
 	
+	/**
+	 * Gets the matrix of the translations, scales and rotations applied to this renderable without its orientation,
+	 * the model matrix is this matrix multiplied by the orientation
+	 * 
+	 * @return Transform matrix of this renderable, this is the matrix used by the renderable and shouldn't be modified
+	 */
+	public Mat4 getTransformMatrix(){
+		return modelMat;
+	}
+	
 	public Mat3 getNormalMatrix(){
 		return this.getModelMatrix().getNormalMatrix();
 	}
@@ -190,7 +205,7 @@ public abstract class Renderable {
 	public void resetOrientation(){
 		this.orientation.set(0, 0, 0);
 		collider.resetOrientation();
-		boundingVolume.resetOrientation();
+		boundingVolume.refit(collider);
 	}
 	
 	public void reset(){
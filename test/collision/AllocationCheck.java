@@ -0,0 +1,169 @@
+package collision;
+
+import glMath.Vec3;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Checks that the GJK and EPA tests run on the per thread workspace don't allocate once the workspace has warmed
+ * up. A set of random boxes, spheres and planes is tested pairwise and the bytes allocated by the thread over the
+ * tests are measured with the thread allocation counter of the JVM, the check fails if any were allocated.
+ * 
+ * The pairs are split by whether they overlap so each path is measured on its own, separated pairs only run GJK
+ * while overlapping pairs go on to expand the polytope with EPA. Both are also measured seeded with the direction
+ * their last test ended in, the way the batch narrowphase runs them with a pair cache. The check fails if there are
+ * no overlapping pairs since the EPA path wouldn't have been measured.
+ * 
+ * Run the main method with the collision package and its dependencies on the classpath, it exits with a non zero
+ * status when the check fails. The allocation counter is only available on JVMs that provide the extended thread
+ * bean, the check is skipped on others.
+ * 
+ * @author Kevin
+ *
+ */
+public class AllocationCheck {
+	
+	private static final int NUM_MESHES = 200;
+	private static final int ROUNDS = 50;
+	private static final int MEASUREMENTS = 3;
+	
+	public static void main(String[] args){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean)){
+			System.err.println("Thread allocation counting isn't supported by this JVM, skipping the check");
+			return;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+		if(!threads.isThreadAllocatedMemorySupported()){
+			System.err.println("Thread allocation counting isn't supported by this JVM, skipping the check");
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		Random random = new Random(3);
+		CollisionMesh[] meshes = new CollisionMesh[NUM_MESHES];
+		for(int curMesh = 0; curMesh < meshes.length; curMesh++){
+			meshes[curMesh] = randomMesh(random);
+		}
+		CollisionData result = new CollisionData();
+		GJKWorkspace workspace = CollisionDetector.getWorkspace();
+		
+		//each mesh is paired with the next one, split by whether the pair overlaps
+		int[] separated = new int[NUM_MESHES-1], overlapping = new int[NUM_MESHES-1];
+		int numSeparated = 0, numOverlapping = 0;
+		Vec3[] seeds = new Vec3[NUM_MESHES-1];
+		for(int curPair = 0; curPair < NUM_MESHES-1; curPair++){
+			seeds[curPair] = new Vec3();
+			if(CollisionDetector.gjkIntersect(meshes[curPair], meshes[curPair+1], result, workspace).areColliding){
+				overlapping[numOverlapping++] = curPair;
+			}else{
+				separated[numSeparated++] = curPair;
+			}
+		}
+		if(numOverlapping == 0){
+			System.err.println("None of the pairs overlap, the EPA path isn't being checked");
+			System.exit(1);
+		}
+		
+		int failures = 0;
+		if(!measure("GJK", meshes, separated, numSeparated, null, result, workspace, threads)){
+			failures++;
+		}
+		if(!measure("GJK and EPA", meshes, overlapping, numOverlapping, null, result, workspace, threads)){
+			failures++;
+		}
+		if(!measure("Seeded GJK", meshes, separated, numSeparated, seeds, result, workspace, threads)){
+			failures++;
+		}
+		if(!measure("Seeded GJK and EPA", meshes, overlapping, numOverlapping, seeds, result, workspace, threads)){
+			failures++;
+		}
+		if(failures > 0){
+			System.err.println(failures+" of the paths allocated on a warm workspace");
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Runs the tests of the given pairs once to grow the workspace to the largest of them and let the JIT settle, then
+	 * measures the bytes allocated by running them again. The JVM can allocate a few bytes on the thread while it
+	 * recompiles a method, so the measurement is repeated up to MEASUREMENTS times and the path only fails if every
+	 * measurement allocated, an allocation in the tests themselves shows up in all of them
+	 * 
+	 * @param name Name of the path printed with its measurement
+	 * @param pairs Indices of the first mesh of each pair, the second mesh is the one after it
+	 * @param seeds Seed direction of each pair updated after each of its tests, or null to test the pairs cold
+	 * @return True if nothing was allocated
+	 */
+	private static boolean measure(String name, CollisionMesh[] meshes, int[] pairs, int numPairs, Vec3[] seeds,
+			CollisionData result, GJKWorkspace workspace, com.sun.management.ThreadMXBean threads){
+		long thread = Thread.currentThread().getId();
+		runTests(meshes, pairs, numPairs, seeds, result, workspace);
+		long allocated = 0;
+		int numTests = 0;
+		for(int curMeasurement = 0; curMeasurement < MEASUREMENTS; curMeasurement++){
+			long before = threads.getThreadAllocatedBytes(thread);
+			numTests = runTests(meshes, pairs, numPairs, seeds, result, workspace);
+			allocated = threads.getThreadAllocatedBytes(thread)-before;
+			if(allocated <= 0){
+				break;
+			}
+		}
+		
+		System.out.println(name+": ran "+numTests+" tests, "+allocated+" bytes allocated ("
+				+(allocated/(float)Math.max(numTests, 1))+" per test)");
+		return allocated <= 0;
+	}
+	
+	/**
+	 * Tests each of the given pairs for the number of rounds
+	 * 
+	 * @return Number of tests that were run
+	 */
+	private static int runTests(CollisionMesh[] meshes, int[] pairs, int numPairs, Vec3[] seeds, CollisionData result,
+			GJKWorkspace workspace){
+		int numTests = 0;
+		for(int curRound = 0; curRound < ROUNDS; curRound++){
+			for(int curPair = 0; curPair < numPairs; curPair++){
+				int first = pairs[curPair];
+				if(seeds == null){
+					CollisionDetector.gjkIntersect(meshes[first], meshes[first+1], result, workspace);
+				}else{
+					Vec3 seed = seeds[first];
+					CollisionDetector.gjkIntersect(meshes[first], meshes[first+1], seed.isZero() ? null : seed, result,
+							workspace);
+					seed.set(workspace.getTerminalDirection());
+				}
+				numTests++;
+			}
+		}
+		return numTests;
+	}
+	
+	/**
+	 * Creates a box, sphere or plane of random size and orientation near the origin so that about half the pairs
+	 * of meshes overlap and go through EPA
+	 */
+	private static CollisionMesh randomMesh(Random random){
+		CollisionMesh mesh;
+		switch(random.nextInt(4)){
+			case 0:
+				mesh = new AABB(1+random.nextFloat()*2, 1+random.nextFloat()*2, 1+random.nextFloat()*2);
+				break;
+			case 1:
+				mesh = new OBB(1+random.nextFloat()*2, 1+random.nextFloat()*2, 1+random.nextFloat()*2);
+				mesh.orient(random.nextFloat(), random.nextFloat(), random.nextFloat(), random.nextFloat()*360);
+				break;
+			case 2:
+				mesh = new BoundingSphere(.5f+random.nextFloat());
+				break;
+			default:
+				mesh = new CollisionPlane(1+random.nextFloat()*3);
+				mesh.orient(random.nextFloat(), random.nextFloat(), random.nextFloat(), random.nextFloat()*30);
+				break;
+		}
+		mesh.translate(random.nextFloat()*3-1.5f, random.nextFloat()*3-1.5f, random.nextFloat()*3-1.5f);
+		return mesh;
+	}
+}
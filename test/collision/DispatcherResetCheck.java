@@ -0,0 +1,69 @@
+package collision;
+
+/**
+ * Regression check that every route of the collision dispatcher leaves no manifold behind from an earlier test.
+ * The batch narrowphase reuses collision data by pair index, so a box pair filling a manifold of several points
+ * followed by a sphere pair on the same collision data must not report the points of the boxes.
+ * 
+ * Run the main method with the collision package and its dependencies on the classpath, it exits with a non zero
+ * status when the check fails.
+ * 
+ * @author Kevin
+ *
+ */
+public class DispatcherResetCheck {
+	
+	public static void main(String[] args){
+		CollisionDispatcher dispatcher = new CollisionDispatcher();
+		CollisionData result = new CollisionData();
+		
+		BoundingSphere sphereA = new BoundingSphere(1);
+		BoundingSphere sphereB = new BoundingSphere(1);
+		sphereB.translate(0, 1.5f, 0);
+		OBB box = new OBB(2, 2, 2);
+		box.translate(0, 1.5f, 0);
+		CollisionPlane plane = new CollisionPlane(4);
+		AABB aabb = new AABB(2, 2, 2);
+		aabb.translate(0, 1.5f, 0);
+		
+		CollisionMesh[][] pairs = {
+				{sphereA, sphereB},
+				{sphereA, box},
+				{box, sphereA},
+				{sphereA, aabb},
+				{sphereA, plane},
+		};
+		int failures = 0;
+		for(int curPair = 0; curPair < pairs.length; curPair++){
+			fillManifold(dispatcher, result);
+			dispatcher.intersect(pairs[curPair][0], pairs[curPair][1], result);
+			String name = pairs[curPair][0].getClass().getSimpleName()+"-"+pairs[curPair][1].getClass().getSimpleName();
+			if(!result.areColliding){
+				System.err.println(name+" should be colliding");
+				failures++;
+			}
+			if(result.numPoints != 0){
+				System.err.println(name+" kept "+result.numPoints+" points of the previous test");
+				failures++;
+			}
+		}
+		System.out.println("Checked "+pairs.length+" sphere routes, "+failures+" failures");
+		if(failures > 0){
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Tests a box resting on another box so the collision data holds a manifold of several points
+	 */
+	private static void fillManifold(CollisionDispatcher dispatcher, CollisionData result){
+		OBB lower = new OBB(4, 2, 4);
+		OBB upper = new OBB(2, 2, 2);
+		upper.translate(0, 1.9f, 0);
+		dispatcher.intersect(upper, lower, result);
+		if(result.numPoints < 2){
+			System.err.println("Box pair only found "+result.numPoints+" points, the check can't detect stale points");
+			System.exit(1);
+		}
+	}
+}
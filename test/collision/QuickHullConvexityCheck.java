@@ -0,0 +1,197 @@
+package collision;
+
+import glMath.Mat4;
+import glMath.Quaternion;
+import glMath.Vec2;
+import glMath.Vec3;
+import glMath.Vec4;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import primitives.Triangle;
+import primitives.Vertex;
+
+/**
+ * Checks that quickhull builds closed convex hulls from inputs with many coplanar and duplicate points. Points on a
+ * grid put several points on each plane of the hull, which is where rounding can make a face visible from a point
+ * while its coplanar neighbor isn't. Each hull is walked through its adjacency information and fails if an edge
+ * isn't linked or if any input point lies in front of one of its faces by more than a small tolerance.
+ * 
+ * Run the main method with the collision package and its dependencies on the classpath, it exits with a non zero
+ * status when the check fails.
+ * 
+ * @author Kevin
+ *
+ */
+public class QuickHullConvexityCheck {
+	
+	private static final int NUM_HULLS = 500;
+	
+	public static void main(String[] args){
+		Random random = new Random(11);
+		int failures = 0, numHulls = 0;
+		
+		//points that made a hull with a pinched horizon when visibility and assignment used different tolerances
+		float[][] reported = {
+				{2, -1, 0}, {-1, -2, -1}, {-2, 0, 1}, {1, -1, -2}, {-1, 0, 1}, {0, 1, 0}, {-1, 0, 0}, {-1, 1, 2},
+				{0, -1, 2}, {-1, -1, -1}, {-1, -2, -1}, {0, -1, 1}, {2, -2, 2}, {-2, -2, 1}, {2, 1, -2}, {2, 0, -2},
+				{1, 2, 0}, {0, 2, 2}, {2, 0, 2}, {-2, 0, 1}, {1, 2, -2}, {-2, -2, -1}, {2, -2, 1}, {0, -2, 2},
+				{1, 0, -2}
+		};
+		if(!check("reported points", reported, 1)){
+			failures++;
+		}
+		numHulls++;
+		
+		for(int curHull = 0; curHull < NUM_HULLS; curHull++){
+			String name;
+			float[][] points;
+			float size;
+			switch(curHull%3){
+				case 0:
+					name = "grid "+curHull;
+					size = 2+random.nextInt(8);
+					points = gridPoints(random, (int)size, 1, false);
+					break;
+				case 1:
+					//rotating and scaling the grid keeps the points coplanar up to the rounding of the floats
+					name = "rotated grid "+curHull;
+					float scale = .01f+random.nextFloat()*100;
+					int gridSize = 2+random.nextInt(8);
+					size = scale*gridSize;
+					points = gridPoints(random, gridSize, scale, true);
+					break;
+				default:
+					name = "duplicates "+curHull;
+					size = 2;
+					points = duplicatePoints(random);
+					break;
+			}
+			if(!check(name, points, size)){
+				failures++;
+			}
+			numHulls++;
+		}
+		System.out.println("Checked "+numHulls+" hulls, "+failures+" failures");
+		if(failures > 0){
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Builds the hull of the given points and checks that it is closed and convex
+	 * 
+	 * @param name Name of the input printed when the check fails
+	 * @param points Points to build the hull of
+	 * @param size Size of the input the tolerance is scaled by
+	 * @return True if the hull passed the check or the points don't span a volume, false otherwise
+	 */
+	private static boolean check(String name, float[][] points, float size){
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>(points.length);
+		for(int curPoint = 0; curPoint < points.length; curPoint++){
+			float[] point = points[curPoint];
+			vertices.add(new Vertex(new Vec3(point[0], point[1], point[2]), new Vec3(), new Vec2(), new Vec3(), new Vec3()));
+		}
+		ConvexHull hull = QuickHull.build(vertices);
+		//flat inputs can't be made into a hull, that isn't what is being checked
+		if(hull == null){
+			return true;
+		}
+		
+		ArrayList<Vec3> hullVerts = hull.getVerts();
+		ArrayList<Triangle> faces = new ArrayList<Triangle>();
+		Set<Triangle> seen = Collections.newSetFromMap(new IdentityHashMap<Triangle, Boolean>());
+		ArrayDeque<Triangle> toVisit = new ArrayDeque<Triangle>();
+		toVisit.add(hull.getAdjInfo());
+		seen.add(hull.getAdjInfo());
+		while(!toVisit.isEmpty()){
+			Triangle face = toVisit.poll();
+			faces.add(face);
+			for(Triangle.HalfEdge edge : face.halfEdges){
+				if(edge.opposite == null){
+					System.err.println(name+": hull has an edge without an opposite");
+					return false;
+				}
+				if(seen.add(edge.opposite.parent)){
+					toVisit.add(edge.opposite.parent);
+				}
+			}
+		}
+		
+		double tolerance = 1e-4*size;
+		for(Triangle face : faces){
+			Vec3 a = hullVerts.get(face.primitive[0]);
+			Vec3 b = hullVerts.get(face.primitive[1]);
+			Vec3 c = hullVerts.get(face.primitive[2]);
+			//the normal is computed in double so long thin faces are measured correctly
+			double abX = (double)b.x-a.x, abY = (double)b.y-a.y, abZ = (double)b.z-a.z;
+			double acX = (double)c.x-a.x, acY = (double)c.y-a.y, acZ = (double)c.z-a.z;
+			double nX = abY*acZ-abZ*acY, nY = abZ*acX-abX*acZ, nZ = abX*acY-abY*acX;
+			double length = Math.sqrt(nX*nX+nY*nY+nZ*nZ);
+			if(length == 0){
+				continue;
+			}
+			for(int curPoint = 0; curPoint < points.length; curPoint++){
+				float[] point = points[curPoint];
+				double dist = (((double)point[0]-a.x)*nX+((double)point[1]-a.y)*nY+((double)point[2]-a.z)*nZ)/length;
+				if(dist > tolerance){
+					System.err.println(name+": point "+curPoint+" is "+dist+" in front of a face of the hull");
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Creates points picked from a grid of the given size, some of which are repeated
+	 */
+	private static float[][] gridPoints(Random random, int gridSize, float scale, boolean rotate){
+		Mat4 rotation = Quaternion.fromAxisAngle(random.nextFloat(), random.nextFloat(), random.nextFloat()+.1f,
+				random.nextFloat()*360).asMatrix();
+		Vec4[] columns = rotation.getMatrix();
+		float[][] points = new float[5+random.nextInt(600)][];
+		for(int curPoint = 0; curPoint < points.length; curPoint++){
+			if(curPoint > 0 && random.nextInt(10) == 0){
+				points[curPoint] = points[random.nextInt(curPoint)].clone();
+				continue;
+			}
+			float x = random.nextInt(gridSize)-gridSize/2;
+			float y = random.nextInt(gridSize)-gridSize/2;
+			float z = random.nextInt(gridSize)-gridSize/2;
+			if(rotate){
+				points[curPoint] = new float[]{
+						scale*(columns[0].x*x+columns[1].x*y+columns[2].x*z),
+						scale*(columns[0].y*x+columns[1].y*y+columns[2].y*z),
+						scale*(columns[0].z*x+columns[1].z*y+columns[2].z*z)
+				};
+			}else{
+				points[curPoint] = new float[]{x, y, z};
+			}
+		}
+		return points;
+	}
+	
+	/**
+	 * Creates random points that are each repeated three times, a third of them lying on the same plane
+	 */
+	private static float[][] duplicatePoints(Random random){
+		int numPoints = 10+random.nextInt(60);
+		float[][] points = new float[numPoints*3][];
+		for(int curPoint = 0; curPoint < numPoints; curPoint++){
+			float[] point = {random.nextFloat()*2-1, random.nextFloat()*2-1, random.nextFloat()*2-1};
+			if(curPoint%3 == 0){
+				point[2] = 1;
+			}
+			points[curPoint*3] = point;
+			points[curPoint*3+1] = point.clone();
+			points[curPoint*3+2] = point.clone();
+		}
+		return points;
+	}
+}